@@ -0,0 +1,107 @@
+package arunsah.lbs.benchmark;
+
+import arunsah.lbs.BinaryInput;
+import arunsah.lbs.BinaryInputImpl;
+import arunsah.lbs.BinaryOutput;
+import arunsah.lbs.BinaryOutputImpl;
+import arunsah.lbs.Constant;
+import arunsah.lbs.SegmentPool;
+import arunsah.lbs.SegmentedBinaryOutput;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Common setup of the benchmarks: every benchmark runs against heap and direct buffers in both byte orders.
+ * <p>
+ * With {@code bufferType=SEGMENTED} the writes go to a {@link SegmentedBinaryOutput} whose heap segments of
+ * {@link Constant#DEFAULT_SEGMENT_SIZE} bytes are returned to the pool before each invocation, and the reads come from
+ * a heap buffer.
+ * <p>
+ * Each benchmark state owns one buffer to write into and one pre-encoded buffer to read from; both are reused
+ * across invocations so the measurements (and the GC profiler's allocation rates) only cover the LBS calls.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class AbstractBufferBenchmark {
+
+    @Param({"HEAP", "DIRECT", "SEGMENTED"})
+    public String bufferType;
+
+    @Param({"BIG_ENDIAN", "LITTLE_ENDIAN"})
+    public String byteOrder;
+
+    private ByteBuffer writeBuffer;
+    private BinaryOutput out;
+    private ByteBuffer readBuffer;
+    private BinaryInput in;
+
+    /**
+     * Allocates the write buffer and the read buffer, and fills the read buffer using {@code encoder}.
+     *
+     * @param capacity capacity of both buffers
+     * @param encoder  writes the data the read benchmarks decode
+     */
+    protected void setUpBuffers(int capacity, Consumer<BinaryOutput> encoder) {
+        ByteOrder order = "BIG_ENDIAN".equals(byteOrder) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        if ("SEGMENTED".equals(bufferType)) {
+            // Enough free segments for the largest write, with room for the bytes left at segment ends.
+            int segments = 2 * (capacity / Constant.DEFAULT_SEGMENT_SIZE) + 2;
+            out = new SegmentedBinaryOutput(new SegmentPool(Constant.DEFAULT_SEGMENT_SIZE, segments, false), order);
+        } else {
+            writeBuffer = allocate(capacity);
+            out = new BinaryOutputImpl(writeBuffer, order);
+        }
+
+        readBuffer = allocate(capacity);
+        encoder.accept(new BinaryOutputImpl(readBuffer, order));
+        readBuffer.flip();
+        in = new BinaryInputImpl(readBuffer, order);
+    }
+
+    /**
+     * @return the output, positioned at the start of the write buffer (or with its segments back in the pool).
+     */
+    protected BinaryOutput output() {
+        if (out instanceof SegmentedBinaryOutput) {
+            ((SegmentedBinaryOutput) out).reset();
+        } else {
+            writeBuffer.clear();
+        }
+        return out;
+    }
+
+    /**
+     * @return the input, positioned at the start of the pre-encoded data.
+     */
+    protected BinaryInput input() {
+        return input(0);
+    }
+
+    /**
+     * @return the input, positioned at {@code position} within the pre-encoded data.
+     */
+    protected BinaryInput input(int position) {
+        readBuffer.position(position);
+        return in;
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return "DIRECT".equals(bufferType) ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+}
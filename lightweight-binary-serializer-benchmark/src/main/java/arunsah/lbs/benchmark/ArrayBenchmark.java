@@ -0,0 +1,194 @@
+package arunsah.lbs.benchmark;
+
+import arunsah.lbs.BinaryOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.Random;
+
+/**
+ * Primitive array encoding and decoding for every array type, one array per operation.
+ * <p>
+ * Varint arrays use uniformly random values, so most int32 elements take 5 bytes and most int64 elements 9 or 10.
+ */
+public class ArrayBenchmark extends AbstractBufferBenchmark {
+
+    @Param({"16", "1024", "65536"})
+    public int length;
+
+    private byte[] int8Values;
+    private short[] int16Values;
+    private int[] int32Values;
+    private long[] int64Values;
+    private float[] float16Values;
+    private float[] float32Values;
+    private double[] float64Values;
+    private int[] varInt32Values;
+    private long[] varInt64Values;
+
+    // Start of each encoded array within the read buffer.
+    private int int8Offset;
+    private int int16Offset;
+    private int int32Offset;
+    private int int64Offset;
+    private int float16Offset;
+    private int float32Offset;
+    private int float64Offset;
+    private int varInt32Offset;
+    private int varInt64Offset;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        int8Values = new byte[length];
+        random.nextBytes(int8Values);
+        int16Values = new short[length];
+        int32Values = new int[length];
+        int64Values = new long[length];
+        float16Values = new float[length];
+        float32Values = new float[length];
+        float64Values = new double[length];
+        varInt32Values = new int[length];
+        varInt64Values = new long[length];
+        for (int i = 0; i < length; i++) {
+            int16Values[i] = (short) random.nextInt();
+            int32Values[i] = random.nextInt();
+            int64Values[i] = random.nextLong();
+            float16Values[i] = (float) random.nextGaussian();
+            float32Values[i] = random.nextFloat();
+            float64Values[i] = random.nextDouble();
+            varInt32Values[i] = random.nextInt();
+            varInt64Values[i] = random.nextLong();
+        }
+        // Room for every array, each with a length prefix and the widest element encoding.
+        setUpBuffers(9 * (5 + length * 10), out -> {
+            int8Offset = out.getBufferPosition();
+            out.writeInt8Array(int8Values);
+            int16Offset = out.getBufferPosition();
+            out.writeInt16Array(int16Values);
+            int32Offset = out.getBufferPosition();
+            out.writeInt32Array(int32Values);
+            int64Offset = out.getBufferPosition();
+            out.writeInt64Array(int64Values);
+            float16Offset = out.getBufferPosition();
+            out.writeFloat16Array(float16Values);
+            float32Offset = out.getBufferPosition();
+            out.writeFloat32Array(float32Values);
+            float64Offset = out.getBufferPosition();
+            out.writeFloat64Array(float64Values);
+            varInt32Offset = out.getBufferPosition();
+            out.writeVarInt32Array(varInt32Values);
+            varInt64Offset = out.getBufferPosition();
+            out.writeVarInt64Array(varInt64Values);
+        });
+    }
+
+    @Benchmark
+    public int writeInt8Array() {
+        BinaryOutput out = output();
+        out.writeInt8Array(int8Values);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeInt16Array() {
+        BinaryOutput out = output();
+        out.writeInt16Array(int16Values);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeInt32Array() {
+        BinaryOutput out = output();
+        out.writeInt32Array(int32Values);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeInt64Array() {
+        BinaryOutput out = output();
+        out.writeInt64Array(int64Values);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeFloat16Array() {
+        BinaryOutput out = output();
+        out.writeFloat16Array(float16Values);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeFloat32Array() {
+        BinaryOutput out = output();
+        out.writeFloat32Array(float32Values);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeFloat64Array() {
+        BinaryOutput out = output();
+        out.writeFloat64Array(float64Values);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeVarInt32Array() {
+        BinaryOutput out = output();
+        out.writeVarInt32Array(varInt32Values);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeVarInt64Array() {
+        BinaryOutput out = output();
+        out.writeVarInt64Array(varInt64Values);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public byte[] readInt8Array() {
+        return input(int8Offset).readInt8Array();
+    }
+
+    @Benchmark
+    public short[] readInt16Array() {
+        return input(int16Offset).readInt16Array();
+    }
+
+    @Benchmark
+    public int[] readInt32Array() {
+        return input(int32Offset).readInt32Array();
+    }
+
+    @Benchmark
+    public long[] readInt64Array() {
+        return input(int64Offset).readInt64Array();
+    }
+
+    @Benchmark
+    public float[] readFloat16Array() {
+        return input(float16Offset).readFloat16Array();
+    }
+
+    @Benchmark
+    public float[] readFloat32Array() {
+        return input(float32Offset).readFloat32Array();
+    }
+
+    @Benchmark
+    public double[] readFloat64Array() {
+        return input(float64Offset).readFloat64Array();
+    }
+
+    @Benchmark
+    public int[] readVarInt32Array() {
+        return input(varInt32Offset).readVarInt32Array();
+    }
+
+    @Benchmark
+    public long[] readVarInt64Array() {
+        return input(varInt64Offset).readVarInt64Array();
+    }
+}
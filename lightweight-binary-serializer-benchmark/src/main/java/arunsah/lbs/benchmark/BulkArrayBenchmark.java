@@ -0,0 +1,221 @@
+package arunsah.lbs.benchmark;
+
+import arunsah.lbs.BinaryInput;
+import arunsah.lbs.BinaryOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.Random;
+
+/**
+ * Large fixed-width arrays: the bulk array methods ({@code write/readXxxArray}, one view buffer transfer per array)
+ * against the same encoding written and read one element at a time ({@code xxxLoop}), for the speedup per array type.
+ */
+public class BulkArrayBenchmark extends AbstractBufferBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int length;
+
+    private short[] int16Values;
+    private int[] int32Values;
+    private long[] int64Values;
+    private float[] float32Values;
+    private double[] float64Values;
+
+    // Start of each encoded array within the read buffer.
+    private int int16Offset;
+    private int int32Offset;
+    private int int64Offset;
+    private int float32Offset;
+    private int float64Offset;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        int16Values = new short[length];
+        int32Values = new int[length];
+        int64Values = new long[length];
+        float32Values = new float[length];
+        float64Values = new double[length];
+        for (int i = 0; i < length; i++) {
+            int16Values[i] = (short) random.nextInt();
+            int32Values[i] = random.nextInt();
+            int64Values[i] = random.nextLong();
+            float32Values[i] = random.nextFloat();
+            float64Values[i] = random.nextDouble();
+        }
+        setUpBuffers(5 * (5 + length * Long.BYTES), out -> {
+            int16Offset = out.getBufferPosition();
+            out.writeInt16Array(int16Values);
+            int32Offset = out.getBufferPosition();
+            out.writeInt32Array(int32Values);
+            int64Offset = out.getBufferPosition();
+            out.writeInt64Array(int64Values);
+            float32Offset = out.getBufferPosition();
+            out.writeFloat32Array(float32Values);
+            float64Offset = out.getBufferPosition();
+            out.writeFloat64Array(float64Values);
+        });
+    }
+
+    @Benchmark
+    public int writeInt16Array() {
+        BinaryOutput out = output();
+        out.writeInt16Array(int16Values);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeInt16Loop() {
+        BinaryOutput out = output();
+        out.writeVarInt32(int16Values.length);
+        for (short value : int16Values) {
+            out.writeInt16(value);
+        }
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeInt32Array() {
+        BinaryOutput out = output();
+        out.writeInt32Array(int32Values);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeInt32Loop() {
+        BinaryOutput out = output();
+        out.writeVarInt32(int32Values.length);
+        for (int value : int32Values) {
+            out.writeInt32(value);
+        }
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeInt64Array() {
+        BinaryOutput out = output();
+        out.writeInt64Array(int64Values);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeInt64Loop() {
+        BinaryOutput out = output();
+        out.writeVarInt32(int64Values.length);
+        for (long value : int64Values) {
+            out.writeInt64(value);
+        }
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeFloat32Array() {
+        BinaryOutput out = output();
+        out.writeFloat32Array(float32Values);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeFloat32Loop() {
+        BinaryOutput out = output();
+        out.writeVarInt32(float32Values.length);
+        for (float value : float32Values) {
+            out.writeFloat32(value);
+        }
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeFloat64Array() {
+        BinaryOutput out = output();
+        out.writeFloat64Array(float64Values);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeFloat64Loop() {
+        BinaryOutput out = output();
+        out.writeVarInt32(float64Values.length);
+        for (double value : float64Values) {
+            out.writeFloat64(value);
+        }
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public short[] readInt16Array() {
+        return input(int16Offset).readInt16Array();
+    }
+
+    @Benchmark
+    public short[] readInt16Loop() {
+        BinaryInput in = input(int16Offset);
+        short[] values = new short[in.readVarInt32()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt16();
+        }
+        return values;
+    }
+
+    @Benchmark
+    public int[] readInt32Array() {
+        return input(int32Offset).readInt32Array();
+    }
+
+    @Benchmark
+    public int[] readInt32Loop() {
+        BinaryInput in = input(int32Offset);
+        int[] values = new int[in.readVarInt32()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt32();
+        }
+        return values;
+    }
+
+    @Benchmark
+    public long[] readInt64Array() {
+        return input(int64Offset).readInt64Array();
+    }
+
+    @Benchmark
+    public long[] readInt64Loop() {
+        BinaryInput in = input(int64Offset);
+        long[] values = new long[in.readVarInt32()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt64();
+        }
+        return values;
+    }
+
+    @Benchmark
+    public float[] readFloat32Array() {
+        return input(float32Offset).readFloat32Array();
+    }
+
+    @Benchmark
+    public float[] readFloat32Loop() {
+        BinaryInput in = input(float32Offset);
+        float[] values = new float[in.readVarInt32()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readFloat32();
+        }
+        return values;
+    }
+
+    @Benchmark
+    public double[] readFloat64Array() {
+        return input(float64Offset).readFloat64Array();
+    }
+
+    @Benchmark
+    public double[] readFloat64Loop() {
+        BinaryInput in = input(float64Offset);
+        double[] values = new double[in.readVarInt32()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readFloat64();
+        }
+        return values;
+    }
+}
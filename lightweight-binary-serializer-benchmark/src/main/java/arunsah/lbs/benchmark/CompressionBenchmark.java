@@ -0,0 +1,93 @@
+package arunsah.lbs.benchmark;
+
+import arunsah.lbs.BlockCompressedInputStream;
+import arunsah.lbs.BlockCompressedOutputStream;
+import arunsah.lbs.StreamingBinaryInput;
+import arunsah.lbs.StreamingBinaryOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes and reads a FLOAT32_ARRAY of {@code size} sensor readings (two decimals, often repeating) through a
+ * {@link StreamingBinaryOutput} / {@link StreamingBinaryInput}, plain and over block-compressed streams.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+    @Param({"1000000"})
+    public int size;
+
+    private float[] readings;
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private byte[] plain;
+    private byte[] compressed;
+
+    @Setup
+    public void setUp() throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+        readings = new float[size];
+        float reading = 20f;
+        for (int i = 0; i < size; i++) {
+            if (random.nextInt(4) == 0) {
+                reading = Math.round((reading + (float) (random.nextDouble() - 0.5) / 5) * 100) / 100f;
+            }
+            readings[i] = reading;
+        }
+        plain = writePlain();
+        compressed = writeCompressed();
+    }
+
+    @Benchmark
+    public byte[] writePlain() {
+        bytes.reset();
+        try (StreamingBinaryOutput out = StreamingBinaryOutput.littleEndianOutput(bytes)) {
+            out.writeFloat32Array(readings);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] writeCompressed() throws IOException {
+        bytes.reset();
+        try (StreamingBinaryOutput out = StreamingBinaryOutput.littleEndianOutput(
+                new BlockCompressedOutputStream(bytes))) {
+            out.writeFloat32Array(readings);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public float[] readPlain() {
+        try (StreamingBinaryInput in = StreamingBinaryInput.littleEndianInput(new ByteArrayInputStream(plain))) {
+            return in.readFloat32Array();
+        }
+    }
+
+    @Benchmark
+    public float[] readCompressed() throws IOException {
+        try (StreamingBinaryInput in = StreamingBinaryInput.littleEndianInput(
+                new BlockCompressedInputStream(new ByteArrayInputStream(compressed)))) {
+            return in.readFloat32Array();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package arunsah.lbs.benchmark;
+
+import arunsah.lbs.BinaryInput;
+import arunsah.lbs.BinaryOutput;
+import arunsah.lbs.FieldHeader;
+import arunsah.lbs.FieldType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Field header encoding and decoding for small (4-bit) and extended (varint) field ids, for a normal type and an
+ * extension type.
+ */
+@OperationsPerInvocation(FieldHeaderBenchmark.COUNT)
+public class FieldHeaderBenchmark extends AbstractBufferBenchmark {
+
+    static final int COUNT = 1024;
+
+    @Param({"3", "415"})
+    public int fieldId;
+
+    @Param({"INT32", "INT32_ARRAY"})
+    public FieldType fieldType;
+
+    @Setup
+    public void setUp() {
+        setUpBuffers(COUNT * 6, out -> {
+            for (int i = 0; i < COUNT; i++) {
+                out.writeFieldHeader(fieldType, fieldId);
+            }
+        });
+    }
+
+    @Benchmark
+    public int writeFieldHeader() {
+        BinaryOutput out = output();
+        for (int i = 0; i < COUNT; i++) {
+            out.writeFieldHeader(fieldType, fieldId);
+        }
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int readFieldHeader() {
+        BinaryInput in = input();
+        int sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            FieldHeader header = in.readFieldHeader();
+            sum += header.getFieldID() + header.getFieldType().ordinal();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int nextField() {
+        BinaryInput in = input();
+        int sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            sum += in.nextField() + in.currentFieldType().ordinal();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,129 @@
+package arunsah.lbs.benchmark;
+
+import arunsah.lbs.BinaryCodec;
+import arunsah.lbs.BinaryInput;
+import arunsah.lbs.BinaryOutput;
+import arunsah.lbs.CodecRegistry;
+import arunsah.lbs.LbsView;
+import arunsah.lbs.example.ComplexCompositeObjectsExample.Group;
+import arunsah.lbs.example.ComplexCompositeObjectsExample.Person;
+import arunsah.lbs.example.RuntimeCodecExample.AnnotatedPerson;
+import arunsah.lbs.example.RuntimeCodecExample_AnnotatedPersonLbsCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Nested objects: the {@link Person} and {@link Group} types of
+ * {@link arunsah.lbs.example.ComplexCompositeObjectsExample}, with {@code members} persons per group
+ * (each in the member list and in the role map).
+ * <p>
+ * The person is also written and read through the codecs of {@link AnnotatedPerson}, which has the same fields and
+ * bytes: the one generated by the annotation processor and the one {@link CodecRegistry} assembles at runtime, to
+ * compare both with the hand-written {@code serialize}/{@code deserialize} of {@link Person}.
+ */
+public class ObjectBenchmark extends AbstractBufferBenchmark {
+
+    private static final BinaryCodec<AnnotatedPerson> GENERATED_CODEC =
+            RuntimeCodecExample_AnnotatedPersonLbsCodec.INSTANCE;
+    // Assembled from MethodHandles even though a generated codec exists.
+    private static final BinaryCodec<AnnotatedPerson> RUNTIME_CODEC =
+            new CodecRegistry(false).codecFor(AnnotatedPerson.class);
+
+    @Param({"10", "1000"})
+    public int members;
+
+    private Person person;
+    private AnnotatedPerson annotatedPerson;
+    private Group group;
+    private int groupOffset;
+
+    @Setup
+    public void setUp() {
+        person = new Person(42, "harry", true, new Date(946684800000L));
+        annotatedPerson = new AnnotatedPerson(person);
+        List<Person> memberList = new ArrayList<>(members);
+        Map<String, Person> memberByRole = new HashMap<>();
+        for (int i = 0; i < members; i++) {
+            Person member = new Person(i % 128, "member-" + i, (i & 1) == 0, new Date(946684800000L + i));
+            memberList.add(member);
+            memberByRole.put("role-" + i, member);
+        }
+        group = new Group("group", memberList, memberByRole);
+        setUpBuffers(128 + members * 96, out -> {
+            out.writeObject(person);
+            groupOffset = out.getBufferPosition();
+            out.writeObject(group);
+        });
+    }
+
+    @Benchmark
+    public int writePerson() {
+        BinaryOutput out = output();
+        out.writeObject(person);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writePersonGenerated() {
+        BinaryOutput out = output();
+        out.writeObject(annotatedPerson, GENERATED_CODEC);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writePersonRuntime() {
+        BinaryOutput out = output();
+        out.writeObject(annotatedPerson, RUNTIME_CODEC);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public Person readPerson() {
+        return input().readObject(Person::new);
+    }
+
+    @Benchmark
+    public AnnotatedPerson readPersonGenerated() {
+        return input().readObject(GENERATED_CODEC);
+    }
+
+    @Benchmark
+    public AnnotatedPerson readPersonRuntime() {
+        return input().readObject(RUNTIME_CODEC);
+    }
+
+    /**
+     * Reads two fields of a person (id and dob) through a {@link LbsView} instead of deserializing it.
+     */
+    @Benchmark
+    public long viewPerson() {
+        BinaryInput in = input();
+        int length = in.readVarInt32();
+        ByteBuffer buffer = in.getBuffer();
+        int limit = buffer.limit();
+        buffer.limit(buffer.position() + length);
+        LbsView view = new LbsView(buffer, buffer.order());
+        buffer.limit(limit);
+        return view.getInt8(1) + view.getInt64(415);
+    }
+
+    @Benchmark
+    public int writeGroup() {
+        BinaryOutput out = output();
+        out.writeObject(group);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public Group readGroup() {
+        return input(groupOffset).readObject(Group::new);
+    }
+}
@@ -0,0 +1,67 @@
+package arunsah.lbs.benchmark;
+
+import arunsah.lbs.BinaryOutput;
+import arunsah.lbs.BinarySize;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.Random;
+
+/**
+ * Int columns of {@code bits} significant bits (with 1% outliers of 28 bits) as a PACKED_INT32 encoded array and as a
+ * VAR_INT32_ARRAY. Scores are per value.
+ */
+@OperationsPerInvocation(PackedArrayBenchmark.COUNT)
+public class PackedArrayBenchmark extends AbstractBufferBenchmark {
+
+    static final int COUNT = 100_000;
+
+    @Param({"4", "12", "20"})
+    public int bits;
+
+    private int[] values;
+    private int varIntOffset;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        values = new int[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            values[i] = random.nextInt(1 << bits);
+            if (random.nextInt(100) == 0) {
+                values[i] += 1 << 28;
+            }
+        }
+        setUpBuffers(BinarySize.packedInt32Array(values) + BinarySize.varInt32Array(values), out -> {
+            out.writePackedInt32Array(values);
+            varIntOffset = out.getBufferPosition();
+            out.writeVarInt32Array(values);
+        });
+    }
+
+    @Benchmark
+    public int writePackedInt32Array() {
+        BinaryOutput out = output();
+        out.writePackedInt32Array(values);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeVarInt32Array() {
+        BinaryOutput out = output();
+        out.writeVarInt32Array(values);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int[] readPackedInt32Array() {
+        return input().readPackedInt32Array();
+    }
+
+    @Benchmark
+    public int[] readVarInt32Array() {
+        return input(varIntOffset).readVarInt32Array();
+    }
+}
@@ -0,0 +1,81 @@
+package arunsah.lbs.benchmark;
+
+import arunsah.lbs.BinaryOutput;
+import arunsah.lbs.BinaryOutputImpl;
+import arunsah.lbs.ParallelListWriter;
+import arunsah.lbs.example.ComplexCompositeObjectsExample.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a list of {@code size} {@link Person}s sequentially and with a {@link ParallelListWriter} on a pool of
+ * {@code threads} threads; both produce the same bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelListBenchmark {
+
+    @Param({"500000"})
+    public int size;
+
+    @Param({"2", "4", "8"})
+    public int threads;
+
+    private List<Person> persons;
+    private ByteBuffer buffer;
+    private ForkJoinPool pool;
+    private ParallelListWriter parallel;
+
+    @Setup
+    public void setUp() {
+        persons = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            persons.add(new Person(i % 128, "person-" + i, (i & 1) == 0, new Date(946684800000L + i)));
+        }
+        buffer = ByteBuffer.allocate(64 * size);
+        pool = new ForkJoinPool(threads);
+        parallel = new ParallelListWriter(pool, 1024);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int sequential() {
+        buffer.clear();
+        BinaryOutput out = BinaryOutputImpl.bigEndianOutput(buffer);
+        out.writeList(persons, BinaryOutput::writeObject);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int parallel() {
+        buffer.clear();
+        BinaryOutput out = BinaryOutputImpl.bigEndianOutput(buffer);
+        out.writeList(persons, BinaryOutput::writeObject, parallel);
+        return out.getBufferPosition();
+    }
+}
@@ -0,0 +1,129 @@
+package arunsah.lbs.benchmark;
+
+import arunsah.lbs.BinaryInput;
+import arunsah.lbs.BinaryOutput;
+import arunsah.lbs.BinarySize;
+import arunsah.lbs.SortedInt32Cursor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.Random;
+
+/**
+ * Sorted id lists (posting lists): decoding a list stored as VAR_INT32_ARRAY and as a delta encoded sorted array, and
+ * intersecting a long list with a short one by decoding both and merging ({@code intersectArrays}) or with cursors
+ * that skip blocks of the long list ({@code intersectCursors}).
+ */
+public class PostingListBenchmark extends AbstractBufferBenchmark {
+
+    private static final int LARGE_LENGTH = 100_000;
+    private static final int SMALL_LENGTH = 1_000;
+
+    private int[] large;
+    private int[] small;
+
+    // Start of each encoded list within the read buffer.
+    private int largeVarIntOffset;
+    private int smallVarIntOffset;
+    private int largeSortedOffset;
+    private int largeBlockedOffset;
+    private int smallBlockedOffset;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        large = postingList(random, LARGE_LENGTH, 8);
+        small = postingList(random, SMALL_LENGTH, 800);
+        int capacity = BinarySize.varInt32Array(large) + BinarySize.varInt32Array(small)
+                + BinarySize.sortedInt32Array(large) + BinarySize.blockedSortedInt32Array(large)
+                + BinarySize.blockedSortedInt32Array(small);
+        setUpBuffers(capacity, out -> {
+            largeVarIntOffset = out.getBufferPosition();
+            out.writeVarInt32Array(large);
+            smallVarIntOffset = out.getBufferPosition();
+            out.writeVarInt32Array(small);
+            largeSortedOffset = out.getBufferPosition();
+            out.writeSortedInt32Array(large);
+            largeBlockedOffset = out.getBufferPosition();
+            out.writeBlockedSortedInt32Array(large);
+            smallBlockedOffset = out.getBufferPosition();
+            out.writeBlockedSortedInt32Array(small);
+        });
+    }
+
+    @Benchmark
+    public int writeVarInt32Array() {
+        BinaryOutput out = output();
+        out.writeVarInt32Array(large);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeSortedInt32Array() {
+        BinaryOutput out = output();
+        out.writeSortedInt32Array(large);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeBlockedSortedInt32Array() {
+        BinaryOutput out = output();
+        out.writeBlockedSortedInt32Array(large);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int[] readVarInt32Array() {
+        return input(largeVarIntOffset).readVarInt32Array();
+    }
+
+    @Benchmark
+    public int[] readSortedInt32Array() {
+        return input(largeSortedOffset).readSortedInt32Array();
+    }
+
+    @Benchmark
+    public int intersectArrays() {
+        int[] a = input(largeVarIntOffset).readVarInt32Array();
+        int[] b = input(smallVarIntOffset).readVarInt32Array();
+        int matches = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                matches++;
+                i++;
+                j++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int intersectCursors() {
+        BinaryInput in = input(largeBlockedOffset);
+        SortedInt32Cursor a = in.readSortedInt32Cursor();
+        SortedInt32Cursor b = input(smallBlockedOffset).readSortedInt32Cursor();
+        int matches = 0;
+        while (b.next() && a.advance(b.value())) {
+            if (a.value() == b.value()) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private static int[] postingList(Random random, int length, int maxGap) {
+        int[] ids = new int[length];
+        int id = 0;
+        for (int i = 0; i < length; i++) {
+            id += 1 + random.nextInt(maxGap);
+            ids[i] = id;
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,168 @@
+package arunsah.lbs.benchmark;
+
+import arunsah.lbs.BinaryInput;
+import arunsah.lbs.BinaryOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Fixed-width primitive values and booleans, one value per operation.
+ */
+@OperationsPerInvocation(PrimitiveBenchmark.COUNT)
+public class PrimitiveBenchmark extends AbstractBufferBenchmark {
+
+    static final int COUNT = 1024;
+
+    @Setup
+    public void setUp() {
+        // Enough 8-byte values for every read benchmark; each one reads its own type from the start.
+        setUpBuffers(COUNT * Long.BYTES, out -> {
+            for (int i = 0; i < COUNT; i++) {
+                out.writeInt64(i * 0x0101010101010101L);
+            }
+        });
+    }
+
+    @Benchmark
+    public int writeInt8() {
+        BinaryOutput out = output();
+        for (int i = 0; i < COUNT; i++) {
+            out.writeInt8((byte) i);
+        }
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeInt16() {
+        BinaryOutput out = output();
+        for (int i = 0; i < COUNT; i++) {
+            out.writeInt16((short) i);
+        }
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeInt32() {
+        BinaryOutput out = output();
+        for (int i = 0; i < COUNT; i++) {
+            out.writeInt32(i);
+        }
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeInt64() {
+        BinaryOutput out = output();
+        for (int i = 0; i < COUNT; i++) {
+            out.writeInt64(i);
+        }
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeFloat16() {
+        BinaryOutput out = output();
+        for (int i = 0; i < COUNT; i++) {
+            out.writeFloat16(i * 0.5f);
+        }
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeFloat32() {
+        BinaryOutput out = output();
+        for (int i = 0; i < COUNT; i++) {
+            out.writeFloat32(i * 0.5f);
+        }
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeFloat64() {
+        BinaryOutput out = output();
+        for (int i = 0; i < COUNT; i++) {
+            out.writeFloat64(i * 0.5);
+        }
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeBoolean() {
+        BinaryOutput out = output();
+        for (int i = 0; i < COUNT; i++) {
+            out.writeBoolean(3, (i & 1) == 0);
+        }
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int readInt8() {
+        BinaryInput in = input();
+        int sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            sum += in.readInt8();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int readInt16() {
+        BinaryInput in = input();
+        int sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            sum += in.readInt16();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int readInt32() {
+        BinaryInput in = input();
+        int sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            sum += in.readInt32();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long readInt64() {
+        BinaryInput in = input();
+        long sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            sum += in.readInt64();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float readFloat16() {
+        BinaryInput in = input();
+        float sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            sum += in.readFloat16();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float readFloat32() {
+        BinaryInput in = input();
+        float sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            sum += in.readFloat32();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double readFloat64() {
+        BinaryInput in = input();
+        double sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            sum += in.readFloat64();
+        }
+        return sum;
+    }
+}
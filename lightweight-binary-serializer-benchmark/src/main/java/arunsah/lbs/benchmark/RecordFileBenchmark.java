@@ -0,0 +1,78 @@
+package arunsah.lbs.benchmark;
+
+import arunsah.lbs.RecordFile;
+import arunsah.lbs.RecordFileWriter;
+import arunsah.lbs.example.ComplexCompositeObjectsExample.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point lookups in a record file of {@code records} {@link Person}s: at random without a cache (one index probe and
+ * one decode each), and in a hot set of 1000 records with a cache that holds them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordFileBenchmark {
+
+    private static final int HOT_RECORDS = 1000;
+
+    @Param({"1000000"})
+    public int records;
+
+    private Path path;
+    private RecordFile<Person> uncached;
+    private RecordFile<Person> cached;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup
+    public void setUp() throws IOException {
+        path = Files.createTempFile("records", ".lbs");
+        Files.delete(path);
+        try (RecordFileWriter writer = RecordFileWriter.open(path, ByteOrder.LITTLE_ENDIAN)) {
+            for (int i = 0; i < records; i++) {
+                writer.append(new Person(i % 128, "person-" + i, (i & 1) == 0, new Date(946684800000L + i)));
+            }
+        }
+        uncached = RecordFile.open(path, Person::new, 0);
+        cached = RecordFile.open(path, Person::new, 2 * HOT_RECORDS);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        uncached.close();
+        cached.close();
+        Files.deleteIfExists(path);
+    }
+
+    @Benchmark
+    public Person randomGet() {
+        return uncached.get(random.nextInt(records));
+    }
+
+    @Benchmark
+    public Person hotGet() {
+        return cached.get(random.nextInt(HOT_RECORDS));
+    }
+}
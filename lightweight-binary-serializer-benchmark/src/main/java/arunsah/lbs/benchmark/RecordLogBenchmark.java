@@ -0,0 +1,99 @@
+package arunsah.lbs.benchmark;
+
+import arunsah.lbs.RecordLogReader;
+import arunsah.lbs.RecordLogWriter;
+import arunsah.lbs.example.ComplexCompositeObjectsExample.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Record log of {@code records} {@link Person}s: appending them all (one buffered write per buffer of records, no
+ * sync), walking the frames of the mapped file, and walking and decoding every record.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordLogBenchmark {
+
+    @Param({"1000000"})
+    public int records;
+
+    private Person[] persons;
+    private Path path;
+    private Path appendPath;
+
+    @Setup
+    public void setUp() throws IOException {
+        persons = new Person[records];
+        for (int i = 0; i < records; i++) {
+            persons[i] = new Person(i % 128, "person-" + i, (i & 1) == 0, new Date(946684800000L + i));
+        }
+        path = Files.createTempFile("records", ".lbs");
+        Files.delete(path);
+        try (RecordLogWriter writer = RecordLogWriter.open(path, ByteOrder.LITTLE_ENDIAN)) {
+            for (Person person : persons) {
+                writer.append(person);
+            }
+        }
+        appendPath = Files.createTempFile("append", ".lbs");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(appendPath);
+    }
+
+    @Benchmark
+    public long append() throws IOException {
+        Files.delete(appendPath);
+        try (RecordLogWriter writer = RecordLogWriter.open(appendPath, ByteOrder.LITTLE_ENDIAN)) {
+            for (Person person : persons) {
+                writer.append(person);
+            }
+            return writer.size();
+        }
+    }
+
+    @Benchmark
+    public long scanFrames() {
+        long sum = 0;
+        try (RecordLogReader reader = RecordLogReader.open(path)) {
+            while (reader.next()) {
+                sum += reader.getRecordOffset();
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long scanRecords() {
+        long sum = 0;
+        try (RecordLogReader reader = RecordLogReader.open(path)) {
+            while (reader.next()) {
+                sum += reader.read(Person::new).hashCode();
+            }
+        }
+        return sum;
+    }
+}
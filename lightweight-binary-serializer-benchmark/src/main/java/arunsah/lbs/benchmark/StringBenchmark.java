@@ -0,0 +1,125 @@
+package arunsah.lbs.benchmark;
+
+import arunsah.lbs.BinaryOutput;
+import arunsah.lbs.BinarySize;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * UTF-8 string encoding and decoding: short and long strings, ASCII only and with multi-byte characters.
+ * <p>
+ * The {@code xxxColumn} benchmarks write and read a column of {@link #COLUMN_LENGTH} strings with
+ * {@link #DISTINCT_VALUES} distinct values as a STRING_UTF8_ARRAY and as a dictionary encoded array.
+ */
+public class StringBenchmark extends AbstractBufferBenchmark {
+
+    static final int ARRAY_LENGTH = 64;
+    static final int COLUMN_LENGTH = 1024;
+    static final int DISTINCT_VALUES = 8;
+
+    @Param({"SHORT_ASCII", "LONG_ASCII", "SHORT_NON_ASCII", "LONG_NON_ASCII"})
+    public String kind;
+
+    private String value;
+    private String[] values;
+    private int arrayOffset;
+    private String[] column;
+    private int columnOffset;
+    private int dictionaryColumnOffset;
+
+    @Setup
+    public void setUp() {
+        switch (kind) {
+            case "SHORT_ASCII":
+                value = "admin";
+                break;
+            case "LONG_ASCII":
+                value = repeat("The quick brown fox jumps over the lazy dog. ", 23);
+                break;
+            case "SHORT_NON_ASCII":
+                value = "Grüße";
+                break;
+            case "LONG_NON_ASCII":
+                value = repeat("Zwölf Boxkämpfer jagen Viktor quer über den großen Sylter Deich. 日本語 ", 14);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown string kind: " + kind);
+        }
+        values = new String[ARRAY_LENGTH];
+        for (int i = 0; i < ARRAY_LENGTH; i++) {
+            values[i] = value + i;
+        }
+        column = new String[COLUMN_LENGTH];
+        for (int i = 0; i < COLUMN_LENGTH; i++) {
+            column[i] = values[(i * 7 + i / 3) % DISTINCT_VALUES];
+        }
+        int capacity = BinarySize.stringUTF8(value) + BinarySize.stringUTF8Array(values)
+                + BinarySize.stringUTF8Array(column) + BinarySize.dictionaryStringUTF8Array(column);
+        setUpBuffers(capacity, out -> {
+            out.writeStringUTF8(value);
+            arrayOffset = out.getBufferPosition();
+            out.writeStringUTF8Array(values);
+            columnOffset = out.getBufferPosition();
+            out.writeStringUTF8Array(column);
+            dictionaryColumnOffset = out.getBufferPosition();
+            out.writeDictionaryStringUTF8Array(column);
+        });
+    }
+
+    @Benchmark
+    public int writeStringUTF8() {
+        BinaryOutput out = output();
+        out.writeStringUTF8(value);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public String readStringUTF8() {
+        return input().readStringUTF8();
+    }
+
+    @Benchmark
+    public int writeStringUTF8Array() {
+        BinaryOutput out = output();
+        out.writeStringUTF8Array(values);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public String[] readStringUTF8Array() {
+        return input(arrayOffset).readStringUTF8Array();
+    }
+
+    @Benchmark
+    public int writeColumn() {
+        BinaryOutput out = output();
+        out.writeStringUTF8Array(column);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeDictionaryColumn() {
+        BinaryOutput out = output();
+        out.writeDictionaryStringUTF8Array(column);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public String[] readColumn() {
+        return input(columnOffset).readStringUTF8Array();
+    }
+
+    @Benchmark
+    public String[] readDictionaryColumn() {
+        return input(dictionaryColumnOffset).readDictionaryStringUTF8Array();
+    }
+
+    private static String repeat(String value, int count) {
+        StringBuilder builder = new StringBuilder(value.length() * count);
+        for (int i = 0; i < count; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+}
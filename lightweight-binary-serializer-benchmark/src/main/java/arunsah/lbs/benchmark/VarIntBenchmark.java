@@ -0,0 +1,117 @@
+package arunsah.lbs.benchmark;
+
+import arunsah.lbs.BinaryInput;
+import arunsah.lbs.BinaryOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Varint encoding and decoding by encoded width.
+ * <p>
+ * {@code width} is the number of bytes per value; width 10 uses negative values, which take 5 bytes as a
+ * varint32 and 10 bytes as a varint64. The {@code xxxArray} benchmarks encode the same values as a VAR_INT32_ARRAY /
+ * VAR_INT64_ARRAY, which are written and read a word at a time.
+ */
+@OperationsPerInvocation(VarIntBenchmark.COUNT)
+public class VarIntBenchmark extends AbstractBufferBenchmark {
+
+    static final int COUNT = 1024;
+
+    @Param({"1", "2", "3", "5", "10"})
+    public int width;
+
+    private int[] int32Values;
+    private long[] int64Values;
+    private int int64Offset;
+    private int int32ArrayOffset;
+    private int int64ArrayOffset;
+
+    @Setup
+    public void setUp() {
+        int32Values = new int[COUNT];
+        int64Values = new long[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            // Smallest value of the requested width, with some low bits varying.
+            long base = width >= 10 ? -1L - i : 1L << (7 * (width - 1));
+            int64Values[i] = width >= 10 ? base : base | (i & 0x3F);
+            int32Values[i] = (int) int64Values[i];
+        }
+        setUpBuffers(COUNT * 10 * 4 + 10, out -> {
+            for (int i = 0; i < COUNT; i++) {
+                out.writeVarInt32(int32Values[i]);
+            }
+            int64Offset = out.getBufferPosition();
+            for (int i = 0; i < COUNT; i++) {
+                out.writeVarInt64(int64Values[i]);
+            }
+            int32ArrayOffset = out.getBufferPosition();
+            out.writeVarInt32Array(int32Values);
+            int64ArrayOffset = out.getBufferPosition();
+            out.writeVarInt64Array(int64Values);
+        });
+    }
+
+    @Benchmark
+    public int writeVarInt32() {
+        BinaryOutput out = output();
+        for (int i = 0; i < COUNT; i++) {
+            out.writeVarInt32(int32Values[i]);
+        }
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public long writeVarInt64() {
+        BinaryOutput out = output();
+        for (int i = 0; i < COUNT; i++) {
+            out.writeVarInt64(int64Values[i]);
+        }
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int readVarInt32() {
+        BinaryInput in = input();
+        int sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            sum += in.readVarInt32();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long readVarInt64() {
+        BinaryInput in = input(int64Offset);
+        long sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            sum += in.readVarInt64();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int writeVarInt32Array() {
+        BinaryOutput out = output();
+        out.writeVarInt32Array(int32Values);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int writeVarInt64Array() {
+        BinaryOutput out = output();
+        out.writeVarInt64Array(int64Values);
+        return out.getBufferPosition();
+    }
+
+    @Benchmark
+    public int[] readVarInt32Array() {
+        return input(int32ArrayOffset).readVarInt32Array();
+    }
+
+    @Benchmark
+    public long[] readVarInt64Array() {
+        return input(int64ArrayOffset).readVarInt64Array();
+    }
+}
@@ -0,0 +1,206 @@
+package arunsah.lbs.example;
+
+import arunsah.lbs.BinaryInput;
+import arunsah.lbs.BinaryInputImpl;
+import arunsah.lbs.BinaryOutput;
+import arunsah.lbs.BinaryOutputImpl;
+import arunsah.lbs.BinarySize;
+import arunsah.lbs.FieldType;
+import arunsah.lbs.LbsField;
+import arunsah.lbs.example.ComplexCompositeObjectsExample.Person;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static arunsah.lbs.example.ExampleUtil.check;
+
+/**
+ * Codecs generated by the annotation processor of the lightweight-binary-serializer-processor module, which runs on
+ * this module's sources: {@code GeneratedCodecExample_CustomerLbsCodec} and {@code GeneratedCodecExample_AddressLbsCodec}.
+ */
+public class GeneratedCodecExample {
+
+    private static final GeneratedCodecExample_CustomerLbsCodec CODEC = GeneratedCodecExample_CustomerLbsCodec.INSTANCE;
+
+    public static class Address {
+
+        @LbsField(id = 1)
+        String city;
+        @LbsField(id = 2, type = FieldType.VAR_INT32)
+        int zip;
+
+        public Address() {
+        }
+
+        public Address(String city, int zip) {
+            this.city = city;
+            this.zip = zip;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == null || getClass() != o.getClass()) return false;
+            Address that = (Address) o;
+            return zip == that.zip && Objects.equals(city, that.city);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(city, zip);
+        }
+    }
+
+    public static class Customer {
+
+        @LbsField(id = 1, type = FieldType.VAR_INT64)
+        long id;
+        @LbsField(id = 2)
+        private String name;
+        @LbsField(id = 3)
+        boolean active;
+        @LbsField(id = 4, type = FieldType.SVAR_INT)
+        int balance;
+        @LbsField(id = 5)
+        float rating;
+        @LbsField(id = 6)
+        int[] scores;
+        @LbsField(id = 7)
+        List<Address> addresses;
+        @LbsField(id = 8)
+        Map<String, Long> counters;
+        // A BinarySerializable class, written through its own serialize/deserialize.
+        @LbsField(id = 9)
+        Person referrer;
+        @LbsField(id = 415)
+        String[] tags;
+
+        public Customer() {
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == null || getClass() != o.getClass()) return false;
+            Customer that = (Customer) o;
+            return id == that.id && active == that.active && balance == that.balance && rating == that.rating
+                    && Objects.equals(name, that.name) && Arrays.equals(scores, that.scores)
+                    && Objects.equals(addresses, that.addresses) && Objects.equals(counters, that.counters)
+                    && Objects.equals(referrer, that.referrer) && Arrays.equals(tags, that.tags);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, name, active, balance, rating, Arrays.hashCode(scores), addresses, counters,
+                    referrer, Arrays.hashCode(tags));
+        }
+    }
+
+    public static void main(String[] args) {
+        List<Customer> customers = customers();
+        for (ByteOrder byteOrder : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            System.out.println("==================================================");
+            testSerializedSize(customers, byteOrder);
+        }
+
+        System.out.println("==================================================");
+        testUnknownField(customers.get(1));
+    }
+
+    /**
+     * An empty customer, a typical one and one whose strings and collections need multi-byte length prefixes.
+     */
+    static List<Customer> customers() {
+        List<Customer> customers = new ArrayList<>();
+        customers.add(new Customer());
+
+        Customer customer = new Customer();
+        customer.id = 42;
+        customer.setName("harry");
+        customer.active = true;
+        customer.balance = -1250;
+        customer.rating = 4.5f;
+        customer.scores = new int[]{7, -1, Integer.MAX_VALUE};
+        customer.addresses = Arrays.asList(new Address("London", 10115), new Address(null, 0));
+        customer.counters = new HashMap<>();
+        customer.counters.put("visits", 12L);
+        customer.counters.put("orders", Long.MAX_VALUE);
+        customer.referrer = new Person(7, "sally", false, new Date(946684800000L));
+        customer.tags = new String[]{"gold", ""};
+        customers.add(customer);
+
+        Customer large = new Customer();
+        large.id = Long.MIN_VALUE;
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            name.append("é中");
+        }
+        large.setName(name.toString());
+        large.balance = Integer.MIN_VALUE;
+        large.scores = new int[10_000];
+        large.addresses = new ArrayList<>();
+        large.counters = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            large.addresses.add(new Address("city-" + i, i * 131));
+            large.counters.put("counter-" + i, (long) i << (i % 63));
+        }
+        customers.add(large);
+        return customers;
+    }
+
+    /**
+     * The generated {@code serializedSize} is the exact number of bytes {@code write} produces, so a buffer of that
+     * size is filled completely, and the customers read back equal.
+     */
+    private static void testSerializedSize(List<Customer> customers, ByteOrder byteOrder) {
+        for (Customer customer : customers) {
+            int size = CODEC.serializedSize(customer);
+            ByteBuffer buffer = ByteBuffer.allocate(size).order(byteOrder);
+            CODEC.write(new BinaryOutputImpl(buffer, byteOrder), customer);
+            check(buffer.position() == size, "serializedSize " + size + " of a customer written in "
+                    + buffer.position() + " bytes");
+
+            buffer.flip();
+            check(customer.equals(CODEC.read(new BinaryInputImpl(buffer, byteOrder))), "customer read back");
+
+            // As a nested object, with its length prefix.
+            ByteBuffer nested = ByteBuffer.allocate(size + 8).order(byteOrder);
+            BinaryOutput out = new BinaryOutputImpl(nested, byteOrder);
+            out.writeObject(customer, CODEC);
+            check(out.getBufferPosition() == BinarySize.object(customer, CODEC), "size of the nested customer");
+            nested.flip();
+            check(customer.equals(new BinaryInputImpl(nested, byteOrder).readObject(CODEC)), "nested customer read back");
+            System.out.println(byteOrder + ": customer of " + size + " bytes");
+        }
+        System.out.println("testSerializedSize passed.");
+    }
+
+    /**
+     * A field the codec does not know, e.g. written by a newer version of the class, is skipped.
+     */
+    private static void testUnknownField(Customer customer) {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        BinaryOutput out = BinaryOutputImpl.bigEndianOutput(buffer);
+        CODEC.write(out, customer);
+        out.writeFieldHeader(FieldType.STRING_UTF8, 500).writeStringUTF8("added in version 2");
+        buffer.flip();
+
+        BinaryInput in = BinaryInputImpl.bigEndianInput(buffer);
+        check(customer.equals(CODEC.read(in)), "customer with an unknown field");
+        check(!in.hasRemaining(), "unknown field skipped");
+        System.out.println("testUnknownField passed.");
+    }
+}
@@ -0,0 +1,190 @@
+package arunsah.lbs.example;
+
+import arunsah.lbs.BinaryCodec;
+import arunsah.lbs.BinaryInputImpl;
+import arunsah.lbs.BinaryOutputImpl;
+import arunsah.lbs.CodecBuildStats;
+import arunsah.lbs.CodecRegistry;
+import arunsah.lbs.FieldType;
+import arunsah.lbs.LbsField;
+import arunsah.lbs.example.ComplexCompositeObjectsExample.Person;
+import arunsah.lbs.example.GeneratedCodecExample.Customer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+import static arunsah.lbs.example.ExampleUtil.check;
+
+/**
+ * Codecs that {@link CodecRegistry} assembles at runtime write the same bytes as the codecs generated for the same
+ * classes, and each reads what the other wrote.
+ */
+public class RuntimeCodecExample {
+
+    /**
+     * The fields of {@link Person} with the ids and types its hand-written {@code serialize} uses, so that the
+     * hand-written, generated and runtime codecs all write the same bytes (compared in {@code ObjectBenchmark}).
+     */
+    public static class AnnotatedPerson {
+
+        @LbsField(id = 1)
+        public byte id;
+        @LbsField(id = 2)
+        public String name;
+        @LbsField(id = 3)
+        public boolean active;
+        @LbsField(id = 415)
+        public long dob;
+
+        public AnnotatedPerson() {
+        }
+
+        public AnnotatedPerson(Person person) {
+            this.id = (byte) person.getId();
+            this.name = person.getName();
+            this.active = person.isActive();
+            this.dob = person.getDob().getTime();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == null || getClass() != o.getClass()) return false;
+            AnnotatedPerson that = (AnnotatedPerson) o;
+            return id == that.id && active == that.active && dob == that.dob && Objects.equals(name, that.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, name, active, dob);
+        }
+    }
+
+    /**
+     * Field ids far apart, so that reads search the ids of the runtime codec and switch in the generated one.
+     */
+    public static class Sparse {
+
+        @LbsField(id = 1)
+        byte flags;
+        @LbsField(id = 14)
+        short small;
+        @LbsField(id = 15, type = FieldType.FLOAT16)
+        float ratio;
+        @LbsField(id = 415)
+        double value;
+        @LbsField(id = 5000, type = FieldType.SVAR_INT)
+        long delta;
+        @LbsField(id = 100_000)
+        String note;
+        @LbsField(id = 1 << 28, type = FieldType.VAR_INT32_ARRAY)
+        int[] counts;
+
+        public Sparse() {
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == null || getClass() != o.getClass()) return false;
+            Sparse that = (Sparse) o;
+            return flags == that.flags && small == that.small && ratio == that.ratio && value == that.value
+                    && delta == that.delta && Objects.equals(note, that.note) && Arrays.equals(counts, that.counts);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(flags, small, ratio, value, delta, note, Arrays.hashCode(counts));
+        }
+    }
+
+    public static void main(String[] args) {
+        // Without generated codecs, every codec is assembled at runtime.
+        CodecRegistry runtime = new CodecRegistry(false);
+
+        System.out.println("==================================================");
+        testSameBytes(GeneratedCodecExample.customers(), GeneratedCodecExample_CustomerLbsCodec.INSTANCE,
+                runtime.codecFor(Customer.class));
+
+        Sparse sparse = new Sparse();
+        sparse.flags = -1;
+        sparse.small = 1234;
+        sparse.ratio = 0.5f;
+        sparse.value = Math.PI;
+        sparse.delta = -5_000_000_000L;
+        sparse.note = "far away";
+        sparse.counts = new int[]{0, 127, 128, Integer.MAX_VALUE};
+        System.out.println("==================================================");
+        testSameBytes(Arrays.asList(new Sparse(), sparse), RuntimeCodecExample_SparseLbsCodec.INSTANCE,
+                runtime.codecFor(Sparse.class));
+
+        Person person = new Person(42, "harry", true, new Date(946684800000L));
+        System.out.println("==================================================");
+        testSameBytes(Arrays.asList(new AnnotatedPerson(person)), RuntimeCodecExample_AnnotatedPersonLbsCodec.INSTANCE,
+                runtime.codecFor(AnnotatedPerson.class));
+
+        System.out.println("==================================================");
+        testHandWritten(person, runtime.codecFor(AnnotatedPerson.class));
+
+        System.out.println("==================================================");
+        testBuildStats(runtime);
+    }
+
+    /**
+     * Both codecs write the same bytes and report the same size, and each reads what the other wrote.
+     */
+    private static <T> void testSameBytes(List<T> values, BinaryCodec<T> generated, BinaryCodec<T> runtime) {
+        for (T value : values) {
+            int size = generated.serializedSize(value);
+            check(runtime.serializedSize(value) == size, "runtime size " + runtime.serializedSize(value)
+                    + " equals the generated size " + size);
+
+            ByteBuffer expected = ByteBuffer.allocate(size);
+            generated.write(BinaryOutputImpl.littleEndianOutput(expected), value);
+            ByteBuffer actual = ByteBuffer.allocate(size);
+            runtime.write(BinaryOutputImpl.littleEndianOutput(actual), value);
+            check(!actual.hasRemaining(), "runtime codec wrote its size");
+            expected.flip();
+            actual.flip();
+            check(actual.equals(expected), "same bytes");
+
+            check(value.equals(runtime.read(BinaryInputImpl.littleEndianInput(expected.duplicate()))),
+                    "runtime codec reads generated bytes");
+            check(value.equals(generated.read(BinaryInputImpl.littleEndianInput(actual.duplicate()))),
+                    "generated codec reads runtime bytes");
+            System.out.println(value.getClass().getSimpleName() + ": " + size + " bytes");
+        }
+        System.out.println("testSameBytes passed.");
+    }
+
+    /**
+     * The hand-written {@link Person#serialize} writes the bytes of the codecs of {@link AnnotatedPerson}.
+     */
+    private static void testHandWritten(Person person, BinaryCodec<AnnotatedPerson> runtime) {
+        ByteBuffer expected = ByteBuffer.allocate(64);
+        person.serialize(BinaryOutputImpl.bigEndianOutput(expected));
+        ByteBuffer actual = ByteBuffer.allocate(64);
+        runtime.write(BinaryOutputImpl.bigEndianOutput(actual), new AnnotatedPerson(person));
+        expected.flip();
+        actual.flip();
+        check(actual.equals(expected), "same bytes as the hand-written person");
+        System.out.println("testHandWritten passed.");
+    }
+
+    /**
+     * The default registry picks up the generated codec; the runtime one was assembled, nested types included.
+     */
+    private static void testBuildStats(CodecRegistry runtime) {
+        CodecRegistry registry = new CodecRegistry();
+        check(registry.codecFor(Customer.class) == GeneratedCodecExample_CustomerLbsCodec.INSTANCE, "generated codec");
+        check(registry.getBuildStats(Customer.class).isGenerated(), "generated codec stats");
+
+        for (CodecBuildStats stats : runtime.getBuildStats()) {
+            check(!stats.isGenerated(), "assembled codec of " + stats.getType().getSimpleName());
+            System.out.println(stats);
+        }
+        check(runtime.getBuildStats(GeneratedCodecExample.Address.class) != null, "nested codec assembled");
+        System.out.println("testBuildStats passed.");
+    }
+}
@@ -0,0 +1,56 @@
+package arunsah.lbs.processor;
+
+import arunsah.lbs.BinarySize;
+import arunsah.lbs.FieldType;
+
+/**
+ * One {@code @LbsField} annotated field of a class or record, as seen by the generated codec.
+ */
+final class CodecField {
+
+    final String name;
+    final int id;
+    // Source form of the declared Java type.
+    final String javaType;
+    // Null for boolean fields, which are encoded in the header type (BOOL_TRUE/BOOL_FALSE).
+    final ValueEncoding encoding;
+    // Expression reading the field of "value", e.g. "value.name" or "value.getName()".
+    final String getter;
+    // Statement prefix assigning the field of "value", completed with the new value and ");" or ";".
+    final String setterPrefix;
+    final String setterSuffix;
+
+    CodecField(String name, int id, String javaType, ValueEncoding encoding, String getter, String setterPrefix,
+               String setterSuffix) {
+        this.name = name;
+        this.id = id;
+        this.javaType = javaType;
+        this.encoding = encoding;
+        this.getter = getter;
+        this.setterPrefix = setterPrefix;
+        this.setterSuffix = setterSuffix;
+    }
+
+    boolean isBoolean() {
+        return encoding == null;
+    }
+
+    FieldType headerType() {
+        return isBoolean() ? FieldType.BOOL_TRUE : encoding.fieldType;
+    }
+
+    /**
+     * Size of the field header; known at generation time since it only depends on the type and id.
+     */
+    int headerSize() {
+        return BinarySize.fieldHeader(headerType(), id);
+    }
+
+    String local() {
+        return name + "Value";
+    }
+
+    String assign(String expression) {
+        return setterPrefix + expression + setterSuffix;
+    }
+}
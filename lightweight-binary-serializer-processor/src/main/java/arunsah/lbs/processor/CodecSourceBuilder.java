@@ -0,0 +1,218 @@
+package arunsah.lbs.processor;
+
+import java.util.List;
+
+/**
+ * Builds the source of one generated codec.
+ */
+final class CodecSourceBuilder {
+
+    private final String packageName;
+    private final String codecName;
+    private final String typeName;
+    private final List<CodecField> fields;
+    // Null unless the type is a record.
+    private final List<LbsCodecProcessor.RecordComponent> recordComponents;
+
+    private final StringBuilder source = new StringBuilder();
+    private int indent;
+
+    CodecSourceBuilder(String packageName, String codecName, String typeName, List<CodecField> fields,
+                       List<LbsCodecProcessor.RecordComponent> recordComponents) {
+        this.packageName = packageName;
+        this.codecName = codecName;
+        this.typeName = typeName;
+        this.fields = fields;
+        this.recordComponents = recordComponents;
+    }
+
+    String build() {
+        line("// Generated by " + LbsCodecProcessor.class.getName() + ". Do not edit.");
+        if (!packageName.isEmpty()) {
+            line("package " + packageName + ";");
+        }
+        line("");
+        line("import arunsah.lbs.BinaryCodec;");
+        line("import arunsah.lbs.BinaryInput;");
+        line("import arunsah.lbs.BinaryOutput;");
+        line("import arunsah.lbs.BinarySize;");
+        line("import arunsah.lbs.FieldType;");
+        line("");
+        line("/**");
+        line(" * {@link BinaryCodec} for {@link " + typeName + "}.");
+        line(" */");
+        open("public final class " + codecName + " implements BinaryCodec<" + typeName + ">");
+        line("");
+        line("public static final " + codecName + " INSTANCE = new " + codecName + "();");
+        line("");
+        open("private " + codecName + "()");
+        close();
+        line("");
+        write();
+        line("");
+        if (recordComponents == null) {
+            readObject();
+            line("");
+            readFields();
+        } else {
+            readRecord();
+        }
+        line("");
+        serializedSize();
+        close();
+        return source.toString();
+    }
+
+    private void write() {
+        line("@Override");
+        open("public void write(BinaryOutput out, " + typeName + " value)");
+        for (CodecField field : fields) {
+            if (field.isBoolean()) {
+                line("out.writeBoolean(" + field.id + ", " + field.getter + ");");
+            } else if (field.encoding.reference) {
+                line(field.javaType + " " + field.local() + " = " + field.getter + ";");
+                open("if (" + field.local() + " != null)");
+                line(header(field) + field.encoding.write("", field.local()) + ";");
+                close();
+            } else {
+                line(header(field) + field.encoding.write("", field.getter) + ";");
+            }
+        }
+        close();
+    }
+
+    private void readObject() {
+        line("@Override");
+        open("public " + typeName + " read(BinaryInput in)");
+        line(typeName + " value = new " + typeName + "();");
+        line("readFields(in, value);");
+        line("return value;");
+        close();
+    }
+
+    private void readFields() {
+        line("/**");
+        line(" * Reads fields until the input has no remaining data into an existing instance.");
+        line(" */");
+        open("public void readFields(BinaryInput in, " + typeName + " value)");
+        readLoop(false);
+        close();
+    }
+
+    private void readRecord() {
+        line("@Override");
+        open("public " + typeName + " read(BinaryInput in)");
+        for (LbsCodecProcessor.RecordComponent component : recordComponents) {
+            line(component.javaType + " " + component.name + "Value = " + component.defaultValue + ";");
+        }
+        readLoop(true);
+        StringBuilder arguments = new StringBuilder();
+        for (LbsCodecProcessor.RecordComponent component : recordComponents) {
+            if (arguments.length() > 0) {
+                arguments.append(", ");
+            }
+            arguments.append(component.name).append("Value");
+        }
+        line("return new " + typeName + "(" + arguments + ");");
+        close();
+    }
+
+    /**
+     * Field loop dispatching on the field id; a field is accepted only with the type the codec writes it with, any
+     * other field is skipped.
+     */
+    private void readLoop(boolean toLocals) {
+        open("while (in.hasRemaining())");
+        line("int fieldId = in.nextField();");
+        line("FieldType fieldType = in.currentFieldType();");
+        open("switch (fieldId)");
+        for (CodecField field : fields) {
+            line("case " + field.id + ":");
+            indent++;
+            String value;
+            if (field.isBoolean()) {
+                open("if (fieldType.isBooleanType())");
+                value = "fieldType == FieldType.BOOL_TRUE";
+            } else {
+                open("if (fieldType == FieldType." + field.encoding.fieldType + ")");
+                value = field.encoding.read("in");
+            }
+            line(toLocals ? field.local() + " = " + value + ";" : field.assign(value));
+            line("continue;");
+            close();
+            line("break;");
+            indent--;
+        }
+        line("default:");
+        indent++;
+        line("break;");
+        indent--;
+        close();
+        line("// Unknown field (or known id with another type), e.g. written by a newer version of the type.");
+        line("in.skipField();");
+        close();
+    }
+
+    private void serializedSize() {
+        int fixedSize = 0;
+        for (CodecField field : fields) {
+            if (field.isBoolean()) {
+                fixedSize += field.headerSize();
+            } else if (!field.encoding.reference && field.encoding.constantSize() >= 0) {
+                fixedSize += field.headerSize() + field.encoding.constantSize();
+            }
+        }
+        line("@Override");
+        open("public int serializedSize(" + typeName + " value)");
+        line("// Headers and fixed-width fields.");
+        line("int size = " + fixedSize + ";");
+        for (CodecField field : fields) {
+            if (field.isBoolean() || (!field.encoding.reference && field.encoding.constantSize() >= 0)) {
+                continue;
+            }
+            if (field.encoding.reference) {
+                line(field.javaType + " " + field.local() + " = " + field.getter + ";");
+                open("if (" + field.local() + " != null)");
+                line("size += " + field.headerSize() + " + " + field.encoding.size(field.local()) + ";");
+                String loop = field.encoding.sizeLoop(field.local());
+                if (loop != null) {
+                    open(loop);
+                    line("size += " + field.encoding.elementSize(field.local()) + ";");
+                    close();
+                }
+                close();
+            } else {
+                line("size += " + field.headerSize() + " + " + field.encoding.size(field.getter) + ";");
+            }
+        }
+        line("return size;");
+        close();
+    }
+
+    /**
+     * Field header write; the payload is chained onto it by passing an empty output to the write template.
+     */
+    private static String header(CodecField field) {
+        return "out.writeFieldHeader(FieldType." + field.headerType() + ", " + field.id + ")";
+    }
+
+    private void open(String declaration) {
+        line(declaration + " {");
+        indent++;
+    }
+
+    private void close() {
+        indent--;
+        line("}");
+    }
+
+    private void line(String text) {
+        if (!text.isEmpty()) {
+            for (int i = 0; i < indent; i++) {
+                source.append("    ");
+            }
+            source.append(text);
+        }
+        source.append('\n');
+    }
+}
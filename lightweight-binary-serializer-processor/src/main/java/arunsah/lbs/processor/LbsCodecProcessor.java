@@ -0,0 +1,439 @@
+package arunsah.lbs.processor;
+
+import arunsah.lbs.Constant;
+import arunsah.lbs.FieldType;
+import arunsah.lbs.LbsField;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a {@link arunsah.lbs.BinaryCodec} for every class or record that has {@link LbsField} annotated fields.
+ * <p>
+ * The generated codec writes the fields in field id order, decodes with a {@code switch} on the field id, sizes
+ * values exactly (field header sizes are computed here, at compile time) and accesses fields directly or through
+ * their accessors, so no reflection is used at runtime.
+ */
+@SupportedAnnotationTypes("arunsah.lbs.LbsField")
+public class LbsCodecProcessor extends AbstractProcessor {
+
+    private static final String CODEC_SUFFIX = "LbsCodec";
+    private static final String BINARY_SERIALIZABLE = "arunsah.lbs.BinarySerializable";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Map<TypeElement, List<VariableElement>> fieldsByType = new LinkedHashMap<>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(LbsField.class)) {
+            if (element.getKind() == ElementKind.FIELD) {
+                TypeElement type = (TypeElement) element.getEnclosingElement();
+                fieldsByType.computeIfAbsent(type, t -> new ArrayList<>()).add((VariableElement) element);
+            }
+        }
+        for (Map.Entry<TypeElement, List<VariableElement>> entry : fieldsByType.entrySet()) {
+            try {
+                generate(entry.getKey(), entry.getValue());
+            } catch (CodecException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), e.element);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Unable to write codec: " + e.getMessage(), entry.getKey());
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type, List<VariableElement> elements) throws IOException {
+        if (!type.getTypeParameters().isEmpty()) {
+            throw new CodecException("@LbsField is not supported on generic classes", type);
+        }
+        if (type.getModifiers().contains(Modifier.PRIVATE)) {
+            throw new CodecException("@LbsField class must not be private", type);
+        }
+        if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)
+                && !isRecord(type)) {
+            throw new CodecException("@LbsField class must be a top level or static nested class", type);
+        }
+        boolean record = isRecord(type);
+        if (!record && type.getModifiers().contains(Modifier.ABSTRACT)) {
+            throw new CodecException("@LbsField class must not be abstract", type);
+        }
+        if (!record && !hasNoArgConstructor(type)) {
+            throw new CodecException("@LbsField class needs a non-private no-arg constructor", type);
+        }
+
+        List<CodecField> fields = new ArrayList<>();
+        Map<Integer, VariableElement> byId = new HashMap<>();
+        for (VariableElement element : elements) {
+            LbsField annotation = element.getAnnotation(LbsField.class);
+            if (annotation.id() <= Constant.FIELD_INDEX_FIELD_ID) {
+                throw new CodecException("Field id must be positive (0 is reserved for the field index): "
+                        + annotation.id(), element);
+            }
+            VariableElement duplicate = byId.put(annotation.id(), element);
+            if (duplicate != null) {
+                throw new CodecException("Field id " + annotation.id() + " is already used by "
+                        + duplicate.getSimpleName(), element);
+            }
+            fields.add(field(type, element, annotation, record));
+        }
+
+        // Field id order keeps the output identical to runtime codecs (CodecRegistry) of the same class.
+        fields.sort(Comparator.comparingInt(field -> field.id));
+
+        String packageName = packageOf(type).getQualifiedName().toString();
+        String codecName = codecName(type);
+        String typeName = type.getQualifiedName().toString();
+        String source = new CodecSourceBuilder(packageName, codecName, typeName, fields,
+                record ? recordComponents(type) : null).build();
+
+        String qualifiedCodecName = packageName.isEmpty() ? codecName : packageName + "." + codecName;
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedCodecName, type);
+        try (Writer writer = file.openWriter()) {
+            writer.write(source);
+        }
+    }
+
+    private CodecField field(TypeElement owner, VariableElement element, LbsField annotation, boolean record) {
+        if (element.getModifiers().contains(Modifier.STATIC)) {
+            throw new CodecException("@LbsField is not supported on static fields", element);
+        }
+        String name = element.getSimpleName().toString();
+        TypeMirror type = element.asType();
+        ValueEncoding encoding = null;
+        if (type.getKind() == TypeKind.BOOLEAN) {
+            if (annotation.type() != FieldType.UNUSED && !annotation.type().isBooleanType()) {
+                throw mismatch(element, annotation.type());
+            }
+        } else {
+            encoding = encoding(element, type, annotation.type());
+        }
+
+        String getter;
+        String setterPrefix = null;
+        String setterSuffix = null;
+        if (record) {
+            getter = "value." + name + "()";
+        } else if (!element.getModifiers().contains(Modifier.PRIVATE)) {
+            if (element.getModifiers().contains(Modifier.FINAL)) {
+                throw new CodecException("@LbsField is not supported on final fields", element);
+            }
+            getter = "value." + name;
+            setterPrefix = "value." + name + " = ";
+            setterSuffix = ";";
+        } else {
+            String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            String getterName = (type.getKind() == TypeKind.BOOLEAN ? "is" : "get") + capitalized;
+            if (!hasAccessor(owner, getterName, 0)) {
+                getterName = "get" + capitalized;
+                if (!hasAccessor(owner, getterName, 0)) {
+                    throw new CodecException("Private field " + name + " needs a non-private " + getterName + "()", element);
+                }
+            }
+            if (!hasAccessor(owner, "set" + capitalized, 1)) {
+                throw new CodecException("Private field " + name + " needs a non-private set" + capitalized + "()", element);
+            }
+            getter = "value." + getterName + "()";
+            setterPrefix = "value.set" + capitalized + "(";
+            setterSuffix = ");";
+        }
+        return new CodecField(name, annotation.id(), type.toString(), encoding, getter, setterPrefix, setterSuffix);
+    }
+
+    /**
+     * Maps a field type to its encoding; {@code requested} is the annotation's type (UNUSED to infer it).
+     */
+    private ValueEncoding encoding(VariableElement element, TypeMirror type, FieldType requested) {
+        List<ValueEncoding> candidates = new ArrayList<>();
+        switch (type.getKind()) {
+            case BYTE:
+                candidates.add(ValueEncoding.primitive(FieldType.INT8, "Int8", "1"));
+                break;
+            case SHORT:
+                candidates.add(ValueEncoding.primitive(FieldType.INT16, "Int16", "2"));
+                break;
+            case INT:
+                candidates.add(ValueEncoding.primitive(FieldType.INT32, "Int32", "4"));
+                candidates.add(ValueEncoding.primitive(FieldType.VAR_INT32, "VarInt32", "BinarySize.varInt32($v)"));
+                candidates.add(ValueEncoding.primitive(FieldType.SVAR_INT, "SVarInt32", "BinarySize.sVarInt32($v)"));
+                break;
+            case LONG:
+                candidates.add(ValueEncoding.primitive(FieldType.INT64, "Int64", "8"));
+                candidates.add(ValueEncoding.primitive(FieldType.VAR_INT64, "VarInt64", "BinarySize.varInt64($v)"));
+                candidates.add(ValueEncoding.primitive(FieldType.SVAR_INT, "SVarInt64", "BinarySize.sVarInt64($v)"));
+                break;
+            case FLOAT:
+                candidates.add(ValueEncoding.primitive(FieldType.FLOAT32, "Float32", "4"));
+                candidates.add(ValueEncoding.primitive(FieldType.FLOAT16, "Float16", "BinarySize.FLOAT16"));
+                break;
+            case DOUBLE:
+                candidates.add(ValueEncoding.primitive(FieldType.FLOAT64, "Float64", "8"));
+                break;
+            case ARRAY:
+                arrayCandidates(((ArrayType) type).getComponentType(), candidates);
+                break;
+            case DECLARED:
+                candidates.add(declaredEncoding(element, (DeclaredType) type));
+                break;
+            default:
+                break;
+        }
+        if (candidates.isEmpty()) {
+            throw new CodecException("Unsupported @LbsField type: " + type, element);
+        }
+        if (requested == FieldType.UNUSED) {
+            return candidates.get(0);
+        }
+        for (ValueEncoding candidate : candidates) {
+            if (candidate.fieldType == requested) {
+                return candidate;
+            }
+        }
+        throw mismatch(element, requested);
+    }
+
+    private void arrayCandidates(TypeMirror component, List<ValueEncoding> candidates) {
+        switch (component.getKind()) {
+            case BYTE:
+                candidates.add(ValueEncoding.reference(FieldType.INT8_ARRAY, "Int8Array", "int8Array"));
+                break;
+            case SHORT:
+                candidates.add(ValueEncoding.reference(FieldType.INT16_ARRAY, "Int16Array", "int16Array"));
+                break;
+            case INT:
+                candidates.add(ValueEncoding.reference(FieldType.INT32_ARRAY, "Int32Array", "int32Array"));
+                candidates.add(ValueEncoding.reference(FieldType.VAR_INT32_ARRAY, "VarInt32Array", "varInt32Array"));
+                candidates.add(ValueEncoding.reference(FieldType.SVAR_INT_ARRAY, "SVarInt32Array", "sVarInt32Array"));
+                break;
+            case LONG:
+                candidates.add(ValueEncoding.reference(FieldType.INT64_ARRAY, "Int64Array", "int64Array"));
+                candidates.add(ValueEncoding.reference(FieldType.VAR_INT64_ARRAY, "VarInt64Array", "varInt64Array"));
+                candidates.add(ValueEncoding.reference(FieldType.SVAR_INT_ARRAY, "SVarInt64Array", "sVarInt64Array"));
+                break;
+            case FLOAT:
+                candidates.add(ValueEncoding.reference(FieldType.FLOAT32_ARRAY, "Float32Array", "float32Array"));
+                candidates.add(ValueEncoding.reference(FieldType.FLOAT16_ARRAY, "Float16Array", "float16Array"));
+                break;
+            case DOUBLE:
+                candidates.add(ValueEncoding.reference(FieldType.FLOAT64_ARRAY, "Float64Array", "float64Array"));
+                break;
+            case DECLARED:
+                if (isType(component, "java.lang.String")) {
+                    candidates.add(ValueEncoding.reference(FieldType.STRING_UTF8_ARRAY, "StringUTF8Array", "stringUTF8Array"));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private ValueEncoding declaredEncoding(VariableElement element, DeclaredType type) {
+        if (isType(type, "java.lang.String")) {
+            return ValueEncoding.reference(FieldType.STRING_UTF8, "StringUTF8", "stringUTF8");
+        }
+        List<? extends TypeMirror> arguments = type.getTypeArguments();
+        if (isType(type, "java.util.List") && arguments.size() == 1) {
+            return ValueEncoding.list(elementEncoding(element, arguments.get(0)));
+        }
+        if (isType(type, "java.util.Map") && arguments.size() == 2) {
+            return ValueEncoding.map(elementEncoding(element, arguments.get(0)), arguments.get(0).toString(),
+                    elementEncoding(element, arguments.get(1)), arguments.get(1).toString());
+        }
+        ValueEncoding encoding = objectEncoding(type);
+        if (encoding == null) {
+            throw new CodecException("Unsupported @LbsField type: " + type, element);
+        }
+        return encoding;
+    }
+
+    /**
+     * Encoding of a list element or map key/value; boxed numbers use their compact encodings.
+     */
+    private ValueEncoding elementEncoding(VariableElement element, TypeMirror type) {
+        if (type.getKind() == TypeKind.DECLARED) {
+            if (isType(type, "java.lang.String")) {
+                return ValueEncoding.reference(FieldType.STRING_UTF8, "StringUTF8", "stringUTF8");
+            }
+            if (isType(type, "java.lang.Integer")) {
+                return ValueEncoding.primitive(FieldType.VAR_INT32, "VarInt32", "BinarySize.varInt32($v)");
+            }
+            if (isType(type, "java.lang.Long")) {
+                return ValueEncoding.primitive(FieldType.VAR_INT64, "VarInt64", "BinarySize.varInt64($v)");
+            }
+            if (isType(type, "java.lang.Double")) {
+                return ValueEncoding.primitive(FieldType.FLOAT64, "Float64", "8");
+            }
+            ValueEncoding encoding = objectEncoding((DeclaredType) type);
+            if (encoding != null) {
+                return encoding;
+            }
+        }
+        throw new CodecException("Unsupported list or map element type: " + type, element);
+    }
+
+    /**
+     * Encoding of a nested object: through its generated codec, or as a BinarySerializable. Null if neither.
+     */
+    private ValueEncoding objectEncoding(DeclaredType type) {
+        TypeElement typeElement = (TypeElement) type.asElement();
+        for (VariableElement field : ElementFilter.fieldsIn(typeElement.getEnclosedElements())) {
+            if (field.getAnnotation(LbsField.class) != null) {
+                String packageName = packageOf(typeElement).getQualifiedName().toString();
+                return ValueEncoding.codecObject(packageName.isEmpty() ? codecName(typeElement)
+                        : packageName + "." + codecName(typeElement));
+            }
+        }
+        TypeMirror serializable = processingEnv.getElementUtils().getTypeElement(BINARY_SERIALIZABLE).asType();
+        if (processingEnv.getTypeUtils().isAssignable(type, serializable)) {
+            return ValueEncoding.serializableObject(typeElement.getQualifiedName().toString());
+        }
+        return null;
+    }
+
+    private List<RecordComponent> recordComponents(TypeElement type) {
+        List<RecordComponent> components = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (!field.getModifiers().contains(Modifier.STATIC)) {
+                components.add(new RecordComponent(field.getSimpleName().toString(), field.asType().toString(),
+                        defaultValue(field.asType())));
+            }
+        }
+        return components;
+    }
+
+    private static String defaultValue(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "false";
+            case BYTE:
+                return "(byte) 0";
+            case SHORT:
+                return "(short) 0";
+            case CHAR:
+                return "'\\0'";
+            case INT:
+                return "0";
+            case LONG:
+                return "0L";
+            case FLOAT:
+                return "0f";
+            case DOUBLE:
+                return "0d";
+            default:
+                return "null";
+        }
+    }
+
+    /**
+     * Name of the generated codec: {@code <SimpleName>LbsCodec}, with enclosing class names prefixed for nested classes.
+     */
+    static String codecName(TypeElement type) {
+        StringBuilder name = new StringBuilder(type.getSimpleName());
+        Element enclosing = type.getEnclosingElement();
+        while (enclosing instanceof TypeElement) {
+            name.insert(0, enclosing.getSimpleName() + "_");
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return name.append(CODEC_SUFFIX).toString();
+    }
+
+    private PackageElement packageOf(TypeElement type) {
+        return processingEnv.getElementUtils().getPackageOf(type);
+    }
+
+    private boolean isType(TypeMirror type, String qualifiedName) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        return element.getQualifiedName().contentEquals(qualifiedName);
+    }
+
+    // ElementKind.RECORD does not exist before Java 16; compare by name so the processor builds for Java 8.
+    private static boolean isRecord(TypeElement type) {
+        return type.getKind().name().equals("RECORD");
+    }
+
+    private static boolean hasNoArgConstructor(TypeElement type) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasAccessor(TypeElement type, String name, int parameterCount) {
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            if (method.getSimpleName().contentEquals(name) && method.getParameters().size() == parameterCount
+                    && !method.getModifiers().contains(Modifier.PRIVATE)
+                    && !method.getModifiers().contains(Modifier.STATIC)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static CodecException mismatch(VariableElement element, FieldType requested) {
+        return new CodecException("Field type " + requested + " does not match Java type " + element.asType(), element);
+    }
+
+    /**
+     * A record component, in canonical constructor order.
+     */
+    static final class RecordComponent {
+        final String name;
+        final String javaType;
+        final String defaultValue;
+
+        RecordComponent(String name, String javaType, String defaultValue) {
+            this.name = name;
+            this.javaType = javaType;
+            this.defaultValue = defaultValue;
+        }
+    }
+
+    /**
+     * Invalid use of {@link LbsField}, reported as a compile error on the element.
+     */
+    private static final class CodecException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final transient Element element;
+
+        CodecException(String message, Element element) {
+            super(message);
+            this.element = element;
+        }
+    }
+}
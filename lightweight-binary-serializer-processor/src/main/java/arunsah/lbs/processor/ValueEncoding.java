@@ -0,0 +1,135 @@
+package arunsah.lbs.processor;
+
+import arunsah.lbs.FieldType;
+
+/**
+ * How one value is written, read and sized in generated code, as source templates.
+ * <p>
+ * Templates use {@code $out}, {@code $in} and {@code $v} for the output, the input and the value. They write, read
+ * and size only the payload; the field header is handled by {@link CodecField}. Lists and maps whose elements vary in
+ * size are sized by a loop over the elements, added to the size of the element count.
+ */
+final class ValueEncoding {
+
+    final FieldType fieldType;
+    // Null checked before writing (nulls are left out of the output).
+    final boolean reference;
+    private final String writeTemplate;
+    private final String readTemplate;
+    private final String sizeTemplate;
+    // Loop statement over the elements and the size of one element in it, or null.
+    private final String sizeLoopTemplate;
+    private final String elementSizeTemplate;
+
+    ValueEncoding(FieldType fieldType, boolean reference, String writeTemplate, String readTemplate,
+                  String sizeTemplate) {
+        this(fieldType, reference, writeTemplate, readTemplate, sizeTemplate, null, null);
+    }
+
+    private ValueEncoding(FieldType fieldType, boolean reference, String writeTemplate, String readTemplate,
+                          String sizeTemplate, String sizeLoopTemplate, String elementSizeTemplate) {
+        this.fieldType = fieldType;
+        this.reference = reference;
+        this.writeTemplate = writeTemplate;
+        this.readTemplate = readTemplate;
+        this.sizeTemplate = sizeTemplate;
+        this.sizeLoopTemplate = sizeLoopTemplate;
+        this.elementSizeTemplate = elementSizeTemplate;
+    }
+
+    static ValueEncoding primitive(FieldType fieldType, String suffix, String size) {
+        return new ValueEncoding(fieldType, false, "$out.write" + suffix + "($v)", "$in.read" + suffix + "()", size);
+    }
+
+    static ValueEncoding reference(FieldType fieldType, String suffix, String sizeMethod) {
+        return new ValueEncoding(fieldType, true, "$out.write" + suffix + "($v)", "$in.read" + suffix + "()",
+                "BinarySize." + sizeMethod + "($v)");
+    }
+
+    /**
+     * Nested object written through the generated codec of its class.
+     */
+    static ValueEncoding codecObject(String codecName) {
+        return new ValueEncoding(FieldType.OBJECT, true,
+                "$out.writeObject($v, " + codecName + ".INSTANCE)",
+                "$in.readObject(" + codecName + ".INSTANCE)",
+                "BinarySize.object($v, " + codecName + ".INSTANCE)");
+    }
+
+    /**
+     * Nested object implementing {@code BinarySerializable}, read through its no-arg constructor.
+     */
+    static ValueEncoding serializableObject(String typeName) {
+        return new ValueEncoding(FieldType.OBJECT, true,
+                "$out.writeObject($v)",
+                "$in.readObject(" + typeName + "::new)",
+                "BinarySize.object($v)");
+    }
+
+    static ValueEncoding list(ValueEncoding element) {
+        String write = "$out.writeList($v, (o, e) -> " + element.write("o", "e") + ")";
+        String read = "$in.readList(i -> " + element.read("i") + ")";
+        int elementSize = element.constantSize();
+        if (elementSize >= 0) {
+            return new ValueEncoding(FieldType.LIST, true, write, read,
+                    "BinarySize.varInt32($v.size()) + $v.size() * " + elementSize);
+        }
+        // Indexed, as the write loop of the list.
+        return new ValueEncoding(FieldType.LIST, true, write, read, "BinarySize.varInt32($v.size())",
+                "for (int i = 0; i < $v.size(); i++)", element.size("$v.get(i)"));
+    }
+
+    /**
+     * @param keyType   source form of the key type, for the entry loop
+     * @param valueType source form of the value type
+     */
+    static ValueEncoding map(ValueEncoding key, String keyType, ValueEncoding value, String valueType) {
+        String write = "$out.writeMap($v, (o, k) -> " + key.write("o", "k") + ", (o, e) -> " + value.write("o", "e")
+                + ")";
+        String read = "$in.readMap(i -> " + key.read("i") + ", i -> " + value.read("i") + ")";
+        int entrySize = key.constantSize() >= 0 && value.constantSize() >= 0
+                ? key.constantSize() + value.constantSize() : -1;
+        if (entrySize >= 0) {
+            return new ValueEncoding(FieldType.MAP, true, write, read,
+                    "BinarySize.varInt32($v.size()) + $v.size() * " + entrySize);
+        }
+        return new ValueEncoding(FieldType.MAP, true, write, read, "BinarySize.varInt32($v.size())",
+                "for (java.util.Map.Entry<" + keyType + ", " + valueType + "> e : $v.entrySet())",
+                key.size("e.getKey()") + " + " + value.size("e.getValue()"));
+    }
+
+    String write(String out, String value) {
+        return writeTemplate.replace("$out", out).replace("$v", value);
+    }
+
+    String read(String in) {
+        return readTemplate.replace("$in", in);
+    }
+
+    String size(String value) {
+        return sizeTemplate.replace("$v", value);
+    }
+
+    /**
+     * Returns the loop statement over the elements of {@code value} whose sizes {@link #elementSize(String)} adds to
+     * {@link #size(String)}, or null if the size needs no loop.
+     */
+    String sizeLoop(String value) {
+        return sizeLoopTemplate == null ? null : sizeLoopTemplate.replace("$v", value);
+    }
+
+    String elementSize(String value) {
+        return elementSizeTemplate.replace("$v", value);
+    }
+
+    /**
+     * Returns the payload size if it does not depend on the value, or -1.
+     */
+    int constantSize() {
+        try {
+            return Integer.parseInt(sizeTemplate);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package arunsah.lbs;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Base class for {@link BinaryOutput} implementations.
+ * <p>
+ * All encodings are expressed in terms of the fixed-width primitive writes and {@link #writeRawBytes(byte[], int, int)},
+ * so a new backend only has to provide those (plus {@link #writeObject(Object, BinaryWriter)}, which depends on how
+ * the backend can fill in a length prefix). Backends are expected to override the hot paths (varints, arrays) with code
+ * that works directly on their storage.
+ */
+public abstract class AbstractBinaryOutput implements BinaryOutput {
+
+    @Override
+    public BinaryOutput writeFieldHeader(FieldType fieldType, int fieldId) {
+        if (fieldType.isExtensionType()) {
+            // Extension type byte as-is, followed by the full field id as a varint.
+            writeInt8(fieldType.getValue());
+            writeVarInt32(fieldId);
+        } else if (fieldId < Constant.FIELD_ID_EXTENSION) {
+            writeInt8((byte) ((fieldType.getValue() << 4) | (fieldId & 0x0F)));
+        } else {
+            writeInt8((byte) ((fieldType.getValue() << 4) | Constant.FIELD_ID_EXTENSION));
+            writeVarInt32(fieldId - Constant.FIELD_ID_EXTENSION);
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeFieldHeader(FieldHeader fieldHeader) {
+        return writeFieldHeader(fieldHeader.getFieldType(), fieldHeader.getFieldID());
+    }
+
+    @Override
+    public BinaryOutput writeVarInt32(int value) {
+        while ((value & ~0x7F) != 0) {
+            writeInt8((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        writeInt8((byte) (value & 0x7F));
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeVarInt64(long value) {
+        while ((value & ~0x7F) != 0) {
+            writeInt8((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        writeInt8((byte) (value & 0x7F));
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeSVarInt32(int value) {
+        return writeVarInt32(VarInts.zigZag32(value));
+    }
+
+    @Override
+    public BinaryOutput writeSVarInt64(long value) {
+        return writeVarInt64(VarInts.zigZag64(value));
+    }
+
+    @Override
+    public BinaryOutput writeFloat16(float value) {
+        return writeInt16(Float16.fromFloat(value));
+    }
+
+    @Override
+    public BinaryOutput writeFloat32(float value) {
+        return writeInt32(Float.floatToRawIntBits(value));
+    }
+
+    @Override
+    public BinaryOutput writeFloat64(double value) {
+        return writeInt64(Double.doubleToRawLongBits(value));
+    }
+
+    @Override
+    public BinaryOutput writeBoolean(int fieldId, boolean value) {
+        writeFieldHeader(value ? FieldType.BOOL_TRUE : FieldType.BOOL_FALSE, fieldId);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeStringUTF8(String value) {
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt32(data.length);
+        return writeRawBytes(data, 0, data.length);
+    }
+
+    @Override
+    public BinaryOutput writeInt8Array(byte[] data) {
+        writeVarInt32(data.length);
+        return writeRawBytes(data, 0, data.length);
+    }
+
+    @Override
+    public BinaryOutput writeInt16Array(short[] values) {
+        writeVarInt32(values.length);
+        for (int i = 0; i < values.length; i++) {
+            writeInt16(values[i]);
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt32Array(int[] values) {
+        writeVarInt32(values.length);
+        for (int i = 0; i < values.length; i++) {
+            writeInt32(values[i]);
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt64Array(long[] values) {
+        writeVarInt32(values.length);
+        for (int i = 0; i < values.length; i++) {
+            writeInt64(values[i]);
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeFloat16Array(float[] values) {
+        writeVarInt32(values.length);
+        for (int i = 0; i < values.length; i++) {
+            writeFloat16(values[i]);
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeFloat32Array(float[] values) {
+        writeVarInt32(values.length);
+        for (int i = 0; i < values.length; i++) {
+            writeFloat32(values[i]);
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeFloat64Array(double[] values) {
+        writeVarInt32(values.length);
+        for (int i = 0; i < values.length; i++) {
+            writeFloat64(values[i]);
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeVarInt32Array(int[] values) {
+        writeVarInt32(values.length);
+        for (int i = 0; i < values.length; i++) {
+            writeVarInt32(values[i]);
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeVarInt64Array(long[] values) {
+        writeVarInt32(values.length);
+        for (int i = 0; i < values.length; i++) {
+            writeVarInt64(values[i]);
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeSVarInt32Array(int[] values) {
+        writeVarInt32(values.length);
+        for (int i = 0; i < values.length; i++) {
+            writeSVarInt32(values[i]);
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeSVarInt64Array(long[] values) {
+        writeVarInt32(values.length);
+        for (int i = 0; i < values.length; i++) {
+            writeSVarInt64(values[i]);
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeStringUTF8Array(String[] values) {
+        writeVarInt32(values.length);
+        for (int i = 0; i < values.length; i++) {
+            writeStringUTF8(values[i]);
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeDictionaryStringUTF8Array(String[] values) {
+        StringDictionary dictionary = StringDictionary.of(values);
+        writeVarInt32(dictionary.payloadSize());
+        writeInt8(ArrayEncoding.DICTIONARY_UTF8.getValue());
+        writeVarInt32(values.length);
+        writeVarInt32(dictionary.strings.size());
+        for (int i = 0; i < dictionary.strings.size(); i++) {
+            writeStringUTF8(dictionary.strings.get(i));
+        }
+        writePackedBlocks(dictionary.indexes);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeSortedInt32Array(int[] values) {
+        checkSorted(values);
+        writeVarInt32(1 + BinarySize.varInt32(values.length) + BinarySize.deltas(values, 0, values.length));
+        writeInt8(ArrayEncoding.DELTA_INT32.getValue());
+        writeVarInt32(values.length);
+        return writeDeltas(values);
+    }
+
+    @Override
+    public BinaryOutput writeSortedInt64Array(long[] values) {
+        checkSorted(values);
+        writeVarInt32(1 + BinarySize.varInt32(values.length) + BinarySize.deltas(values));
+        writeInt8(ArrayEncoding.DELTA_INT64.getValue());
+        writeVarInt32(values.length);
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0) {
+                writeSVarInt64(values[0]);
+            } else {
+                writeVarInt64(values[i] - values[i - 1]);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeBlockedSortedInt32Array(int[] values) {
+        checkSorted(values);
+        int blockSize = Constant.SORTED_ARRAY_BLOCK_SIZE;
+        int blockCount = BinarySize.blockCount(values.length, blockSize);
+        writeVarInt32(1 + BinarySize.varInt32(values.length) + BinarySize.varInt32(blockSize)
+                + blockCount * 2 * Integer.BYTES + BinarySize.deltas(values, 0, values.length));
+        writeInt8(ArrayEncoding.DELTA_BLOCKS_INT32.getValue());
+        writeVarInt32(values.length);
+        writeVarInt32(blockSize);
+        // Skip table: last value and data offset of every block.
+        int offset = 0;
+        for (int start = 0; start < values.length; start += blockSize) {
+            int end = Math.min(values.length, start + blockSize);
+            writeInt32(values[end - 1]);
+            writeInt32(offset);
+            offset += BinarySize.deltas(values, start, end);
+        }
+        return writeDeltas(values);
+    }
+
+    @Override
+    public BinaryOutput writePackedInt32Array(int[] values) {
+        int blockSize = Constant.PACKED_ARRAY_BLOCK_SIZE;
+        int size = 1 + BinarySize.varInt32(values.length);
+        for (int start = 0; start < values.length; start += blockSize) {
+            size += PackedInts.blockSize(values, start, Math.min(values.length, start + blockSize));
+        }
+        writeVarInt32(size);
+        writeInt8(ArrayEncoding.PACKED_INT32.getValue());
+        writeVarInt32(values.length);
+        writePackedBlocks(values);
+        return this;
+    }
+
+    private void writePackedBlocks(int[] values) {
+        int blockSize = Constant.PACKED_ARRAY_BLOCK_SIZE;
+        for (int start = 0; start < values.length; start += blockSize) {
+            PackedInts.writeBlock(this, values, start, Math.min(values.length, start + blockSize));
+        }
+    }
+
+    private BinaryOutput writeDeltas(int[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0) {
+                writeSVarInt32(values[0]);
+            } else {
+                writeVarInt32(values[i] - values[i - 1]);
+            }
+        }
+        return this;
+    }
+
+    private static void checkSorted(int[] values) {
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] < values[i - 1]) {
+                throw new IllegalArgumentException("Values are not sorted at index " + i);
+            }
+        }
+    }
+
+    private static void checkSorted(long[] values) {
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] < values[i - 1]) {
+                throw new IllegalArgumentException("Values are not sorted at index " + i);
+            }
+        }
+    }
+
+    @Deprecated
+    @Override
+    public BinaryOutput writeObject(BinarySerializable obj, int temporaryBufferSize) {
+        return writeObject(obj);
+    }
+
+    @Override
+    public BinaryOutput writeObject(BinarySerializable obj) {
+        return writeObject(obj, SerializableWriter.INSTANCE);
+    }
+
+    @Override
+    public <T> void writeList(List<T> list, BiConsumer<BinaryOutput, T> writer) {
+        writeVarInt32(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            writer.accept(this, list.get(i));
+        }
+    }
+
+    @Override
+    public <T> void writeList(List<T> list, BiConsumer<BinaryOutput, T> writer, ParallelListWriter parallel) {
+        parallel.writeList(this, list, writer);
+    }
+
+    @Override
+    public <K, V> void writeMap(Map<K, V> map, BiConsumer<BinaryOutput, K> keyWriter,
+                                BiConsumer<BinaryOutput, V> valueWriter) {
+        writeVarInt32(map.size());
+        for (Map.Entry<K, V> entry : map.entrySet()) {
+            keyWriter.accept(this, entry.getKey());
+            valueWriter.accept(this, entry.getValue());
+        }
+    }
+}
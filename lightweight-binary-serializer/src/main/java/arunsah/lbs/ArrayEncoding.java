@@ -0,0 +1,50 @@
+package arunsah.lbs;
+
+/**
+ * Encodings of {@link FieldType#ENCODED_ARRAY} values.
+ * <p>
+ * An ENCODED_ARRAY value is a varint byte length, then the encoding byte, then the encoded data; the byte length lets
+ * readers skip the value (and views slice it) without knowing the encoding.
+ */
+public enum ArrayEncoding {
+    DELTA_INT32(0x01), // sorted ints: count, first value (ZigZag varint), then the gaps (varints)
+    DELTA_INT64(0x02), // sorted longs: count, first value (ZigZag varint), then the gaps (varints)
+    DELTA_BLOCKS_INT32(0x03), // sorted ints: count, block size, skip table, then the DELTA_INT32 values and gaps
+    PACKED_INT32(0x04), // ints: count, then bit-packed frame of reference blocks with exceptions (see PackedInts)
+    DICTIONARY_UTF8(0x05); // strings: count, distinct strings (as STRING_UTF8), then their indexes as PACKED_INT32 blocks
+
+    private final byte value;
+
+    // Encoding for every possible encoding byte, indexed by (value & 0xFF).
+    private static final ArrayEncoding[] ENCODING_BY_VALUE = new ArrayEncoding[256];
+
+    static {
+        for (ArrayEncoding encoding : values()) {
+            ENCODING_BY_VALUE[encoding.getValue() & 0xFF] = encoding;
+        }
+    }
+
+    ArrayEncoding(int value) {
+        this.value = (byte) value;
+    }
+
+    /**
+     * Returns the 8-bit value associated with this encoding.
+     */
+    public byte getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the encoding of an encoding byte.
+     *
+     * @throws IllegalArgumentException if the byte is not a known encoding
+     */
+    public static ArrayEncoding getByValue(byte value) {
+        ArrayEncoding encoding = ENCODING_BY_VALUE[value & 0xFF];
+        if (encoding == null) {
+            throw new IllegalArgumentException("Unknown array encoding " + (value & 0xFF));
+        }
+        return encoding;
+    }
+}
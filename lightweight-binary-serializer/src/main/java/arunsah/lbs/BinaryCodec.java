@@ -0,0 +1,20 @@
+package arunsah.lbs;
+
+/**
+ * Reads and writes the fields of a type on its behalf, for types that do not (or cannot) implement
+ * {@link BinarySerializable} themselves. Codecs are generated at compile time for classes with {@link LbsField}
+ * annotated fields (see the lightweight-binary-serializer-processor module).
+ * <p>
+ * Use {@link BinaryOutput#writeObject(Object, BinaryWriter)} and {@link BinaryInput#readObject(BinaryCodec)} to write
+ * and read a value as a nested (length prefixed) object.
+ *
+ * @param <T>
+ */
+public interface BinaryCodec<T> extends BinaryWriter<T> {
+
+    /**
+     * Reads fields until the input has no remaining data and returns the decoded value,
+     * like {@link BinarySerializable#deserialize(BinaryInput)}.
+     */
+    T read(BinaryInput in);
+}
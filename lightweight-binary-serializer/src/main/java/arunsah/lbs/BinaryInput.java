@@ -25,6 +25,27 @@ public interface BinaryInput {
      */
     FieldHeader readFieldHeader();
 
+    /**
+     * Reads the next field header without allocating.
+     * <p>
+     * The header is decoded as described in {@link #readFieldHeader()}; instead of returning a new {@link FieldHeader}
+     * the decoded type and id are kept on this reader and are available through {@link #currentFieldType()} and
+     * {@link #currentFieldId()} until the next header is read.
+     *
+     * @return the field id of the header just read.
+     */
+    int nextField();
+
+    /**
+     * @return the field type of the header last read by {@link #nextField()} or {@link #readFieldHeader()}.
+     */
+    FieldType currentFieldType();
+
+    /**
+     * @return the field id of the header last read by {@link #nextField()} or {@link #readFieldHeader()}.
+     */
+    int currentFieldId();
+
     /**
      * Reads an integer encoded in a variable-length format using 7 bits per byte.
      * <p>
@@ -41,6 +62,16 @@ public interface BinaryInput {
 
     long readVarInt64();
 
+    /**
+     * Reads a ZigZag mapped varint ({@link FieldType#SVAR_INT}), see {@link BinaryOutput#writeSVarInt32(int)}.
+     */
+    int readSVarInt32();
+
+    /**
+     * Reads a ZigZag mapped varint ({@link FieldType#SVAR_INT}), see {@link BinaryOutput#writeSVarInt64(long)}.
+     */
+    long readSVarInt64();
+
     byte readInt8();
 
     short readInt16();
@@ -77,16 +108,92 @@ public interface BinaryInput {
 
     long[] readVarInt64Array();
 
+    int[] readSVarInt32Array();
+
+    long[] readSVarInt64Array();
+
     String[] readStringUTF8Array();
 
+    /**
+     * Reads a string array written by {@link BinaryOutput#writeDictionaryStringUTF8Array(String[])}; equal elements
+     * are the same {@code String} instance.
+     */
+    String[] readDictionaryStringUTF8Array();
+
+    /**
+     * Reads a sorted int array written by {@link BinaryOutput#writeSortedInt32Array(int[])} or
+     * {@link BinaryOutput#writeBlockedSortedInt32Array(int[])}.
+     */
+    int[] readSortedInt32Array();
+
+    /**
+     * Reads a sorted long array written by {@link BinaryOutput#writeSortedInt64Array(long[])}.
+     */
+    long[] readSortedInt64Array();
+
+    /**
+     * Returns a cursor over a sorted int array written by {@link BinaryOutput#writeSortedInt32Array(int[])} or
+     * {@link BinaryOutput#writeBlockedSortedInt32Array(int[])}, without decoding it; the input is positioned after
+     * the array. The cursor reads the underlying buffer.
+     */
+    SortedInt32Cursor readSortedInt32Cursor();
+
+    /**
+     * Reads an int array written by {@link BinaryOutput#writePackedInt32Array(int[])}.
+     */
+    int[] readPackedInt32Array();
+
     <T extends BinarySerializable> T readObject(BinarySerializableFactory<T> factory);
 
+    /**
+     * Reads a nested object (varint length prefix followed by its fields) using the given codec.
+     *
+     * @param codec
+     * @param <T>
+     * @return
+     */
+    <T> T readObject(BinaryCodec<T> codec);
+
+    /**
+     * Skips the value of a field whose header was just read, without decoding it.
+     * <p>
+     * This lets readers ignore fields they do not know (for example fields added by a newer writer). Fixed-width
+     * primitives, strings, fixed-width arrays and nested objects are skipped in O(1) by moving the position;
+     * varint values and varint arrays only scan the continuation bits; string arrays jump from length to length.
+     * Booleans have no payload.
+     *
+     * @param header header of the field to skip, as returned by {@link #readFieldHeader()}
+     * @throws IllegalStateException for {@link FieldType#LIST} and {@link FieldType#MAP} fields, whose elements
+     *                               are not self-describing, and for reserved types
+     */
+    void skipField(FieldHeader header);
+
+    /**
+     * Skips the value of the field whose header was last read by {@link #nextField()}; see
+     * {@link #skipField(FieldHeader)}.
+     */
+    void skipField();
+
+    /**
+     * Positions the input at the header of field {@code fieldId} of the current object (the whole input at the top
+     * level, the nested object inside {@link #readObject(BinaryCodec)}), so that the next {@link #nextField()} reads
+     * it.
+     * <p>
+     * If the object ends with a field index trailer (see {@link BinaryOutputImpl#writeIndexedObject(Object,
+     * BinaryCodec)}), the field is found with a binary search over the trailer in O(log n); otherwise the headers of
+     * the object are scanned from its start, skipping the values.
+     *
+     * @param fieldId
+     * @return true if the field was found; otherwise false and the position is unchanged
+     */
+    boolean seekField(int fieldId);
+
     /**
      * @param reader provided lambda reads one element.
      * @param <T>
      * @return
      */
-    <T> List<T> readList(Function<BinaryInputImpl, T> reader);
+    <T> List<T> readList(Function<BinaryInput, T> reader);
 
     /**
      * Reads a map. For each entry, first the key is read then the value.
@@ -97,7 +204,7 @@ public interface BinaryInput {
      * @param <V>
      * @return
      */
-    <K, V> Map<K, V> readMap(Function<BinaryInputImpl, K> keyReader, Function<BinaryInputImpl, V> valueReader);
+    <K, V> Map<K, V> readMap(Function<BinaryInput, K> keyReader, Function<BinaryInput, V> valueReader);
 
     boolean hasRemaining();
 
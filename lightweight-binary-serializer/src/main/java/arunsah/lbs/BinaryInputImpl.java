@@ -1,8 +1,14 @@
 package arunsah.lbs;
 
 
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -14,6 +20,19 @@ public class BinaryInputImpl implements BinaryInput {
 
     private final ByteBuffer buffer;
 
+    // Scratch space of the FLOAT16 array conversions, allocated on first use.
+    private short[] float16Scratch;
+
+    // Cache of decoded strings, or null.
+    private StringCache stringCache;
+
+    // Position of the first field of the current object; its end is the limit of the buffer.
+    private int objectStart;
+
+    // Header last read by nextField() / readFieldHeader().
+    private FieldType currentFieldType;
+    private int currentFieldId;
+
     /**
      * Create instance of {@link BinaryInputImpl}
      *
@@ -22,6 +41,7 @@ public class BinaryInputImpl implements BinaryInput {
      */
     public BinaryInputImpl(ByteBuffer buffer, ByteOrder byteOrder) {
         this.buffer = buffer;
+        this.objectStart = buffer.position();
         buffer.order(byteOrder);
     }
 
@@ -45,6 +65,32 @@ public class BinaryInputImpl implements BinaryInput {
         return new BinaryInputImpl(buffer, ByteOrder.LITTLE_ENDIAN);
     }
 
+    /**
+     * Sets the cache through which {@link #readStringUTF8()} (and the string arrays, and map keys read with it)
+     * decodes strings, so that repeated strings are returned without allocating; null (the default) disables it.
+     *
+     * @param stringCache
+     * @return This BinaryInputImpl instance (to allow chaining).
+     */
+    public BinaryInputImpl setStringCache(StringCache stringCache) {
+        this.stringCache = stringCache;
+        return this;
+    }
+
+    public StringCache getStringCache() {
+        return stringCache;
+    }
+
+    /**
+     * Repositions this input on bytes {@code position} to {@code limit} of its buffer, as a new top-level object; lets
+     * readers of many small records reuse one input.
+     */
+    void setRange(int position, int limit) {
+        buffer.limit(limit);
+        buffer.position(position);
+        objectStart = position;
+    }
+
     /**
      * Reads a field header from the underlying ByteBuffer and returns a FieldHeader.
      * <p>
@@ -62,23 +108,29 @@ public class BinaryInputImpl implements BinaryInput {
      */
     @Override
     public FieldHeader readFieldHeader() {
+        nextField();
+        return new FieldHeader(currentFieldType, currentFieldId);
+    }
+
+    /**
+     * Reads the next field header without allocating; see {@link #readFieldHeader()} for the header format.
+     *
+     * @return the field id of the header just read.
+     */
+    @Override
+    public int nextField() {
         // Retrieve the next header byte from the buffer.
         byte header = buffer.get();
 
         FieldType fieldType = FieldType.getByFieldTypeValue(header);
 
-        int fieldId = 0; // Initialize fieldId.
-
+        int fieldId;
         // Check if the fieldType equals our reserved EXTENSION value (0xE).
         // This branch is used for extended fields such as arrays.
         if (fieldType.isExtensionType()) {
-
             // - The full field ID is not stored in the header; it is stored in the following extension bytes.
             //   We decode these bytes as a 7-bit varint.
             fieldId = readVarInt32();
-            // Create and return a FieldHeader with the data type (EXTENSION),
-            // the extension type in the low nibble, and the decoded field ID.
-            return new FieldHeader(fieldType, fieldId);
         } else {
             // Normal field case:
             // The low 4 bits of the header contain the field ID if it fits in 4 bits.
@@ -91,9 +143,20 @@ public class BinaryInputImpl implements BinaryInput {
                 // The base value is 15, and the remaining part is stored in extension bytes.
                 fieldId = Constant.FIELD_ID_EXTENSION + readVarInt32();
             }
-            // Return a normal FieldHeader with the extracted data type and field ID.
-            return new FieldHeader(fieldType, fieldId);
         }
+        currentFieldType = fieldType;
+        currentFieldId = fieldId;
+        return fieldId;
+    }
+
+    @Override
+    public FieldType currentFieldType() {
+        return currentFieldType;
+    }
+
+    @Override
+    public int currentFieldId() {
+        return currentFieldId;
     }
 
     /**
@@ -146,6 +209,16 @@ public class BinaryInputImpl implements BinaryInput {
         return value;
     }
 
+    @Override
+    public int readSVarInt32() {
+        return VarInts.unZigZag32(readVarInt32());
+    }
+
+    @Override
+    public long readSVarInt64() {
+        return VarInts.unZigZag64(readVarInt64());
+    }
+
 
     @Override
     public byte readInt8() {
@@ -169,7 +242,7 @@ public class BinaryInputImpl implements BinaryInput {
 
     @Override
     public float readFloat16() {
-        return buffer.getFloat();
+        return Float16.toFloat(buffer.getShort());
     }
 
     @Override
@@ -191,6 +264,12 @@ public class BinaryInputImpl implements BinaryInput {
     public String readStringUTF8() {
         // Read string length as a varint
         int length = readVarInt32();
+        if (stringCache != null) {
+            readBulk(length);
+            int position = buffer.position();
+            buffer.position(position + length);
+            return stringCache.decode(buffer, position, length);
+        }
         byte[] data = new byte[length];
         buffer.get(data);
         return new String(data, StandardCharsets.UTF_8);
@@ -207,96 +286,101 @@ public class BinaryInputImpl implements BinaryInput {
     @Override
     public short[] readInt16Array() {
         int length = readVarInt32();
+        readBulk((long) length * Short.BYTES);
         short[] values = new short[length];
-        for (int i = 0; i < length; i++) {
-            values[i] = buffer.getShort();
-        }
+        buffer.asShortBuffer().get(values);
+        buffer.position(buffer.position() + length * Short.BYTES);
         return values;
     }
 
     @Override
     public int[] readInt32Array() {
         int length = readVarInt32();
+        readBulk((long) length * Integer.BYTES);
         int[] values = new int[length];
-        for (int i = 0; i < length; i++) {
-            values[i] = buffer.getInt();
-        }
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + length * Integer.BYTES);
         return values;
     }
 
     @Override
     public long[] readInt64Array() {
         int length = readVarInt32();
+        readBulk((long) length * Long.BYTES);
         long[] values = new long[length];
-        for (int i = 0; i < length; i++) {
-            values[i] = buffer.getLong();
-        }
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + length * Long.BYTES);
         return values;
     }
 
     @Override
     public float[] readFloat16Array() {
         int length = readVarInt32();
+        readBulk((long) length * BinarySize.FLOAT16);
         float[] values = new float[length];
-        for (int i = 0; i < length; i++) {
-            values[i] = buffer.getFloat();
+        // Copy in chunks into a scratch array with one bulk get through a short view, then convert each chunk.
+        short[] halves = float16Scratch();
+        ShortBuffer view = buffer.asShortBuffer();
+        for (int offset = 0; offset < length; offset += halves.length) {
+            int chunk = Math.min(halves.length, length - offset);
+            view.get(halves, 0, chunk);
+            Float16.toFloats(halves, 0, values, offset, chunk);
         }
+        buffer.position(buffer.position() + length * BinarySize.FLOAT16);
         return values;
     }
 
     @Override
     public float[] readFloat32Array() {
         int length = readVarInt32();
+        readBulk((long) length * Float.BYTES);
         float[] values = new float[length];
-        for (int i = 0; i < length; i++) {
-            values[i] = buffer.getFloat();
-        }
+        buffer.asFloatBuffer().get(values);
+        buffer.position(buffer.position() + length * Float.BYTES);
         return values;
     }
 
     @Override
     public double[] readFloat64Array() {
         int length = readVarInt32();
+        readBulk((long) length * Double.BYTES);
         double[] values = new double[length];
-        for (int i = 0; i < length; i++) {
-            values[i] = buffer.getDouble();
-        }
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + length * Double.BYTES);
         return values;
     }
 
     @Override
     public int[] readVarInt32Array() {
         int length = readVarInt32();
+        // Every element takes at least one byte.
+        readBulk(length);
         int[] values = new int[length];
-        for (int i = 0; i < length; i++) {
-            int value = 0;
-            int shift = 0;
-            byte b;
-            do {
-                b = buffer.get(); // get next byte
-                value |= (b & 0x7F) << shift;
-                shift += 7;
-            } while ((b & 0x80) != 0);
-            values[i] = value;
-        }
+        VarInts.decodeInt32(buffer, values);
         return values;
     }
 
     @Override
     public long[] readVarInt64Array() {
         int length = readVarInt32();
+        // Every element takes at least one byte.
+        readBulk(length);
         long[] values = new long[length];
-        for (int i = 0; i < length; i++) {
-            long value = 0;
-            int shift = 0;
-            byte b;
-            do {
-                b = buffer.get(); // get next byte
-                value |= (long) (b & 0x7F) << shift;
-                shift += 7;
-            } while ((b & 0x80) != 0);
-            values[i] = value;
-        }
+        VarInts.decodeInt64(buffer, values);
+        return values;
+    }
+
+    @Override
+    public int[] readSVarInt32Array() {
+        int[] values = readVarInt32Array();
+        VarInts.unZigZag(values);
+        return values;
+    }
+
+    @Override
+    public long[] readSVarInt64Array() {
+        long[] values = readVarInt64Array();
+        VarInts.unZigZag(values);
         return values;
     }
 
@@ -305,35 +389,397 @@ public class BinaryInputImpl implements BinaryInput {
         int size = readVarInt32();
         String[] values = new String[size];
         for (int i = 0; i < size; i++) {
-            // Read string length as a varint
-            int length = readVarInt32();
-            byte[] data = new byte[length];
-            buffer.get(data);
-            values[i] = new String(data, StandardCharsets.UTF_8);
+            values[i] = readStringUTF8();
         }
         return values;
     }
 
+    @Override
+    public int[] readSortedInt32Array() {
+        int end = encodedArrayEnd();
+        int oldLimit = buffer.limit();
+        buffer.limit(end);
+        try {
+            ArrayEncoding encoding = ArrayEncoding.getByValue(buffer.get());
+            int count = readVarInt32();
+            if (encoding == ArrayEncoding.DELTA_BLOCKS_INT32) {
+                // The values follow the skip table, encoded as in DELTA_INT32.
+                int blockSize = readVarInt32();
+                skipBytes((long) BinarySize.blockCount(count, blockSize) * 2 * Integer.BYTES);
+            } else if (encoding != ArrayEncoding.DELTA_INT32) {
+                throw new IllegalArgumentException("Not a sorted int array: " + encoding);
+            }
+            // Every value takes at least one byte.
+            readBulk(count);
+            int[] values = new int[count];
+            if (count > 0) {
+                values[0] = readSVarInt32();
+                VarInts.decodeInt32(buffer, values, 1, count - 1);
+                for (int i = 1; i < count; i++) {
+                    values[i] += values[i - 1];
+                }
+            }
+            return values;
+        } finally {
+            buffer.limit(oldLimit);
+            buffer.position(end);
+        }
+    }
+
+    @Override
+    public long[] readSortedInt64Array() {
+        int end = encodedArrayEnd();
+        int oldLimit = buffer.limit();
+        buffer.limit(end);
+        try {
+            ArrayEncoding encoding = ArrayEncoding.getByValue(buffer.get());
+            if (encoding != ArrayEncoding.DELTA_INT64) {
+                throw new IllegalArgumentException("Not a sorted long array: " + encoding);
+            }
+            int count = readVarInt32();
+            readBulk(count);
+            long[] values = new long[count];
+            if (count > 0) {
+                values[0] = readSVarInt64();
+                VarInts.decodeInt64(buffer, values, 1, count - 1);
+                for (int i = 1; i < count; i++) {
+                    values[i] += values[i - 1];
+                }
+            }
+            return values;
+        } finally {
+            buffer.limit(oldLimit);
+            buffer.position(end);
+        }
+    }
+
+    @Override
+    public int[] readPackedInt32Array() {
+        int end = encodedArrayEnd();
+        int oldLimit = buffer.limit();
+        buffer.limit(end);
+        try {
+            ArrayEncoding encoding = ArrayEncoding.getByValue(buffer.get());
+            if (encoding != ArrayEncoding.PACKED_INT32) {
+                throw new IllegalArgumentException("Not a packed int array: " + encoding);
+            }
+            return readPackedBlocks(readVarInt32());
+        } finally {
+            buffer.limit(oldLimit);
+            buffer.position(end);
+        }
+    }
+
+    @Override
+    public String[] readDictionaryStringUTF8Array() {
+        int end = encodedArrayEnd();
+        int oldLimit = buffer.limit();
+        buffer.limit(end);
+        try {
+            ArrayEncoding encoding = ArrayEncoding.getByValue(buffer.get());
+            if (encoding != ArrayEncoding.DICTIONARY_UTF8) {
+                throw new IllegalArgumentException("Not a dictionary string array: " + encoding);
+            }
+            int count = readVarInt32();
+            int dictionarySize = readVarInt32();
+            // Every string takes at least one byte.
+            readBulk(dictionarySize);
+            String[] strings = new String[dictionarySize];
+            for (int i = 0; i < dictionarySize; i++) {
+                strings[i] = readStringUTF8();
+            }
+            int[] indexes = readPackedBlocks(count);
+            String[] values = new String[count];
+            for (int i = 0; i < count; i++) {
+                int index = indexes[i];
+                if (index < 0 || index >= dictionarySize) {
+                    throw new IllegalArgumentException("Invalid dictionary index " + index);
+                }
+                values[i] = strings[index];
+            }
+            return values;
+        } finally {
+            buffer.limit(oldLimit);
+            buffer.position(end);
+        }
+    }
+
+    /**
+     * Reads {@code count} values written as {@link PackedInts} blocks.
+     */
+    private int[] readPackedBlocks(int count) {
+        // Every block takes at least three bytes.
+        readBulk(BinarySize.blockCount(count, Constant.PACKED_ARRAY_BLOCK_SIZE) * 3L);
+        int[] values = new int[count];
+        for (int start = 0; start < count; start += Constant.PACKED_ARRAY_BLOCK_SIZE) {
+            PackedInts.readBlock(buffer, values, start, Math.min(count - start, Constant.PACKED_ARRAY_BLOCK_SIZE));
+        }
+        return values;
+    }
+
+    @Override
+    public SortedInt32Cursor readSortedInt32Cursor() {
+        int end = encodedArrayEnd();
+        ByteBuffer data = buffer.duplicate();
+        data.limit(end);
+        data = data.slice().order(buffer.order());
+        buffer.position(end);
+        return new SortedInt32Cursor(data);
+    }
+
+    /**
+     * Reads the byte length of an {@link FieldType#ENCODED_ARRAY} value and returns the position of its end.
+     */
+    private int encodedArrayEnd() {
+        int length = readVarInt32();
+        if (length < 1 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return buffer.position() + length;
+    }
+
     @Override
     public <T extends BinarySerializable> T readObject(BinarySerializableFactory<T> factory) {
         int length = readVarInt32();
         int oldLimit = buffer.limit();
         int newLimit = buffer.position() + length;
 
+        int oldObjectStart = objectStart;
+
         buffer.limit(newLimit);
+        objectStart = buffer.position();
         T obj = factory.create();
         obj.deserialize(this);
         buffer.limit(oldLimit);
+        objectStart = oldObjectStart;
+        return obj;
+    }
+
+    @Override
+    public <T> T readObject(BinaryCodec<T> codec) {
+        int length = readVarInt32();
+        int oldLimit = buffer.limit();
+        int newLimit = buffer.position() + length;
+
+        int oldObjectStart = objectStart;
+
+        buffer.limit(newLimit);
+        objectStart = buffer.position();
+        T obj = codec.read(this);
+        buffer.limit(oldLimit);
+        objectStart = oldObjectStart;
         return obj;
     }
 
+    @Override
+    public void skipField(FieldHeader header) {
+        skipValue(header.getFieldType());
+    }
+
+    @Override
+    public void skipField() {
+        skipValue(currentFieldType);
+    }
+
+    private void skipValue(FieldType fieldType) {
+        switch (fieldType) {
+            case BOOL_TRUE:
+            case BOOL_FALSE:
+                // The value is the header itself.
+                break;
+            case INT8:
+                skipBytes(Byte.BYTES);
+                break;
+            case INT16:
+                skipBytes(Short.BYTES);
+                break;
+            case INT32:
+            case FLOAT32:
+                skipBytes(Integer.BYTES);
+                break;
+            case INT64:
+            case FLOAT64:
+                skipBytes(Long.BYTES);
+                break;
+            case FLOAT16:
+                skipBytes(BinarySize.FLOAT16);
+                break;
+            case VAR_INT32:
+            case VAR_INT64:
+            case SVAR_INT:
+                skipVarInts(1);
+                break;
+            case STRING_UTF8:
+            case INT8_ARRAY:
+            case OBJECT:
+            case ENCODED_ARRAY:
+                skipBytes(readVarInt32());
+                break;
+            case INT16_ARRAY:
+                skipBytes((long) readVarInt32() * Short.BYTES);
+                break;
+            case INT32_ARRAY:
+            case FLOAT32_ARRAY:
+                skipBytes((long) readVarInt32() * Integer.BYTES);
+                break;
+            case INT64_ARRAY:
+            case FLOAT64_ARRAY:
+                skipBytes((long) readVarInt32() * Long.BYTES);
+                break;
+            case FLOAT16_ARRAY:
+                skipBytes((long) readVarInt32() * BinarySize.FLOAT16);
+                break;
+            case VAR_INT32_ARRAY:
+            case VAR_INT64_ARRAY:
+            case SVAR_INT_ARRAY:
+                skipVarInts(readVarInt32());
+                break;
+            case STRING_UTF8_ARRAY: {
+                int size = readVarInt32();
+                for (int i = 0; i < size; i++) {
+                    skipBytes(readVarInt32());
+                }
+                break;
+            }
+            default:
+                // LIST and MAP elements carry no headers, so their extent is only known to the element readers.
+                throw new IllegalStateException("Cannot skip field of type " + fieldType);
+        }
+    }
+
+    /**
+     * Checks that {@code length} bytes remain before a bulk transfer through a view buffer (which reads from the
+     * current position in the byte order of the buffer, but does not move it), and before allocating the array.
+     */
+    private void readBulk(long length) {
+        if (length < 0 || buffer.remaining() < length) {
+            throw new BufferUnderflowException();
+        }
+    }
+
+    private short[] float16Scratch() {
+        if (float16Scratch == null) {
+            float16Scratch = new short[Constant.FLOAT16_CHUNK_SIZE];
+        }
+        return float16Scratch;
+    }
+
+    private void skipBytes(long length) {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        buffer.position(buffer.position() + (int) length);
+    }
+
+    /**
+     * Skips {@code count} varints by counting the bytes that have no continuation bit.
+     */
+    private void skipVarInts(int count) {
+        int position = buffer.position();
+        int limit = buffer.limit();
+        if (buffer.hasArray()) {
+            byte[] array = buffer.array();
+            int offset = buffer.arrayOffset();
+            while (count > 0) {
+                if (position >= limit) {
+                    throw new BufferUnderflowException();
+                }
+                // A byte without the continuation bit (MSB) terminates a varint.
+                if (array[offset + position++] >= 0) {
+                    count--;
+                }
+            }
+        } else {
+            while (count > 0) {
+                if (position >= limit) {
+                    throw new BufferUnderflowException();
+                }
+                if (buffer.get(position++) >= 0) {
+                    count--;
+                }
+            }
+        }
+        buffer.position(position);
+    }
+
+    @Override
+    public boolean seekField(int fieldId) {
+        int entries = fieldIndexEntries();
+        if (entries >= 0) {
+            // Binary search over the (id, offset) pairs of the trailer.
+            int low = 0;
+            int high = buffer.getInt(buffer.limit() - 2 * Integer.BYTES) - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int id = buffer.getInt(entries + mid * 2 * Integer.BYTES);
+                if (id < fieldId) {
+                    low = mid + 1;
+                } else if (id > fieldId) {
+                    high = mid - 1;
+                } else {
+                    buffer.position(objectStart + buffer.getInt(entries + mid * 2 * Integer.BYTES + Integer.BYTES));
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // No trailer: scan the headers; the last occurrence of the id wins, as with the trailer.
+        int position = buffer.position();
+        int found = -1;
+        buffer.position(objectStart);
+        while (buffer.hasRemaining()) {
+            int header = buffer.position();
+            if (nextField() == fieldId) {
+                found = header;
+            }
+            if (currentFieldType == FieldType.LIST || currentFieldType == FieldType.MAP) {
+                // Cannot be skipped; fields after it are only reachable through a trailer.
+                break;
+            }
+            skipField();
+        }
+        buffer.position(found >= 0 ? found : position);
+        return found >= 0;
+    }
+
+    /**
+     * Returns the position of the first entry of the field index trailer of the current object, or -1 if the object
+     * has no trailer.
+     */
+    private int fieldIndexEntries() {
+        int limit = buffer.limit();
+        if (limit - objectStart < BinarySize.fieldIndex(0)
+                || buffer.getInt(limit - Integer.BYTES) != Constant.FIELD_INDEX_MAGIC) {
+            return -1;
+        }
+        int count = buffer.getInt(limit - 2 * Integer.BYTES);
+        if (count < 0 || count > (limit - objectStart) / (2 * Integer.BYTES)) {
+            return -1;
+        }
+        // The magic could be the tail of some other value: check that a trailer field header and length precede
+        // the entries.
+        int payload = count * 2 * Integer.BYTES + 2 * Integer.BYTES;
+        int entries = limit - payload;
+        int header = entries - BinarySize.varInt32(payload) - 1;
+        if (header < objectStart
+                || buffer.get(header) != (byte) (FieldType.INT8_ARRAY.getValue() << 4 | Constant.FIELD_INDEX_FIELD_ID)) {
+            return -1;
+        }
+        int length = 0;
+        for (int i = header + 1, shift = 0; i < entries; i++, shift += 7) {
+            length |= (buffer.get(i) & 0x7F) << shift;
+        }
+        return length == payload ? entries : -1;
+    }
+
     /**
      * @param reader provided lambda reads one element.
      * @param <T>
      * @return
      */
     @Override
-    public <T> List<T> readList(Function<BinaryInputImpl, T> reader) {
+    public <T> List<T> readList(Function<BinaryInput, T> reader) {
         int length = readVarInt32();
         List<T> list = new ArrayList<>(length);
         for (int i = 0; i < length; i++) {
@@ -352,9 +798,10 @@ public class BinaryInputImpl implements BinaryInput {
      * @return
      */
     @Override
-    public <K, V> Map<K, V> readMap(Function<BinaryInputImpl, K> keyReader, Function<BinaryInputImpl, V> valueReader) {
+    public <K, V> Map<K, V> readMap(Function<BinaryInput, K> keyReader, Function<BinaryInput, V> valueReader) {
         int length = readVarInt32();
-        Map<K, V> map = new HashMap<>();
+        // Sized up front so that the map never rehashes while it is filled.
+        Map<K, V> map = new HashMap<>((int) (length / 0.75f) + 1);
         for (int i = 0; i < length; i++) {
             K key = keyReader.apply(this);
             V value = valueReader.apply(this);
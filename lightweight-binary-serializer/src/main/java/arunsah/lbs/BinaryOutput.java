@@ -1,6 +1,7 @@
 package arunsah.lbs;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.List;
 import java.util.Map;
 import java.util.function.BiConsumer;
@@ -65,6 +66,27 @@ public interface BinaryOutput {
      */
     BinaryOutput writeVarInt64(long value);
 
+    /**
+     * Writes a signed integer as a ZigZag mapped varint ({@link FieldType#SVAR_INT}).
+     * <p>
+     * ZigZag maps signed to unsigned integers so that values of small magnitude get small codes
+     * (0 -> 0, -1 -> 1, 1 -> 2, -2 -> 3, ...), which are then written with {@link #writeVarInt32(int)}: -1 takes one
+     * byte instead of five. The encoding does not depend on the width, a value written with
+     * {@link #writeSVarInt64(long)} reads back with {@link BinaryInput#readSVarInt32()} if it fits in an int.
+     *
+     * @param value The integer value to encode.
+     * @return This BinaryOutput instance (to allow chaining).
+     */
+    BinaryOutput writeSVarInt32(int value);
+
+    /**
+     * Writes a signed long as a ZigZag mapped varint ({@link FieldType#SVAR_INT}), see {@link #writeSVarInt32(int)}.
+     *
+     * @param value The long value to encode.
+     * @return This BinaryOutput instance (to allow chaining).
+     */
+    BinaryOutput writeSVarInt64(long value);
+
     BinaryOutput writeInt8(byte value);
 
     BinaryOutput writeInt16(short value);
@@ -83,6 +105,26 @@ public interface BinaryOutput {
 
     BinaryOutput writeStringUTF8(String value);
 
+    /**
+     * Writes bytes as-is, without a length prefix or field header.
+     * <p>
+     * This is meant for copying already encoded LBS data (for example the contents of another output).
+     *
+     * @param data
+     * @param offset
+     * @param length
+     * @return This BinaryOutput instance (to allow chaining).
+     */
+    BinaryOutput writeRawBytes(byte[] data, int offset, int length);
+
+    /**
+     * Writes the remaining bytes of {@code data} as-is, without a length prefix or field header.
+     *
+     * @param data source buffer; its position is advanced to its limit
+     * @return This BinaryOutput instance (to allow chaining).
+     */
+    BinaryOutput writeRawBytes(ByteBuffer data);
+
     BinaryOutput writeInt8Array(byte[] data);
 
     BinaryOutput writeInt16Array(short[] values);
@@ -101,19 +143,95 @@ public interface BinaryOutput {
 
     BinaryOutput writeVarInt64Array(long[] values);
 
+    /**
+     * Writes a {@link FieldType#SVAR_INT_ARRAY}: the element count, then each value as in {@link #writeSVarInt32(int)}.
+     */
+    BinaryOutput writeSVarInt32Array(int[] values);
+
+    /**
+     * Writes a {@link FieldType#SVAR_INT_ARRAY}: the element count, then each value as in {@link #writeSVarInt64(long)}.
+     */
+    BinaryOutput writeSVarInt64Array(long[] values);
+
     BinaryOutput writeStringUTF8Array(String[] values);
 
+    /**
+     * Writes a string array as an {@link FieldType#ENCODED_ARRAY} in {@link ArrayEncoding#DICTIONARY_UTF8}: its
+     * distinct strings once each, then the index of every element in that table, bit-packed as in
+     * {@link #writePackedInt32Array(int[])}. Arrays with few distinct values (status codes, country names, tags) take
+     * a byte or less per element, and {@link BinaryInput#readDictionaryStringUTF8Array()} decodes each distinct string
+     * only once.
+     */
+    BinaryOutput writeDictionaryStringUTF8Array(String[] values);
+
+    /**
+     * Writes a sorted (non-decreasing) int array as an {@link FieldType#ENCODED_ARRAY} in
+     * {@link ArrayEncoding#DELTA_INT32}: the first value, then the gap to each following value as a varint. Sorted
+     * ids with small gaps (posting lists, id sets) take one or two bytes per value.
+     *
+     * @throws IllegalArgumentException if the values are not sorted
+     */
+    BinaryOutput writeSortedInt32Array(int[] values);
+
+    /**
+     * Writes a sorted (non-decreasing) long array as an {@link FieldType#ENCODED_ARRAY} in
+     * {@link ArrayEncoding#DELTA_INT64}, see {@link #writeSortedInt32Array(int[])}.
+     *
+     * @throws IllegalArgumentException if the values are not sorted
+     */
+    BinaryOutput writeSortedInt64Array(long[] values);
+
+    /**
+     * Writes a sorted (non-decreasing) int array as an {@link FieldType#ENCODED_ARRAY} in
+     * {@link ArrayEncoding#DELTA_BLOCKS_INT32}: the data of {@link #writeSortedInt32Array(int[])} preceded by a skip
+     * table with the last value and the data offset of every block of {@link Constant#SORTED_ARRAY_BLOCK_SIZE} values
+     * (8 bytes per block), so that {@link SortedInt32Cursor#advance(int)} can jump over whole blocks.
+     *
+     * @throws IllegalArgumentException if the values are not sorted
+     */
+    BinaryOutput writeBlockedSortedInt32Array(int[] values);
+
+    /**
+     * Writes an int array as an {@link FieldType#ENCODED_ARRAY} in {@link ArrayEncoding#PACKED_INT32}: blocks of
+     * {@link Constant#PACKED_ARRAY_BLOCK_SIZE} values, each bit-packed relative to its minimum with the bit width that
+     * fits most of its values; the few values that need more bits are patched in as exceptions. Suited to column data
+     * with a narrow range per block (timestamps, counters, small codes), which decodes much faster than varints.
+     */
+    BinaryOutput writePackedInt32Array(int[] values);
+
     /**
      * Write an object (must implement BinarySerializable).
      *
      * @param obj
-     * @param temporaryBufferSize
+     * @param temporaryBufferSize no longer used; objects are written in place
      * @return
+     * @deprecated use {@link #writeObject(BinarySerializable)}
      */
+    @Deprecated
     BinaryOutput writeObject(BinarySerializable obj, int temporaryBufferSize);
 
+    /**
+     * Write an object (must implement BinarySerializable) as a varint length prefix followed by its fields.
+     * <p>
+     * The object is serialized directly into the output; its length prefix is filled in once the object is
+     * complete, so no intermediate buffer is allocated per object.
+     *
+     * @param obj
+     * @return
+     */
     BinaryOutput writeObject(BinarySerializable obj);
 
+    /**
+     * Write a value as a nested object using the given codec: a varint length prefix followed by the fields the
+     * codec writes.
+     *
+     * @param value
+     * @param codec
+     * @param <T>
+     * @return
+     */
+    <T> BinaryOutput writeObject(T value, BinaryWriter<T> codec);
+
     /**
      * Write a list of homogeneous elements.
      *
@@ -123,10 +241,28 @@ public interface BinaryOutput {
      */
     <T> void writeList(List<T> list, BiConsumer<BinaryOutput, T> writer);
 
+    /**
+     * Write a list of homogeneous elements, serializing chunks of it in parallel on the pool of {@code parallel}.
+     * The bytes are the same as those of {@link #writeList(List, BiConsumer)}.
+     *
+     * @param list
+     * @param writer   lambda writes each element; called concurrently, it must only write the element it is given.
+     * @param parallel
+     * @param <T>
+     */
+    <T> void writeList(List<T> list, BiConsumer<BinaryOutput, T> writer, ParallelListWriter parallel);
+
     <K, V> void writeMap(Map<K, V> map, BiConsumer<BinaryOutput, K> keyWriter,
                          BiConsumer<BinaryOutput, V> valueWriter);
 
     ByteBuffer getBuffer();
 
     int getBufferPosition();
+
+    /**
+     * Returns the byte order of the fixed-width values, by default that of {@link #getBuffer()}.
+     */
+    default ByteOrder getByteOrder() {
+        return getBuffer().order();
+    }
 }
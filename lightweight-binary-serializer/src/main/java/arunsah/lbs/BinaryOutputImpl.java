@@ -1,17 +1,31 @@
 package arunsah.lbs;
 
 
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.charset.StandardCharsets;
-import java.util.List;
-import java.util.Map;
-import java.util.function.BiConsumer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
 
-public class BinaryOutputImpl implements BinaryOutput {
+public class BinaryOutputImpl extends AbstractBinaryOutput {
 
     private final ByteBuffer buffer;
 
+    // Scratch space of the FLOAT16 array conversions, allocated on first use.
+    private short[] float16Scratch;
+
+    // Encoder of the longer strings, created on first use.
+    private Utf8 utf8;
+
+    // Nesting depth of the object being written (0 outside of nested objects).
+    private int objectDepth;
+    // Field index of the innermost object written with writeIndexedObject / startFieldIndex, or null.
+    private FieldIndex fieldIndex;
+
     /**
      * Create instance of {@link BinaryOutputImpl}
      *
@@ -67,6 +81,9 @@ public class BinaryOutputImpl implements BinaryOutput {
      */
     @Override
     public BinaryOutput writeFieldHeader(FieldType fieldType, int fieldId) {
+        if (fieldIndex != null && fieldIndex.depth == objectDepth) {
+            fieldIndex.add(fieldId, buffer.position() - fieldIndex.start);
+        }
         // Extract the high nibble from the dataType.
         // This represents the field's data type (or extension indicator) in our header.
         if (fieldType.isExtensionType()) {
@@ -95,11 +112,6 @@ public class BinaryOutputImpl implements BinaryOutput {
         return this;
     }
 
-    @Override
-    public BinaryOutput writeFieldHeader(FieldHeader fieldHeader) {
-        return writeFieldHeader(fieldHeader.getFieldType(), fieldHeader.getFieldID());
-    }
-
     /**
      * Writes an integer using 7-bit variable-length encoding.
      * <p>
@@ -188,7 +200,7 @@ public class BinaryOutputImpl implements BinaryOutput {
 
     @Override
     public BinaryOutput writeFloat16(float value) {
-        buffer.putFloat(value);
+        buffer.putShort(Float16.fromFloat(value));
         return this;
     }
 
@@ -204,17 +216,70 @@ public class BinaryOutputImpl implements BinaryOutput {
         return this;
     }
 
+    /**
+     * Writes a string as its UTF-8 byte length and bytes, encoding it straight into the buffer.
+     * <p>
+     * As for nested objects, the length slot is reserved before the string is encoded and back-patched after it. The
+     * slot is sized for the char count, which the UTF-8 length can only exceed; if the encoded string needs a wider
+     * length, it is moved forward to make room. Short strings are encoded by a plain loop, longer ones through a
+     * reusable {@link java.nio.charset.CharsetEncoder} (see {@link Utf8}).
+     */
     @Override
-    public BinaryOutput writeBoolean(int fieldId, boolean value) {
-        writeFieldHeader(value ? FieldType.BOOL_TRUE : FieldType.BOOL_FALSE, fieldId);
+    public BinaryOutput writeStringUTF8(String value) {
+        int length = value.length();
+        int lengthPosition = buffer.position();
+        int lengthSize = BinarySize.varInt32(length);
+        if (buffer.remaining() < lengthSize) {
+            throw new BufferOverflowException();
+        }
+        int start = lengthPosition + lengthSize;
+        buffer.position(start);
+        if (length <= Utf8.ENCODER_THRESHOLD) {
+            if (buffer.remaining() < 3 * length && buffer.remaining() < BinarySize.utf8Length(value)) {
+                throw new BufferOverflowException();
+            }
+            Utf8.encode(value, buffer);
+        } else {
+            Utf8 utf8 = utf8();
+            utf8.start(value);
+            if (!utf8.encodeTo(buffer)) {
+                throw new BufferOverflowException();
+            }
+        }
+
+        int end = buffer.position();
+        int size = end - start;
+        int extraLengthBytes = BinarySize.varInt32(size) - lengthSize;
+        if (extraLengthBytes > 0) {
+            if (buffer.remaining() < extraLengthBytes) {
+                throw new BufferOverflowException();
+            }
+            moveBytes(start, start + extraLengthBytes, size);
+        }
+        putVarInt32(lengthPosition, size);
+        buffer.position(end + extraLengthBytes);
         return this;
     }
 
+    /**
+     * Writes a varint at an absolute position, without moving the buffer position.
+     */
+    private void putVarInt32(int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put(position++, (byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put(position, (byte) value);
+    }
+
+    @Override
+    public BinaryOutput writeRawBytes(byte[] data, int offset, int length) {
+        buffer.put(data, offset, length);
+        return this;
+    }
 
     @Override
-    public BinaryOutput writeStringUTF8(String value) {
-        byte[] data = value.getBytes(StandardCharsets.UTF_8);
-        writeVarInt32(data.length);
+    public BinaryOutput writeRawBytes(ByteBuffer data) {
         buffer.put(data);
         return this;
     }
@@ -230,84 +295,89 @@ public class BinaryOutputImpl implements BinaryOutput {
     @Override
     public BinaryOutput writeInt16Array(short[] values) {
         writeVarInt32(values.length);
-        for (int i = 0; i < values.length; i++) {
-            buffer.putShort(values[i]);
-        }
+        writeBulk((long) values.length * Short.BYTES);
+        buffer.asShortBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Short.BYTES);
         return this;
     }
 
     @Override
     public BinaryOutput writeInt32Array(int[] values) {
         writeVarInt32(values.length);
-        for (int i = 0; i < values.length; i++) {
-            buffer.putInt(values[i]);
-        }
+        writeBulk((long) values.length * Integer.BYTES);
+        buffer.asIntBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Integer.BYTES);
         return this;
     }
 
     @Override
     public BinaryOutput writeInt64Array(long[] values) {
         writeVarInt32(values.length);
-        for (int i = 0; i < values.length; i++) {
-            buffer.putLong(values[i]);
-        }
+        writeBulk((long) values.length * Long.BYTES);
+        buffer.asLongBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Long.BYTES);
         return this;
     }
 
     @Override
     public BinaryOutput writeFloat16Array(float[] values) {
         writeVarInt32(values.length);
-        for (int i = 0; i < values.length; i++) {
-            buffer.putFloat(values[i]);
+        writeBulk((long) values.length * BinarySize.FLOAT16);
+        // Convert in chunks into a scratch array, then copy each chunk with one bulk put through a short view.
+        short[] halves = float16Scratch();
+        ShortBuffer view = buffer.asShortBuffer();
+        for (int offset = 0; offset < values.length; offset += halves.length) {
+            int length = Math.min(halves.length, values.length - offset);
+            Float16.fromFloats(values, offset, halves, 0, length);
+            view.put(halves, 0, length);
         }
+        buffer.position(buffer.position() + values.length * BinarySize.FLOAT16);
         return this;
     }
 
     @Override
     public BinaryOutput writeFloat32Array(float[] values) {
         writeVarInt32(values.length);
-        for (int i = 0; i < values.length; i++) {
-            buffer.putFloat(values[i]);
-        }
+        writeBulk((long) values.length * Float.BYTES);
+        buffer.asFloatBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Float.BYTES);
         return this;
     }
 
     @Override
     public BinaryOutput writeFloat64Array(double[] values) {
         writeVarInt32(values.length);
-        for (int i = 0; i < values.length; i++) {
-            buffer.putDouble(values[i]);
-        }
+        writeBulk((long) values.length * Double.BYTES);
+        buffer.asDoubleBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Double.BYTES);
         return this;
     }
 
     @Override
     public BinaryOutput writeVarInt32Array(int[] values) {
         writeVarInt32(values.length);
-        for (int i = 0; i < values.length; i++) {
-            int value = values[i];
-            while ((value & ~0x7F) != 0) {
-                byte part = (byte) ((value & 0x7F) | 0x80);
-                buffer.put(part);
-                value >>>= 7;
-            }
-            buffer.put((byte) (value & 0x7F));
-        }
+        VarInts.encodeInt32(buffer, values, false);
         return this;
     }
 
     @Override
     public BinaryOutput writeVarInt64Array(long[] values) {
         writeVarInt32(values.length);
-        for (int i = 0; i < values.length; i++) {
-            long value = values[i];
-            while ((value & ~0x7F) != 0) {
-                byte part = (byte) ((value & 0x7F) | 0x80);
-                buffer.put(part);
-                value >>>= 7;
-            }
-            buffer.put((byte) (value & 0x7F));
-        }
+        VarInts.encodeInt64(buffer, values, false);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeSVarInt32Array(int[] values) {
+        writeVarInt32(values.length);
+        VarInts.encodeInt32(buffer, values, true);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeSVarInt64Array(long[] values) {
+        writeVarInt32(values.length);
+        VarInts.encodeInt64(buffer, values, true);
         return this;
     }
 
@@ -316,64 +386,142 @@ public class BinaryOutputImpl implements BinaryOutput {
     public BinaryOutput writeStringUTF8Array(String[] values) {
         writeVarInt32(values.length);
         for (int i = 0; i < values.length; i++) {
-            String value = values[i];
-            byte[] data = value.getBytes(StandardCharsets.UTF_8);
-            writeVarInt32(data.length);
-            buffer.put(data);
+            writeStringUTF8(values[i]);
         }
         return this;
     }
 
     /**
-     * Write an object (must implement BinarySerializable).
+     * Write a value as a nested object using the given codec.
+     * <p>
+     * The object is serialized straight into this buffer. A one byte length slot is reserved in front of it and
+     * back-patched once the object is complete. If the length does not fit in a one byte varint, the object body
+     * is moved forward in place to make room for the wider length. Nested objects therefore need no intermediate
+     * buffer, are copied at most once (only when larger than 127 bytes), and are not limited in size.
      *
-     * @param obj
-     * @param temporaryBufferSize
+     * @param value
+     * @param codec
+     * @param <T>
      * @return
      */
     @Override
-    public BinaryOutput writeObject(BinarySerializable obj, int temporaryBufferSize) {
-        // Serialize the nested object into a temporary buffer
-        ByteBuffer objectBuffer = ByteBuffer.allocate(temporaryBufferSize);
-        BinaryOutput binaryOutput = new BinaryOutputImpl(objectBuffer, buffer.order());
-        obj.serialize(binaryOutput);
-        objectBuffer.flip();
-
-        int length = objectBuffer.remaining();
-        writeVarInt32(length);
+    public <T> BinaryOutput writeObject(T value, BinaryWriter<T> codec) {
+        return writeObject(value, codec, false);
+    }
 
-        // add to buffer
-        buffer.put(objectBuffer);
-        return this;
+    /**
+     * Write a value as a nested object using the given codec, followed by a field index trailer.
+     * <p>
+     * The trailer is the last field of the object: an {@link FieldType#INT8_ARRAY} field with the reserved id
+     * {@link Constant#FIELD_INDEX_FIELD_ID} holding the field ids of the object in ascending order with the offset
+     * of their header (relative to the start of the object), followed by the number of entries and
+     * {@link Constant#FIELD_INDEX_MAGIC}, all as fixed-width ints:
+     * <pre>
+     * [ header | varint length | (id, offset) * count | count | magic ]
+     * </pre>
+     * Readers find it from the end of the object and seek to any field in O(log n) with
+     * {@link BinaryInput#seekField(int)}. Readers that do not know about the trailer skip it as an unknown field.
+     * If an id occurs more than once, the index points to its last occurrence.
+     *
+     * @param value
+     * @param codec
+     * @param <T>
+     * @return
+     */
+    public <T> BinaryOutput writeIndexedObject(T value, BinaryWriter<T> codec) {
+        return writeObject(value, codec, true);
     }
 
-    @Override
-    public BinaryOutput writeObject(BinarySerializable obj) {
-        return writeObject(obj, Constant.DEFAULT_INTERMEDIATE_BUFFER_SIZE);
+    /**
+     * Write an object (must implement BinarySerializable) as a nested object followed by a field index trailer;
+     * see {@link #writeIndexedObject(Object, BinaryWriter)}.
+     *
+     * @param obj
+     * @return
+     */
+    public BinaryOutput writeIndexedObject(BinarySerializable obj) {
+        return writeObject(obj, SerializableWriter.INSTANCE, true);
     }
 
     /**
-     * Write a list of homogeneous elements.
+     * Starts recording the offsets of the fields written from the current position on, for top-level (not nested)
+     * objects. {@link #writeFieldIndex()} writes the trailer; see {@link #writeIndexedObject(Object, BinaryWriter)}.
      *
-     * @param list
-     * @param writer lambda writes each element.
-     * @param <T>
+     * @return This BinaryOutput instance (to allow chaining).
      */
-    @Override
-    public <T> void writeList(List<T> list, BiConsumer<BinaryOutput, T> writer) {
-        writeVarInt32(list.size());
-        for (int i = 0; i < list.size(); i++) {
-            writer.accept(this, list.get(i));
+    public BinaryOutput startFieldIndex() {
+        if (fieldIndex != null && fieldIndex.depth == objectDepth) {
+            throw new IllegalStateException("A field index is already started for this object");
         }
+        fieldIndex = new FieldIndex(buffer.position(), objectDepth, fieldIndex);
+        return this;
     }
 
-    @Override
-    public <K, V> void writeMap(Map<K, V> map, BiConsumer<BinaryOutput, K> keyWriter, BiConsumer<BinaryOutput, V> valueWriter) {
-        writeVarInt32(map.size());
-        for (Map.Entry<K, V> entry : map.entrySet()) {
-            keyWriter.accept(this, entry.getKey());
-            valueWriter.accept(this, entry.getValue());
+    /**
+     * Writes the field index trailer of the fields written since {@link #startFieldIndex()}.
+     *
+     * @return This BinaryOutput instance (to allow chaining).
+     */
+    public BinaryOutput writeFieldIndex() {
+        FieldIndex index = fieldIndex;
+        if (index == null || index.depth != objectDepth) {
+            throw new IllegalStateException("No field index started for this object");
+        }
+        // Stop recording before the trailer's own header is written.
+        fieldIndex = index.parent;
+        int count = index.sort();
+        int payload = count * 2 * Integer.BYTES + 2 * Integer.BYTES;
+        writeFieldHeader(FieldType.INT8_ARRAY, Constant.FIELD_INDEX_FIELD_ID);
+        writeVarInt32(payload);
+        if (buffer.remaining() < payload) {
+            throw new BufferOverflowException();
+        }
+        for (int i = 0; i < count; i++) {
+            long entry = index.entries[i];
+            buffer.putInt((int) (entry >>> 32));
+            buffer.putInt((int) entry);
+        }
+        buffer.putInt(count);
+        buffer.putInt(Constant.FIELD_INDEX_MAGIC);
+        return this;
+    }
+
+    private <T> BinaryOutput writeObject(T value, BinaryWriter<T> codec, boolean indexed) {
+        // Reserve a one byte length slot; most nested objects are small enough for it.
+        int lengthPosition = buffer.position();
+        buffer.put((byte) 0);
+        int start = buffer.position();
+
+        FieldIndex parentIndex = fieldIndex;
+        objectDepth++;
+        try {
+            if (indexed) {
+                startFieldIndex();
+                codec.write(this, value);
+                writeFieldIndex();
+            } else {
+                codec.write(this, value);
+            }
+        } finally {
+            objectDepth--;
+            fieldIndex = parentIndex;
+        }
+
+        int end = buffer.position();
+        int length = end - start;
+        int extraLengthBytes = BinarySize.varInt32(length) - 1;
+        if (extraLengthBytes > 0) {
+            if (buffer.remaining() < extraLengthBytes) {
+                throw new BufferOverflowException();
+            }
+            moveBytes(start, start + extraLengthBytes, length);
         }
+
+        // Back-patch the length and continue after the object body.
+        buffer.position(lengthPosition);
+        writeVarInt32(length);
+        buffer.position(end + extraLengthBytes);
+        return this;
     }
 
     @Override
@@ -386,4 +534,91 @@ public class BinaryOutputImpl implements BinaryOutput {
         return buffer.position();
     }
 
+    /**
+     * Checks that {@code length} bytes fit before a bulk transfer through a view buffer (which writes from the current
+     * position in the byte order of the buffer, but does not move it).
+     */
+    private void writeBulk(long length) {
+        if (buffer.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+    }
+
+    private Utf8 utf8() {
+        if (utf8 == null) {
+            utf8 = new Utf8();
+        }
+        return utf8;
+    }
+
+    private short[] float16Scratch() {
+        if (float16Scratch == null) {
+            float16Scratch = new short[Constant.FLOAT16_CHUNK_SIZE];
+        }
+        return float16Scratch;
+    }
+
+    /**
+     * Field ids and header offsets of the fields of one object.
+     */
+    private static final class FieldIndex {
+        final int start;
+        final int depth;
+        final FieldIndex parent;
+        // (id << 32 | offset), so that sorting orders by id and then by offset.
+        long[] entries = new long[16];
+        int count;
+
+        FieldIndex(int start, int depth, FieldIndex parent) {
+            this.start = start;
+            this.depth = depth;
+            this.parent = parent;
+        }
+
+        void add(int fieldId, int offset) {
+            if (count == entries.length) {
+                entries = Arrays.copyOf(entries, count * 2);
+            }
+            entries[count++] = ((long) fieldId << 32) | (offset & 0xFFFFFFFFL);
+        }
+
+        /**
+         * Sorts the entries by id and keeps the last occurrence of each id.
+         *
+         * @return the number of remaining entries
+         */
+        int sort() {
+            Arrays.sort(entries, 0, count);
+            int distinct = 0;
+            for (int i = 0; i < count; i++) {
+                if (distinct > 0 && (entries[distinct - 1] >>> 32) == (entries[i] >>> 32)) {
+                    distinct--;
+                }
+                entries[distinct++] = entries[i];
+            }
+            return distinct;
+        }
+    }
+
+    /**
+     * Moves {@code length} bytes from absolute position {@code from} to the higher absolute position {@code to}.
+     * The regions may overlap, so the copy runs from the end towards the start.
+     */
+    private void moveBytes(int from, int to, int length) {
+        if (buffer.hasArray()) {
+            int offset = buffer.arrayOffset();
+            System.arraycopy(buffer.array(), offset + from, buffer.array(), offset + to, length);
+            return;
+        }
+        int i = length;
+        while (i >= Long.BYTES) {
+            i -= Long.BYTES;
+            buffer.putLong(to + i, buffer.getLong(from + i));
+        }
+        while (i > 0) {
+            i--;
+            buffer.put(to + i, buffer.get(from + i));
+        }
+    }
+
 }
@@ -0,0 +1,268 @@
+package arunsah.lbs;
+
+/**
+ * Exact encoded sizes, in bytes, of the values written by {@link BinaryOutput}.
+ * <p>
+ * Used to size output buffers exactly, e.g. by {@link BinaryWriter#serializedSize(Object)}.
+ */
+public final class BinarySize {
+
+    // Encoded size of a FieldType.FLOAT16 value (IEEE 754 binary16).
+    public static final int FLOAT16 = Short.BYTES;
+
+    private BinarySize() {
+    }
+
+    /**
+     * Size of {@link BinaryOutput#writeVarInt32(int)}.
+     */
+    public static int varInt32(int value) {
+        if ((value & (~0 << 7)) == 0) return 1;
+        if ((value & (~0 << 14)) == 0) return 2;
+        if ((value & (~0 << 21)) == 0) return 3;
+        if ((value & (~0 << 28)) == 0) return 4;
+        return 5;
+    }
+
+    /**
+     * Size of {@link BinaryOutput#writeVarInt64(long)}.
+     */
+    public static int varInt64(long value) {
+        // One byte per started group of 7 significant bits.
+        int bits = Long.SIZE - Long.numberOfLeadingZeros(value);
+        return bits == 0 ? 1 : (bits + 6) / 7;
+    }
+
+    /**
+     * Size of {@link BinaryOutput#writeSVarInt32(int)}.
+     */
+    public static int sVarInt32(int value) {
+        return varInt32(VarInts.zigZag32(value));
+    }
+
+    /**
+     * Size of {@link BinaryOutput#writeSVarInt64(long)}.
+     */
+    public static int sVarInt64(long value) {
+        return varInt64(VarInts.zigZag64(value));
+    }
+
+    /**
+     * Size of {@link BinaryOutput#writeFieldHeader(FieldType, int)}.
+     */
+    public static int fieldHeader(FieldType fieldType, int fieldId) {
+        if (fieldType.isExtensionType()) {
+            return 1 + varInt32(fieldId);
+        }
+        return fieldId < Constant.FIELD_ID_EXTENSION ? 1 : 1 + varInt32(fieldId - Constant.FIELD_ID_EXTENSION);
+    }
+
+    /**
+     * Number of bytes of the UTF-8 encoding of {@code value} (unpaired surrogates count as one byte, as
+     * {@link String#getBytes(java.nio.charset.Charset)} replaces them with '?').
+     */
+    public static int utf8Length(CharSequence value) {
+        int length = value.length();
+        int size = length;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    size += 1;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    // A surrogate pair (two chars) encodes as four bytes.
+                    size += 2;
+                    i++;
+                } else if (!Character.isSurrogate(c)) {
+                    size += 2;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Size of {@link BinaryOutput#writeStringUTF8(String)}.
+     */
+    public static int stringUTF8(String value) {
+        int length = utf8Length(value);
+        return varInt32(length) + length;
+    }
+
+    public static int int8Array(byte[] values) {
+        return varInt32(values.length) + values.length;
+    }
+
+    public static int int16Array(short[] values) {
+        return varInt32(values.length) + values.length * Short.BYTES;
+    }
+
+    public static int int32Array(int[] values) {
+        return varInt32(values.length) + values.length * Integer.BYTES;
+    }
+
+    public static int int64Array(long[] values) {
+        return varInt32(values.length) + values.length * Long.BYTES;
+    }
+
+    public static int float16Array(float[] values) {
+        return varInt32(values.length) + values.length * FLOAT16;
+    }
+
+    public static int float32Array(float[] values) {
+        return varInt32(values.length) + values.length * Float.BYTES;
+    }
+
+    public static int float64Array(double[] values) {
+        return varInt32(values.length) + values.length * Double.BYTES;
+    }
+
+    public static int varInt32Array(int[] values) {
+        int size = varInt32(values.length);
+        for (int i = 0; i < values.length; i++) {
+            size += varInt32(values[i]);
+        }
+        return size;
+    }
+
+    public static int varInt64Array(long[] values) {
+        int size = varInt32(values.length);
+        for (int i = 0; i < values.length; i++) {
+            size += varInt64(values[i]);
+        }
+        return size;
+    }
+
+    public static int sVarInt32Array(int[] values) {
+        int size = varInt32(values.length);
+        for (int i = 0; i < values.length; i++) {
+            size += sVarInt32(values[i]);
+        }
+        return size;
+    }
+
+    public static int sVarInt64Array(long[] values) {
+        int size = varInt32(values.length);
+        for (int i = 0; i < values.length; i++) {
+            size += sVarInt64(values[i]);
+        }
+        return size;
+    }
+
+    /**
+     * Size of {@link BinaryOutput#writeSortedInt32Array(int[])}.
+     */
+    public static int sortedInt32Array(int[] values) {
+        return lengthPrefixed(1 + varInt32(values.length) + deltas(values, 0, values.length));
+    }
+
+    /**
+     * Size of {@link BinaryOutput#writeSortedInt64Array(long[])}.
+     */
+    public static int sortedInt64Array(long[] values) {
+        return lengthPrefixed(1 + varInt32(values.length) + deltas(values));
+    }
+
+    /**
+     * Size of {@link BinaryOutput#writeBlockedSortedInt32Array(int[])}.
+     */
+    public static int blockedSortedInt32Array(int[] values) {
+        int blockSize = Constant.SORTED_ARRAY_BLOCK_SIZE;
+        int table = blockCount(values.length, blockSize) * 2 * Integer.BYTES;
+        return lengthPrefixed(1 + varInt32(values.length) + varInt32(blockSize) + table
+                + deltas(values, 0, values.length));
+    }
+
+    /**
+     * Size of {@link BinaryOutput#writePackedInt32Array(int[])}.
+     */
+    public static int packedInt32Array(int[] values) {
+        int size = 1 + varInt32(values.length);
+        for (int start = 0; start < values.length; start += Constant.PACKED_ARRAY_BLOCK_SIZE) {
+            size += PackedInts.blockSize(values, start, Math.min(values.length, start + Constant.PACKED_ARRAY_BLOCK_SIZE));
+        }
+        return lengthPrefixed(size);
+    }
+
+    /**
+     * Size of the values {@code from} to {@code to} of a sorted int array: the first value of the array as a ZigZag
+     * varint, every other value as the varint gap from its predecessor.
+     */
+    static int deltas(int[] values, int from, int to) {
+        int size = 0;
+        for (int i = from; i < to; i++) {
+            size += i == 0 ? sVarInt32(values[0]) : varInt32(values[i] - values[i - 1]);
+        }
+        return size;
+    }
+
+    /**
+     * Size of the values of a sorted long array, see {@link #deltas(int[], int, int)}.
+     */
+    static int deltas(long[] values) {
+        int size = 0;
+        for (int i = 0; i < values.length; i++) {
+            size += i == 0 ? sVarInt64(values[0]) : varInt64(values[i] - values[i - 1]);
+        }
+        return size;
+    }
+
+    /**
+     * Number of blocks of {@code blockSize} values needed for {@code count} values.
+     */
+    static int blockCount(int count, int blockSize) {
+        return (int) (((long) count + blockSize - 1) / blockSize);
+    }
+
+    private static int lengthPrefixed(int size) {
+        return varInt32(size) + size;
+    }
+
+    public static int stringUTF8Array(String[] values) {
+        int size = varInt32(values.length);
+        for (int i = 0; i < values.length; i++) {
+            size += stringUTF8(values[i]);
+        }
+        return size;
+    }
+
+    /**
+     * Size of {@link BinaryOutput#writeDictionaryStringUTF8Array(String[])}.
+     */
+    public static int dictionaryStringUTF8Array(String[] values) {
+        return lengthPrefixed(StringDictionary.of(values).payloadSize());
+    }
+
+    /**
+     * Size of a nested object whose fields take {@code bodySize} bytes, including its length prefix.
+     */
+    public static int object(int bodySize) {
+        return varInt32(bodySize) + bodySize;
+    }
+
+    /**
+     * Size of the field index trailer of an object with {@code fieldCount} distinct field ids, see
+     * {@link BinaryOutputImpl#writeIndexedObject(Object, BinaryWriter)}.
+     */
+    public static int fieldIndex(int fieldCount) {
+        int payload = fieldCount * 2 * Integer.BYTES + 2 * Integer.BYTES;
+        return fieldHeader(FieldType.INT8_ARRAY, Constant.FIELD_INDEX_FIELD_ID) + varInt32(payload) + payload;
+    }
+
+    /**
+     * Size of {@link BinaryOutput#writeObject(BinarySerializable)}, determined by serializing the object into a
+     * {@link CountingBinaryOutput}.
+     */
+    public static int object(BinarySerializable value) {
+        CountingBinaryOutput counter = new CountingBinaryOutput();
+        counter.writeObject(value);
+        return counter.getBufferPosition();
+    }
+
+    /**
+     * Size of {@link BinaryOutput#writeObject(Object, BinaryWriter)}.
+     */
+    public static <T> int object(T value, BinaryWriter<T> codec) {
+        return object(codec.serializedSize(value));
+    }
+}
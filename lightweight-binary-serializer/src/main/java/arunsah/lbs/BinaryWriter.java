@@ -0,0 +1,25 @@
+package arunsah.lbs;
+
+/**
+ * Writing side of a {@link BinaryCodec}: writes the fields of a type on its behalf and knows their encoded size.
+ * <p>
+ * Everything that only writes objects ({@link BinaryOutput#writeObject(Object, BinaryWriter)},
+ * {@link RecordLogWriter#append(Object, BinaryWriter)}) takes a {@link BinaryWriter}, so adapters that cannot read
+ * (for example for {@link BinarySerializable} values, which need a factory to be read) do not implement a
+ * {@link BinaryCodec#read(BinaryInput)}.
+ *
+ * @param <T>
+ */
+public interface BinaryWriter<T> {
+
+    /**
+     * Writes the fields of {@code value}, like {@link BinarySerializable#serialize(BinaryOutput)}.
+     */
+    void write(BinaryOutput out, T value);
+
+    /**
+     * Returns the exact number of bytes {@link #write(BinaryOutput, Object)} produces for {@code value},
+     * so that callers can allocate an output buffer of exactly the right size.
+     */
+    int serializedSize(T value);
+}
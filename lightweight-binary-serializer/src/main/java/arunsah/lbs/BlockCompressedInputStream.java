@@ -0,0 +1,187 @@
+package arunsah.lbs;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link InputStream} that decompresses a stream written by a {@link BlockCompressedOutputStream}, one block at a time
+ * into a reused buffer, so memory use depends on the block size and not on the size of the payload.
+ * <p>
+ * To read a compressed message, read it through a {@link StreamingBinaryInput} over this stream:
+ * <pre>{@code
+ * try (StreamingBinaryInput in = StreamingBinaryInput.littleEndianInput(new BlockCompressedInputStream(stream))) {
+ *     ...
+ * }
+ * }</pre>
+ * A stream that does not start with {@link Constant#BLOCK_COMPRESSION_MAGIC}, a block header with sizes out of range
+ * or a block that does not decompress to its raw size throws {@link CorruptStreamException}; a stream that ends
+ * inside a block throws {@link EOFException}. Both are {@link IOException}s, so {@link StreamingBinaryInput} reports
+ * them as {@link java.io.UncheckedIOException}. Blocks carry no checksum. Instances are not thread-safe.
+ */
+public class BlockCompressedInputStream extends FilterInputStream {
+
+    private final byte[] header = new byte[Constant.COMPRESSION_BLOCK_HEADER_SIZE];
+    // Decompressed bytes of the current block between position and limit; both buffers grow to the largest block.
+    private byte[] block = new byte[0];
+    private int position;
+    private int limit;
+    private byte[] compressed = new byte[0];
+    private final CompressionStats stats = new CompressionStats();
+
+    /**
+     * Create instance of {@link BlockCompressedInputStream}, reading the stream header
+     *
+     * @param in
+     * @throws IOException            if the stream header cannot be read
+     * @throws CorruptStreamException if the stream does not start with {@link Constant#BLOCK_COMPRESSION_MAGIC}
+     */
+    public BlockCompressedInputStream(InputStream in) throws IOException {
+        super(in);
+        if (readFully(header, Integer.BYTES) != Integer.BYTES) {
+            throw new EOFException("Missing block compression header");
+        }
+        int magic = getInt(header, 0);
+        if (magic != Constant.BLOCK_COMPRESSION_MAGIC) {
+            throw new CorruptStreamException("Not a block-compressed stream (magic 0x"
+                    + Integer.toHexString(magic) + ")");
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == limit && !nextBlock()) {
+            return -1;
+        }
+        return block[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if ((off | len | (b.length - (off + len))) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (position == limit && !nextBlock()) {
+            return -1;
+        }
+        int n = Math.min(len, limit - position);
+        System.arraycopy(block, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && (position < limit || nextBlock())) {
+            int step = (int) Math.min(n - skipped, limit - position);
+            position += step;
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    /**
+     * Returns the number of decompressed bytes left in the current block.
+     */
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        // Not supported.
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * Returns the totals of the blocks read so far; the returned instance keeps being updated.
+     */
+    public CompressionStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Reads and decompresses the next block.
+     *
+     * @return false at the end of the stream
+     */
+    private boolean nextBlock() throws IOException {
+        int headerBytes = readFully(header, header.length);
+        if (headerBytes == 0) {
+            return false;
+        }
+        if (headerBytes != header.length) {
+            throw new EOFException("Stream ends inside a block header");
+        }
+        int rawSize = getInt(header, 0);
+        int storedSize = getInt(header, Integer.BYTES);
+        if (rawSize <= 0 || rawSize > Constant.MAX_COMPRESSION_BLOCK_SIZE || storedSize <= 0 || storedSize > rawSize) {
+            throw new CorruptStreamException("Malformed block header: raw size " + rawSize + ", stored size "
+                    + storedSize);
+        }
+        if (block.length < rawSize) {
+            block = new byte[rawSize];
+        }
+
+        if (storedSize == rawSize) {
+            if (readFully(block, rawSize) != rawSize) {
+                throw new EOFException("Stream ends inside a block");
+            }
+            stats.add(rawSize, storedSize, true, 0);
+        } else {
+            if (compressed.length < storedSize) {
+                compressed = new byte[storedSize];
+            }
+            if (readFully(compressed, storedSize) != storedSize) {
+                throw new EOFException("Stream ends inside a block");
+            }
+            long start = System.nanoTime();
+            try {
+                LzBlockCodec.decompress(compressed, 0, storedSize, block, 0, rawSize);
+            } catch (IllegalArgumentException e) {
+                throw new CorruptStreamException(e.getMessage(), e);
+            }
+            stats.add(rawSize, storedSize, false, System.nanoTime() - start);
+        }
+        position = 0;
+        limit = rawSize;
+        return true;
+    }
+
+    /**
+     * Reads {@code length} bytes into the start of {@code array}, unless the stream ends first.
+     *
+     * @return the number of bytes read
+     */
+    private int readFully(byte[] array, int length) throws IOException {
+        int n = 0;
+        while (n < length) {
+            int read = in.read(array, n, length - n);
+            if (read < 0) {
+                break;
+            }
+            n += read;
+        }
+        return n;
+    }
+
+    private static int getInt(byte[] array, int offset) {
+        return (array[offset] & 0xFF) << 24 | (array[offset + 1] & 0xFF) << 16 | (array[offset + 2] & 0xFF) << 8
+                | (array[offset + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,186 @@
+package arunsah.lbs;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * {@link OutputStream} that compresses what is written to it in independent blocks, for large LBS payloads
+ * (arrays of floats, string columns) sent over a network or stored in files.
+ * <p>
+ * The stream starts with {@link Constant#BLOCK_COMPRESSION_MAGIC}. Each block of up to {@code blockSize} raw bytes is
+ * compressed with a fast pure-Java LZ codec and written after a header holding its raw size and its stored size (two
+ * big-endian int32s); a block that does not shrink is stored as it is, with both sizes equal, so incompressible data
+ * grows by 8 bytes per block only. Blocks are independent, so {@link BlockCompressedInputStream} decompresses them one
+ * at a time into a reused buffer.
+ * <p>
+ * To compress a message, write it through a {@link StreamingBinaryOutput} over this stream:
+ * <pre>{@code
+ * BlockCompressedOutputStream compressed = new BlockCompressedOutputStream(stream);
+ * try (StreamingBinaryOutput out = StreamingBinaryOutput.littleEndianOutput(compressed)) {
+ *     ...
+ * }
+ * CompressionStats stats = compressed.getStats();
+ * }</pre>
+ * {@link #flush()} compresses the pending partial block, so flushing after every small message compresses poorly;
+ * {@link #finish()} does the same without flushing the underlying stream, and {@link #close()} finishes and closes it.
+ * Instances are not thread-safe.
+ */
+public class BlockCompressedOutputStream extends FilterOutputStream {
+
+    private final byte[] block;
+    private int count;
+    private final byte[] compressed;
+    private final int[] hashTable = new int[LzBlockCodec.HASH_TABLE_SIZE];
+    private final CompressionStats stats = new CompressionStats();
+    private boolean closed;
+
+    /**
+     * Create instance of {@link BlockCompressedOutputStream} with blocks of
+     * {@link Constant#DEFAULT_COMPRESSION_BLOCK_SIZE} bytes, writing the stream header
+     *
+     * @param out
+     * @throws IOException if the stream header cannot be written
+     */
+    public BlockCompressedOutputStream(OutputStream out) throws IOException {
+        this(out, Constant.DEFAULT_COMPRESSION_BLOCK_SIZE);
+    }
+
+    /**
+     * Create instance of {@link BlockCompressedOutputStream}, writing the stream header
+     *
+     * @param out
+     * @param blockSize raw size in bytes of the blocks, from 64 bytes to {@link Constant#MAX_COMPRESSION_BLOCK_SIZE}
+     * @throws IOException if the stream header cannot be written
+     */
+    public BlockCompressedOutputStream(OutputStream out, int blockSize) throws IOException {
+        super(out);
+        if (blockSize < 64 || blockSize > Constant.MAX_COMPRESSION_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Block size " + blockSize + " out of range [64, "
+                    + Constant.MAX_COMPRESSION_BLOCK_SIZE + "]");
+        }
+        this.block = new byte[blockSize];
+        this.compressed = new byte[Constant.COMPRESSION_BLOCK_HEADER_SIZE + LzBlockCodec.maxCompressedLength(blockSize)];
+        putInt(compressed, 0, Constant.BLOCK_COMPRESSION_MAGIC);
+        out.write(compressed, 0, Integer.BYTES);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        block[count++] = (byte) b;
+        if (count == block.length) {
+            writePendingBlock();
+        }
+    }
+
+    /**
+     * Copies the bytes into the pending block, compressing each block once full. Whole blocks written while no block
+     * is pending are compressed straight from {@code b}.
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if ((off | len | (b.length - (off + len))) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0) {
+            if (count == 0 && len >= block.length) {
+                writeBlock(b, off, block.length);
+                off += block.length;
+                len -= block.length;
+                continue;
+            }
+            int n = Math.min(block.length - count, len);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == block.length) {
+                writePendingBlock();
+            }
+        }
+    }
+
+    /**
+     * Compresses the pending partial block, if any, and flushes the underlying stream.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        writePendingBlock();
+        out.flush();
+    }
+
+    /**
+     * Compresses the pending partial block, if any, without flushing or closing the underlying stream.
+     *
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        ensureOpen();
+        writePendingBlock();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            out.close();
+        }
+    }
+
+    /**
+     * Returns the totals of the blocks written so far; the returned instance keeps being updated.
+     */
+    public CompressionStats getStats() {
+        return stats;
+    }
+
+    public int getBlockSize() {
+        return block.length;
+    }
+
+    private void writePendingBlock() throws IOException {
+        if (count > 0) {
+            writeBlock(block, 0, count);
+            count = 0;
+        }
+    }
+
+    private void writeBlock(byte[] src, int off, int len) throws IOException {
+        int header = Constant.COMPRESSION_BLOCK_HEADER_SIZE;
+        long start = System.nanoTime();
+        int size = LzBlockCodec.compress(src, off, len, compressed, header, hashTable);
+        long nanos = System.nanoTime() - start;
+
+        boolean stored = size >= len;
+        putInt(compressed, 0, len);
+        putInt(compressed, Integer.BYTES, stored ? len : size);
+        if (stored) {
+            out.write(compressed, 0, header);
+            out.write(src, off, len);
+        } else {
+            out.write(compressed, 0, header + size);
+        }
+        stats.add(len, stored ? len : size, stored, nanos);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private static void putInt(byte[] array, int offset, int value) {
+        array[offset] = (byte) (value >>> 24);
+        array[offset + 1] = (byte) (value >>> 16);
+        array[offset + 2] = (byte) (value >>> 8);
+        array[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,159 @@
+package arunsah.lbs;
+
+/**
+ * Bounded cache of values keyed by a {@code long}, evicting with the CLOCK algorithm (an approximation of LRU that
+ * needs no list reordering on a hit).
+ * <p>
+ * Entries live in {@code capacity} slots, found through an open addressing hash table (linear probing, at most half
+ * full, deletions by backward shift) so that neither a hit nor a miss allocates. A hit sets the reference bit of its
+ * slot; to make room, the clock hand sweeps the slots, clearing set bits, and evicts the first entry whose bit is
+ * clear. New entries start with a clear bit, so that records looked up only once are the first to go. Not
+ * thread-safe.
+ *
+ * @param <V>
+ */
+final class ClockCache<V> {
+
+    private final long[] keys;
+    private final Object[] values;
+    private final boolean[] referenced;
+    // Slot + 1 of the entry of every hash table position, 0 if the position is free.
+    private final int[] table;
+    private final int mask;
+    private int size;
+    private int hand;
+
+    private long hits;
+    private long misses;
+
+    ClockCache(int capacity) {
+        if (capacity < 1 || capacity > Constant.MAX_RECORD_CACHE_SIZE) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.referenced = new boolean[capacity];
+        this.table = new int[Integer.highestOneBit(capacity) << 2];
+        this.mask = table.length - 1;
+    }
+
+    /**
+     * Returns the value cached for {@code key}, or null (counting a miss).
+     */
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        int position = find(key);
+        if (position < 0) {
+            misses++;
+            return null;
+        }
+        int slot = table[position] - 1;
+        referenced[slot] = true;
+        hits++;
+        return (V) values[slot];
+    }
+
+    /**
+     * Caches {@code value} for {@code key}, evicting an entry if the cache is full.
+     */
+    void put(long key, V value) {
+        int position = find(key);
+        if (position >= 0) {
+            values[table[position] - 1] = value;
+            return;
+        }
+        int slot;
+        if (size < keys.length) {
+            slot = size++;
+        } else {
+            while (referenced[hand]) {
+                referenced[hand] = false;
+                hand = hand + 1 == keys.length ? 0 : hand + 1;
+            }
+            slot = hand;
+            hand = hand + 1 == keys.length ? 0 : hand + 1;
+            remove(find(keys[slot]));
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        referenced[slot] = false;
+        position = home(key);
+        while (table[position] != 0) {
+            position = (position + 1) & mask;
+        }
+        table[position] = slot + 1;
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    long getMisses() {
+        return misses;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes all cached values and resets the counters.
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            values[i] = null;
+            referenced[i] = false;
+        }
+        for (int i = 0; i < table.length; i++) {
+            table[i] = 0;
+        }
+        size = 0;
+        hand = 0;
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * Returns the hash table position of {@code key}, or -1.
+     */
+    private int find(long key) {
+        int position = home(key);
+        int entry;
+        while ((entry = table[position]) != 0) {
+            if (keys[entry - 1] == key) {
+                return position;
+            }
+            position = (position + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Frees a hash table position, moving back the entries after it that would no longer be found.
+     */
+    private void remove(int position) {
+        int free = position;
+        table[free] = 0;
+        int next = free;
+        while (true) {
+            next = (next + 1) & mask;
+            int entry = table[next];
+            if (entry == 0) {
+                return;
+            }
+            int home = home(keys[entry - 1]);
+            // Move the entry unless its home lies cyclically in (free, next].
+            boolean stays = free <= next ? free < home && home <= next : free < home || home <= next;
+            if (!stays) {
+                table[free] = entry;
+                table[next] = 0;
+                free = next;
+            }
+        }
+    }
+
+    private int home(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
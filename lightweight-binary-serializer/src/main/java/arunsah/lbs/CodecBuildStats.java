@@ -0,0 +1,55 @@
+package arunsah.lbs;
+
+/**
+ * One-time cost of obtaining the codec of a class in a {@link CodecRegistry}.
+ */
+public class CodecBuildStats {
+
+    private final Class<?> type;
+    private final boolean generated;
+    private final int fieldCount;
+    private final long buildNanos;
+
+    CodecBuildStats(Class<?> type, boolean generated, int fieldCount, long buildNanos) {
+        this.type = type;
+        this.generated = generated;
+        this.fieldCount = fieldCount;
+        this.buildNanos = buildNanos;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * True if the codec was generated at compile time (by the annotation processor) and only had to be loaded,
+     * false if it was assembled at runtime.
+     */
+    public boolean isGenerated() {
+        return generated;
+    }
+
+    /**
+     * Number of serialized fields, or -1 for generated codecs.
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Time taken to load or build the codec, in nanoseconds.
+     */
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "CodecBuildStats{" +
+                "type=" + type.getName() +
+                ", generated=" + generated +
+                ", fieldCount=" + fieldCount +
+                ", buildNanos=" + buildNanos +
+                '}';
+    }
+}
@@ -0,0 +1,153 @@
+package arunsah.lbs;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe cache of {@link BinaryCodec}s by class, for types that cannot be annotated at build time
+ * (third-party classes, records loaded through plugins).
+ * <p>
+ * The codec of a class is obtained once, on first use:
+ * <ul>
+ *     <li>a codec {@link #register(Class, BinaryCodec) registered} for the class is used as-is;</li>
+ *     <li>otherwise the codec generated by the annotation processor ({@code <SimpleName>LbsCodec}) is loaded, if any;</li>
+ *     <li>otherwise a codec is assembled at runtime from {@link java.lang.invoke.MethodHandle}s over the fields of the
+ *     class, so that steady-state reads and writes use no reflection.</li>
+ * </ul>
+ * Runtime codecs serialize the {@link LbsField} annotated fields if the class has any. Otherwise they serialize all
+ * non-static, non-transient fields: for records the components with ids 1, 2, ... in declaration order, for classes the
+ * fields of each class in the hierarchy (superclass first) sorted by name, with ids 1, 2, ... in that order. Classes
+ * need a no-arg constructor (of any visibility), records their canonical constructor. Fields are written in field id
+ * order and their types are mapped like the annotation processor does, so runtime and generated codecs of the same
+ * class produce identical output.
+ * <p>
+ * The one-time cost is reported per class by {@link #getBuildStats(Class)}; call {@link #preload(Class[])} at startup
+ * to pay it up front.
+ */
+public class CodecRegistry {
+
+    private static final CodecRegistry DEFAULT = new CodecRegistry();
+
+    private final ConcurrentHashMap<Class<?>, BinaryCodec<?>> codecs = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, CodecBuildStats> buildStats = new ConcurrentHashMap<>();
+    private final boolean useGeneratedCodecs;
+
+    /**
+     * Create instance of {@link CodecRegistry} that uses generated codecs where available.
+     */
+    public CodecRegistry() {
+        this(true);
+    }
+
+    /**
+     * Create instance of {@link CodecRegistry}
+     *
+     * @param useGeneratedCodecs load the codecs generated by the annotation processor where available; if false,
+     *                           codecs are always assembled at runtime
+     */
+    public CodecRegistry(boolean useGeneratedCodecs) {
+        this.useGeneratedCodecs = useGeneratedCodecs;
+    }
+
+    /**
+     * Returns the registry shared by the whole application.
+     */
+    public static CodecRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Uses {@code codec} for {@code type}, replacing any codec obtained before.
+     */
+    public <T> void register(Class<T> type, BinaryCodec<T> codec) {
+        codecs.put(type, codec);
+    }
+
+    /**
+     * Returns the codec of {@code type}, loading or building it on first use.
+     *
+     * @throws IllegalArgumentException if no codec can be built for the type (e.g. an unsupported field type)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> BinaryCodec<T> codecFor(Class<T> type) {
+        BinaryCodec<?> codec = codecs.get(type);
+        if (codec != null) {
+            return (BinaryCodec<T>) codec;
+        }
+
+        // Built outside of the map so that codecs of nested types can be requested while building.
+        long start = System.nanoTime();
+        BinaryCodec<T> generated = useGeneratedCodecs ? generatedCodec(type) : null;
+        BinaryCodec<T> built = generated != null ? generated : RuntimeCodec.build(type, this);
+        long buildNanos = System.nanoTime() - start;
+
+        codec = codecs.putIfAbsent(type, built);
+        if (codec != null) {
+            // Another thread got there first.
+            return (BinaryCodec<T>) codec;
+        }
+        int fieldCount = generated != null ? -1 : ((RuntimeCodec<T>) built).getFieldCount();
+        buildStats.put(type, new CodecBuildStats(type, generated != null, fieldCount, buildNanos));
+        if (generated == null) {
+            // Now that this codec is visible (recursive types find it), build the nested ones as well.
+            for (Class<?> nestedType : ((RuntimeCodec<T>) built).getNestedTypes()) {
+                codecFor(nestedType);
+            }
+        }
+        return built;
+    }
+
+    /**
+     * Obtains the codecs of {@code types} (and of their nested types) now, typically at startup.
+     *
+     * @return the build stats of the given types
+     */
+    public List<CodecBuildStats> preload(Class<?>... types) {
+        List<CodecBuildStats> stats = new ArrayList<>(types.length);
+        for (Class<?> type : types) {
+            codecFor(type);
+            stats.add(buildStats.get(type));
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the build stats of {@code type}, or null if its codec was not obtained yet or was registered.
+     */
+    public CodecBuildStats getBuildStats(Class<?> type) {
+        return buildStats.get(type);
+    }
+
+    /**
+     * Returns the build stats of all codecs obtained so far.
+     */
+    public Collection<CodecBuildStats> getBuildStats() {
+        return Collections.unmodifiableCollection(buildStats.values());
+    }
+
+    /**
+     * Loads the {@code INSTANCE} of the codec generated for {@code type}, or returns null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> BinaryCodec<T> generatedCodec(Class<T> type) {
+        String packagePrefix = type.getPackage() == null || type.getPackage().getName().isEmpty()
+                ? "" : type.getPackage().getName() + ".";
+        // Nested classes: Outer$Inner -> Outer_InnerLbsCodec.
+        String simpleName = type.getName().substring(packagePrefix.length()).replace('$', '_');
+        try {
+            Class<?> codecClass = Class.forName(packagePrefix + simpleName + "LbsCodec", true, type.getClassLoader());
+            if (!BinaryCodec.class.isAssignableFrom(codecClass)) {
+                return null;
+            }
+            Field instance = codecClass.getField("INSTANCE");
+            return Modifier.isStatic(instance.getModifiers()) ? (BinaryCodec<T>) instance.get(null) : null;
+        } catch (ClassNotFoundException | NoSuchFieldException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package arunsah.lbs;
+
+/**
+ * Running totals of a {@link BlockCompressedOutputStream} or a {@link BlockCompressedInputStream}: blocks, raw and
+ * compressed bytes, and the time spent in the codec, to decide per message type whether compression pays off.
+ */
+public class CompressionStats {
+
+    private long blocks;
+    private long storedBlocks;
+    private long rawBytes;
+    private long compressedBytes;
+    private long codecNanos;
+
+    CompressionStats() {
+    }
+
+    void add(int rawSize, int storedSize, boolean stored, long nanos) {
+        blocks++;
+        if (stored) {
+            storedBlocks++;
+        }
+        rawBytes += rawSize;
+        compressedBytes += storedSize + Constant.COMPRESSION_BLOCK_HEADER_SIZE;
+        codecNanos += nanos;
+    }
+
+    /**
+     * Number of blocks written or read.
+     */
+    public long getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * Number of blocks that did not compress and were stored as they are.
+     */
+    public long getStoredBlocks() {
+        return storedBlocks;
+    }
+
+    /**
+     * Number of bytes before compression.
+     */
+    public long getRawBytes() {
+        return rawBytes;
+    }
+
+    /**
+     * Number of bytes after compression, block headers included (the stream header is not counted).
+     */
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    /**
+     * Raw bytes per compressed byte: 2.0 means the data shrank by half, slightly below 1.0 means it did not compress.
+     */
+    public double getCompressionRatio() {
+        return compressedBytes == 0 ? 1.0 : (double) rawBytes / compressedBytes;
+    }
+
+    /**
+     * Time spent compressing (output) or decompressing (input) blocks, in nanoseconds.
+     */
+    public long getCodecNanos() {
+        return codecNanos;
+    }
+
+    /**
+     * Raw megabytes (10^6 bytes) compressed or decompressed per second of codec time.
+     */
+    public double getCodecMegabytesPerSecond() {
+        return codecNanos == 0 ? 0.0 : rawBytes * 1000.0 / codecNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionStats{" +
+                "blocks=" + blocks +
+                ", storedBlocks=" + storedBlocks +
+                ", rawBytes=" + rawBytes +
+                ", compressedBytes=" + compressedBytes +
+                ", compressionRatio=" + String.format("%.2f", getCompressionRatio()) +
+                ", codecNanos=" + codecNanos +
+                '}';
+    }
+}
@@ -4,5 +4,88 @@ public class Constant {
     // 0xF is used in the header’s high nibble to indicate that the field id is extended.
     public static final byte FIELD_ID_EXTENSION = 0xF;
 
+    // Size of one segment of a SegmentedBinaryOutput; large enough to hold any fixed-width value or varint.
+    public static final int DEFAULT_SEGMENT_SIZE = 8192;
+
+    // Number of free segments a SegmentPool keeps for reuse; further released segments are left to the GC.
+    public static final int DEFAULT_MAX_POOLED_SEGMENTS = 256;
+
+    // Initial size of the buffers a ParallelListWriter writes chunks into; they grow as needed and are kept for reuse.
+    public static final int DEFAULT_PARALLEL_CHUNK_BUFFER_SIZE = 64 * 1024;
+
+    // Minimum number of elements of a chunk of a ParallelListWriter created with the default constructor.
+    public static final int DEFAULT_PARALLEL_LIST_CHUNK_SIZE = 1024;
+
+    // Size of the buffer of a StreamingBinaryOutput created by its static helper methods.
+    public static final int DEFAULT_STREAM_BUFFER_SIZE = 65536;
+
+    // Largest value (string, array or nested object, in bytes) an IncrementalBinaryDecoder accepts by default.
+    public static final int DEFAULT_MAX_VALUE_LENGTH = 64 * 1024 * 1024;
+
+    // Number of strings a StringCache created with the default constructor holds, and their maximum UTF-8 length.
+    public static final int DEFAULT_STRING_CACHE_SIZE = 256;
+    public static final int DEFAULT_STRING_CACHE_MAX_LENGTH = 64;
+
+    // Number of FLOAT16 array elements converted per chunk (through a reusable short[] of this size).
+    public static final int FLOAT16_CHUNK_SIZE = 512;
+
+    // Number of values per block of a DELTA_BLOCKS_INT32 array (one skip table entry per block).
+    public static final int SORTED_ARRAY_BLOCK_SIZE = 128;
+
+    // Number of values per bit-packed block of a PACKED_INT32 array (each block has its own minimum and bit width).
+    public static final int PACKED_ARRAY_BLOCK_SIZE = 128;
+
+    // Number of chars copied out of a string at a time when encoding long strings to UTF-8.
+    public static final int UTF8_CHUNK_SIZE = 512;
+
+    // Field id of the optional field index trailer of an object; reserved, application fields start at 1.
+    public static final int FIELD_INDEX_FIELD_ID = 0;
+
+    // Last four bytes of a field index trailer ("LBSI"), which let readers detect it from the end of the object.
+    public static final int FIELD_INDEX_MAGIC = 0x4C425349;
+
+    // First four bytes of a record log file ("LBSL"), followed by its format version and byte order.
+    public static final int RECORD_LOG_MAGIC = 0x4C42534C;
+    public static final byte RECORD_LOG_VERSION = 1;
+    public static final int RECORD_LOG_HEADER_SIZE = 8;
+
+    // Size of the buffer in which a RecordLogWriter groups records before writing them to the file.
+    public static final int DEFAULT_RECORD_LOG_BUFFER_SIZE = 1024 * 1024;
+
+    // Size of the windows of the file a RecordLogReader maps at a time.
+    public static final int DEFAULT_RECORD_LOG_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    // Flag (in the sixth byte of the record log header) of a record file sealed with an offset index footer.
+    public static final byte RECORD_LOG_INDEXED = 1;
+
+    // Footer of an indexed record file: record count, index offset and largest frame length (three int64s).
+    public static final int RECORD_FILE_FOOTER_SIZE = 24;
+
+    // Size of the mappings a RecordFile splits the records of a file into.
+    public static final int RECORD_FILE_SEGMENT_SIZE = 1024 * 1024 * 1024;
+
+    // Number of decoded records a RecordFile caches by default.
+    public static final int DEFAULT_RECORD_CACHE_SIZE = 1024;
+
+    // Largest number of records a RecordFile caches: its hash table has up to four times as many positions, which must
+    // stay below 2^31.
+    public static final int MAX_RECORD_CACHE_SIZE = (1 << 29) - 1;
+
+    // First four bytes of a block-compressed stream ("LBZ1", the last byte being the format version).
+    public static final int BLOCK_COMPRESSION_MAGIC = 0x4C425A31;
+
+    // Header of each block of a block-compressed stream: raw size and stored size (two big-endian int32s).
+    public static final int COMPRESSION_BLOCK_HEADER_SIZE = 8;
+
+    // Number of bytes a BlockCompressedOutputStream compresses at a time by default.
+    public static final int DEFAULT_COMPRESSION_BLOCK_SIZE = 64 * 1024;
+
+    // Largest raw block size a BlockCompressedInputStream accepts, to reject corrupt headers before allocating.
+    public static final int MAX_COMPRESSION_BLOCK_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * @deprecated nested objects are written in place and no longer use an intermediate buffer.
+     */
+    @Deprecated
     public static final int DEFAULT_INTERMEDIATE_BUFFER_SIZE = 10240;
 }
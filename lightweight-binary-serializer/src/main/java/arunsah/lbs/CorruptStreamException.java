@@ -0,0 +1,21 @@
+package arunsah.lbs;
+
+import java.io.IOException;
+
+/**
+ * Signals that a stream read by {@link BlockCompressedInputStream} is not valid compressed data: a wrong magic, a
+ * malformed block header or a block that does not decompress. A stream that is only cut short throws
+ * {@link java.io.EOFException} instead.
+ */
+public class CorruptStreamException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CorruptStreamException(String message) {
+        super(message);
+    }
+
+    public CorruptStreamException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,111 @@
+package arunsah.lbs;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * {@link BinaryOutput} that writes nothing and only counts the bytes that would be written.
+ * <p>
+ * Used to compute the exact encoded size of a {@link BinarySerializable} (see {@link BinarySize#object(BinarySerializable)})
+ * when the size is needed before the data is written, for example for a length prefix that cannot be back-patched.
+ */
+public class CountingBinaryOutput extends AbstractBinaryOutput {
+
+    private int count;
+
+    @Override
+    public BinaryOutput writeVarInt32(int value) {
+        count += BinarySize.varInt32(value);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeVarInt64(long value) {
+        count += BinarySize.varInt64(value);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt8(byte value) {
+        count += Byte.BYTES;
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt16(short value) {
+        count += Short.BYTES;
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt32(int value) {
+        count += Integer.BYTES;
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt64(long value) {
+        count += Long.BYTES;
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeStringUTF8(String value) {
+        count += BinarySize.stringUTF8(value);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeRawBytes(byte[] data, int offset, int length) {
+        count += length;
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeRawBytes(ByteBuffer data) {
+        count += data.remaining();
+        data.position(data.limit());
+        return this;
+    }
+
+    @Override
+    public <T> BinaryOutput writeObject(T value, BinaryWriter<T> codec) {
+        int start = count;
+        codec.write(this, value);
+        count += BinarySize.varInt32(count - start);
+        return this;
+    }
+
+    /**
+     * There is no buffer behind this output.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public ByteBuffer getBuffer() {
+        throw new UnsupportedOperationException("CountingBinaryOutput has no buffer");
+    }
+
+    /**
+     * Sizes do not depend on the byte order: returns {@link ByteOrder#BIG_ENDIAN}.
+     */
+    @Override
+    public ByteOrder getByteOrder() {
+        return ByteOrder.BIG_ENDIAN;
+    }
+
+    /**
+     * Returns the number of bytes counted so far.
+     */
+    @Override
+    public int getBufferPosition() {
+        return count;
+    }
+
+    /**
+     * Sets the count back to zero.
+     */
+    public void reset() {
+        count = 0;
+    }
+}
@@ -1,8 +1,5 @@
 package arunsah.lbs;
 
-import java.util.HashMap;
-import java.util.Map;
-
 public enum FieldType {
     UNUSED(0x00), // unused
     BOOL_TRUE(0x01), // boolean true value
@@ -35,16 +32,31 @@ public enum FieldType {
     VAR_INT32_ARRAY(0xEA), // variable integer (7-bit encoding, MSB is for continuation) array
     VAR_INT64_ARRAY(0xEB), // variable long (7-bit encoding, MSB is for continuation) array
     STRING_UTF8_ARRAY(0xEC), // UTF‑8 string array (with length prefix; 7-bit integer encoding)
-    RESERVE1(0xED), // reserve
-    RESERVE2(0xEE), // reserve
-    RESERVE3(0xEF); // reserve
+    SVAR_INT(0xED), // signed variable integer or long (ZigZag mapped, then 7-bit encoding)
+    SVAR_INT_ARRAY(0xEE), // signed variable integer or long (ZigZag mapped, then 7-bit encoding) array
+    ENCODED_ARRAY(0xEF); // array in one of the ArrayEncoding formats (with byte length prefix; 7-bit integer encoding)
 
     private final byte value;
-    private static final Map<Byte, FieldType> fieldTypeByValueMap = new HashMap<>();
+
+    // Field type for every possible header byte, indexed by (header & 0xFF).
+    private static final FieldType[] FIELD_TYPE_BY_HEADER = new FieldType[256];
 
     static {
         for (FieldType fieldType : values()) {
-            fieldTypeByValueMap.put(fieldType.getValue(), fieldType);
+            int value = fieldType.getValue() & 0xFF;
+            if (fieldType.isExtensionType()) {
+                // Extension types occupy the whole header byte.
+                FIELD_TYPE_BY_HEADER[value] = fieldType;
+            } else {
+                // Normal types occupy the high nibble; the low nibble holds the field id.
+                // (The EXTENSION nibble itself is left to the extension types.)
+                for (int fieldIdNibble = 0; fieldIdNibble <= 0x0F; fieldIdNibble++) {
+                    int header = (value << 4) | fieldIdNibble;
+                    if (!isExtensionType((byte) header)) {
+                        FIELD_TYPE_BY_HEADER[header] = fieldType;
+                    }
+                }
+            }
         }
     }
 
@@ -59,12 +71,11 @@ public enum FieldType {
         return value;
     }
 
+    /**
+     * Returns the field type encoded in a header byte, using a precomputed 256 entry table (no boxing, no hashing).
+     */
     public static FieldType getByFieldTypeValue(byte header) {
-        if (isExtensionType(header)) {
-            return fieldTypeByValueMap.get(header);
-        } else {
-            return fieldTypeByValueMap.get((byte) ((header & 0xF0) >> 4));
-        }
+        return FIELD_TYPE_BY_HEADER[header & 0xFF];
     }
 
     public boolean isBooleanType() {
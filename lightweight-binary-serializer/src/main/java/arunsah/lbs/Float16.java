@@ -0,0 +1,134 @@
+package arunsah.lbs;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Conversions between {@code float} and IEEE 754 binary16 (half precision), the encoding of {@link FieldType#FLOAT16}
+ * and {@link FieldType#FLOAT16_ARRAY} values.
+ * <p>
+ * Floats are rounded to the nearest half (ties to even); values beyond the half range become infinities, NaNs stay
+ * NaNs. On Java 20+ the conversions use {@code Float.floatToFloat16} / {@code Float.float16ToFloat}, which the JIT
+ * compiles to the hardware conversion instructions where available (and vectorizes in the bulk loops); older JDKs use
+ * an equivalent portable implementation.
+ */
+public final class Float16 {
+
+    // Float.floatToFloat16 (float)short and Float.float16ToFloat (short)float, or null before Java 20.
+    private static final MethodHandle FLOAT_TO_FLOAT16 = findFloatMethod("floatToFloat16", short.class, float.class);
+    private static final MethodHandle FLOAT16_TO_FLOAT = findFloatMethod("float16ToFloat", float.class, short.class);
+
+    private Float16() {
+    }
+
+    /**
+     * Returns the binary16 bits nearest to {@code value}.
+     */
+    public static short fromFloat(float value) {
+        if (FLOAT_TO_FLOAT16 != null) {
+            try {
+                return (short) FLOAT_TO_FLOAT16.invokeExact(value);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return fromFloatPortable(value);
+    }
+
+    /**
+     * Returns the float value of the binary16 bits {@code half} (exact; every half is a float).
+     */
+    public static float toFloat(short half) {
+        if (FLOAT16_TO_FLOAT != null) {
+            try {
+                return (float) FLOAT16_TO_FLOAT.invokeExact(half);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return toFloatPortable(half);
+    }
+
+    /**
+     * Converts {@code length} floats of {@code src} starting at {@code srcOffset} into {@code dst} starting at
+     * {@code dstOffset}.
+     */
+    public static void fromFloats(float[] src, int srcOffset, short[] dst, int dstOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = fromFloat(src[srcOffset + i]);
+        }
+    }
+
+    /**
+     * Converts {@code length} halves of {@code src} starting at {@code srcOffset} into {@code dst} starting at
+     * {@code dstOffset}.
+     */
+    public static void toFloats(short[] src, int srcOffset, float[] dst, int dstOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = toFloat(src[srcOffset + i]);
+        }
+    }
+
+    static short fromFloatPortable(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        if (Float.isNaN(value)) {
+            // Keep a quiet NaN with the upper significand bits.
+            return (short) (sign | 0x7E00 | ((bits >>> 13) & 0x03FF));
+        }
+        float abs = Math.abs(value);
+        if (abs >= 65520f) {
+            // 65520 is halfway between the largest half (65504) and 2^16: rounds to infinity.
+            return (short) (sign | 0x7C00);
+        }
+        if (abs <= 0x1.0p-25f) {
+            // At most half of the smallest subnormal half (2^-24): rounds to zero.
+            return (short) sign;
+        }
+
+        int exponent = Math.getExponent(value);
+        int significand = bits & 0x007FFFFF;
+        // Number of float significand bits that are dropped: 13, plus the shift into the subnormal range.
+        int shift = 13;
+        if (exponent < -14) {
+            shift += -14 - exponent;
+            exponent = -15;
+            significand |= 0x00800000; // Implicit leading one becomes explicit.
+        }
+        int half = significand >> shift;
+        int lsb = significand & (1 << shift);
+        int round = significand & (1 << (shift - 1));
+        int sticky = significand & ((1 << (shift - 1)) - 1);
+        if (round != 0 && (lsb | sticky) != 0) {
+            // A carry out of the significand correctly increments the exponent.
+            half++;
+        }
+        return (short) (sign | (((exponent + 15) << 10) + half));
+    }
+
+    static float toFloatPortable(short half) {
+        int sign = (half & 0x8000) << 16;
+        int exponent = (half >>> 10) & 0x1F;
+        int significand = half & 0x03FF;
+        if (exponent == 0) {
+            // Zero or subnormal: significand * 2^-24.
+            float magnitude = significand * 0x1.0p-24f;
+            return sign != 0 ? -magnitude : magnitude;
+        }
+        if (exponent == 0x1F) {
+            // Infinity or NaN (significand bits kept).
+            return Float.intBitsToFloat(sign | 0x7F800000 | (significand << 13));
+        }
+        return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (significand << 13));
+    }
+
+    private static MethodHandle findFloatMethod(String name, Class<?> returnType, Class<?> parameterType) {
+        try {
+            return MethodHandles.publicLookup().findStatic(Float.class, name,
+                    MethodType.methodType(returnType, parameterType));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
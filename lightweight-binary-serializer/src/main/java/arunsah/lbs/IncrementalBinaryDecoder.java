@@ -0,0 +1,701 @@
+package arunsah.lbs;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Non-blocking decoder that is fed the input in chunks of any size (as they arrive from a non-blocking socket) and
+ * decodes it one field at a time, resuming where the previous chunk ended: inside a header, a varint, a string or an
+ * array.
+ * <p>
+ * Each call to {@link #decode(ByteBuffer)} consumes bytes from the chunk until a field is complete, and returns
+ * {@link Status#FIELD} with its header ({@link #currentFieldType()}, {@link #currentFieldId()}) and value (see the
+ * value accessors), or until the chunk is used up, and returns {@link Status#NEED_MORE_DATA}. Nested objects are
+ * reported as {@link Status#OBJECT_START} followed by their fields and {@link Status#OBJECT_END}. Partial values are
+ * kept in the decoder, never in the chunk, so the caller may reuse the chunk as soon as the decoder asks for more:
+ * <pre>
+ * while (decoder.decode(chunk) != Status.NEED_MORE_DATA) { ... }
+ * </pre>
+ * Values are decoded straight from the chunks into their final form (fixed-width arrays with bulk copies of the
+ * elements that are entirely in the chunk); only the bytes of strings and encoded arrays are collected first. As with
+ * {@link BinaryInput#skipField(FieldHeader)}, {@link FieldType#LIST} and {@link FieldType#MAP} fields cannot be
+ * decoded: their elements are not self-describing.
+ * <p>
+ * Lengths read from the input are checked against the end of the enclosing object and against a maximum value size
+ * before anything is allocated. Instances are not thread-safe.
+ */
+public class IncrementalBinaryDecoder {
+
+    public enum Status {
+        NEED_MORE_DATA, // every byte of the chunk was consumed without completing a field
+        FIELD, // a field was decoded
+        OBJECT_START, // the header and length of an OBJECT field were decoded; its fields follow, then OBJECT_END
+        OBJECT_END, // the last field of the current nested object was decoded
+        END_OF_STREAM // the channel passed to read(ReadableByteChannel) ended between two top-level fields
+    }
+
+    // What the next bytes are.
+    private static final int HEADER = 0;
+    private static final int FIELD_ID = 1;
+    private static final int VALUE = 2;
+
+    private final ByteOrder byteOrder;
+    private final int maxValueLength;
+
+    private int state = HEADER;
+
+    // Number of bytes decoded before the current chunk; while decoding, the offset of a position p of the chunk is
+    // chunkBase + p.
+    private long decodedBytes;
+    private long chunkBase;
+
+    // Ends (offsets) of the enclosing objects, innermost last.
+    private long[] objectEnds = new long[8];
+    private int depth;
+
+    // Header of the current field.
+    private FieldType currentFieldType;
+    private int currentFieldId;
+
+    // Partial varint.
+    private long varInt;
+    private int varIntShift;
+
+    // Partial fixed-width value, in the byte order of the decoder.
+    private final byte[] scratch = new byte[Long.BYTES];
+    private final ByteBuffer scratchBuffer;
+    private int scratchCount;
+
+    // Progress within a value: phase 0 reads its length, then the data; index counts array elements, or bytes of
+    // the pending byte array.
+    private int phase;
+    private int length;
+    private int index;
+    private byte[] bytes;
+    private int bytesCount;
+
+    // Value of the current field.
+    private long longValue;
+    private double doubleValue;
+    private Object value;
+
+    // Scratch space of the FLOAT16 array conversions, allocated on first use.
+    private short[] float16Scratch;
+
+    // Buffer of read(ReadableByteChannel), allocated on first use.
+    private ByteBuffer readBuffer;
+
+    /**
+     * Create instance of {@link IncrementalBinaryDecoder}
+     *
+     * @param byteOrder
+     * @param maxValueLength largest number of bytes (or array elements times their size) accepted for one value
+     */
+    public IncrementalBinaryDecoder(ByteOrder byteOrder, int maxValueLength) {
+        this.byteOrder = byteOrder;
+        this.maxValueLength = maxValueLength;
+        this.scratchBuffer = ByteBuffer.wrap(scratch).order(byteOrder);
+    }
+
+    /**
+     * Static helper methods to create instance of {@link IncrementalBinaryDecoder} with {@link ByteOrder#BIG_ENDIAN}
+     * and values of at most {@link Constant#DEFAULT_MAX_VALUE_LENGTH} bytes
+     *
+     * @return
+     */
+    public static IncrementalBinaryDecoder bigEndianDecoder() {
+        return new IncrementalBinaryDecoder(ByteOrder.BIG_ENDIAN, Constant.DEFAULT_MAX_VALUE_LENGTH);
+    }
+
+    /**
+     * Static helper methods to create instance of {@link IncrementalBinaryDecoder} with
+     * {@link ByteOrder#LITTLE_ENDIAN} and values of at most {@link Constant#DEFAULT_MAX_VALUE_LENGTH} bytes
+     *
+     * @return
+     */
+    public static IncrementalBinaryDecoder littleEndianDecoder() {
+        return new IncrementalBinaryDecoder(ByteOrder.LITTLE_ENDIAN, Constant.DEFAULT_MAX_VALUE_LENGTH);
+    }
+
+    /**
+     * Decodes from the position of {@code chunk} until the next field (or object boundary) is complete or the chunk
+     * is used up; the position of the chunk is advanced past the bytes consumed.
+     *
+     * @param chunk
+     * @return {@link Status#NEED_MORE_DATA} if the chunk has no bytes left, otherwise what was decoded
+     * @throws IllegalArgumentException if the input is malformed or a value exceeds the maximum length
+     * @throws IllegalStateException    for LIST and MAP fields
+     */
+    public Status decode(ByteBuffer chunk) {
+        ByteOrder chunkOrder = chunk.order();
+        chunk.order(byteOrder);
+        int start = chunk.position();
+        chunkBase = decodedBytes - start;
+        try {
+            return step(chunk);
+        } finally {
+            decodedBytes += chunk.position() - start;
+            chunk.order(chunkOrder);
+        }
+    }
+
+    /**
+     * Reads from a (non-blocking) channel into a buffer of {@link Constant#DEFAULT_STREAM_BUFFER_SIZE} bytes and
+     * decodes, until a field is complete or the channel has no data available.
+     *
+     * @param channel
+     * @return {@link Status#NEED_MORE_DATA} if the channel has no data available (wait for it to be readable),
+     * {@link Status#END_OF_STREAM} if it ended after a top-level field, otherwise what was decoded
+     * @throws UncheckedIOException on I/O errors, and with an {@link EOFException} if the channel ended inside a field
+     *                              or a nested object
+     */
+    public Status read(ReadableByteChannel channel) {
+        if (readBuffer == null) {
+            readBuffer = ByteBuffer.allocateDirect(Constant.DEFAULT_STREAM_BUFFER_SIZE);
+            readBuffer.limit(0);
+        }
+        while (true) {
+            Status status = decode(readBuffer);
+            if (status != Status.NEED_MORE_DATA) {
+                return status;
+            }
+            readBuffer.clear();
+            int read;
+            try {
+                read = channel.read(readBuffer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                readBuffer.flip();
+            }
+            if (read == 0) {
+                return Status.NEED_MORE_DATA;
+            }
+            if (read < 0) {
+                if (state != HEADER || depth > 0) {
+                    throw new UncheckedIOException(new EOFException("Stream ended inside a field"));
+                }
+                return Status.END_OF_STREAM;
+            }
+        }
+    }
+
+    /**
+     * @return the field type of the field last decoded.
+     */
+    public FieldType currentFieldType() {
+        return currentFieldType;
+    }
+
+    /**
+     * @return the field id of the field last decoded.
+     */
+    public int currentFieldId() {
+        return currentFieldId;
+    }
+
+    /**
+     * Returns the value of a BOOL_TRUE or BOOL_FALSE field.
+     */
+    public boolean booleanValue() {
+        return currentFieldType == FieldType.BOOL_TRUE;
+    }
+
+    /**
+     * Returns the value of an INT8, INT16, INT32, VAR_INT32 or SVAR_INT field, or the byte length of an OBJECT field.
+     */
+    public int intValue() {
+        return (int) longValue;
+    }
+
+    /**
+     * Returns the value of an integer field (INT8 to INT64, VAR_INT32, VAR_INT64, SVAR_INT).
+     */
+    public long longValue() {
+        return longValue;
+    }
+
+    /**
+     * Returns the value of a FLOAT16 or FLOAT32 field.
+     */
+    public float floatValue() {
+        return (float) doubleValue;
+    }
+
+    /**
+     * Returns the value of a FLOAT16, FLOAT32 or FLOAT64 field.
+     */
+    public double doubleValue() {
+        return doubleValue;
+    }
+
+    /**
+     * Returns the value of a STRING_UTF8 field.
+     */
+    public String stringValue() {
+        return (String) value;
+    }
+
+    /**
+     * Returns the value of an array field: a {@code byte[]}, {@code short[]}, {@code int[]}, {@code long[]},
+     * {@code float[]} (FLOAT16 and FLOAT32), {@code double[]} or {@code String[]} for the fixed-width, varint and
+     * string arrays, with SVAR_INT_ARRAY values as {@code long[]} (the wire format does not record their width);
+     * for ENCODED_ARRAY fields, the decoded {@code int[]}, {@code long[]} or {@code String[]}, depending on the
+     * {@link ArrayEncoding}.
+     */
+    public Object arrayValue() {
+        return value;
+    }
+
+    /**
+     * Returns the number of nested objects the decoder is in.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns the total number of bytes consumed.
+     */
+    public long getBytesDecoded() {
+        return decodedBytes;
+    }
+
+    /**
+     * Discards any partial field and nesting, for example to reuse the decoder for another connection.
+     */
+    public void reset() {
+        state = HEADER;
+        depth = 0;
+        decodedBytes = 0;
+        varIntShift = 0;
+        scratchCount = 0;
+        value = null;
+        bytes = null;
+        if (readBuffer != null) {
+            readBuffer.limit(0);
+        }
+    }
+
+    private Status step(ByteBuffer in) {
+        if (state == HEADER) {
+            if (depth > 0) {
+                long end = objectEnds[depth - 1];
+                long offset = chunkBase + in.position();
+                if (offset == end) {
+                    depth--;
+                    return Status.OBJECT_END;
+                }
+                if (offset > end) {
+                    throw new IllegalArgumentException("Field runs past the end of its object");
+                }
+            }
+            if (!in.hasRemaining()) {
+                return Status.NEED_MORE_DATA;
+            }
+            byte header = in.get();
+            currentFieldType = FieldType.getByFieldTypeValue(header);
+            int fieldIdNibble = header & 0x0F;
+            if (currentFieldType.isExtensionType()) {
+                currentFieldId = 0;
+                state = FIELD_ID;
+            } else if (fieldIdNibble < Constant.FIELD_ID_EXTENSION) {
+                currentFieldId = fieldIdNibble;
+                startValue();
+            } else {
+                currentFieldId = Constant.FIELD_ID_EXTENSION;
+                state = FIELD_ID;
+            }
+        }
+        if (state == FIELD_ID) {
+            if (!readVarInt(in)) {
+                return Status.NEED_MORE_DATA;
+            }
+            currentFieldId += (int) varInt;
+            startValue();
+        }
+        if (!readValue(in)) {
+            return Status.NEED_MORE_DATA;
+        }
+        state = HEADER;
+        return currentFieldType == FieldType.OBJECT ? Status.OBJECT_START : Status.FIELD;
+    }
+
+    private void startValue() {
+        state = VALUE;
+        phase = 0;
+        index = 0;
+        value = null;
+        bytes = null;
+    }
+
+    /**
+     * Continues decoding the value of the current field; returns true once it is complete.
+     */
+    private boolean readValue(ByteBuffer in) {
+        switch (currentFieldType) {
+            case BOOL_TRUE:
+            case BOOL_FALSE:
+                // The value is the header itself.
+                return true;
+            case INT8:
+                if (!readFixed(in, Byte.BYTES)) {
+                    return false;
+                }
+                longValue = scratchBuffer.get(0);
+                return true;
+            case INT16:
+                if (!readFixed(in, Short.BYTES)) {
+                    return false;
+                }
+                longValue = scratchBuffer.getShort(0);
+                return true;
+            case INT32:
+                if (!readFixed(in, Integer.BYTES)) {
+                    return false;
+                }
+                longValue = scratchBuffer.getInt(0);
+                return true;
+            case INT64:
+                if (!readFixed(in, Long.BYTES)) {
+                    return false;
+                }
+                longValue = scratchBuffer.getLong(0);
+                return true;
+            case FLOAT16:
+                if (!readFixed(in, BinarySize.FLOAT16)) {
+                    return false;
+                }
+                doubleValue = Float16.toFloat(scratchBuffer.getShort(0));
+                return true;
+            case FLOAT32:
+                if (!readFixed(in, Float.BYTES)) {
+                    return false;
+                }
+                doubleValue = scratchBuffer.getFloat(0);
+                return true;
+            case FLOAT64:
+                if (!readFixed(in, Double.BYTES)) {
+                    return false;
+                }
+                doubleValue = scratchBuffer.getDouble(0);
+                return true;
+            case VAR_INT32:
+            case VAR_INT64:
+                if (!readVarInt(in)) {
+                    return false;
+                }
+                longValue = varInt;
+                return true;
+            case SVAR_INT:
+                if (!readVarInt(in)) {
+                    return false;
+                }
+                longValue = VarInts.unZigZag64(varInt);
+                return true;
+            case STRING_UTF8:
+            case INT8_ARRAY:
+                if (phase == 0) {
+                    if (!readVarInt(in)) {
+                        return false;
+                    }
+                    startBytes(0, checkLength(in, varInt, Byte.BYTES));
+                    phase = 1;
+                }
+                if (!readBytes(in)) {
+                    return false;
+                }
+                value = currentFieldType == FieldType.INT8_ARRAY ? bytes
+                        : new String(bytes, 0, bytesCount, StandardCharsets.UTF_8);
+                return true;
+            case ENCODED_ARRAY:
+                return readEncodedArray(in);
+            case OBJECT:
+                if (!readVarInt(in)) {
+                    return false;
+                }
+                longValue = checkLength(in, varInt, Byte.BYTES);
+                pushObject(chunkBase + in.position() + longValue);
+                return true;
+            case INT16_ARRAY:
+                return readFixedArray(in, Short.BYTES);
+            case INT32_ARRAY:
+            case FLOAT32_ARRAY:
+                return readFixedArray(in, Integer.BYTES);
+            case INT64_ARRAY:
+            case FLOAT64_ARRAY:
+                return readFixedArray(in, Long.BYTES);
+            case FLOAT16_ARRAY:
+                return readFixedArray(in, BinarySize.FLOAT16);
+            case VAR_INT32_ARRAY:
+            case VAR_INT64_ARRAY:
+            case SVAR_INT_ARRAY:
+                return readVarIntArray(in);
+            case STRING_UTF8_ARRAY:
+                return readStringArray(in);
+            default:
+                // LIST and MAP elements carry no headers, so their extent is only known to the element readers.
+                throw new IllegalStateException("Cannot decode field of type " + currentFieldType);
+        }
+    }
+
+    private boolean readFixedArray(ByteBuffer in, int elementSize) {
+        if (phase == 0) {
+            if (!readVarInt(in)) {
+                return false;
+            }
+            length = checkLength(in, varInt, elementSize);
+            value = newArray(currentFieldType, length);
+            scratchCount = 0;
+            phase = 1;
+        }
+        while (index < length) {
+            if (scratchCount == 0 && in.remaining() >= elementSize) {
+                // Bulk copy of the elements entirely in the chunk.
+                int count = Math.min(length - index, in.remaining() / elementSize);
+                count = getElements(in, count);
+                in.position(in.position() + count * elementSize);
+                index += count;
+            } else {
+                // An element split across chunks.
+                if (!readFixed(in, elementSize)) {
+                    return false;
+                }
+                getElements(scratchBuffer, 1);
+                index++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies up to {@code count} elements of the current fixed-width array from the position of {@code source} (which
+     * is not moved) to the array at {@code index}; returns the number copied.
+     */
+    private int getElements(ByteBuffer source, int count) {
+        switch (currentFieldType) {
+            case INT16_ARRAY:
+                source.asShortBuffer().get((short[]) value, index, count);
+                return count;
+            case INT32_ARRAY:
+                source.asIntBuffer().get((int[]) value, index, count);
+                return count;
+            case INT64_ARRAY:
+                source.asLongBuffer().get((long[]) value, index, count);
+                return count;
+            case FLOAT32_ARRAY:
+                source.asFloatBuffer().get((float[]) value, index, count);
+                return count;
+            case FLOAT64_ARRAY:
+                source.asDoubleBuffer().get((double[]) value, index, count);
+                return count;
+            default: {
+                short[] halves = float16Scratch();
+                count = Math.min(count, halves.length);
+                source.asShortBuffer().get(halves, 0, count);
+                Float16.toFloats(halves, 0, (float[]) value, index, count);
+                return count;
+            }
+        }
+    }
+
+    private boolean readVarIntArray(ByteBuffer in) {
+        if (phase == 0) {
+            if (!readVarInt(in)) {
+                return false;
+            }
+            // Every element takes at least one byte.
+            length = checkLength(in, varInt, Byte.BYTES);
+            value = currentFieldType == FieldType.VAR_INT32_ARRAY ? new int[length] : new long[length];
+            phase = 1;
+        }
+        for (; index < length; index++) {
+            if (!readVarInt(in)) {
+                return false;
+            }
+            if (currentFieldType == FieldType.VAR_INT32_ARRAY) {
+                ((int[]) value)[index] = (int) varInt;
+            } else if (currentFieldType == FieldType.VAR_INT64_ARRAY) {
+                ((long[]) value)[index] = varInt;
+            } else {
+                ((long[]) value)[index] = VarInts.unZigZag64(varInt);
+            }
+        }
+        return true;
+    }
+
+    private boolean readStringArray(ByteBuffer in) {
+        if (phase == 0) {
+            if (!readVarInt(in)) {
+                return false;
+            }
+            // Every element takes at least one byte.
+            length = checkLength(in, varInt, Byte.BYTES);
+            value = new String[length];
+            phase = 1;
+        }
+        while (index < length) {
+            if (phase == 1) {
+                if (!readVarInt(in)) {
+                    return false;
+                }
+                startBytes(0, checkLength(in, varInt, Byte.BYTES));
+                phase = 2;
+            }
+            if (!readBytes(in)) {
+                return false;
+            }
+            ((String[]) value)[index++] = new String(bytes, 0, bytesCount, StandardCharsets.UTF_8);
+            phase = 1;
+        }
+        return true;
+    }
+
+    /**
+     * Collects an {@link FieldType#ENCODED_ARRAY} value, with its byte length in front, then decodes it with a
+     * {@link BinaryInputImpl}.
+     */
+    private boolean readEncodedArray(ByteBuffer in) {
+        if (phase == 0) {
+            if (!readVarInt(in)) {
+                return false;
+            }
+            int byteLength = checkLength(in, varInt, Byte.BYTES);
+            if (byteLength < 1) {
+                throw new IllegalArgumentException("Empty encoded array");
+            }
+            length = byteLength;
+            int prefix = BinarySize.varInt32(byteLength);
+            startBytes(prefix, prefix + byteLength);
+            for (int i = 0, v = byteLength; i < prefix; i++, v >>>= 7) {
+                bytes[i] = (byte) (i < prefix - 1 ? (v & 0x7F) | 0x80 : v);
+            }
+            phase = 1;
+        }
+        if (!readBytes(in)) {
+            return false;
+        }
+        int prefix = bytes.length - length;
+        BinaryInput input = new BinaryInputImpl(ByteBuffer.wrap(bytes), byteOrder);
+        switch (ArrayEncoding.getByValue(bytes[prefix])) {
+            case DELTA_INT32:
+            case DELTA_BLOCKS_INT32:
+                value = input.readSortedInt32Array();
+                break;
+            case DELTA_INT64:
+                value = input.readSortedInt64Array();
+                break;
+            case PACKED_INT32:
+                value = input.readPackedInt32Array();
+                break;
+            default:
+                value = input.readDictionaryStringUTF8Array();
+                break;
+        }
+        return true;
+    }
+
+    /**
+     * Continues a varint; returns true once it is complete, with its value in {@link #varInt}.
+     */
+    private boolean readVarInt(ByteBuffer in) {
+        if (varIntShift == 0) {
+            varInt = 0;
+        }
+        while (in.hasRemaining()) {
+            byte b = in.get();
+            varInt |= (long) (b & 0x7F) << varIntShift;
+            if (b >= 0) {
+                varIntShift = 0;
+                return true;
+            }
+            varIntShift += 7;
+            if (varIntShift > 63) {
+                throw new IllegalArgumentException("7-bit encoded long too large.");
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Continues a fixed-width value of {@code size} bytes; returns true once it is complete, with its bytes at the
+     * start of {@link #scratchBuffer}.
+     */
+    private boolean readFixed(ByteBuffer in, int size) {
+        int count = Math.min(size - scratchCount, in.remaining());
+        in.get(scratch, scratchCount, count);
+        scratchCount += count;
+        if (scratchCount < size) {
+            return false;
+        }
+        scratchCount = 0;
+        return true;
+    }
+
+    private void startBytes(int offset, int size) {
+        bytes = new byte[size];
+        bytesCount = offset;
+    }
+
+    /**
+     * Continues filling {@link #bytes}; returns true once it is full.
+     */
+    private boolean readBytes(ByteBuffer in) {
+        int count = Math.min(bytes.length - bytesCount, in.remaining());
+        in.get(bytes, bytesCount, count);
+        bytesCount += count;
+        return bytesCount == bytes.length;
+    }
+
+    /**
+     * Checks a count of elements of {@code elementSize} bytes read from the input against the maximum value length
+     * and the end of the enclosing object.
+     */
+    private int checkLength(ByteBuffer in, long count, int elementSize) {
+        long size = count * elementSize;
+        if (count > Integer.MAX_VALUE || size > maxValueLength) {
+            throw new IllegalArgumentException("Value of " + count + " x " + elementSize + " bytes exceeds the maximum of "
+                    + maxValueLength + " bytes");
+        }
+        if (depth > 0 && size > objectEnds[depth - 1] - (chunkBase + in.position())) {
+            throw new IllegalArgumentException("Value of " + size + " bytes runs past the end of its object");
+        }
+        return (int) count;
+    }
+
+    private void pushObject(long end) {
+        if (depth == objectEnds.length) {
+            objectEnds = Arrays.copyOf(objectEnds, depth * 2);
+        }
+        objectEnds[depth++] = end;
+    }
+
+    private static Object newArray(FieldType fieldType, int length) {
+        switch (fieldType) {
+            case INT16_ARRAY:
+                return new short[length];
+            case INT32_ARRAY:
+                return new int[length];
+            case INT64_ARRAY:
+                return new long[length];
+            case FLOAT64_ARRAY:
+                return new double[length];
+            default:
+                // FLOAT16_ARRAY and FLOAT32_ARRAY
+                return new float[length];
+        }
+    }
+
+    private short[] float16Scratch() {
+        if (float16Scratch == null) {
+            float16Scratch = new short[Constant.FLOAT16_CHUNK_SIZE];
+        }
+        return float16Scratch;
+    }
+}
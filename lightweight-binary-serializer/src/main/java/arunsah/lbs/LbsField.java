@@ -0,0 +1,44 @@
+package arunsah.lbs;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field (or record component) to be serialized under the given field id.
+ * <p>
+ * The annotation processor of the lightweight-binary-serializer-processor module generates a {@link BinaryCodec}
+ * named {@code <SimpleName>LbsCodec} (nested classes: {@code <Outer>_<Inner>LbsCodec}) in the same package for every
+ * class or record with annotated fields. The generated code reads fields directly when they are not private, through
+ * {@code getX()/isX()/setX()} otherwise, and through the accessors and canonical constructor for records.
+ * <p>
+ * Example:
+ * <pre>
+ * public class Person {
+ *     &#64;LbsField(id = 1) int id;
+ *     &#64;LbsField(id = 2) String name;
+ *     &#64;LbsField(id = 415, type = FieldType.VAR_INT64) long dob;
+ * }
+ * </pre>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface LbsField {
+
+    /**
+     * The field id, at least 1: id 0 is reserved for the field index trailer
+     * ({@link Constant#FIELD_INDEX_FIELD_ID}).
+     */
+    int id();
+
+    /**
+     * The field type. {@link FieldType#UNUSED} (the default) infers it from the Java type: INT32 for {@code int},
+     * INT64 for {@code long}, FLOAT32 for {@code float}, INT32_ARRAY for {@code int[]} and so on. Set it explicitly to
+     * pick an alternative encoding, for example VAR_INT32 for an {@code int} or SVAR_INT for a {@code long} that is
+     * often negative.
+     */
+    FieldType type() default FieldType.UNUSED;
+}
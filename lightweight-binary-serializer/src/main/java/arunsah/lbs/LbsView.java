@@ -0,0 +1,414 @@
+package arunsah.lbs;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Read-only flyweight over the fields of a serialized object, for readers that only look at a few fields.
+ * <p>
+ * Nothing is decoded up front. The first field access scans the headers once (skipping the values with
+ * {@link BinaryInput#skipField()}) and records the type and offset of every field; afterwards primitives are read
+ * directly from the buffer with absolute gets. Strings and arrays are returned as {@link ByteBuffer} slices and nested
+ * objects as views, so nothing is copied until the caller asks for it ({@link #getString(int)},
+ * {@link #valueInput(int)}).
+ * <p>
+ * If a field id occurs more than once, the last occurrence is used (as a decoding loop would). {@link FieldType#LIST}
+ * and {@link FieldType#MAP} values cannot be skipped, so the scan stops at the first of them: that field is readable
+ * with {@link #valueInput(int)}, the fields after it are not visible (write them before lists and maps).
+ * <p>
+ * A view does not modify the position or limit of the buffer it was created from, but the buffer contents must not
+ * change while the view is used. Views are not thread-safe.
+ */
+public class LbsView {
+
+    private static final int INITIAL_INDEX_CAPACITY = 8;
+
+    // Fields of the object, from position 0 to limit.
+    private final ByteBuffer buffer;
+
+    // Lazy field index: for field i, its id, type, the offsets of its value (after the header) and of its end and,
+    // for length prefixed types, the length prefix (byte length or element count) and the offset of the data that
+    // follows it.
+    private int fieldCount = -1;
+    private int[] ids;
+    private FieldType[] types;
+    private int[] valueOffsets;
+    private int[] valueEnds;
+    private int[] lengths;
+    private int[] dataOffsets;
+
+    /**
+     * Create instance of {@link LbsView} over the fields between the position and the limit of {@code buffer}.
+     *
+     * @param buffer
+     * @param byteOrder
+     */
+    public LbsView(ByteBuffer buffer, ByteOrder byteOrder) {
+        this.buffer = buffer.slice().order(byteOrder);
+    }
+
+    /**
+     * Static helper methods to create instance of {@link LbsView} with {@link ByteOrder#BIG_ENDIAN}
+     *
+     * @param buffer
+     * @return
+     */
+    public static LbsView bigEndianView(ByteBuffer buffer) {
+        return new LbsView(buffer, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Static helper methods to create instance of {@link LbsView} with {@link ByteOrder#LITTLE_ENDIAN}
+     *
+     * @param buffer
+     * @return
+     */
+    public static LbsView littleEndianView(ByteBuffer buffer) {
+        return new LbsView(buffer, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns the number of fields of the object (duplicated ids counted once per occurrence).
+     */
+    public int getFieldCount() {
+        ensureIndexed();
+        return fieldCount;
+    }
+
+    public boolean hasField(int fieldId) {
+        return find(fieldId) >= 0;
+    }
+
+    /**
+     * Returns the type of the field, or null if the object has no such field.
+     */
+    public FieldType getFieldType(int fieldId) {
+        int index = find(fieldId);
+        return index >= 0 ? types[index] : null;
+    }
+
+    public boolean getBoolean(int fieldId) {
+        int index = find(fieldId);
+        if (index < 0 || !types[index].isBooleanType()) {
+            throw missing(fieldId, "a boolean type");
+        }
+        return types[index] == FieldType.BOOL_TRUE;
+    }
+
+    public byte getInt8(int fieldId) {
+        return buffer.get(valueOffset(fieldId, FieldType.INT8));
+    }
+
+    public short getInt16(int fieldId) {
+        return buffer.getShort(valueOffset(fieldId, FieldType.INT16));
+    }
+
+    public int getInt32(int fieldId) {
+        return buffer.getInt(valueOffset(fieldId, FieldType.INT32));
+    }
+
+    public long getInt64(int fieldId) {
+        return buffer.getLong(valueOffset(fieldId, FieldType.INT64));
+    }
+
+    public float getFloat16(int fieldId) {
+        return Float16.toFloat(buffer.getShort(valueOffset(fieldId, FieldType.FLOAT16)));
+    }
+
+    public float getFloat32(int fieldId) {
+        return buffer.getFloat(valueOffset(fieldId, FieldType.FLOAT32));
+    }
+
+    public double getFloat64(int fieldId) {
+        return buffer.getDouble(valueOffset(fieldId, FieldType.FLOAT64));
+    }
+
+    public int getVarInt32(int fieldId) {
+        return (int) varInt(valueOffset(fieldId, FieldType.VAR_INT32));
+    }
+
+    public long getVarInt64(int fieldId) {
+        return varInt(valueOffset(fieldId, FieldType.VAR_INT64));
+    }
+
+    public int getSVarInt32(int fieldId) {
+        return (int) getSVarInt64(fieldId);
+    }
+
+    public long getSVarInt64(int fieldId) {
+        return VarInts.unZigZag64(varInt(valueOffset(fieldId, FieldType.SVAR_INT)));
+    }
+
+    /**
+     * Returns the UTF-8 bytes of a string field as a slice of the underlying buffer (no copy).
+     */
+    public ByteBuffer getStringBytes(int fieldId) {
+        return data(fieldId, FieldType.STRING_UTF8, 1);
+    }
+
+    /**
+     * Decodes a string field; this is the only string accessor that copies.
+     */
+    public String getString(int fieldId) {
+        int index = index(fieldId, FieldType.STRING_UTF8);
+        int length = lengths[index];
+        int offset = dataOffsets[index];
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] data = new byte[length];
+        ByteBuffer source = buffer.duplicate();
+        source.position(offset);
+        source.get(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares a string field with {@code value} without decoding the field.
+     */
+    public boolean stringEquals(int fieldId, String value) {
+        return getStringBytes(fieldId).equals(ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Returns the number of elements of an array field (bytes for {@link FieldType#INT8_ARRAY}).
+     */
+    public int getArrayLength(int fieldId) {
+        int index = find(fieldId);
+        if (index < 0 || elementSize(types[index]) == 0) {
+            throw missing(fieldId, "an array type");
+        }
+        return lengths[index];
+    }
+
+    /**
+     * Returns the elements of a fixed-width array field as a slice of the underlying buffer (no copy), in the byte
+     * order of this view.
+     */
+    public ByteBuffer getArrayBytes(int fieldId) {
+        int index = find(fieldId);
+        if (index < 0 || elementSize(types[index]) <= 0) {
+            throw missing(fieldId, "a fixed-width array type");
+        }
+        return slice(dataOffsets[index], lengths[index] * elementSize(types[index]));
+    }
+
+    public byte getInt8Element(int fieldId, int i) {
+        return buffer.get(elementOffset(fieldId, FieldType.INT8_ARRAY, i));
+    }
+
+    public short getInt16Element(int fieldId, int i) {
+        return buffer.getShort(elementOffset(fieldId, FieldType.INT16_ARRAY, i));
+    }
+
+    public int getInt32Element(int fieldId, int i) {
+        return buffer.getInt(elementOffset(fieldId, FieldType.INT32_ARRAY, i));
+    }
+
+    public long getInt64Element(int fieldId, int i) {
+        return buffer.getLong(elementOffset(fieldId, FieldType.INT64_ARRAY, i));
+    }
+
+    public float getFloat16Element(int fieldId, int i) {
+        return Float16.toFloat(buffer.getShort(elementOffset(fieldId, FieldType.FLOAT16_ARRAY, i)));
+    }
+
+    public float getFloat32Element(int fieldId, int i) {
+        return buffer.getFloat(elementOffset(fieldId, FieldType.FLOAT32_ARRAY, i));
+    }
+
+    public double getFloat64Element(int fieldId, int i) {
+        return buffer.getDouble(elementOffset(fieldId, FieldType.FLOAT64_ARRAY, i));
+    }
+
+    /**
+     * Returns the encoding of an {@link FieldType#ENCODED_ARRAY} field.
+     */
+    public ArrayEncoding getArrayEncoding(int fieldId) {
+        int index = index(fieldId, FieldType.ENCODED_ARRAY);
+        return ArrayEncoding.getByValue(buffer.get(dataOffsets[index]));
+    }
+
+    /**
+     * Returns a cursor over a sorted int array field (see {@link BinaryOutput#writeSortedInt32Array(int[])}) that
+     * decodes it in place.
+     */
+    public SortedInt32Cursor getSortedInt32Cursor(int fieldId) {
+        return new SortedInt32Cursor(data(fieldId, FieldType.ENCODED_ARRAY, 1));
+    }
+
+    /**
+     * Returns a view over a nested {@link FieldType#OBJECT} field (no copy).
+     */
+    public LbsView getObject(int fieldId) {
+        return new LbsView(data(fieldId, FieldType.OBJECT, 1), buffer.order());
+    }
+
+    /**
+     * Returns an input positioned at the value of a field (after its header) and limited to it, to decode values that
+     * are not randomly accessible (varint arrays, string arrays, lists, maps) with the usual {@link BinaryInput}
+     * methods.
+     */
+    public BinaryInput valueInput(int fieldId) {
+        int index = find(fieldId);
+        if (index < 0) {
+            throw new IllegalArgumentException("No field " + fieldId);
+        }
+        return new BinaryInputImpl(slice(valueOffsets[index], valueEnds[index] - valueOffsets[index]), buffer.order());
+    }
+
+    /**
+     * Returns the fields of the object as a slice of the underlying buffer (no copy).
+     */
+    public ByteBuffer getBuffer() {
+        return buffer.duplicate().order(buffer.order());
+    }
+
+    private int valueOffset(int fieldId, FieldType fieldType) {
+        return valueOffsets[index(fieldId, fieldType)];
+    }
+
+    private ByteBuffer data(int fieldId, FieldType fieldType, int elementSize) {
+        int index = index(fieldId, fieldType);
+        return slice(dataOffsets[index], lengths[index] * elementSize);
+    }
+
+    private int elementOffset(int fieldId, FieldType fieldType, int i) {
+        int index = index(fieldId, fieldType);
+        if (i < 0 || i >= lengths[index]) {
+            throw new IndexOutOfBoundsException("Index " + i + " out of bounds for length " + lengths[index]);
+        }
+        return dataOffsets[index] + i * elementSize(fieldType);
+    }
+
+    private int index(int fieldId, FieldType fieldType) {
+        int index = find(fieldId);
+        if (index < 0 || types[index] != fieldType) {
+            throw missing(fieldId, fieldType.name());
+        }
+        return index;
+    }
+
+    private IllegalArgumentException missing(int fieldId, String expectedType) {
+        FieldType actual = getFieldType(fieldId);
+        return new IllegalArgumentException(actual == null
+                ? "No field " + fieldId
+                : "Field " + fieldId + " is of type " + actual + ", not " + expectedType);
+    }
+
+    private int find(int fieldId) {
+        ensureIndexed();
+        // From the end, so that the last occurrence of a duplicated id wins.
+        for (int i = fieldCount - 1; i >= 0; i--) {
+            if (ids[i] == fieldId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void ensureIndexed() {
+        if (fieldCount >= 0) {
+            return;
+        }
+        ids = new int[INITIAL_INDEX_CAPACITY];
+        types = new FieldType[INITIAL_INDEX_CAPACITY];
+        valueOffsets = new int[INITIAL_INDEX_CAPACITY];
+        valueEnds = new int[INITIAL_INDEX_CAPACITY];
+        lengths = new int[INITIAL_INDEX_CAPACITY];
+        dataOffsets = new int[INITIAL_INDEX_CAPACITY];
+
+        ByteBuffer scan = buffer.duplicate().order(buffer.order());
+        BinaryInput in = new BinaryInputImpl(scan, buffer.order());
+        int count = 0;
+        while (in.hasRemaining()) {
+            int fieldId = in.nextField();
+            FieldType fieldType = in.currentFieldType();
+            if (count == ids.length) {
+                grow();
+            }
+            int valueOffset = scan.position();
+            ids[count] = fieldId;
+            types[count] = fieldType;
+            valueOffsets[count] = valueOffset;
+            if (isLengthPrefixed(fieldType)) {
+                lengths[count] = in.readVarInt32();
+                dataOffsets[count] = scan.position();
+                scan.position(valueOffset);
+            }
+            count++;
+            if (fieldType == FieldType.LIST || fieldType == FieldType.MAP) {
+                // Not skippable: the value extends to the end as far as this view is concerned.
+                valueEnds[count - 1] = scan.limit();
+                break;
+            }
+            in.skipField();
+            valueEnds[count - 1] = scan.position();
+        }
+        fieldCount = count;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        types = Arrays.copyOf(types, capacity);
+        valueOffsets = Arrays.copyOf(valueOffsets, capacity);
+        valueEnds = Arrays.copyOf(valueEnds, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        dataOffsets = Arrays.copyOf(dataOffsets, capacity);
+    }
+
+    private ByteBuffer slice(int offset, int length) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(offset + length).position(offset);
+        return slice.slice().order(buffer.order());
+    }
+
+    private long varInt(int offset) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(offset++);
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static boolean isLengthPrefixed(FieldType fieldType) {
+        return fieldType == FieldType.STRING_UTF8 || fieldType == FieldType.OBJECT
+                || fieldType == FieldType.VAR_INT32_ARRAY || fieldType == FieldType.VAR_INT64_ARRAY
+                || fieldType == FieldType.SVAR_INT_ARRAY || fieldType == FieldType.ENCODED_ARRAY
+                || fieldType == FieldType.STRING_UTF8_ARRAY || elementSize(fieldType) > 0;
+    }
+
+    /**
+     * Size of the elements of a fixed-width array type, -1 for other array types, 0 for non-array types.
+     */
+    private static int elementSize(FieldType fieldType) {
+        switch (fieldType) {
+            case INT8_ARRAY:
+                return Byte.BYTES;
+            case INT16_ARRAY:
+                return Short.BYTES;
+            case INT32_ARRAY:
+            case FLOAT32_ARRAY:
+                return Integer.BYTES;
+            case INT64_ARRAY:
+            case FLOAT64_ARRAY:
+                return Long.BYTES;
+            case FLOAT16_ARRAY:
+                return BinarySize.FLOAT16;
+            case VAR_INT32_ARRAY:
+            case VAR_INT64_ARRAY:
+            case SVAR_INT_ARRAY:
+            case STRING_UTF8_ARRAY:
+                return -1;
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package arunsah.lbs;
+
+/**
+ * Fast LZ77 block compressor in pure Java, with the sequence layout of the LZ4 block format.
+ * <p>
+ * A compressed block is a series of sequences, each a token byte (literal count in the high nibble, match length
+ * minus 4 in the low nibble, 15 meaning more length bytes follow), the literals, and a match as a two byte
+ * little-endian offset back into the decompressed data. The last sequence has literals only. Matches are found
+ * greedily through a hash table of 4 byte sequences; runs of input without matches are skipped over faster and
+ * faster, so incompressible data costs little time.
+ * <p>
+ * Decompression checks every length and offset against the bounds of both arrays, so malformed input throws
+ * {@link IllegalArgumentException} instead of reading or writing outside them.
+ */
+final class LzBlockCodec {
+
+    // Number of entries of the hash table of a compressor (4 KB entries, 16 KB).
+    static final int HASH_TABLE_SIZE = 1 << 12;
+
+    private static final int HASH_SHIFT = 32 - 12;
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 0xFFFF;
+    // The last 5 bytes are always literals, and no match starts in the last 12 bytes.
+    private static final int LAST_LITERALS = 5;
+    private static final int MATCH_FIND_LIMIT = 12;
+    // Distance since the last match (in bytes) that doubles the search step.
+    private static final int SKIP_SHIFT = 6;
+
+    private LzBlockCodec() {
+    }
+
+    /**
+     * Largest compressed size of {@code length} bytes (incompressible input grows by one byte per 255).
+     */
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses {@code srcLength} bytes of {@code src} into {@code dst}, which must have room for
+     * {@link #maxCompressedLength(int)} bytes from {@code dstOffset}.
+     *
+     * @param table hash table of {@link #HASH_TABLE_SIZE} entries, reused between calls; its content does not need to
+     *              be cleared, as every candidate match is checked against the input
+     * @return the compressed size
+     */
+    static int compress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset, int[] table) {
+        int srcEnd = srcOffset + srcLength;
+        int matchLimit = srcEnd - LAST_LITERALS;
+        int findLimit = srcEnd - MATCH_FIND_LIMIT;
+        int anchor = srcOffset;
+        int op = dstOffset;
+
+        if (srcLength > MATCH_FIND_LIMIT) {
+            table[hash(src, srcOffset)] = srcOffset;
+            int ip = srcOffset + 1;
+            while (ip < findLimit) {
+                int h = hash(src, ip);
+                int ref = table[h];
+                table[h] = ip;
+                if (ref < srcOffset || ref >= ip || ip - ref > MAX_OFFSET || readInt(src, ref) != readInt(src, ip)) {
+                    ip += 1 + ((ip - anchor) >>> SKIP_SHIFT);
+                    continue;
+                }
+
+                // Extend the match backwards over pending literals, then forwards.
+                while (ip > anchor && ref > srcOffset && src[ip - 1] == src[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+                int end = ip + MIN_MATCH;
+                int refEnd = ref + MIN_MATCH;
+                while (end < matchLimit && src[end] == src[refEnd]) {
+                    end++;
+                    refEnd++;
+                }
+
+                op = writeSequence(src, anchor, ip - anchor, dst, op, ip - ref, end - ip);
+                anchor = end;
+                ip = end;
+                if (ip < findLimit) {
+                    table[hash(src, ip - 2)] = ip - 2;
+                }
+            }
+        }
+
+        // Last literals.
+        int literals = srcEnd - anchor;
+        op = writeLength(dst, op, literals, 0);
+        System.arraycopy(src, anchor, dst, op, literals);
+        return op + literals - dstOffset;
+    }
+
+    /**
+     * Decompresses the block {@code src[srcOffset, srcOffset + srcLength)} into exactly {@code dstLength} bytes of
+     * {@code dst}.
+     *
+     * @throws IllegalArgumentException if the block is malformed or does not decompress to {@code dstLength} bytes
+     */
+    static void decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset, int dstLength) {
+        int ip = srcOffset;
+        int srcEnd = srcOffset + srcLength;
+        int op = dstOffset;
+        int dstEnd = dstOffset + dstLength;
+        while (true) {
+            if (ip >= srcEnd) {
+                throw malformed("missing sequence");
+            }
+            int token = src[ip++] & 0xFF;
+
+            int literals = token >>> 4;
+            if (literals == 15) {
+                int b;
+                do {
+                    if (ip >= srcEnd) {
+                        throw malformed("truncated literal length");
+                    }
+                    b = src[ip++] & 0xFF;
+                    literals += b;
+                    if (literals > dstLength) {
+                        throw malformed("literal length larger than the block");
+                    }
+                } while (b == 255);
+            }
+            if (literals > srcEnd - ip || literals > dstEnd - op) {
+                throw malformed("literals out of bounds");
+            }
+            System.arraycopy(src, ip, dst, op, literals);
+            ip += literals;
+            op += literals;
+            if (ip == srcEnd) {
+                break;
+            }
+
+            if (srcEnd - ip < 2) {
+                throw malformed("truncated match offset");
+            }
+            int offset = (src[ip] & 0xFF) | (src[ip + 1] & 0xFF) << 8;
+            ip += 2;
+            if (offset == 0 || offset > op - dstOffset) {
+                throw malformed("match offset " + offset + " out of bounds");
+            }
+            int length = token & 0x0F;
+            if (length == 15) {
+                int b;
+                do {
+                    if (ip >= srcEnd) {
+                        throw malformed("truncated match length");
+                    }
+                    b = src[ip++] & 0xFF;
+                    length += b;
+                    if (length > dstLength) {
+                        throw malformed("match length larger than the block");
+                    }
+                } while (b == 255);
+            }
+            length += MIN_MATCH;
+            if (length > dstEnd - op) {
+                throw malformed("match out of bounds");
+            }
+
+            // An overlapping match repeats the last offset bytes: copy them in chunks that double each time.
+            int from = op - offset;
+            int end = op + length;
+            while (op < end) {
+                int n = Math.min(op - from, end - op);
+                System.arraycopy(dst, from, dst, op, n);
+                op += n;
+            }
+        }
+        if (op != dstEnd) {
+            throw malformed("decompressed to " + (op - dstOffset) + " bytes instead of " + dstLength);
+        }
+    }
+
+    private static int writeSequence(byte[] src, int literalOffset, int literals, byte[] dst, int op,
+                                     int offset, int matchLength) {
+        int matchCode = matchLength - MIN_MATCH;
+        op = writeLength(dst, op, literals, Math.min(matchCode, 15));
+        System.arraycopy(src, literalOffset, dst, op, literals);
+        op += literals;
+        dst[op++] = (byte) offset;
+        dst[op++] = (byte) (offset >>> 8);
+        if (matchCode >= 15) {
+            op = writeExtraLength(dst, op, matchCode - 15);
+        }
+        return op;
+    }
+
+    /**
+     * Writes the token with the given literal count and match nibble, followed by the extra literal length bytes.
+     */
+    private static int writeLength(byte[] dst, int op, int literals, int matchNibble) {
+        if (literals < 15) {
+            dst[op++] = (byte) (literals << 4 | matchNibble);
+            return op;
+        }
+        dst[op++] = (byte) (0xF0 | matchNibble);
+        return writeExtraLength(dst, op, literals - 15);
+    }
+
+    private static int writeExtraLength(byte[] dst, int op, int length) {
+        while (length >= 255) {
+            dst[op++] = (byte) 255;
+            length -= 255;
+        }
+        dst[op++] = (byte) length;
+        return op;
+    }
+
+    private static int hash(byte[] src, int offset) {
+        return (readInt(src, offset) * -1640531535) >>> HASH_SHIFT;
+    }
+
+    private static int readInt(byte[] src, int offset) {
+        return (src[offset] & 0xFF) | (src[offset + 1] & 0xFF) << 8 | (src[offset + 2] & 0xFF) << 16
+                | src[offset + 3] << 24;
+    }
+
+    private static IllegalArgumentException malformed(String what) {
+        return new IllegalArgumentException("Malformed compressed block: " + what);
+    }
+}
@@ -0,0 +1,702 @@
+package arunsah.lbs;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * {@link BinaryInput} that reads from an {@link OffHeapMemory} block with a {@code long} position, the reading
+ * counterpart of {@link OffHeapBinaryOutput}.
+ * <p>
+ * The input reads the range {@code [offset, offset + length)} of the block. Fixed-width arrays are copied out with one
+ * bulk copy when the byte order is the native one; encoded arrays (which are at most 2 GB) are copied out whole and
+ * decoded by a {@link BinaryInputImpl}. The end of the range (or of the current nested object) inside a value throws
+ * {@link BufferUnderflowException}, as with {@link BinaryInputImpl}.
+ * <p>
+ * The input does not own the block: close the block once done with it. Instances are not thread-safe.
+ */
+public class OffHeapBinaryInput implements BinaryInput {
+
+    private final OffHeapMemory memory;
+    private final ByteOrder byteOrder;
+    private long position;
+    // End of the current object (of the range at the top level) and start of its first field.
+    private long limit;
+    private long objectStart;
+
+    // Scratch space of the string decoder and of the FLOAT16 array conversions, allocated on first use.
+    private byte[] utf8Scratch;
+    private ByteBuffer utf8ScratchBuffer;
+    private short[] float16Scratch;
+
+    // Cache of decoded strings, or null.
+    private StringCache stringCache;
+
+    // Header last read by nextField() / readFieldHeader().
+    private FieldType currentFieldType;
+    private int currentFieldId;
+
+    /**
+     * Create instance of {@link OffHeapBinaryInput} reading the whole block
+     *
+     * @param memory
+     * @param byteOrder
+     */
+    public OffHeapBinaryInput(OffHeapMemory memory, ByteOrder byteOrder) {
+        this(memory, 0, memory.size(), byteOrder);
+    }
+
+    /**
+     * Create instance of {@link OffHeapBinaryInput} reading {@code length} bytes of the block from {@code offset},
+     * for example the bytes written by an {@link OffHeapBinaryOutput}
+     *
+     * @param memory
+     * @param offset
+     * @param length
+     * @param byteOrder
+     */
+    public OffHeapBinaryInput(OffHeapMemory memory, long offset, long length, ByteOrder byteOrder) {
+        if (offset < 0 || length < 0 || length > memory.size() - offset) {
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + length
+                    + ") out of bounds for size " + memory.size());
+        }
+        this.memory = memory;
+        this.byteOrder = byteOrder;
+        this.position = offset;
+        this.limit = offset + length;
+        this.objectStart = offset;
+    }
+
+    /**
+     * Static helper methods to create instance of {@link OffHeapBinaryInput} with {@link ByteOrder#BIG_ENDIAN}
+     *
+     * @param memory
+     * @return
+     */
+    public static OffHeapBinaryInput bigEndianInput(OffHeapMemory memory) {
+        return new OffHeapBinaryInput(memory, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Static helper methods to create instance of {@link OffHeapBinaryInput} with {@link ByteOrder#LITTLE_ENDIAN}
+     *
+     * @param memory
+     * @return
+     */
+    public static OffHeapBinaryInput littleEndianInput(OffHeapMemory memory) {
+        return new OffHeapBinaryInput(memory, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Sets the cache through which {@link #readStringUTF8()} decodes strings; null (the default) disables it. See
+     * {@link BinaryInputImpl#setStringCache(StringCache)}.
+     *
+     * @param stringCache
+     * @return This OffHeapBinaryInput instance (to allow chaining).
+     */
+    public OffHeapBinaryInput setStringCache(StringCache stringCache) {
+        this.stringCache = stringCache;
+        return this;
+    }
+
+    public StringCache getStringCache() {
+        return stringCache;
+    }
+
+    @Override
+    public FieldHeader readFieldHeader() {
+        nextField();
+        return new FieldHeader(currentFieldType, currentFieldId);
+    }
+
+    /**
+     * Reads the next field header without allocating; see {@link BinaryInput#readFieldHeader()} for the header
+     * format.
+     *
+     * @return the field id of the header just read.
+     */
+    @Override
+    public int nextField() {
+        byte header = readInt8();
+        FieldType fieldType = FieldType.getByFieldTypeValue(header);
+        int fieldId;
+        if (fieldType.isExtensionType()) {
+            fieldId = readVarInt32();
+        } else {
+            int fieldIdNibble = (header & 0x0F);
+            fieldId = fieldIdNibble < Constant.FIELD_ID_EXTENSION ? fieldIdNibble
+                    : Constant.FIELD_ID_EXTENSION + readVarInt32();
+        }
+        currentFieldType = fieldType;
+        currentFieldId = fieldId;
+        return fieldId;
+    }
+
+    @Override
+    public FieldType currentFieldType() {
+        return currentFieldType;
+    }
+
+    @Override
+    public int currentFieldId() {
+        return currentFieldId;
+    }
+
+    @Override
+    public int readVarInt32() {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = readInt8();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+            if (shift > 40) {
+                throw new IllegalArgumentException("7-bit encoded int too large.");
+            }
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    @Override
+    public long readVarInt64() {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = readInt8();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+            if (shift > 72) {
+                throw new IllegalArgumentException("7-bit encoded long too large.");
+            }
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    @Override
+    public int readSVarInt32() {
+        return VarInts.unZigZag32(readVarInt32());
+    }
+
+    @Override
+    public long readSVarInt64() {
+        return VarInts.unZigZag64(readVarInt64());
+    }
+
+    @Override
+    public byte readInt8() {
+        return memory.getByte(take(Byte.BYTES));
+    }
+
+    @Override
+    public short readInt16() {
+        return memory.getShort(take(Short.BYTES), byteOrder);
+    }
+
+    @Override
+    public int readInt32() {
+        return memory.getInt(take(Integer.BYTES), byteOrder);
+    }
+
+    @Override
+    public long readInt64() {
+        return memory.getLong(take(Long.BYTES), byteOrder);
+    }
+
+    @Override
+    public float readFloat16() {
+        return Float16.toFloat(readInt16());
+    }
+
+    @Override
+    public float readFloat32() {
+        return Float.intBitsToFloat(readInt32());
+    }
+
+    @Override
+    public double readFloat64() {
+        return Double.longBitsToDouble(readInt64());
+    }
+
+    @Override
+    public boolean readBoolean(FieldHeader header) {
+        return header.fieldType == FieldType.BOOL_TRUE;
+    }
+
+    /**
+     * Reads a string, copying its bytes into a reused scratch array to decode them (through the string cache if
+     * set).
+     */
+    @Override
+    public String readStringUTF8() {
+        int length = readVarInt32();
+        long source = take(length);
+        if (utf8Scratch == null || utf8Scratch.length < length) {
+            utf8Scratch = new byte[Math.max(length, 256)];
+            utf8ScratchBuffer = ByteBuffer.wrap(utf8Scratch);
+        }
+        memory.copyTo(source, utf8Scratch, 0, length);
+        if (stringCache != null) {
+            return stringCache.decode(utf8ScratchBuffer, 0, length);
+        }
+        return new String(utf8Scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] readInt8Array() {
+        int length = readVarInt32();
+        long source = take(length);
+        byte[] values = new byte[length];
+        memory.copyTo(source, values, 0, length);
+        return values;
+    }
+
+    @Override
+    public short[] readInt16Array() {
+        int length = readVarInt32();
+        long source = take((long) length * Short.BYTES);
+        short[] values = new short[length];
+        memory.copyTo(source, values, 0, length, byteOrder);
+        return values;
+    }
+
+    @Override
+    public int[] readInt32Array() {
+        int length = readVarInt32();
+        long source = take((long) length * Integer.BYTES);
+        int[] values = new int[length];
+        memory.copyTo(source, values, 0, length, byteOrder);
+        return values;
+    }
+
+    @Override
+    public long[] readInt64Array() {
+        int length = readVarInt32();
+        long source = take((long) length * Long.BYTES);
+        long[] values = new long[length];
+        memory.copyTo(source, values, 0, length, byteOrder);
+        return values;
+    }
+
+    @Override
+    public float[] readFloat16Array() {
+        int length = readVarInt32();
+        long source = take((long) length * BinarySize.FLOAT16);
+        float[] values = new float[length];
+        if (float16Scratch == null) {
+            float16Scratch = new short[Constant.FLOAT16_CHUNK_SIZE];
+        }
+        short[] halves = float16Scratch;
+        for (int offset = 0; offset < length; offset += halves.length) {
+            int count = Math.min(halves.length, length - offset);
+            memory.copyTo(source + (long) offset * BinarySize.FLOAT16, halves, 0, count, byteOrder);
+            Float16.toFloats(halves, 0, values, offset, count);
+        }
+        return values;
+    }
+
+    @Override
+    public float[] readFloat32Array() {
+        int length = readVarInt32();
+        long source = take((long) length * Float.BYTES);
+        float[] values = new float[length];
+        memory.copyTo(source, values, 0, length, byteOrder);
+        return values;
+    }
+
+    @Override
+    public double[] readFloat64Array() {
+        int length = readVarInt32();
+        long source = take((long) length * Double.BYTES);
+        double[] values = new double[length];
+        memory.copyTo(source, values, 0, length, byteOrder);
+        return values;
+    }
+
+    @Override
+    public int[] readVarInt32Array() {
+        int length = readVarInt32();
+        // Every element takes at least one byte.
+        checkRemaining(length);
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = readVarInt32();
+        }
+        return values;
+    }
+
+    @Override
+    public long[] readVarInt64Array() {
+        int length = readVarInt32();
+        // Every element takes at least one byte.
+        checkRemaining(length);
+        long[] values = new long[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = readVarInt64();
+        }
+        return values;
+    }
+
+    @Override
+    public int[] readSVarInt32Array() {
+        int[] values = readVarInt32Array();
+        VarInts.unZigZag(values);
+        return values;
+    }
+
+    @Override
+    public long[] readSVarInt64Array() {
+        long[] values = readVarInt64Array();
+        VarInts.unZigZag(values);
+        return values;
+    }
+
+    @Override
+    public String[] readStringUTF8Array() {
+        int size = readVarInt32();
+        // Every element takes at least one byte.
+        checkRemaining(size);
+        String[] values = new String[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = readStringUTF8();
+        }
+        return values;
+    }
+
+    @Override
+    public String[] readDictionaryStringUTF8Array() {
+        return encodedArrayInput().readDictionaryStringUTF8Array();
+    }
+
+    @Override
+    public int[] readSortedInt32Array() {
+        return encodedArrayInput().readSortedInt32Array();
+    }
+
+    @Override
+    public long[] readSortedInt64Array() {
+        return encodedArrayInput().readSortedInt64Array();
+    }
+
+    /**
+     * Returns a cursor over a sorted int array; the array is copied out of the block first.
+     */
+    @Override
+    public SortedInt32Cursor readSortedInt32Cursor() {
+        return encodedArrayInput().readSortedInt32Cursor();
+    }
+
+    @Override
+    public int[] readPackedInt32Array() {
+        return encodedArrayInput().readPackedInt32Array();
+    }
+
+    /**
+     * Copies the next {@link FieldType#ENCODED_ARRAY} value (with its byte length) out of the block into an input of
+     * its own.
+     */
+    private BinaryInputImpl encodedArrayInput() {
+        long prefix = position;
+        int length = readVarInt32();
+        if (length < 1) {
+            throw new BufferUnderflowException();
+        }
+        take(length);
+        byte[] data = new byte[Math.toIntExact(position - prefix)];
+        memory.copyTo(prefix, data, 0, data.length);
+        return new BinaryInputImpl(ByteBuffer.wrap(data), byteOrder).setStringCache(stringCache);
+    }
+
+    @Override
+    public <T extends BinarySerializable> T readObject(BinarySerializableFactory<T> factory) {
+        return readObject(in -> {
+            T obj = factory.create();
+            obj.deserialize(in);
+            return obj;
+        });
+    }
+
+    /**
+     * Reads a nested object using the given codec; the input is positioned after the object even if the codec did
+     * not read all of its fields.
+     *
+     * @param codec
+     * @param <T>
+     * @return
+     */
+    @Override
+    public <T> T readObject(BinaryCodec<T> codec) {
+        return readObject(codec::read);
+    }
+
+    private <T> T readObject(Function<BinaryInput, T> reader) {
+        int length = readVarInt32();
+        checkRemaining(length);
+        long oldLimit = limit;
+        long oldObjectStart = objectStart;
+        long end = position + length;
+        limit = end;
+        objectStart = position;
+        try {
+            T obj = reader.apply(this);
+            position = end;
+            return obj;
+        } finally {
+            limit = oldLimit;
+            objectStart = oldObjectStart;
+        }
+    }
+
+    @Override
+    public void skipField(FieldHeader header) {
+        skipValue(header.getFieldType());
+    }
+
+    @Override
+    public void skipField() {
+        skipValue(currentFieldType);
+    }
+
+    private void skipValue(FieldType fieldType) {
+        switch (fieldType) {
+            case BOOL_TRUE:
+            case BOOL_FALSE:
+                // The value is the header itself.
+                break;
+            case INT8:
+                take(Byte.BYTES);
+                break;
+            case INT16:
+                take(Short.BYTES);
+                break;
+            case INT32:
+            case FLOAT32:
+                take(Integer.BYTES);
+                break;
+            case INT64:
+            case FLOAT64:
+                take(Long.BYTES);
+                break;
+            case FLOAT16:
+                take(BinarySize.FLOAT16);
+                break;
+            case VAR_INT32:
+            case VAR_INT64:
+            case SVAR_INT:
+                skipVarInts(1);
+                break;
+            case STRING_UTF8:
+            case INT8_ARRAY:
+            case OBJECT:
+            case ENCODED_ARRAY:
+                take(readVarInt32());
+                break;
+            case INT16_ARRAY:
+                take((long) readVarInt32() * Short.BYTES);
+                break;
+            case INT32_ARRAY:
+            case FLOAT32_ARRAY:
+                take((long) readVarInt32() * Integer.BYTES);
+                break;
+            case INT64_ARRAY:
+            case FLOAT64_ARRAY:
+                take((long) readVarInt32() * Long.BYTES);
+                break;
+            case FLOAT16_ARRAY:
+                take((long) readVarInt32() * BinarySize.FLOAT16);
+                break;
+            case VAR_INT32_ARRAY:
+            case VAR_INT64_ARRAY:
+            case SVAR_INT_ARRAY:
+                skipVarInts(readVarInt32());
+                break;
+            case STRING_UTF8_ARRAY: {
+                int size = readVarInt32();
+                for (int i = 0; i < size; i++) {
+                    take(readVarInt32());
+                }
+                break;
+            }
+            default:
+                // LIST and MAP elements carry no headers, so their extent is only known to the element readers.
+                throw new IllegalStateException("Cannot skip field of type " + fieldType);
+        }
+    }
+
+    /**
+     * Positions the input at the header of a field of the current object; see {@link BinaryInput#seekField(int)}.
+     * The field index trailer is used when present, otherwise the headers are scanned.
+     */
+    @Override
+    public boolean seekField(int fieldId) {
+        long entries = fieldIndexEntries();
+        if (entries >= 0) {
+            // Binary search over the (id, offset) pairs of the trailer.
+            int low = 0;
+            int high = memory.getInt(limit - 2 * Integer.BYTES, byteOrder) - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long entry = entries + (long) mid * 2 * Integer.BYTES;
+                int id = memory.getInt(entry, byteOrder);
+                if (id < fieldId) {
+                    low = mid + 1;
+                } else if (id > fieldId) {
+                    high = mid - 1;
+                } else {
+                    position = objectStart + memory.getInt(entry + Integer.BYTES, byteOrder);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // No trailer: scan the headers; the last occurrence of the id wins, as with the trailer.
+        long oldPosition = position;
+        long found = -1;
+        position = objectStart;
+        while (hasRemaining()) {
+            long header = position;
+            if (nextField() == fieldId) {
+                found = header;
+            }
+            if (currentFieldType == FieldType.LIST || currentFieldType == FieldType.MAP) {
+                // Cannot be skipped; fields after it are only reachable through a trailer.
+                break;
+            }
+            skipField();
+        }
+        position = found >= 0 ? found : oldPosition;
+        return found >= 0;
+    }
+
+    /**
+     * Returns the position of the first entry of the field index trailer of the current object, or -1 if the object
+     * has no trailer.
+     */
+    private long fieldIndexEntries() {
+        if (limit - objectStart < BinarySize.fieldIndex(0)
+                || memory.getInt(limit - Integer.BYTES, byteOrder) != Constant.FIELD_INDEX_MAGIC) {
+            return -1;
+        }
+        int count = memory.getInt(limit - 2 * Integer.BYTES, byteOrder);
+        if (count < 0 || count > (limit - objectStart) / (2 * Integer.BYTES)) {
+            return -1;
+        }
+        // The magic could be the tail of some other value: check that a trailer field header and length precede
+        // the entries.
+        int payload = count * 2 * Integer.BYTES + 2 * Integer.BYTES;
+        long entries = limit - payload;
+        long header = entries - BinarySize.varInt32(payload) - 1;
+        if (header < objectStart
+                || memory.getByte(header) != (byte) (FieldType.INT8_ARRAY.getValue() << 4 | Constant.FIELD_INDEX_FIELD_ID)) {
+            return -1;
+        }
+        int length = 0;
+        int shift = 0;
+        for (long i = header + 1; i < entries; i++, shift += 7) {
+            length |= (memory.getByte(i) & 0x7F) << shift;
+        }
+        return length == payload ? entries : -1;
+    }
+
+    @Override
+    public <T> List<T> readList(Function<BinaryInput, T> reader) {
+        int length = readVarInt32();
+        // Every element takes at least one byte.
+        checkRemaining(length);
+        List<T> list = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            list.add(reader.apply(this));
+        }
+        return list;
+    }
+
+    @Override
+    public <K, V> Map<K, V> readMap(Function<BinaryInput, K> keyReader, Function<BinaryInput, V> valueReader) {
+        int length = readVarInt32();
+        checkRemaining(length);
+        Map<K, V> map = new HashMap<>((int) (length / 0.75f) + 1);
+        for (int i = 0; i < length; i++) {
+            K key = keyReader.apply(this);
+            V value = valueReader.apply(this);
+            map.put(key, value);
+        }
+        return map;
+    }
+
+    /**
+     * Returns true if the current object (the range at the top level) has more bytes.
+     */
+    @Override
+    public boolean hasRemaining() {
+        return position < limit;
+    }
+
+    /**
+     * There is no {@link ByteBuffer} over off-heap memory of this kind; see {@link #getMemory()}.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public ByteBuffer getBuffer() {
+        throw new UnsupportedOperationException("OffHeapBinaryInput has no buffer, use getMemory()");
+    }
+
+    /**
+     * Returns the position in the block.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public OffHeapMemory getMemory() {
+        return memory;
+    }
+
+    public ByteOrder getByteOrder() {
+        return byteOrder;
+    }
+
+    /**
+     * Advances the position by {@code length} bytes, returning the old one.
+     *
+     * @throws BufferUnderflowException if the current object does not have {@code length} more bytes
+     */
+    private long take(long length) {
+        checkRemaining(length);
+        long p = position;
+        position += length;
+        return p;
+    }
+
+    private void checkRemaining(long length) {
+        if (length < 0 || length > limit - position) {
+            throw new BufferUnderflowException();
+        }
+    }
+
+    /**
+     * Skips {@code count} varints by counting the bytes that have no continuation bit.
+     */
+    private void skipVarInts(int count) {
+        checkRemaining(count);
+        long p = position;
+        while (count > 0) {
+            if (p >= limit) {
+                throw new BufferUnderflowException();
+            }
+            // A byte without the continuation bit (MSB) terminates a varint.
+            if (memory.getByte(p++) >= 0) {
+                count--;
+            }
+        }
+        position = p;
+    }
+}
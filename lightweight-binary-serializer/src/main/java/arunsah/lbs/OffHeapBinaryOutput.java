@@ -0,0 +1,314 @@
+package arunsah.lbs;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * {@link BinaryOutput} that writes into an {@link OffHeapMemory} block with a {@code long} position, for messages
+ * (graph snapshots, bulk exports) larger than the 2 GB a {@link BinaryOutputImpl} can hold, in memory that is released
+ * by closing the block rather than by the GC.
+ * <p>
+ * The output writes the range {@code [offset, offset + length)} of the block and throws
+ * {@link BufferOverflowException} when it is full, like {@link BinaryOutputImpl}. Fixed-width arrays are copied with
+ * one bulk copy when the byte order is the native one; nested objects back-patch their length the same way as
+ * {@link BinaryOutputImpl} (each nested object still holds at most 2 GB, as its length is a varint32). Read the result
+ * back with {@link OffHeapBinaryInput}, or copy it out with {@link OffHeapMemory#copyTo(long, ByteBuffer)}.
+ * <p>
+ * The output does not own the block: close the block once done with it. Instances are not thread-safe.
+ */
+public class OffHeapBinaryOutput extends AbstractBinaryOutput {
+
+    // Room needed for the widest varint64.
+    private static final int MAX_VAR_INT64_SIZE = 10;
+
+    private final OffHeapMemory memory;
+    private final ByteOrder byteOrder;
+    private final long start;
+    private final long limit;
+    private long position;
+
+    // Scratch space of the string encoder and of the FLOAT16 array conversions, allocated on first use.
+    private byte[] utf8Scratch;
+    private short[] float16Scratch;
+
+    /**
+     * Create instance of {@link OffHeapBinaryOutput} writing the whole block from its start
+     *
+     * @param memory
+     * @param byteOrder
+     */
+    public OffHeapBinaryOutput(OffHeapMemory memory, ByteOrder byteOrder) {
+        this(memory, 0, memory.size(), byteOrder);
+    }
+
+    /**
+     * Create instance of {@link OffHeapBinaryOutput} writing {@code length} bytes of the block from {@code offset}
+     *
+     * @param memory
+     * @param offset
+     * @param length
+     * @param byteOrder
+     */
+    public OffHeapBinaryOutput(OffHeapMemory memory, long offset, long length, ByteOrder byteOrder) {
+        if (offset < 0 || length < 0 || length > memory.size() - offset) {
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + length
+                    + ") out of bounds for size " + memory.size());
+        }
+        this.memory = memory;
+        this.byteOrder = byteOrder;
+        this.start = offset;
+        this.limit = offset + length;
+        this.position = offset;
+    }
+
+    /**
+     * Static helper methods to create instance of {@link OffHeapBinaryOutput} with {@link ByteOrder#BIG_ENDIAN}
+     *
+     * @param memory
+     * @return
+     */
+    public static OffHeapBinaryOutput bigEndianOutput(OffHeapMemory memory) {
+        return new OffHeapBinaryOutput(memory, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Static helper methods to create instance of {@link OffHeapBinaryOutput} with {@link ByteOrder#LITTLE_ENDIAN}
+     *
+     * @param memory
+     * @return
+     */
+    public static OffHeapBinaryOutput littleEndianOutput(OffHeapMemory memory) {
+        return new OffHeapBinaryOutput(memory, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public BinaryOutput writeVarInt32(int value) {
+        return writeVarInt64(value & 0xFFFFFFFFL);
+    }
+
+    @Override
+    public BinaryOutput writeVarInt64(long value) {
+        if (limit - position < MAX_VAR_INT64_SIZE && limit - position < BinarySize.varInt64(value)) {
+            throw new BufferOverflowException();
+        }
+        long p = position;
+        while ((value & ~0x7FL) != 0) {
+            memory.putByte(p++, (byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        memory.putByte(p++, (byte) value);
+        position = p;
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt8(byte value) {
+        memory.putByte(reserve(Byte.BYTES), value);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt16(short value) {
+        memory.putShort(reserve(Short.BYTES), value, byteOrder);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt32(int value) {
+        memory.putInt(reserve(Integer.BYTES), value, byteOrder);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt64(long value) {
+        memory.putLong(reserve(Long.BYTES), value, byteOrder);
+        return this;
+    }
+
+    /**
+     * Writes a string as its UTF-8 byte length and bytes, encoded into a reused scratch array and copied in one go.
+     */
+    @Override
+    public BinaryOutput writeStringUTF8(String value) {
+        int size = BinarySize.utf8Length(value);
+        writeVarInt32(size);
+        long target = reserve(size);
+        if (utf8Scratch == null || utf8Scratch.length < size) {
+            utf8Scratch = new byte[Math.max(size, 256)];
+        }
+        Utf8.encode(value, utf8Scratch, 0);
+        memory.copyFrom(utf8Scratch, 0, target, size);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeRawBytes(byte[] data, int offset, int length) {
+        memory.copyFrom(data, offset, reserve(length), length);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeRawBytes(ByteBuffer data) {
+        memory.copyFrom(data, reserve(data.remaining()));
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt8Array(byte[] data) {
+        writeVarInt32(data.length);
+        return writeRawBytes(data, 0, data.length);
+    }
+
+    @Override
+    public BinaryOutput writeInt16Array(short[] values) {
+        writeVarInt32(values.length);
+        memory.copyFrom(values, 0, reserve((long) values.length * Short.BYTES), values.length, byteOrder);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt32Array(int[] values) {
+        writeVarInt32(values.length);
+        memory.copyFrom(values, 0, reserve((long) values.length * Integer.BYTES), values.length, byteOrder);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt64Array(long[] values) {
+        writeVarInt32(values.length);
+        memory.copyFrom(values, 0, reserve((long) values.length * Long.BYTES), values.length, byteOrder);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeFloat16Array(float[] values) {
+        writeVarInt32(values.length);
+        long target = reserve((long) values.length * BinarySize.FLOAT16);
+        // Convert in chunks into a scratch array, then copy each chunk with one bulk copy.
+        if (float16Scratch == null) {
+            float16Scratch = new short[Constant.FLOAT16_CHUNK_SIZE];
+        }
+        short[] halves = float16Scratch;
+        for (int offset = 0; offset < values.length; offset += halves.length) {
+            int length = Math.min(halves.length, values.length - offset);
+            Float16.fromFloats(values, offset, halves, 0, length);
+            memory.copyFrom(halves, 0, target + (long) offset * BinarySize.FLOAT16, length, byteOrder);
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeFloat32Array(float[] values) {
+        writeVarInt32(values.length);
+        memory.copyFrom(values, 0, reserve((long) values.length * Float.BYTES), values.length, byteOrder);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeFloat64Array(double[] values) {
+        writeVarInt32(values.length);
+        memory.copyFrom(values, 0, reserve((long) values.length * Double.BYTES), values.length, byteOrder);
+        return this;
+    }
+
+    /**
+     * Write a value as a nested object using the given codec.
+     * <p>
+     * A one byte length slot is reserved; if the object turns out to need a longer varint, its body is moved up
+     * within the block to make room, see {@link BinaryOutputImpl#writeObject(Object, BinaryWriter)}.
+     *
+     * @param value
+     * @param codec
+     * @param <T>
+     * @return
+     */
+    @Override
+    public <T> BinaryOutput writeObject(T value, BinaryWriter<T> codec) {
+        long lengthPosition = reserve(Byte.BYTES);
+        long bodyStart = position;
+        codec.write(this, value);
+        long end = position;
+        long length = end - bodyStart;
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Nested object of " + length + " bytes is larger than 2 GB");
+        }
+        int extraLengthBytes = BinarySize.varInt32((int) length) - 1;
+        if (extraLengthBytes > 0) {
+            if (limit - end < extraLengthBytes) {
+                throw new BufferOverflowException();
+            }
+            OffHeapMemory.copy(memory, bodyStart, memory, bodyStart + extraLengthBytes, length);
+        }
+
+        // Back-patch the length and continue after the object body.
+        position = lengthPosition;
+        writeVarInt32((int) length);
+        position = end + extraLengthBytes;
+        return this;
+    }
+
+    /**
+     * There is no {@link ByteBuffer} over off-heap memory of this kind; see {@link #getMemory()}.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public ByteBuffer getBuffer() {
+        throw new UnsupportedOperationException("OffHeapBinaryOutput has no buffer, use getMemory()");
+    }
+
+    /**
+     * Returns the position in the block.
+     *
+     * @throws ArithmeticException beyond 2 GB, see {@link #getPosition()}
+     */
+    @Override
+    public int getBufferPosition() {
+        return Math.toIntExact(position);
+    }
+
+    /**
+     * Returns the position in the block.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the number of bytes written from the start of the range.
+     */
+    public long getBytesWritten() {
+        return position - start;
+    }
+
+    public OffHeapMemory getMemory() {
+        return memory;
+    }
+
+    @Override
+    public ByteOrder getByteOrder() {
+        return byteOrder;
+    }
+
+    /**
+     * Moves the position back to the start of the range, to write a new message over the previous one.
+     */
+    public void reset() {
+        position = start;
+    }
+
+    /**
+     * Advances the position by {@code length} bytes, returning the old one.
+     *
+     * @throws BufferOverflowException if the range does not have {@code length} more bytes
+     */
+    private long reserve(long length) {
+        if (limit - position < length) {
+            throw new BufferOverflowException();
+        }
+        long p = position;
+        position += length;
+        return p;
+    }
+}
@@ -0,0 +1,324 @@
+package arunsah.lbs;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A block of native (off-heap) memory addressed by {@code long} offsets, so it can be larger than the 2 GB of a
+ * {@link ByteBuffer}, and released deterministically by {@link #close()} instead of whenever the GC gets to it.
+ * It is the storage of {@link OffHeapBinaryOutput} and {@link OffHeapBinaryInput}.
+ * <p>
+ * Multi-byte values are read and written in the byte order given to each call, and the bulk array methods copy
+ * whole arrays with one memory copy when that order is the native one (element by element with a byte swap
+ * otherwise). Every access is checked against the bounds of the block; after {@link #close()} every access throws
+ * {@link IllegalStateException}, so a closed block is never touched.
+ * <p>
+ * The memory is allocated and accessed through {@code sun.misc.Unsafe} (this library targets Java 8, before the
+ * Foreign Memory API), reached only through {@link UnsafeAccess}. Unaligned values are read and written directly, as
+ * x86 and AArch64 allow. New memory is not zeroed. Instances are not thread-safe: a block must not be closed while
+ * another thread uses it.
+ */
+public final class OffHeapMemory implements Closeable {
+
+    private static final boolean NATIVE_BIG_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+    // Largest copy between the heap and native memory done in one call, so that the GC is not held off for long.
+    private static final long COPY_CHUNK_SIZE = 1024 * 1024;
+
+    private long address;
+    private long size;
+    private boolean closed;
+
+    private OffHeapMemory(long address, long size) {
+        this.address = address;
+        this.size = size;
+    }
+
+    /**
+     * Allocates a block of {@code size} bytes; its content is undefined.
+     *
+     * @param size
+     * @return
+     * @throws OutOfMemoryError if the memory cannot be allocated
+     */
+    public static OffHeapMemory allocate(long size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size must not be negative: " + size);
+        }
+        return new OffHeapMemory(UnsafeAccess.allocateMemory(Math.max(1, size)), size);
+    }
+
+    /**
+     * Returns the size of the block in bytes (0 once closed).
+     */
+    public long size() {
+        return size;
+    }
+
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    public byte getByte(long offset) {
+        return UnsafeAccess.getByte(null, address(offset, Byte.BYTES));
+    }
+
+    public void putByte(long offset, byte value) {
+        UnsafeAccess.putByte(null, address(offset, Byte.BYTES), value);
+    }
+
+    public short getShort(long offset, ByteOrder byteOrder) {
+        short value = UnsafeAccess.getShort(null, address(offset, Short.BYTES));
+        return swap(byteOrder) ? Short.reverseBytes(value) : value;
+    }
+
+    public void putShort(long offset, short value, ByteOrder byteOrder) {
+        UnsafeAccess.putShort(null, address(offset, Short.BYTES), swap(byteOrder) ? Short.reverseBytes(value) : value);
+    }
+
+    public int getInt(long offset, ByteOrder byteOrder) {
+        int value = UnsafeAccess.getInt(null, address(offset, Integer.BYTES));
+        return swap(byteOrder) ? Integer.reverseBytes(value) : value;
+    }
+
+    public void putInt(long offset, int value, ByteOrder byteOrder) {
+        UnsafeAccess.putInt(null, address(offset, Integer.BYTES), swap(byteOrder) ? Integer.reverseBytes(value) : value);
+    }
+
+    public long getLong(long offset, ByteOrder byteOrder) {
+        long value = UnsafeAccess.getLong(null, address(offset, Long.BYTES));
+        return swap(byteOrder) ? Long.reverseBytes(value) : value;
+    }
+
+    public void putLong(long offset, long value, ByteOrder byteOrder) {
+        UnsafeAccess.putLong(null, address(offset, Long.BYTES), swap(byteOrder) ? Long.reverseBytes(value) : value);
+    }
+
+    /**
+     * Copies {@code length} bytes of {@code src} from index {@code srcIndex} to offset {@code offset}.
+     */
+    public void copyFrom(byte[] src, int srcIndex, long offset, int length) {
+        checkArray(src.length, srcIndex, length);
+        copy(src, UnsafeAccess.BYTE_ARRAY_OFFSET + srcIndex, null, address(offset, length), length);
+    }
+
+    /**
+     * Copies {@code length} bytes from offset {@code offset} into {@code dst} from index {@code dstIndex}.
+     */
+    public void copyTo(long offset, byte[] dst, int dstIndex, int length) {
+        checkArray(dst.length, dstIndex, length);
+        copy(null, address(offset, length), dst, UnsafeAccess.BYTE_ARRAY_OFFSET + dstIndex, length);
+    }
+
+    /**
+     * Copies {@code length} elements of {@code src} from index {@code srcIndex} to offset {@code offset}, in the
+     * given byte order.
+     */
+    public void copyFrom(short[] src, int srcIndex, long offset, int length, ByteOrder byteOrder) {
+        checkArray(src.length, srcIndex, length);
+        copyFromArray(src, UnsafeAccess.SHORT_ARRAY_OFFSET + (long) srcIndex * Short.BYTES, offset, length,
+                Short.BYTES, byteOrder);
+    }
+
+    public void copyTo(long offset, short[] dst, int dstIndex, int length, ByteOrder byteOrder) {
+        checkArray(dst.length, dstIndex, length);
+        copyToArray(offset, dst, UnsafeAccess.SHORT_ARRAY_OFFSET + (long) dstIndex * Short.BYTES, length,
+                Short.BYTES, byteOrder);
+    }
+
+    public void copyFrom(int[] src, int srcIndex, long offset, int length, ByteOrder byteOrder) {
+        checkArray(src.length, srcIndex, length);
+        copyFromArray(src, UnsafeAccess.INT_ARRAY_OFFSET + (long) srcIndex * Integer.BYTES, offset, length,
+                Integer.BYTES, byteOrder);
+    }
+
+    public void copyTo(long offset, int[] dst, int dstIndex, int length, ByteOrder byteOrder) {
+        checkArray(dst.length, dstIndex, length);
+        copyToArray(offset, dst, UnsafeAccess.INT_ARRAY_OFFSET + (long) dstIndex * Integer.BYTES, length,
+                Integer.BYTES, byteOrder);
+    }
+
+    public void copyFrom(long[] src, int srcIndex, long offset, int length, ByteOrder byteOrder) {
+        checkArray(src.length, srcIndex, length);
+        copyFromArray(src, UnsafeAccess.LONG_ARRAY_OFFSET + (long) srcIndex * Long.BYTES, offset, length,
+                Long.BYTES, byteOrder);
+    }
+
+    public void copyTo(long offset, long[] dst, int dstIndex, int length, ByteOrder byteOrder) {
+        checkArray(dst.length, dstIndex, length);
+        copyToArray(offset, dst, UnsafeAccess.LONG_ARRAY_OFFSET + (long) dstIndex * Long.BYTES, length,
+                Long.BYTES, byteOrder);
+    }
+
+    public void copyFrom(float[] src, int srcIndex, long offset, int length, ByteOrder byteOrder) {
+        checkArray(src.length, srcIndex, length);
+        copyFromArray(src, UnsafeAccess.FLOAT_ARRAY_OFFSET + (long) srcIndex * Float.BYTES, offset, length,
+                Float.BYTES, byteOrder);
+    }
+
+    public void copyTo(long offset, float[] dst, int dstIndex, int length, ByteOrder byteOrder) {
+        checkArray(dst.length, dstIndex, length);
+        copyToArray(offset, dst, UnsafeAccess.FLOAT_ARRAY_OFFSET + (long) dstIndex * Float.BYTES, length,
+                Float.BYTES, byteOrder);
+    }
+
+    public void copyFrom(double[] src, int srcIndex, long offset, int length, ByteOrder byteOrder) {
+        checkArray(src.length, srcIndex, length);
+        copyFromArray(src, UnsafeAccess.DOUBLE_ARRAY_OFFSET + (long) srcIndex * Double.BYTES, offset, length,
+                Double.BYTES, byteOrder);
+    }
+
+    public void copyTo(long offset, double[] dst, int dstIndex, int length, ByteOrder byteOrder) {
+        checkArray(dst.length, dstIndex, length);
+        copyToArray(offset, dst, UnsafeAccess.DOUBLE_ARRAY_OFFSET + (long) dstIndex * Double.BYTES, length,
+                Double.BYTES, byteOrder);
+    }
+
+    /**
+     * Copies the remaining bytes of {@code src} to offset {@code offset}, advancing its position.
+     */
+    public void copyFrom(ByteBuffer src, long offset) {
+        int length = src.remaining();
+        address(offset, length);
+        if (src.hasArray()) {
+            copyFrom(src.array(), src.arrayOffset() + src.position(), offset, length);
+            src.position(src.limit());
+            return;
+        }
+        byte[] chunk = new byte[(int) Math.min(length, COPY_CHUNK_SIZE)];
+        while (src.hasRemaining()) {
+            int count = Math.min(src.remaining(), chunk.length);
+            src.get(chunk, 0, count);
+            copyFrom(chunk, 0, offset, count);
+            offset += count;
+        }
+    }
+
+    /**
+     * Copies bytes from offset {@code offset} into the remaining space of {@code dst}, advancing its position.
+     */
+    public void copyTo(long offset, ByteBuffer dst) {
+        int length = dst.remaining();
+        address(offset, length);
+        if (dst.hasArray()) {
+            copyTo(offset, dst.array(), dst.arrayOffset() + dst.position(), length);
+            dst.position(dst.limit());
+            return;
+        }
+        byte[] chunk = new byte[(int) Math.min(length, COPY_CHUNK_SIZE)];
+        while (dst.hasRemaining()) {
+            int count = Math.min(dst.remaining(), chunk.length);
+            copyTo(offset, chunk, 0, count);
+            dst.put(chunk, 0, count);
+            offset += count;
+        }
+    }
+
+    /**
+     * Copies {@code length} bytes from {@code srcOffset} of {@code src} to {@code dstOffset} of {@code dst}; the
+     * ranges may overlap (within the same block).
+     */
+    public static void copy(OffHeapMemory src, long srcOffset, OffHeapMemory dst, long dstOffset, long length) {
+        UnsafeAccess.copyMemory(null, src.address(srcOffset, length), null, dst.address(dstOffset, length), length);
+    }
+
+    /**
+     * Frees the memory; further accesses throw {@link IllegalStateException}. Closing twice has no effect.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        size = 0;
+        UnsafeAccess.freeMemory(address);
+        address = 0;
+    }
+
+    /**
+     * Returns the address of {@code length} bytes at {@code offset}, after checking that they are in the block.
+     */
+    private long address(long offset, long length) {
+        if (offset < 0 || length < 0 || length > size - offset) {
+            if (closed) {
+                throw new IllegalStateException("Off-heap memory is closed");
+            }
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + length
+                    + ") out of bounds for size " + size);
+        }
+        return address + offset;
+    }
+
+    private void copyFromArray(Object src, long srcOffset, long offset, int count, int elementSize,
+                               ByteOrder byteOrder) {
+        long length = (long) count * elementSize;
+        long target = address(offset, length);
+        if (!swap(byteOrder)) {
+            copy(src, srcOffset, null, target, length);
+            return;
+        }
+        copySwapped(src, srcOffset, null, target, length, elementSize);
+    }
+
+    private void copyToArray(long offset, Object dst, long dstOffset, int count, int elementSize,
+                             ByteOrder byteOrder) {
+        long length = (long) count * elementSize;
+        long source = address(offset, length);
+        if (!swap(byteOrder)) {
+            copy(null, source, dst, dstOffset, length);
+            return;
+        }
+        copySwapped(null, source, dst, dstOffset, length, elementSize);
+    }
+
+    /**
+     * Copies {@code length} bytes of elements of {@code elementSize} bytes, reversing the bytes of each.
+     */
+    private static void copySwapped(Object src, long srcOffset, Object dst, long dstOffset, long length,
+                                    int elementSize) {
+        long delta = dstOffset - srcOffset;
+        long end = srcOffset + length;
+        switch (elementSize) {
+            case Short.BYTES:
+                for (long p = srcOffset; p < end; p += Short.BYTES) {
+                    UnsafeAccess.putShort(dst, p + delta, Short.reverseBytes(UnsafeAccess.getShort(src, p)));
+                }
+                break;
+            case Integer.BYTES:
+                for (long p = srcOffset; p < end; p += Integer.BYTES) {
+                    UnsafeAccess.putInt(dst, p + delta, Integer.reverseBytes(UnsafeAccess.getInt(src, p)));
+                }
+                break;
+            default:
+                for (long p = srcOffset; p < end; p += Long.BYTES) {
+                    UnsafeAccess.putLong(dst, p + delta, Long.reverseBytes(UnsafeAccess.getLong(src, p)));
+                }
+                break;
+        }
+    }
+
+    /**
+     * Copies between the heap and native memory in chunks of {@link #COPY_CHUNK_SIZE} bytes.
+     */
+    private static void copy(Object src, long srcOffset, Object dst, long dstOffset, long length) {
+        while (length > 0) {
+            long chunk = Math.min(length, COPY_CHUNK_SIZE);
+            UnsafeAccess.copyMemory(src, srcOffset, dst, dstOffset, chunk);
+            srcOffset += chunk;
+            dstOffset += chunk;
+            length -= chunk;
+        }
+    }
+
+    private static void checkArray(int arrayLength, int index, int length) {
+        if (index < 0 || length < 0 || length > arrayLength - index) {
+            throw new IndexOutOfBoundsException("Range [" + index + ", " + index + " + " + length
+                    + ") out of bounds for length " + arrayLength);
+        }
+    }
+
+    private static boolean swap(ByteOrder byteOrder) {
+        return (byteOrder == ByteOrder.BIG_ENDIAN) != NATIVE_BIG_ENDIAN;
+    }
+}
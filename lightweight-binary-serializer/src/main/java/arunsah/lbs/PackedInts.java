@@ -0,0 +1,215 @@
+package arunsah.lbs;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Frame of reference bit packing with patched exceptions (PFOR) for {@link ArrayEncoding#PACKED_INT32}.
+ * <p>
+ * The values are split in blocks of {@link Constant#PACKED_ARRAY_BLOCK_SIZE} (the last one may be shorter). Each
+ * block stores:
+ * <ul>
+ *     <li>its minimum, as a ZigZag varint;</li>
+ *     <li>a bit width {@code b} (one byte, 0 to 32) and the number of exceptions (one byte);</li>
+ *     <li>the low {@code b} bits of every {@code value - min}, packed least significant bit first into
+ *     {@code ceil(n * b / 8)} bytes;</li>
+ *     <li>for every exception (a value whose {@code value - min} needs more than {@code b} bits) its index in the
+ *     block (one byte) and the remaining high bits {@code (value - min) >>> b} as a varint.</li>
+ * </ul>
+ * The bit width is chosen per block to minimize its (estimated) size, allowing up to one exception per eight values,
+ * so a few outliers cost a few bytes each instead of widening every value of the block.
+ * <p>
+ * Unpacking reads, for each value, the (unaligned, little-endian) 64-bit word that starts at the byte holding its
+ * first bit and extracts the value with one shift and one mask; since {@code b <= 32}, the value always lies within
+ * that word. The loop has no data-dependent branches and its iterations are independent, so the same code serves every
+ * bit width; only the last values of the buffer (less than a word before its limit) are assembled byte by byte.
+ */
+final class PackedInts {
+
+    private PackedInts() {
+    }
+
+    /**
+     * Encoded size of the values {@code from} to {@code to} as one block.
+     */
+    static int blockSize(int[] values, int from, int to) {
+        int min = min(values, from, to);
+        int bitWidth = bitWidth(values, from, to, min);
+        int size = BinarySize.sVarInt32(min) + 2 + packedBytes(to - from, bitWidth);
+        for (int i = from; i < to; i++) {
+            int high = (int) ((values[i] - min & 0xFFFFFFFFL) >>> bitWidth);
+            if (high != 0) {
+                size += 1 + BinarySize.varInt32(high);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Writes the values {@code from} to {@code to} as one block.
+     */
+    static void writeBlock(BinaryOutput out, int[] values, int from, int to) {
+        int min = min(values, from, to);
+        int bitWidth = bitWidth(values, from, to, min);
+        int exceptions = 0;
+        for (int i = from; i < to; i++) {
+            if ((values[i] - min & 0xFFFFFFFFL) >>> bitWidth != 0) {
+                exceptions++;
+            }
+        }
+        out.writeSVarInt32(min);
+        out.writeInt8((byte) bitWidth);
+        out.writeInt8((byte) exceptions);
+
+        long mask = (1L << bitWidth) - 1;
+        long pending = 0;
+        int pendingBits = 0;
+        for (int i = from; i < to; i++) {
+            pending |= ((values[i] - min) & mask) << pendingBits;
+            pendingBits += bitWidth;
+            while (pendingBits >= Byte.SIZE) {
+                out.writeInt8((byte) pending);
+                pending >>>= Byte.SIZE;
+                pendingBits -= Byte.SIZE;
+            }
+        }
+        if (pendingBits > 0) {
+            out.writeInt8((byte) pending);
+        }
+
+        for (int i = from; i < to; i++) {
+            int high = (int) ((values[i] - min & 0xFFFFFFFFL) >>> bitWidth);
+            if (high != 0) {
+                out.writeInt8((byte) (i - from));
+                out.writeVarInt32(high);
+            }
+        }
+    }
+
+    /**
+     * Reads one block of {@code count} values into {@code values} from index {@code offset}, from the position of
+     * {@code buffer}, advancing it.
+     */
+    static void readBlock(ByteBuffer buffer, int[] values, int offset, int count) {
+        int min = VarInts.unZigZag32(readVarInt(buffer));
+        int bitWidth = buffer.get() & 0xFF;
+        int exceptions = buffer.get() & 0xFF;
+        if (bitWidth > Integer.SIZE) {
+            throw new IllegalArgumentException("Invalid bit width " + bitWidth);
+        }
+        int packedBytes = packedBytes(count, bitWidth);
+        if (buffer.remaining() < packedBytes) {
+            throw new BufferUnderflowException();
+        }
+        unpack(buffer, buffer.position(), bitWidth, min, values, offset, count);
+        buffer.position(buffer.position() + packedBytes);
+
+        for (int e = 0; e < exceptions; e++) {
+            int index = buffer.get() & 0xFF;
+            if (index >= count) {
+                throw new IllegalArgumentException("Invalid exception index " + index);
+            }
+            // value = min + low bits + (high bits << b), wrapping like the subtraction in writeBlock
+            values[offset + index] += readVarInt(buffer) << bitWidth;
+        }
+    }
+
+    /**
+     * Unpacks {@code count} values of {@code bitWidth} bits starting at byte {@code position} of {@code buffer}, adding
+     * {@code min} to each.
+     */
+    static void unpack(ByteBuffer buffer, int position, int bitWidth, int min, int[] values, int offset, int count) {
+        if (bitWidth == 0) {
+            Arrays.fill(values, offset, offset + count, min);
+            return;
+        }
+        boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+        long mask = (1L << bitWidth) - 1;
+        int wordLimit = buffer.limit() - Long.BYTES;
+        int i = 0;
+        long bit = 0;
+        for (; i < count; i++, bit += bitWidth) {
+            int p = position + (int) (bit >>> 3);
+            if (p > wordLimit) {
+                break;
+            }
+            long word = buffer.getLong(p);
+            if (bigEndian) {
+                word = Long.reverseBytes(word);
+            }
+            values[offset + i] = (int) ((word >>> (bit & 7)) & mask) + min;
+        }
+        for (; i < count; i++, bit += bitWidth) {
+            // Near the limit: at most five bytes hold the value.
+            int p = position + (int) (bit >>> 3);
+            int shift = (int) (bit & 7);
+            int bytes = (shift + bitWidth + 7) >>> 3;
+            long word = 0;
+            for (int k = 0; k < bytes; k++) {
+                word |= (buffer.get(p + k) & 0xFFL) << (k << 3);
+            }
+            values[offset + i] = (int) ((word >>> shift) & mask) + min;
+        }
+    }
+
+    static int packedBytes(int count, int bitWidth) {
+        return (int) (((long) count * bitWidth + 7) >>> 3);
+    }
+
+    private static int min(int[] values, int from, int to) {
+        int min = values[from];
+        for (int i = from + 1; i < to; i++) {
+            min = Math.min(min, values[i]);
+        }
+        return min;
+    }
+
+    /**
+     * Bit width that minimizes the size of the block: the packed bits plus, per exception, its index byte and one
+     * varint byte for every seven bits above the width.
+     */
+    private static int bitWidth(int[] values, int from, int to, int min) {
+        // Number of values by bit length of value - min.
+        int[] counts = new int[Integer.SIZE + 1];
+        int maxBits = 0;
+        for (int i = from; i < to; i++) {
+            int bits = Integer.SIZE - Integer.numberOfLeadingZeros(values[i] - min);
+            counts[bits]++;
+            maxBits = Math.max(maxBits, bits);
+        }
+        int count = to - from;
+        int best = maxBits;
+        long bestSize = packedBytes(count, maxBits);
+        int exceptions = 0;
+        for (int bitWidth = maxBits - 1; bitWidth >= 0; bitWidth--) {
+            exceptions += counts[bitWidth + 1];
+            if (exceptions > count / 8) {
+                // Beyond this, packing more bits is cheaper than patching.
+                break;
+            }
+            long size = packedBytes(count, bitWidth) + (long) exceptions * (1 + (maxBits - bitWidth + 6) / 7);
+            if (size < bestSize) {
+                best = bitWidth;
+                bestSize = size;
+            }
+        }
+        return best;
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+            if (shift > 40) {
+                throw new IllegalArgumentException("7-bit encoded int too large.");
+            }
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,188 @@
+package arunsah.lbs;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+
+/**
+ * Writes large lists with their elements serialized in parallel, for {@link BinaryOutput#writeList(List, BiConsumer,
+ * ParallelListWriter)}.
+ * <p>
+ * The list is split into chunks of consecutive elements, at most {@value #CHUNKS_PER_THREAD} per thread of the
+ * {@link ForkJoinPool} and at least {@code minChunkSize} elements each. Each chunk is written by a pool thread into
+ * its own pooled heap buffer through a {@link BinaryOutputImpl}; the element count and the chunks are then copied into
+ * the target output in order, one bulk copy per chunk. Elements do not depend on each other's position, so the bytes
+ * are exactly those of {@link BinaryOutput#writeList(List, BiConsumer)}.
+ * <p>
+ * The element writer is called concurrently and must only write the element it is given. A chunk that does not fit
+ * its buffer is written again into one twice as large, so the writer may be called more than once for an element; the
+ * smaller buffer goes back to the pool. Buffers are kept for reuse at the sizes they grew through, in total about twice
+ * the size of the largest list written; see {@link #clearBuffers()}. Lists shorter than two chunks, lists without random access
+ * and pools of one thread are written sequentially on the calling thread. Instances are thread-safe and meant to be
+ * shared.
+ */
+public class ParallelListWriter {
+
+    // Upper bound on the number of chunks per pool thread, to balance uneven elements without tiny chunks.
+    static final int CHUNKS_PER_THREAD = 4;
+
+    // Largest buffer a chunk can grow to.
+    private static final int MAX_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+
+    private final ForkJoinPool pool;
+    private final int minChunkSize;
+    // Last released, first reused: a list gets the buffers that the chunks of the previous one grew to.
+    private final ConcurrentLinkedDeque<ByteBuffer> freeBuffers = new ConcurrentLinkedDeque<>();
+
+    /**
+     * Create instance of {@link ParallelListWriter}
+     *
+     * @param pool         pool whose threads write the chunks
+     * @param minChunkSize minimum number of elements of a chunk (at least 1)
+     */
+    public ParallelListWriter(ForkJoinPool pool, int minChunkSize) {
+        if (minChunkSize < 1) {
+            throw new IllegalArgumentException("Minimum chunk size must be at least 1: " + minChunkSize);
+        }
+        this.pool = pool;
+        this.minChunkSize = minChunkSize;
+    }
+
+    /**
+     * Create instance of {@link ParallelListWriter} on the common pool, with chunks of at least
+     * {@link Constant#DEFAULT_PARALLEL_LIST_CHUNK_SIZE} elements
+     */
+    public ParallelListWriter() {
+        this(ForkJoinPool.commonPool(), Constant.DEFAULT_PARALLEL_LIST_CHUNK_SIZE);
+    }
+
+    /**
+     * Writes the element count of the list, then its elements, to {@code out}.
+     *
+     * @param out
+     * @param list
+     * @param writer writes one element; called concurrently from the pool threads
+     * @param <T>
+     */
+    public <T> void writeList(BinaryOutput out, List<T> list, BiConsumer<BinaryOutput, T> writer) {
+        int size = list.size();
+        int chunkCount = Math.min(size / minChunkSize, pool.getParallelism() * CHUNKS_PER_THREAD);
+        if (chunkCount < 2 || pool.getParallelism() < 2 || !(list instanceof RandomAccess)) {
+            out.writeList(list, writer);
+            return;
+        }
+
+        BinaryOutputImpl[] chunks = new BinaryOutputImpl[chunkCount];
+        try {
+            pool.invoke(new WriteChunks<>(this, list, writer, out.getByteOrder(), chunks, 0, chunkCount));
+            out.writeVarInt32(size);
+            for (BinaryOutputImpl chunk : chunks) {
+                ByteBuffer buffer = chunk.getBuffer();
+                out.writeRawBytes(buffer.array(), buffer.arrayOffset(), buffer.position());
+            }
+        } finally {
+            for (BinaryOutputImpl chunk : chunks) {
+                if (chunk != null) {
+                    release(chunk.getBuffer());
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the buffers kept for reuse.
+     */
+    public void clearBuffers() {
+        freeBuffers.clear();
+    }
+
+    /**
+     * Number of buffers currently kept for reuse.
+     */
+    public int getPooledBufferCount() {
+        return freeBuffers.size();
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    public int getMinChunkSize() {
+        return minChunkSize;
+    }
+
+    private ByteBuffer acquire() {
+        ByteBuffer buffer = freeBuffers.pollFirst();
+        return buffer != null ? buffer : ByteBuffer.allocate(Constant.DEFAULT_PARALLEL_CHUNK_BUFFER_SIZE);
+    }
+
+    private void release(ByteBuffer buffer) {
+        buffer.clear();
+        freeBuffers.offerFirst(buffer);
+    }
+
+    /**
+     * Writes chunks {@code [from, to)}, splitting the range in halves until one chunk is left.
+     */
+    private static class WriteChunks<T> extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ParallelListWriter owner;
+        private final List<T> list;
+        private final BiConsumer<BinaryOutput, T> writer;
+        private final ByteOrder byteOrder;
+        private final BinaryOutputImpl[] chunks;
+        private final int from;
+        private final int to;
+
+        WriteChunks(ParallelListWriter owner, List<T> list, BiConsumer<BinaryOutput, T> writer, ByteOrder byteOrder,
+                    BinaryOutputImpl[] chunks, int from, int to) {
+            this.owner = owner;
+            this.list = list;
+            this.writer = writer;
+            this.byteOrder = byteOrder;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new WriteChunks<>(owner, list, writer, byteOrder, chunks, from, middle),
+                        new WriteChunks<>(owner, list, writer, byteOrder, chunks, middle, to));
+                return;
+            }
+            // Element range of the chunk: the list split into equal parts, rounded down.
+            int size = list.size();
+            int start = (int) ((long) size * from / chunks.length);
+            int end = (int) ((long) size * (from + 1) / chunks.length);
+            ByteBuffer buffer = owner.acquire();
+            while (true) {
+                BinaryOutputImpl chunk = new BinaryOutputImpl(buffer, byteOrder);
+                try {
+                    for (int i = start; i < end; i++) {
+                        writer.accept(chunk, list.get(i));
+                    }
+                    chunks[from] = chunk;
+                    return;
+                } catch (BufferOverflowException e) {
+                    if (buffer.capacity() == MAX_BUFFER_SIZE) {
+                        throw e;
+                    }
+                    // Back to the pool for chunks with smaller elements.
+                    owner.release(buffer);
+                    buffer = ByteBuffer.allocate((int) Math.min(2L * buffer.capacity(), MAX_BUFFER_SIZE));
+                }
+            }
+        }
+    }
+}
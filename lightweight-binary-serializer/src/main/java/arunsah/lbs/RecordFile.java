@@ -0,0 +1,312 @@
+package arunsah.lbs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Function;
+
+/**
+ * Random access reader of a record file sealed by {@link RecordFileWriter}: {@link #get(long)} looks a record up by
+ * its number with one probe of the offset index and one decode, instead of scanning the file.
+ * <p>
+ * The index and the records are memory-mapped once, when the file is opened. The records are split into mappings of
+ * {@link Constant#RECORD_FILE_SEGMENT_SIZE} bytes that overlap by the length of the largest frame (from the footer),
+ * so every record lies whole in the mapping of its first byte and is decoded straight from it by a reused
+ * {@link BinaryInputImpl}.
+ * <p>
+ * Decoded records are kept in a bounded cache, keyed by record number and evicting with the CLOCK algorithm (an
+ * approximation of LRU), so that repeated lookups of hot records neither decode nor allocate;
+ * {@link #getCacheHits()} and {@link #getCacheMisses()} tell how well it works. Since cached records are shared, they
+ * must not be modified. Instances are not thread-safe.
+ *
+ * @param <T>
+ */
+public class RecordFile<T> implements Closeable {
+
+    private final FileChannel channel;
+    private final Function<BinaryInput, T> decoder;
+    private final ByteOrder byteOrder;
+    private final long recordCount;
+    private final int indexEntrySize;
+    private final MappedByteBuffer index;
+    // Mapping i starts at file offset i * RECORD_FILE_SEGMENT_SIZE, with the input that reads it.
+    private final MappedByteBuffer[] segments;
+    private final BinaryInputImpl[] inputs;
+    private final ClockCache<T> cache;
+
+    // Last located record: its mapping, and position and limit of its payload within it.
+    private int segment;
+    private int recordStart;
+    private int recordEnd;
+
+    private RecordFile(FileChannel channel, Function<BinaryInput, T> decoder, int cacheSize) throws IOException {
+        if (cacheSize < 0 || cacheSize > Constant.MAX_RECORD_CACHE_SIZE) {
+            throw new IllegalArgumentException("Cache size must be between 0 and " + Constant.MAX_RECORD_CACHE_SIZE
+                    + ": " + cacheSize);
+        }
+        this.channel = channel;
+        this.decoder = decoder;
+        ByteBuffer header = RecordLogReader.readHeader(channel);
+        if ((header.get(6) & Constant.RECORD_LOG_INDEXED) == 0) {
+            throw new IllegalArgumentException("Not a record file: record log without an index");
+        }
+        this.byteOrder = RecordLogReader.byteOrder(header);
+        ByteBuffer footer = RecordLogReader.readFooter(channel, byteOrder);
+        this.recordCount = footer.getLong(0);
+        long indexOffset = footer.getLong(8);
+        long maxFrameLength = footer.getLong(16);
+        this.indexEntrySize = RecordLogReader.indexEntrySize(indexOffset);
+
+        long indexLength = recordCount * indexEntrySize;
+        if (indexLength > Integer.MAX_VALUE || maxFrameLength > Integer.MAX_VALUE - Constant.RECORD_FILE_SEGMENT_SIZE) {
+            throw new IllegalStateException("Record file index or record is larger than a mapping");
+        }
+        this.index = map(indexOffset, indexLength);
+        int segmentCount = (int) ((indexOffset + Constant.RECORD_FILE_SEGMENT_SIZE - 1)
+                / Constant.RECORD_FILE_SEGMENT_SIZE);
+        this.segments = new MappedByteBuffer[segmentCount];
+        this.inputs = new BinaryInputImpl[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long start = (long) i * Constant.RECORD_FILE_SEGMENT_SIZE;
+            segments[i] = map(start, Math.min(indexOffset, start + Constant.RECORD_FILE_SEGMENT_SIZE + maxFrameLength)
+                    - start);
+            inputs[i] = new BinaryInputImpl(segments[i].duplicate(), byteOrder);
+        }
+        this.cache = cacheSize > 0 ? new ClockCache<>(cacheSize) : null;
+    }
+
+    /**
+     * Opens a record file whose records are decoded by the given codec, with a cache of
+     * {@link Constant#DEFAULT_RECORD_CACHE_SIZE} records.
+     *
+     * @param path
+     * @param codec
+     * @param <T>
+     * @return
+     * @throws IllegalArgumentException if the file is not a sealed record file
+     */
+    public static <T> RecordFile<T> open(Path path, BinaryCodec<T> codec) {
+        return open(path, codec, Constant.DEFAULT_RECORD_CACHE_SIZE);
+    }
+
+    /**
+     * Opens a record file whose records are decoded by the given codec.
+     *
+     * @param path
+     * @param codec
+     * @param cacheSize maximum number of decoded records to cache, 0 for no cache, at most
+     *                  {@link Constant#MAX_RECORD_CACHE_SIZE}
+     * @param <T>
+     * @return
+     * @throws IllegalArgumentException if the file is not a sealed record file, or the cache size is out of range
+     */
+    public static <T> RecordFile<T> open(Path path, BinaryCodec<T> codec, int cacheSize) {
+        return open(path, codec::read, cacheSize);
+    }
+
+    /**
+     * Opens a record file whose records are decoded into new objects from the given factory, with a cache of
+     * {@link Constant#DEFAULT_RECORD_CACHE_SIZE} records.
+     *
+     * @param path
+     * @param factory
+     * @param <T>
+     * @return
+     * @throws IllegalArgumentException if the file is not a sealed record file
+     */
+    public static <T extends BinarySerializable> RecordFile<T> open(Path path, BinarySerializableFactory<T> factory) {
+        return open(path, factory, Constant.DEFAULT_RECORD_CACHE_SIZE);
+    }
+
+    /**
+     * Opens a record file whose records are decoded into new objects from the given factory.
+     *
+     * @param path
+     * @param factory
+     * @param cacheSize maximum number of decoded records to cache, 0 for no cache, at most
+     *                  {@link Constant#MAX_RECORD_CACHE_SIZE}
+     * @param <T>
+     * @return
+     * @throws IllegalArgumentException if the file is not a sealed record file, or the cache size is out of range
+     */
+    public static <T extends BinarySerializable> RecordFile<T> open(Path path, BinarySerializableFactory<T> factory,
+                                                                    int cacheSize) {
+        return open(path, in -> {
+            T obj = factory.create();
+            obj.deserialize(in);
+            return obj;
+        }, cacheSize);
+    }
+
+    private static <T> RecordFile<T> open(Path path, Function<BinaryInput, T> decoder, int cacheSize) {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            return new RecordFile<>(channel, decoder, cacheSize);
+        } catch (IOException | RuntimeException e) {
+            try {
+                channel.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            if (e instanceof IOException) {
+                throw new UncheckedIOException((IOException) e);
+            }
+            throw (RuntimeException) e;
+        }
+    }
+
+    /**
+     * Returns the number of records in the file.
+     */
+    public long size() {
+        return recordCount;
+    }
+
+    /**
+     * Returns record {@code recordNumber}, from the cache or decoded (and cached).
+     *
+     * @param recordNumber
+     * @return
+     * @throws IndexOutOfBoundsException if there is no such record
+     */
+    public T get(long recordNumber) {
+        if (cache == null) {
+            return decoder.apply(input(recordNumber));
+        }
+        T value = cache.get(recordNumber);
+        if (value == null) {
+            value = decoder.apply(input(recordNumber));
+            cache.put(recordNumber, value);
+        }
+        return value;
+    }
+
+    /**
+     * Returns an input over record {@code recordNumber}, positioned at its first field, bypassing the cache. The same
+     * input may be repositioned by the next call, so it is only valid until then.
+     *
+     * @param recordNumber
+     * @return
+     * @throws IndexOutOfBoundsException if there is no such record
+     */
+    public BinaryInput input(long recordNumber) {
+        locate(recordNumber);
+        BinaryInputImpl input = inputs[segment];
+        input.setRange(recordStart, recordEnd);
+        return input;
+    }
+
+    /**
+     * Returns the payload of record {@code recordNumber} as a read-only slice of the mapping (no copy), in the byte
+     * order of the file.
+     *
+     * @param recordNumber
+     * @return
+     * @throws IndexOutOfBoundsException if there is no such record
+     */
+    public ByteBuffer getRecord(long recordNumber) {
+        locate(recordNumber);
+        ByteBuffer record = segments[segment].duplicate();
+        record.limit(recordEnd);
+        record.position(recordStart);
+        return record.slice().asReadOnlyBuffer().order(byteOrder);
+    }
+
+    /**
+     * Returns the file offset of record {@code recordNumber} (of its frame), as returned by
+     * {@link RecordLogReader#getRecordOffset()}.
+     *
+     * @param recordNumber
+     * @return
+     * @throws IndexOutOfBoundsException if there is no such record
+     */
+    public long getRecordOffset(long recordNumber) {
+        if (recordNumber < 0 || recordNumber >= recordCount) {
+            throw new IndexOutOfBoundsException("Record " + recordNumber + " of " + recordCount);
+        }
+        int position = (int) recordNumber * indexEntrySize;
+        return indexEntrySize == Integer.BYTES ? index.getInt(position) & 0xFFFFFFFFL : index.getLong(position);
+    }
+
+    /**
+     * Number of {@link #get(long)} calls answered from the cache.
+     */
+    public long getCacheHits() {
+        return cache == null ? 0 : cache.getHits();
+    }
+
+    /**
+     * Number of {@link #get(long)} calls that had to decode the record.
+     */
+    public long getCacheMisses() {
+        return cache == null ? 0 : cache.getMisses();
+    }
+
+    /**
+     * Removes all cached records and resets the counters.
+     */
+    public void clearCache() {
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    public ByteOrder getByteOrder() {
+        return byteOrder;
+    }
+
+    /**
+     * Releases the mappings (to the GC, mappings cannot be unmapped explicitly) and the cache, and closes the file.
+     */
+    @Override
+    public void close() {
+        clearCache();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parses the frame of a record, setting {@link #segment}, {@link #recordStart} and {@link #recordEnd}.
+     */
+    private void locate(long recordNumber) {
+        long offset = getRecordOffset(recordNumber);
+        int segment = (int) (offset / Constant.RECORD_FILE_SEGMENT_SIZE);
+        MappedByteBuffer mapping = segments[segment];
+        int position = (int) (offset - (long) segment * Constant.RECORD_FILE_SEGMENT_SIZE);
+        // Frame: varint payload length, payload, CRC32 of the payload.
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = mapping.get(position++);
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 35);
+        if (length < 0 || length > mapping.limit() - position - Integer.BYTES) {
+            throw new IllegalArgumentException("Corrupt record file: record " + recordNumber + " at " + offset);
+        }
+        this.segment = segment;
+        this.recordStart = position;
+        this.recordEnd = position + length;
+    }
+
+    private MappedByteBuffer map(long offset, long length) throws IOException {
+        MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        mapping.order(byteOrder);
+        return mapping;
+    }
+}
@@ -0,0 +1,235 @@
+package arunsah.lbs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writer of a record file: a record log (see {@link RecordLogWriter}) sealed, on {@link #close()}, with an offset index
+ * that {@link RecordFile} uses to look records up by number.
+ * <pre>
+ * header | frame 0 | frame 1 | ... | frame n-1 | offset of frame 0 | ... | offset of frame n-1 | footer
+ * </pre>
+ * The offsets are unsigned int32s, or int64s if the index starts beyond 4 GB, and the footer holds the record count,
+ * the offset of the index and the length of the largest frame, all in the byte order of the log. The header of a
+ * sealed file carries the {@link Constant#RECORD_LOG_INDEXED} flag, which is set only once the index is forced to the
+ * device: a crash before that leaves a plain record log, that the next {@link #open} recovers and seals again.
+ * <p>
+ * {@link #open} continues an existing record log or record file (whose index it removes first), so a log can be sealed
+ * after the fact. The offsets are kept in memory until the file is sealed. Instances are not thread-safe.
+ */
+public class RecordFileWriter implements Closeable {
+
+    private final RecordLogWriter log;
+    private final ByteOrder byteOrder;
+    private final int bufferSize;
+
+    // File offset of every record, in order.
+    private long[] offsets = new long[1024];
+    private int count;
+    private long maxFrameLength;
+    private boolean closed;
+
+    private RecordFileWriter(RecordLogWriter log, ByteOrder byteOrder, int bufferSize) {
+        this.log = log;
+        this.byteOrder = byteOrder;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Opens a record file for appending with a buffer of {@link Constant#DEFAULT_RECORD_LOG_BUFFER_SIZE} bytes,
+     * creating it if it does not exist.
+     *
+     * @param path
+     * @param byteOrder byte order of a new file; must match the order of an existing one
+     * @return
+     * @throws IllegalArgumentException if the file exists and is not a record log or file of that byte order
+     */
+    public static RecordFileWriter open(Path path, ByteOrder byteOrder) {
+        return open(path, byteOrder, Constant.DEFAULT_RECORD_LOG_BUFFER_SIZE);
+    }
+
+    /**
+     * Opens a record file for appending, creating it if it does not exist. The index of a sealed file is removed, a
+     * torn tail is truncated (see {@link RecordLogWriter#open(Path, ByteOrder, int)}) and the existing records are
+     * scanned for their offsets.
+     *
+     * @param path
+     * @param byteOrder  byte order of a new file; must match the order of an existing one
+     * @param bufferSize size in bytes of the buffer that groups records (at least 16)
+     * @return
+     * @throws IllegalArgumentException if the file exists and is not a record log or file of that byte order
+     */
+    public static RecordFileWriter open(Path path, ByteOrder byteOrder, int bufferSize) {
+        try {
+            if (Files.exists(path) && Files.size(path) > 0) {
+                unseal(path, byteOrder);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        RecordLogWriter log = RecordLogWriter.open(path, byteOrder, bufferSize);
+        RecordFileWriter writer = new RecordFileWriter(log, byteOrder, bufferSize);
+        if (log.size() > Constant.RECORD_LOG_HEADER_SIZE) {
+            try (RecordLogReader reader = new RecordLogReader(log.getChannel(), Constant.DEFAULT_RECORD_LOG_WINDOW_SIZE,
+                    false)) {
+                while (reader.next()) {
+                    writer.add(reader.getRecordOffset(), reader.getValidLength());
+                }
+            } catch (RuntimeException e) {
+                try {
+                    log.close();
+                } catch (RuntimeException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+        }
+        return writer;
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param record
+     * @return the number of the record, see {@link RecordFile#get(long)}
+     */
+    public long append(BinarySerializable record) {
+        return append(record, SerializableWriter.INSTANCE);
+    }
+
+    /**
+     * Appends a record encoded by the given codec.
+     *
+     * @param value
+     * @param codec
+     * @param <T>
+     * @return the number of the record, see {@link RecordFile#get(long)}
+     */
+    public <T> long append(T value, BinaryWriter<T> codec) {
+        if (closed) {
+            throw new IllegalStateException("Record file is closed");
+        }
+        long offset = log.append(value, codec);
+        add(offset, log.size());
+        return count - 1;
+    }
+
+    /**
+     * Returns the number of records in the file.
+     */
+    public long getRecordCount() {
+        return count;
+    }
+
+    /**
+     * Writes the buffered records and forces the file to the storage device, so that every record appended so far
+     * survives a crash (as a record log, until the file is sealed).
+     */
+    public void sync() {
+        log.sync();
+    }
+
+    /**
+     * Writes the buffered records, seals the file with its index and closes it.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            log.flush();
+            seal(log.getChannel(), log.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            log.close();
+        }
+    }
+
+    private void add(long offset, long frameEnd) {
+        if (count == offsets.length) {
+            if (count == Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Record file is full: " + count + " records");
+            }
+            offsets = Arrays.copyOf(offsets, (int) Math.min(Integer.MAX_VALUE - 8, 2L * count));
+        }
+        offsets[count++] = offset;
+        maxFrameLength = Math.max(maxFrameLength, frameEnd - offset);
+    }
+
+    /**
+     * Writes the index and the footer at {@code indexOffset}, forces them to the device, then flags the header.
+     */
+    private void seal(FileChannel channel, long indexOffset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(bufferSize, Constant.RECORD_FILE_FOOTER_SIZE)).order(byteOrder);
+        boolean wide = RecordLogReader.indexEntrySize(indexOffset) == Long.BYTES;
+        long position = indexOffset;
+        for (int i = 0; i < count; i++) {
+            if (buffer.remaining() < Long.BYTES) {
+                position = write(channel, buffer, position);
+            }
+            if (wide) {
+                buffer.putLong(offsets[i]);
+            } else {
+                buffer.putInt((int) offsets[i]);
+            }
+        }
+        if (buffer.remaining() < Constant.RECORD_FILE_FOOTER_SIZE) {
+            position = write(channel, buffer, position);
+        }
+        buffer.putLong(count);
+        buffer.putLong(indexOffset);
+        buffer.putLong(maxFrameLength);
+        write(channel, buffer, position);
+        channel.force(false);
+
+        ByteBuffer flags = ByteBuffer.allocate(1).put(Constant.RECORD_LOG_INDEXED);
+        write(channel, flags, 6);
+        channel.force(false);
+    }
+
+    /**
+     * Writes the buffer at file offset {@code position} and clears it, returning the offset after it.
+     */
+    private static long write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+        position += buffer.limit();
+        buffer.clear();
+        return position;
+    }
+
+    /**
+     * Turns a sealed record file back into a record log: clears the header flag, then truncates the index.
+     */
+    private static void unseal(Path path, ByteOrder byteOrder) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = RecordLogReader.readHeader(channel);
+            if ((header.get(6) & Constant.RECORD_LOG_INDEXED) == 0) {
+                return;
+            }
+            if (RecordLogReader.byteOrder(header) != byteOrder) {
+                throw new IllegalArgumentException("Record file is " + RecordLogReader.byteOrder(header) + ", not "
+                        + byteOrder);
+            }
+            long indexOffset = RecordLogReader.readFooter(channel, byteOrder).getLong(8);
+            ByteBuffer flags = ByteBuffer.allocate(1).put((byte) (header.get(6) & ~Constant.RECORD_LOG_INDEXED));
+            write(channel, flags, 6);
+            channel.force(false);
+            channel.truncate(indexOffset);
+            channel.force(false);
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package arunsah.lbs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Sequential reader of a record log written by {@link RecordLogWriter}.
+ * <p>
+ * The file is memory-mapped in windows of {@link Constant#DEFAULT_RECORD_LOG_WINDOW_SIZE} bytes (a window is
+ * remapped from the start of the next record when that record does not fit in the current one), and every record is
+ * decoded straight from the mapping: {@link #next()} parses the frame, {@link #input()} repositions one reused
+ * {@link BinaryInputImpl} on the record and {@link #getRecord()} returns a zero-copy slice. Scanning therefore makes no
+ * system call and no copy per record.
+ * <p>
+ * The reader stops at the first frame that is incomplete (a torn tail, left by a crash in the middle of a write) or,
+ * if checksums are verified, whose checksum does not match; {@link #isTornTail()} then tells it apart from a clean end
+ * of file. Checksums are not verified by default, since {@link RecordLogWriter#open} has already truncated any torn
+ * tail. The reader sees the file as it was when it was opened. Instances are not thread-safe.
+ * <p>
+ * A record file sealed by {@link RecordFileWriter} is a record log followed by an offset index: the reader scans its
+ * records and stops before the index.
+ */
+public class RecordLogReader implements Closeable {
+
+    // Longest frame prefix: the varint length.
+    private static final int MAX_VAR_INT32_SIZE = 5;
+
+    private final FileChannel channel;
+    private final boolean closeChannel;
+    private final int windowSize;
+    // File offset after the last record: the file size, or the offset of the index of a sealed record file.
+    private final long fileSize;
+    private final ByteOrder byteOrder;
+    private final boolean indexed;
+
+    private boolean verifyChecksums;
+    private CRC32 crc;
+
+    // Mapped window, starting at file offset windowStart, and the input that reads it.
+    private MappedByteBuffer window;
+    private long windowStart;
+    private BinaryInputImpl input;
+
+    // Current record: file offset of its frame, and position and limit of its payload within the window.
+    private long recordOffset = -1;
+    private int recordStart;
+    private int recordEnd;
+
+    // File offset after the last valid record.
+    private long validLength = Constant.RECORD_LOG_HEADER_SIZE;
+    private boolean tornTail;
+
+    RecordLogReader(FileChannel channel, int windowSize, boolean closeChannel) {
+        this.channel = channel;
+        this.closeChannel = closeChannel;
+        this.windowSize = windowSize;
+        try {
+            ByteBuffer header = readHeader(channel);
+            this.byteOrder = byteOrder(header);
+            this.indexed = (header.get(6) & Constant.RECORD_LOG_INDEXED) != 0;
+            this.fileSize = indexed ? readFooter(channel, byteOrder).getLong(8) : channel.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Opens a record log for reading, with windows of {@link Constant#DEFAULT_RECORD_LOG_WINDOW_SIZE} bytes.
+     *
+     * @param path
+     * @return
+     * @throws IllegalArgumentException if the file is not a record log
+     */
+    public static RecordLogReader open(Path path) {
+        return open(path, Constant.DEFAULT_RECORD_LOG_WINDOW_SIZE);
+    }
+
+    /**
+     * Opens a record log for reading.
+     *
+     * @param path
+     * @param windowSize number of bytes mapped at a time (records larger than this are mapped whole)
+     * @return
+     * @throws IllegalArgumentException if the file is not a record log
+     */
+    public static RecordLogReader open(Path path, int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+        }
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            return new RecordLogReader(channel, windowSize, true);
+        } catch (RuntimeException e) {
+            try {
+                channel.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Sets whether {@link #next()} checks the CRC32 of every record, and stops at the first mismatch as at a torn
+     * tail.
+     *
+     * @param verifyChecksums
+     * @return This RecordLogReader instance (to allow chaining).
+     */
+    public RecordLogReader setVerifyChecksums(boolean verifyChecksums) {
+        this.verifyChecksums = verifyChecksums;
+        return this;
+    }
+
+    /**
+     * Moves to the next record.
+     *
+     * @return false at the end of the log, or at a torn tail (see {@link #isTornTail()})
+     */
+    public boolean next() {
+        long offset = validLength;
+        if (offset >= fileSize || tornTail) {
+            return false;
+        }
+        // Frame: varint payload length, payload, CRC32 of the payload.
+        mapWindow(offset, Math.min(MAX_VAR_INT32_SIZE, fileSize - offset));
+        int position = (int) (offset - windowStart);
+        int limit = window.limit();
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (position >= limit || shift > 28) {
+                return torn();
+            }
+            b = window.get(position++);
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        long payloadOffset = windowStart + position;
+        long frameEnd = payloadOffset + length + Integer.BYTES;
+        if (length < 0 || frameEnd > fileSize) {
+            return torn();
+        }
+        mapWindow(offset, frameEnd - offset);
+        int start = (int) (payloadOffset - windowStart);
+        int end = start + length;
+        if (verifyChecksums && checksum(start, end) != window.getInt(end)) {
+            return torn();
+        }
+        recordOffset = offset;
+        recordStart = start;
+        recordEnd = end;
+        validLength = frameEnd;
+        return true;
+    }
+
+    /**
+     * Returns an input over the current record, positioned at its first field. The same input is repositioned by the
+     * next call, so it is only valid until then.
+     */
+    public BinaryInput input() {
+        checkRecord();
+        input.setRange(recordStart, recordEnd);
+        return input;
+    }
+
+    /**
+     * Decodes the current record with the given codec.
+     *
+     * @param codec
+     * @param <T>
+     * @return
+     */
+    public <T> T read(BinaryCodec<T> codec) {
+        return codec.read(input());
+    }
+
+    /**
+     * Decodes the current record into a new object from the given factory.
+     *
+     * @param factory
+     * @param <T>
+     * @return
+     */
+    public <T extends BinarySerializable> T read(BinarySerializableFactory<T> factory) {
+        T obj = factory.create();
+        obj.deserialize(input());
+        return obj;
+    }
+
+    /**
+     * Returns the payload of the current record as a read-only slice of the mapping (no copy), in the byte order of
+     * the log.
+     */
+    public ByteBuffer getRecord() {
+        checkRecord();
+        ByteBuffer record = window.duplicate();
+        record.limit(recordEnd);
+        record.position(recordStart);
+        return record.slice().asReadOnlyBuffer().order(byteOrder);
+    }
+
+    /**
+     * Returns the file offset of the current record (of its frame), as returned by {@link RecordLogWriter#append}.
+     */
+    public long getRecordOffset() {
+        return recordOffset;
+    }
+
+    /**
+     * Returns the file offset after the last valid record read so far.
+     */
+    public long getValidLength() {
+        return validLength;
+    }
+
+    /**
+     * Returns true if {@link #next()} stopped at an incomplete or corrupt frame rather than at the end of the file.
+     */
+    public boolean isTornTail() {
+        return tornTail;
+    }
+
+    public ByteOrder getByteOrder() {
+        return byteOrder;
+    }
+
+    /**
+     * Returns true if the file is a record file sealed with an offset index.
+     */
+    boolean isIndexed() {
+        return indexed;
+    }
+
+    /**
+     * Releases the mapping (to the GC, mappings cannot be unmapped explicitly) and closes the file if this reader
+     * opened it.
+     */
+    @Override
+    public void close() {
+        window = null;
+        input = null;
+        if (closeChannel) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private boolean torn() {
+        tornTail = true;
+        return false;
+    }
+
+    private void checkRecord() {
+        if (recordOffset < 0) {
+            throw new IllegalStateException("No current record, call next() first");
+        }
+    }
+
+    /**
+     * Makes sure that file bytes {@code offset} to {@code offset + length} are in the window, mapping a new window
+     * from {@code offset} if they are not.
+     */
+    private void mapWindow(long offset, long length) {
+        if (window != null && offset >= windowStart && offset + length <= windowStart + window.limit()) {
+            return;
+        }
+        long size = Math.min(fileSize - offset, Math.max(windowSize, length));
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Record of " + length + " bytes is larger than a mapping");
+        }
+        try {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        window.order(byteOrder);
+        windowStart = offset;
+        input = new BinaryInputImpl(window.duplicate(), byteOrder);
+    }
+
+    private int checksum(int start, int end) {
+        if (crc == null) {
+            crc = new CRC32();
+        }
+        ByteBuffer payload = window.duplicate();
+        payload.limit(end);
+        payload.position(start);
+        crc.reset();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Reads and checks the file header.
+     */
+    static ByteBuffer readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(Constant.RECORD_LOG_HEADER_SIZE);
+        if (!readFully(channel, header, 0)) {
+            throw new IllegalArgumentException("Not a record log: shorter than its header");
+        }
+        if (header.getInt(0) != Constant.RECORD_LOG_MAGIC) {
+            throw new IllegalArgumentException("Not a record log: bad magic");
+        }
+        if (header.get(4) != Constant.RECORD_LOG_VERSION) {
+            throw new IllegalArgumentException("Unsupported record log version " + header.get(4));
+        }
+        return header;
+    }
+
+    /**
+     * Returns the byte order of a log from its header.
+     */
+    static ByteOrder byteOrder(ByteBuffer header) {
+        return header.get(5) == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+    }
+
+    /**
+     * Reads and checks the footer of a sealed record file: record count (at 0), offset of the index (at 8) and
+     * length of the largest frame (at 16).
+     */
+    static ByteBuffer readFooter(FileChannel channel, ByteOrder byteOrder) throws IOException {
+        long size = channel.size();
+        ByteBuffer footer = ByteBuffer.allocate(Constant.RECORD_FILE_FOOTER_SIZE).order(byteOrder);
+        if (size < Constant.RECORD_LOG_HEADER_SIZE + Constant.RECORD_FILE_FOOTER_SIZE
+                || !readFully(channel, footer, size - Constant.RECORD_FILE_FOOTER_SIZE)) {
+            throw new IllegalArgumentException("Not a record file: shorter than its footer");
+        }
+        long count = footer.getLong(0);
+        long indexOffset = footer.getLong(8);
+        long maxFrameLength = footer.getLong(16);
+        if (count < 0 || indexOffset < Constant.RECORD_LOG_HEADER_SIZE || maxFrameLength < 0
+                || count > (size - indexOffset) / indexEntrySize(indexOffset)
+                || indexOffset + count * indexEntrySize(indexOffset) + Constant.RECORD_FILE_FOOTER_SIZE != size) {
+            throw new IllegalArgumentException("Not a record file: corrupt footer");
+        }
+        return footer;
+    }
+
+    /**
+     * Returns the size of an entry of the offset index of a record file whose index starts at {@code indexOffset}:
+     * offsets are unsigned int32s if they all fit, int64s otherwise.
+     */
+    static int indexEntrySize(long indexOffset) {
+        return indexOffset <= 0xFFFFFFFFL ? Integer.BYTES : Long.BYTES;
+    }
+
+    /**
+     * Fills {@code buffer} from file offset {@code position}, returning false if the file ends first.
+     */
+    static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the file header of a log in the given byte order: magic, version, byte order (0 for big-endian, 1 for
+     * little-endian), flags ({@link Constant#RECORD_LOG_INDEXED}), one reserved byte.
+     */
+    static ByteBuffer header(ByteOrder byteOrder) {
+        ByteBuffer header = ByteBuffer.allocate(Constant.RECORD_LOG_HEADER_SIZE);
+        header.putInt(Constant.RECORD_LOG_MAGIC);
+        header.put(Constant.RECORD_LOG_VERSION);
+        header.put((byte) (byteOrder == ByteOrder.BIG_ENDIAN ? 0 : 1));
+        header.rewind();
+        return header;
+    }
+}
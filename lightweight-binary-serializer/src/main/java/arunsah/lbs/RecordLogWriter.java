@@ -0,0 +1,262 @@
+package arunsah.lbs;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Appender of an append-only record log: a file of LBS records, each framed as
+ * <pre>
+ * varint payload length | payload (the fields of the record) | CRC32 of the payload (int32)
+ * </pre>
+ * after an 8 byte file header (magic, version, byte order); see {@link RecordLogReader} to read it back.
+ * <p>
+ * Records are encoded in place into a buffer of {@link Constant#DEFAULT_RECORD_LOG_BUFFER_SIZE} bytes, the same way
+ * as a nested object ({@link BinaryOutput#writeObject(Object, BinaryWriter)}, with its length back-patched), and the
+ * buffer is written to the file only when it is full or on {@link #flush()}, so that one write covers many records.
+ * {@link #sync()} also forces the file to the storage device: call it once per group of records that must be durable
+ * together (group commit) rather than once per record.
+ * <p>
+ * {@link #open(Path, ByteOrder)} scans an existing log and truncates a torn tail (an incomplete or corrupt last frame
+ * left by a crash) before appending to it. Instances are not thread-safe.
+ */
+public class RecordLogWriter implements Flushable, Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final BinaryOutputImpl out;
+    private final CRC32 crc = new CRC32();
+
+    // File offset of the start of the buffer.
+    private long flushedBytes;
+    private final long truncatedBytes;
+
+    private RecordLogWriter(FileChannel channel, ByteOrder byteOrder, int bufferSize, long validLength,
+                            long truncatedBytes) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(bufferSize).order(byteOrder);
+        this.out = new BinaryOutputImpl(buffer, byteOrder);
+        this.flushedBytes = validLength;
+        this.truncatedBytes = truncatedBytes;
+    }
+
+    /**
+     * Opens a record log for appending with a buffer of {@link Constant#DEFAULT_RECORD_LOG_BUFFER_SIZE} bytes,
+     * creating it if it does not exist.
+     *
+     * @param path
+     * @param byteOrder byte order of a new log; must match the order of an existing one
+     * @return
+     * @throws IllegalArgumentException if the file exists and is not a record log of that byte order
+     */
+    public static RecordLogWriter open(Path path, ByteOrder byteOrder) {
+        return open(path, byteOrder, Constant.DEFAULT_RECORD_LOG_BUFFER_SIZE);
+    }
+
+    /**
+     * Opens a record log for appending, creating it if it does not exist. An existing log is scanned (verifying the
+     * checksums) and truncated after its last valid record.
+     *
+     * @param path
+     * @param byteOrder  byte order of a new log; must match the order of an existing one
+     * @param bufferSize size in bytes of the buffer that groups records (at least 16)
+     * @return
+     * @throws IllegalArgumentException if the file exists and is not a record log of that byte order, or is a sealed
+     *                                  record file
+     */
+    public static RecordLogWriter open(Path path, ByteOrder byteOrder, int bufferSize) {
+        if (bufferSize < 16) {
+            throw new IllegalArgumentException("Buffer size must be at least 16 bytes: " + bufferSize);
+        }
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            long size = channel.size();
+            if (size == 0) {
+                ByteBuffer header = RecordLogReader.header(byteOrder);
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                return new RecordLogWriter(channel, byteOrder, bufferSize, Constant.RECORD_LOG_HEADER_SIZE, 0);
+            }
+            RecordLogReader reader = new RecordLogReader(channel, Constant.DEFAULT_RECORD_LOG_WINDOW_SIZE, false);
+            if (reader.getByteOrder() != byteOrder) {
+                throw new IllegalArgumentException("Record log is " + reader.getByteOrder() + ", not " + byteOrder);
+            }
+            if (reader.isIndexed()) {
+                throw new IllegalArgumentException("Record file is sealed with an index, it cannot be appended to");
+            }
+            reader.setVerifyChecksums(true);
+            while (reader.next()) {
+                // Only finding the end of the last valid record.
+            }
+            reader.close();
+            long validLength = reader.getValidLength();
+            if (validLength < size) {
+                channel.truncate(validLength);
+                channel.force(false);
+            }
+            return new RecordLogWriter(channel, byteOrder, bufferSize, validLength, size - validLength);
+        } catch (IOException | RuntimeException e) {
+            try {
+                channel.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            if (e instanceof IOException) {
+                throw new UncheckedIOException((IOException) e);
+            }
+            throw (RuntimeException) e;
+        }
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param record
+     * @return the file offset of the record, see {@link RecordLogReader#getRecordOffset()}
+     */
+    public long append(BinarySerializable record) {
+        return append(record, SerializableWriter.INSTANCE);
+    }
+
+    /**
+     * Appends a record encoded by the given codec.
+     *
+     * @param value
+     * @param codec
+     * @param <T>
+     * @return the file offset of the record, see {@link RecordLogReader#getRecordOffset()}
+     */
+    public <T> long append(T value, BinaryWriter<T> codec) {
+        int start = buffer.position();
+        try {
+            writeFrame(out, value, codec);
+        } catch (BufferOverflowException e) {
+            buffer.position(start);
+            if (start > 0) {
+                // Make room and retry in the empty buffer.
+                drain();
+                return append(value, codec);
+            }
+            // Larger than the buffer: frame it on its own.
+            int size = codec.serializedSize(value);
+            ByteBuffer large = ByteBuffer.allocate(BinarySize.object(size) + Integer.BYTES).order(buffer.order());
+            writeFrame(new BinaryOutputImpl(large, buffer.order()), value, codec);
+            large.flip();
+            write(large);
+            long offset = flushedBytes;
+            flushedBytes += large.limit();
+            return offset;
+        }
+        return flushedBytes + start;
+    }
+
+    /**
+     * Writes one frame at the position of the buffer of {@code out}.
+     */
+    private <T> void writeFrame(BinaryOutputImpl out, T value, BinaryWriter<T> codec) {
+        ByteBuffer target = out.getBuffer();
+        int start = target.position();
+        out.writeObject(value, codec);
+        // The payload follows its varint length.
+        int payload = start;
+        while (target.get(payload++) < 0) {
+            // Continuation bit set.
+        }
+        crc.reset();
+        crc.update(target.array(), target.arrayOffset() + payload, target.position() - payload);
+        out.writeInt32((int) crc.getValue());
+    }
+
+    /**
+     * Returns the size the log will have once the buffered records are written.
+     */
+    public long size() {
+        return flushedBytes + buffer.position();
+    }
+
+    /**
+     * Returns the file, for {@link RecordFileWriter} to write its index after the records.
+     */
+    FileChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Returns the number of bytes of torn tail {@link #open} removed from the file.
+     */
+    public long getTruncatedBytes() {
+        return truncatedBytes;
+    }
+
+    /**
+     * Writes the buffered records to the file (without forcing it to the device).
+     */
+    @Override
+    public void flush() {
+        drain();
+    }
+
+    /**
+     * Writes the buffered records and forces the file to the storage device, so that every record appended so far
+     * survives a crash.
+     */
+    public void sync() {
+        drain();
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the buffered records and closes the file; call {@link #sync()} first if they must be durable.
+     */
+    @Override
+    public void close() {
+        try {
+            drain();
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void drain() {
+        buffer.flip();
+        try {
+            write(buffer);
+        } finally {
+            flushedBytes += buffer.position();
+            buffer.compact();
+        }
+    }
+
+    private void write(ByteBuffer data) {
+        try {
+            while (data.hasRemaining()) {
+                channel.write(data, flushedBytes + data.position());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
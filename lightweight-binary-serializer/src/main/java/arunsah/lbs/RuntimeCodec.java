@@ -0,0 +1,1170 @@
+package arunsah.lbs;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * {@link BinaryCodec} assembled at runtime by {@link CodecRegistry} for classes without a generated codec.
+ * <p>
+ * Every field is a {@link Property} with {@link MethodHandle}s that write, size and read it, adapted once to exact
+ * types so that primitives are not boxed. The properties of a class are then folded into one composed handle per
+ * operation: {@code writer} writes the fields in field id order, {@code sizer} adds up their sizes and {@code reader}
+ * dispatches a field id through a binary search over the ids to the read of that field. A call is a single
+ * {@code invokeExact}, not a virtual call and a handle invocation per field. The JVM customizes the lambda form of a
+ * handle that is invoked often (JDK 8u60 and later), so the whole chain is compiled with the field handles as
+ * constants and inlined like the code of a generated codec; {@code ObjectBenchmark} compares the two.
+ * <p>
+ * Records are read into an argument array and created through their canonical constructor, which boxes primitives.
+ */
+final class RuntimeCodec<T> implements BinaryCodec<T> {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    // (BinaryOutput, FieldType, int)BinaryOutput
+    private static final MethodHandle WRITE_FIELD_HEADER = findVirtual(BinaryOutput.class, "writeFieldHeader",
+            BinaryOutput.class, FieldType.class, int.class);
+    // (BinaryOutput, int, boolean)BinaryOutput
+    private static final MethodHandle WRITE_BOOLEAN = findVirtual(BinaryOutput.class, "writeBoolean",
+            BinaryOutput.class, int.class, boolean.class);
+    // (ValueType, BinaryOutput, Object)void, (ValueType, BinaryInput)Object and (ValueType, Object)int
+    private static final MethodHandle WRITE_VALUE = findVirtual(ValueType.class, "write",
+            void.class, BinaryOutput.class, Object.class);
+    private static final MethodHandle READ_VALUE = findVirtual(ValueType.class, "read", Object.class, BinaryInput.class);
+    private static final MethodHandle SIZE_VALUE = findVirtual(ValueType.class, "size", int.class, Object.class);
+    // (FieldType)boolean
+    private static final MethodHandle IS_BOOLEAN_TYPE = findVirtual(FieldType.class, "isBooleanType", boolean.class);
+    private static final MethodHandle IS_TRUE = findStatic(RuntimeCodec.class, "isTrue", boolean.class, FieldType.class);
+    // (FieldType, FieldType)boolean
+    private static final MethodHandle IS_SAME_TYPE = findStatic(RuntimeCodec.class, "isSameType",
+            boolean.class, FieldType.class, FieldType.class);
+    // (int, int)boolean and (int, int)int
+    private static final MethodHandle IS_EQUAL = findStatic(RuntimeCodec.class, "isEqual", boolean.class, int.class, int.class);
+    private static final MethodHandle IS_LESS = findStatic(RuntimeCodec.class, "isLess", boolean.class, int.class, int.class);
+    private static final MethodHandle ADD = findStatic(RuntimeCodec.class, "add", int.class, int.class, int.class);
+    // (Object)boolean
+    private static final MethodHandle IS_NULL = findStatic(Objects.class, "isNull", boolean.class, Object.class);
+    // (BinaryOutput, Object)void that writes nothing
+    private static final MethodHandle WRITE_NOTHING = findStatic(RuntimeCodec.class, "writeNothing",
+            void.class, BinaryOutput.class, Object.class);
+
+    private final Class<T> type;
+    private final int fieldCount;
+    private final Set<Class<?>> nestedTypes;
+    // (BinaryOutput, Object)void: writes the fields in field id order.
+    private final MethodHandle writer;
+    // (Object)int: size of the fields.
+    private final MethodHandle sizer;
+    // (int, BinaryInput, FieldType, Object)boolean: reads the field with the given id and type into the object (classes)
+    // or into the constructor arguments (records); false if the field is unknown or has another type.
+    private final MethodHandle reader;
+    // Classes: ()Object. Records: (Object[])Object over the canonical constructor.
+    private final MethodHandle constructor;
+    // Constructor arguments of records before any field is read (null for classes).
+    private final Object[] recordDefaults;
+
+    private RuntimeCodec(Class<T> type, Property[] properties, Set<Class<?>> nestedTypes, MethodHandle constructor,
+                         Object[] recordDefaults) {
+        this.type = type;
+        this.fieldCount = properties.length;
+        this.nestedTypes = nestedTypes;
+        this.constructor = constructor;
+        this.recordDefaults = recordDefaults;
+        this.writer = composeWriter(properties);
+        this.sizer = composeSizer(properties);
+        this.reader = properties.length == 0
+                ? MethodHandles.dropArguments(MethodHandles.constant(boolean.class, false), 0,
+                int.class, BinaryInput.class, FieldType.class, Object.class)
+                : composeReader(properties, 0, properties.length);
+    }
+
+    @Override
+    public void write(BinaryOutput out, T value) {
+        try {
+            writer.invokeExact(out, (Object) value);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T read(BinaryInput in) {
+        try {
+            Object target = recordDefaults != null ? recordDefaults.clone() : (Object) constructor.invokeExact();
+            while (in.hasRemaining()) {
+                int fieldId = in.nextField();
+                if (!(boolean) reader.invokeExact(fieldId, in, in.currentFieldType(), target)) {
+                    in.skipField();
+                }
+            }
+            if (recordDefaults != null) {
+                return (T) (Object) constructor.invokeExact((Object[]) target);
+            }
+            return (T) target;
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    @Override
+    public int serializedSize(T value) {
+        try {
+            return (int) sizer.invokeExact((Object) value);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Classes of nested objects that get their codec from the registry.
+     */
+    Set<Class<?>> getNestedTypes() {
+        return nestedTypes;
+    }
+
+    private static RuntimeException propagate(Throwable e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new IllegalStateException(e);
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // Composing: the properties of a class folded into one handle per operation
+    // ---------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Field writes run one after the other: each is folded in front of the writes of the following fields.
+     */
+    private static MethodHandle composeWriter(Property[] properties) {
+        MethodHandle writer = WRITE_NOTHING;
+        for (int i = properties.length - 1; i >= 0; i--) {
+            writer = MethodHandles.foldArguments(writer, properties[i].write);
+        }
+        return writer;
+    }
+
+    /**
+     * The fixed sizes are added up now; the variable sizes are added to them per call.
+     */
+    private static MethodHandle composeSizer(Property[] properties) {
+        int fixedSize = 0;
+        for (Property property : properties) {
+            fixedSize += property.fixedSize;
+        }
+        MethodHandle sizer = MethodHandles.dropArguments(MethodHandles.constant(int.class, fixedSize), 0, Object.class);
+        for (Property property : properties) {
+            if (property.size != null) {
+                // (Object, Object)int called with the value twice.
+                sizer = MethodHandles.permuteArguments(MethodHandles.filterArguments(ADD, 0, sizer, property.size),
+                        MethodType.methodType(int.class, Object.class), 0, 0);
+            }
+        }
+        return sizer;
+    }
+
+    /**
+     * Binary search over the field ids of {@code properties[from, to)}, which are sorted, ending in the read of the
+     * field if the id matches and the field type is accepted.
+     */
+    private static MethodHandle composeReader(Property[] properties, int from, int to) {
+        MethodHandle rejected = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, false), 0,
+                int.class, BinaryInput.class, FieldType.class, Object.class);
+        if (to - from == 1) {
+            Property property = properties[from];
+            MethodHandle accepted = MethodHandles.foldArguments(
+                    MethodHandles.dropArguments(MethodHandles.constant(boolean.class, true), 0,
+                            int.class, BinaryInput.class, FieldType.class, Object.class),
+                    MethodHandles.dropArguments(property.read, 0, int.class));
+            MethodHandle typeTest = MethodHandles.dropArguments(property.accepts, 0, int.class, BinaryInput.class);
+            return MethodHandles.guardWithTest(MethodHandles.insertArguments(IS_EQUAL, 1, property.id),
+                    MethodHandles.guardWithTest(typeTest, accepted, rejected), rejected);
+        }
+        int middle = (from + to) >>> 1;
+        return MethodHandles.guardWithTest(MethodHandles.insertArguments(IS_LESS, 1, properties[middle].id),
+                composeReader(properties, from, middle), composeReader(properties, middle, to));
+    }
+
+    private static boolean isTrue(FieldType fieldType) {
+        return fieldType == FieldType.BOOL_TRUE;
+    }
+
+    private static boolean isSameType(FieldType expected, FieldType fieldType) {
+        return fieldType == expected;
+    }
+
+    private static boolean isEqual(int fieldId, int expected) {
+        return fieldId == expected;
+    }
+
+    private static boolean isLess(int fieldId, int bound) {
+        return fieldId < bound;
+    }
+
+    private static int add(int a, int b) {
+        return a + b;
+    }
+
+    private static void writeNothing(BinaryOutput out, Object value) {
+    }
+
+    private static MethodHandle findVirtual(Class<?> owner, String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            return LOOKUP.findVirtual(owner, name, MethodType.methodType(returnType, parameterTypes));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle findStatic(Class<?> owner, String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            return LOOKUP.findStatic(owner, name, MethodType.methodType(returnType, parameterTypes));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // Building
+    // ---------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Builds the codec of {@code type}; nested object types are resolved through {@code registry} on first use.
+     *
+     * @throws IllegalArgumentException if the type or one of its fields is not supported
+     */
+    static <T> RuntimeCodec<T> build(Class<T> type, CodecRegistry registry) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers()) || type.isPrimitive() || type.isArray()
+                || type.isEnum()) {
+            throw new IllegalArgumentException("Cannot build a codec for " + type.getName());
+        }
+        if (type.getTypeParameters().length > 0) {
+            throw new IllegalArgumentException("Cannot build a codec for generic class " + type.getName());
+        }
+        try {
+            Builder builder = new Builder(registry);
+            Object[] recordComponents = RecordSupport.components(type);
+            if (recordComponents != null) {
+                return buildRecord(type, builder, recordComponents);
+            }
+            return buildClass(type, builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot build a codec for " + type.getName() + ": " + e, e);
+        }
+    }
+
+    private static <T> RuntimeCodec<T> buildClass(Class<T> type, Builder builder) throws ReflectiveOperationException {
+        List<Field> fields = new ArrayList<>();
+        List<Class<?>> hierarchy = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            hierarchy.add(0, c);
+        }
+        for (Class<?> c : hierarchy) {
+            Field[] declared = c.getDeclaredFields();
+            Arrays.sort(declared, Comparator.comparing(Field::getName));
+            for (Field field : declared) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+                    fields.add(field);
+                }
+            }
+        }
+        boolean annotated = fields.stream().anyMatch(f -> f.isAnnotationPresent(LbsField.class));
+
+        List<Property> properties = new ArrayList<>();
+        int nextId = 1;
+        for (Field field : fields) {
+            LbsField annotation = field.getAnnotation(LbsField.class);
+            if (annotated && annotation == null) {
+                continue;
+            }
+            int id = annotation != null ? annotation.id() : nextId++;
+            FieldType requested = annotation != null ? annotation.type() : FieldType.UNUSED;
+            field.setAccessible(true);
+            properties.add(builder.property(field, id, requested, LOOKUP.unreflectSetter(field)));
+        }
+
+        Constructor<T> constructor = type.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        MethodHandle handle = LOOKUP.unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+        return new RuntimeCodec<>(type, checkIds(type, properties), builder.nestedTypes, handle, null);
+    }
+
+    private static <T> RuntimeCodec<T> buildRecord(Class<T> type, Builder builder, Object[] components)
+            throws ReflectiveOperationException {
+        Class<?>[] parameterTypes = new Class<?>[components.length];
+        Object[] defaults = new Object[components.length];
+        List<Field> fields = new ArrayList<>();
+        for (int i = 0; i < components.length; i++) {
+            Field field = type.getDeclaredField(RecordSupport.name(components[i]));
+            parameterTypes[i] = field.getType();
+            defaults[i] = defaultValue(field.getType());
+            fields.add(field);
+        }
+        boolean annotated = fields.stream().anyMatch(f -> f.isAnnotationPresent(LbsField.class));
+
+        List<Property> properties = new ArrayList<>();
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            LbsField annotation = field.getAnnotation(LbsField.class);
+            if (annotated && annotation == null) {
+                continue;
+            }
+            int id = annotation != null ? annotation.id() : i + 1;
+            FieldType requested = annotation != null ? annotation.type() : FieldType.UNUSED;
+            field.setAccessible(true);
+            properties.add(builder.property(field, id, requested,
+                    MethodHandles.insertArguments(MethodHandles.arrayElementSetter(Object[].class), 1, i)));
+        }
+
+        Constructor<T> constructor = type.getDeclaredConstructor(parameterTypes);
+        constructor.setAccessible(true);
+        MethodHandle handle = LOOKUP.unreflectConstructor(constructor)
+                .asSpreader(Object[].class, components.length)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+        return new RuntimeCodec<>(type, checkIds(type, properties), builder.nestedTypes, handle, defaults);
+    }
+
+    /**
+     * Returns the properties in field id order (the write order of generated codecs too).
+     */
+    private static Property[] checkIds(Class<?> type, List<Property> properties) {
+        properties.sort(Comparator.comparingInt(property -> property.id));
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (Property property : properties) {
+            if (property.id <= Constant.FIELD_INDEX_FIELD_ID) {
+                throw new IllegalArgumentException("Field id must be positive (0 is reserved for the field index): "
+                        + property.id + " in " + type.getName());
+            }
+            if (!ids.add(property.id)) {
+                throw new IllegalArgumentException("Duplicate field id " + property.id + " in " + type.getName());
+            }
+        }
+        return properties.toArray(new Property[0]);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive()) return null;
+        if (type == boolean.class) return false;
+        if (type == byte.class) return (byte) 0;
+        if (type == short.class) return (short) 0;
+        if (type == char.class) return '\0';
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == float.class) return 0f;
+        return 0d;
+    }
+
+    /**
+     * Maps Java field types to properties and value types.
+     */
+    private static final class Builder {
+
+        private final CodecRegistry registry;
+        private final Set<Class<?>> nestedTypes = new LinkedHashSet<>();
+
+        Builder(CodecRegistry registry) {
+            this.registry = registry;
+        }
+
+        /**
+         * @param setter sets the field of a class, or the constructor argument of a record in an {@code Object[]}
+         */
+        Property property(Field field, int id, FieldType requested, MethodHandle setter) throws IllegalAccessException {
+            Class<?> javaType = field.getType();
+            MethodHandle getter = LOOKUP.unreflectGetter(field);
+            if (javaType.isPrimitive()) {
+                MethodHandle exactGetter = getter.asType(MethodType.methodType(javaType, Object.class));
+                MethodHandle exactSetter = setter.asType(MethodType.methodType(void.class, Object.class, javaType));
+                if (javaType == boolean.class) {
+                    if (requested != FieldType.UNUSED && !requested.isBooleanType()) {
+                        throw mismatch(field, requested);
+                    }
+                    return Property.ofBoolean(id, exactGetter, exactSetter);
+                }
+                PrimitiveEncoding encoding = PrimitiveEncoding.of(javaType, requested);
+                if (encoding == null) {
+                    throw requested == FieldType.UNUSED
+                            ? new IllegalArgumentException("Unsupported field type " + javaType + " of " + field)
+                            : mismatch(field, requested);
+                }
+                return Property.ofPrimitive(id, encoding, exactGetter, exactSetter);
+            }
+            ValueType valueType = valueType(field, javaType, field.getGenericType());
+            if (requested != FieldType.UNUSED && requested != valueType.fieldType()) {
+                // int[], long[] and float[] have alternative encodings.
+                valueType = ArrayValueType.alternative(javaType, requested);
+                if (valueType == null) {
+                    throw mismatch(field, requested);
+                }
+            }
+            return Property.ofReference(id, valueType, getter.asType(MethodType.methodType(Object.class, Object.class)),
+                    setter.asType(MethodType.methodType(void.class, Object.class, Object.class)));
+        }
+
+        private ValueType valueType(Field field, Class<?> javaType, Type genericType) {
+            if (javaType == String.class) {
+                return StringValueType.INSTANCE;
+            }
+            if (javaType.isArray()) {
+                ValueType arrayType = ArrayValueType.of(javaType);
+                if (arrayType == null) {
+                    throw new IllegalArgumentException("Unsupported field type " + javaType.getTypeName() + " of " + field);
+                }
+                return arrayType;
+            }
+            if (javaType == List.class && genericType instanceof ParameterizedType) {
+                Type[] arguments = ((ParameterizedType) genericType).getActualTypeArguments();
+                return new ListValueType(elementType(field, arguments[0]));
+            }
+            if (javaType == Map.class && genericType instanceof ParameterizedType) {
+                Type[] arguments = ((ParameterizedType) genericType).getActualTypeArguments();
+                return new MapValueType(elementType(field, arguments[0]), elementType(field, arguments[1]));
+            }
+            ValueType objectType = objectType(javaType);
+            if (objectType == null) {
+                throw new IllegalArgumentException("Unsupported field type " + genericType.getTypeName() + " of " + field);
+            }
+            return objectType;
+        }
+
+        /**
+         * List elements and map keys/values; boxed numbers use their compact encodings.
+         */
+        private ValueType elementType(Field field, Type type) {
+            if (type instanceof Class) {
+                Class<?> elementClass = (Class<?>) type;
+                if (elementClass == String.class) return StringValueType.INSTANCE;
+                if (elementClass == Integer.class) return BoxedValueType.VAR_INT32;
+                if (elementClass == Long.class) return BoxedValueType.VAR_INT64;
+                if (elementClass == Double.class) return BoxedValueType.FLOAT64;
+                ValueType objectType = objectType(elementClass);
+                if (objectType != null) {
+                    return objectType;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported list or map element type " + type.getTypeName() + " of " + field);
+        }
+
+        private ValueType objectType(Class<?> javaType) {
+            if (javaType.isInterface() || Modifier.isAbstract(javaType.getModifiers()) || javaType.isEnum()
+                    || javaType.getName().startsWith("java.")) {
+                return null;
+            }
+            if (BinarySerializable.class.isAssignableFrom(javaType)) {
+                try {
+                    Constructor<?> constructor = javaType.getDeclaredConstructor();
+                    constructor.setAccessible(true);
+                    return new SerializableValueType(LOOKUP.unreflectConstructor(constructor)
+                            .asType(MethodType.methodType(BinarySerializable.class)));
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalArgumentException("BinarySerializable " + javaType.getName()
+                            + " needs a no-arg constructor", e);
+                }
+            }
+            nestedTypes.add(javaType);
+            return new CodecValueType(registry, javaType);
+        }
+
+        private static IllegalArgumentException mismatch(Field field, FieldType requested) {
+            return new IllegalArgumentException("Field type " + requested + " does not match Java type of " + field);
+        }
+    }
+
+    /**
+     * Reflective access to records (Java 16+), so that this class still builds and runs on Java 8.
+     */
+    private static final class RecordSupport {
+
+        private static final Method IS_RECORD;
+        private static final Method GET_RECORD_COMPONENTS;
+        private static final Method GET_NAME;
+
+        static {
+            Method isRecord = null;
+            Method getRecordComponents = null;
+            Method getName = null;
+            try {
+                isRecord = Class.class.getMethod("isRecord");
+                getRecordComponents = Class.class.getMethod("getRecordComponents");
+                getName = Class.forName("java.lang.reflect.RecordComponent").getMethod("getName");
+            } catch (ReflectiveOperationException e) {
+                // Records are not supported by this JVM.
+            }
+            IS_RECORD = isRecord;
+            GET_RECORD_COMPONENTS = getRecordComponents;
+            GET_NAME = getName;
+        }
+
+        /**
+         * Returns the record components of {@code type}, or null if it is not a record.
+         */
+        static Object[] components(Class<?> type) throws ReflectiveOperationException {
+            if (IS_RECORD == null || !(Boolean) IS_RECORD.invoke(type)) {
+                return null;
+            }
+            return (Object[]) GET_RECORD_COMPONENTS.invoke(type);
+        }
+
+        static String name(Object component) throws ReflectiveOperationException {
+            return (String) GET_NAME.invoke(component);
+        }
+    }
+
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // Properties
+    // ---------------------------------------------------------------------------------------------------------------
+
+    /**
+     * One serialized field, as the handles that the codec folds together. The object handles are typed
+     * {@code Object}: the instance of a class, or the constructor argument array of a record when reading.
+     */
+    static final class Property {
+
+        // (BinaryInput, FieldType, Object)void
+        private static final MethodType READ_TYPE = MethodType.methodType(void.class, BinaryInput.class,
+                FieldType.class, Object.class);
+
+        final int id;
+        // Bytes written whatever the value (header and fixed-width payload); zero for references, left out when null.
+        final int fixedSize;
+        // (BinaryOutput, Object)void
+        final MethodHandle write;
+        // (Object)int: bytes written beyond fixedSize, null if there are none.
+        final MethodHandle size;
+        // (FieldType)boolean: whether the field is read with the given type (it is skipped otherwise).
+        final MethodHandle accepts;
+        // (BinaryInput, FieldType, Object)void
+        final MethodHandle read;
+
+        private Property(int id, int fixedSize, MethodHandle write, MethodHandle size, MethodHandle accepts,
+                         MethodHandle read) {
+            this.id = id;
+            this.fixedSize = fixedSize;
+            this.write = write;
+            this.size = size;
+            this.accepts = accepts;
+            this.read = read;
+        }
+
+        /**
+         * @param getter (Object)boolean
+         * @param setter (Object, boolean)void
+         */
+        static Property ofBoolean(int id, MethodHandle getter, MethodHandle setter) {
+            MethodHandle write = MethodHandles.insertArguments(WRITE_BOOLEAN, 1, id)
+                    .asType(MethodType.methodType(void.class, BinaryOutput.class, boolean.class));
+            // (Object, FieldType)void: the value is in the field type.
+            MethodHandle read = MethodHandles.filterArguments(setter, 1, IS_TRUE);
+            return new Property(id, BinarySize.fieldHeader(FieldType.BOOL_TRUE, id),
+                    MethodHandles.filterArguments(write, 1, getter), null, IS_BOOLEAN_TYPE,
+                    MethodHandles.permuteArguments(read, READ_TYPE, 2, 1));
+        }
+
+        /**
+         * @param getter (Object)X with X the primitive type of the encoding
+         * @param setter (Object, X)void
+         */
+        static Property ofPrimitive(int id, PrimitiveEncoding encoding, MethodHandle getter, MethodHandle setter) {
+            // The header is written first and returns the output the payload is written to.
+            MethodHandle header = MethodHandles.insertArguments(WRITE_FIELD_HEADER, 1, encoding.fieldType, id);
+            MethodHandle write = MethodHandles.filterArguments(encoding.writePayload, 0, header, getter);
+            int headerSize = BinarySize.fieldHeader(encoding.fieldType, id);
+            MethodHandle read = MethodHandles.filterArguments(setter, 1, encoding.readPayload);
+            return new Property(id, headerSize + encoding.fixedPayloadSize, write,
+                    encoding.payloadSize == null ? null : MethodHandles.filterArguments(encoding.payloadSize, 0, getter),
+                    MethodHandles.insertArguments(IS_SAME_TYPE, 0, encoding.fieldType),
+                    MethodHandles.permuteArguments(read, READ_TYPE, 2, 0));
+        }
+
+        /**
+         * @param getter (Object)Object
+         * @param setter (Object, Object)void
+         */
+        static Property ofReference(int id, ValueType valueType, MethodHandle getter, MethodHandle setter) {
+            FieldType fieldType = valueType.fieldType();
+            MethodHandle header = MethodHandles.insertArguments(WRITE_FIELD_HEADER, 1, fieldType, id);
+            // (BinaryOutput, Object)void and (Object)int on the field value, which is left out if null.
+            MethodHandle write = MethodHandles.guardWithTest(MethodHandles.dropArguments(IS_NULL, 0, BinaryOutput.class),
+                    WRITE_NOTHING, MethodHandles.filterArguments(WRITE_VALUE.bindTo(valueType), 0, header));
+            MethodHandle size = MethodHandles.guardWithTest(IS_NULL,
+                    MethodHandles.dropArguments(MethodHandles.constant(int.class, 0), 0, Object.class),
+                    MethodHandles.filterReturnValue(SIZE_VALUE.bindTo(valueType),
+                            MethodHandles.insertArguments(ADD, 0, BinarySize.fieldHeader(fieldType, id))));
+            MethodHandle read = MethodHandles.filterArguments(setter, 1, READ_VALUE.bindTo(valueType));
+            return new Property(id, 0, MethodHandles.filterArguments(write, 1, getter),
+                    MethodHandles.filterArguments(size, 0, getter),
+                    MethodHandles.insertArguments(IS_SAME_TYPE, 0, fieldType),
+                    MethodHandles.permuteArguments(read, READ_TYPE, 2, 0));
+        }
+    }
+
+    /**
+     * Encodings of primitive fields other than {@code boolean}, whose value is in the field type.
+     */
+    enum PrimitiveEncoding {
+        INT8(byte.class, FieldType.INT8, "Int8", Byte.BYTES),
+        INT16(short.class, FieldType.INT16, "Int16", Short.BYTES),
+        INT32(int.class, FieldType.INT32, "Int32", Integer.BYTES),
+        VAR_INT32(int.class, FieldType.VAR_INT32, "VarInt32", -1),
+        SVAR_INT32(int.class, FieldType.SVAR_INT, "SVarInt32", -1),
+        INT64(long.class, FieldType.INT64, "Int64", Long.BYTES),
+        VAR_INT64(long.class, FieldType.VAR_INT64, "VarInt64", -1),
+        SVAR_INT64(long.class, FieldType.SVAR_INT, "SVarInt64", -1),
+        FLOAT32(float.class, FieldType.FLOAT32, "Float32", Float.BYTES),
+        FLOAT16(float.class, FieldType.FLOAT16, "Float16", BinarySize.FLOAT16),
+        FLOAT64(double.class, FieldType.FLOAT64, "Float64", Double.BYTES);
+
+        final Class<?> javaType;
+        final FieldType fieldType;
+        // Size of fixed-width payloads, 0 for varints (sized by payloadSize).
+        final int fixedPayloadSize;
+        // (BinaryOutput, X)void, e.g. writeVarInt32
+        final MethodHandle writePayload;
+        // (BinaryInput)X, e.g. readVarInt32
+        final MethodHandle readPayload;
+        // (X)int, e.g. BinarySize.varInt32; null for fixed-width payloads
+        final MethodHandle payloadSize;
+
+        /**
+         * @param suffix  name of the {@code write}/{@code read} methods without the prefix, and of the
+         *                {@link BinarySize} method of varints with a lowercase first letter
+         * @param size    payload size, -1 for varints
+         */
+        PrimitiveEncoding(Class<?> javaType, FieldType fieldType, String suffix, int size) {
+            this.javaType = javaType;
+            this.fieldType = fieldType;
+            this.fixedPayloadSize = Math.max(size, 0);
+            this.writePayload = findVirtual(BinaryOutput.class, "write" + suffix, BinaryOutput.class, javaType)
+                    .asType(MethodType.methodType(void.class, BinaryOutput.class, javaType));
+            this.readPayload = findVirtual(BinaryInput.class, "read" + suffix, javaType);
+            this.payloadSize = size >= 0 ? null : findStatic(BinarySize.class,
+                    Character.toLowerCase(suffix.charAt(0)) + suffix.substring(1), int.class, javaType);
+        }
+
+        /**
+         * Returns the encoding of a field of primitive {@code javaType} with the {@code requested} field type
+         * ({@link FieldType#UNUSED} for the default one), or null if there is none.
+         */
+        static PrimitiveEncoding of(Class<?> javaType, FieldType requested) {
+            for (PrimitiveEncoding encoding : values()) {
+                if (encoding.javaType == javaType && (requested == FieldType.UNUSED || requested == encoding.fieldType)) {
+                    return encoding;
+                }
+            }
+            return null;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // Value types: payload encodings of reference values, also used for list elements and map keys/values
+    // ---------------------------------------------------------------------------------------------------------------
+
+    interface ValueType {
+        FieldType fieldType();
+
+        void write(BinaryOutput out, Object value);
+
+        Object read(BinaryInput in);
+
+        int size(Object value);
+    }
+
+    enum StringValueType implements ValueType {
+        INSTANCE;
+
+        @Override
+        public FieldType fieldType() {
+            return FieldType.STRING_UTF8;
+        }
+
+        @Override
+        public void write(BinaryOutput out, Object value) {
+            out.writeStringUTF8((String) value);
+        }
+
+        @Override
+        public Object read(BinaryInput in) {
+            return in.readStringUTF8();
+        }
+
+        @Override
+        public int size(Object value) {
+            return BinarySize.stringUTF8((String) value);
+        }
+    }
+
+    /**
+     * Boxed numbers as list elements or map keys/values.
+     */
+    enum BoxedValueType implements ValueType {
+        VAR_INT32 {
+            @Override
+            public void write(BinaryOutput out, Object value) {
+                out.writeVarInt32((Integer) value);
+            }
+
+            @Override
+            public Object read(BinaryInput in) {
+                return in.readVarInt32();
+            }
+
+            @Override
+            public int size(Object value) {
+                return BinarySize.varInt32((Integer) value);
+            }
+        },
+        VAR_INT64 {
+            @Override
+            public void write(BinaryOutput out, Object value) {
+                out.writeVarInt64((Long) value);
+            }
+
+            @Override
+            public Object read(BinaryInput in) {
+                return in.readVarInt64();
+            }
+
+            @Override
+            public int size(Object value) {
+                return BinarySize.varInt64((Long) value);
+            }
+        },
+        FLOAT64 {
+            @Override
+            public void write(BinaryOutput out, Object value) {
+                out.writeFloat64((Double) value);
+            }
+
+            @Override
+            public Object read(BinaryInput in) {
+                return in.readFloat64();
+            }
+
+            @Override
+            public int size(Object value) {
+                return Double.BYTES;
+            }
+        };
+
+        @Override
+        public FieldType fieldType() {
+            return FieldType.valueOf(name());
+        }
+    }
+
+    enum ArrayValueType implements ValueType {
+        INT8_ARRAY {
+            @Override
+            public void write(BinaryOutput out, Object value) {
+                out.writeInt8Array((byte[]) value);
+            }
+
+            @Override
+            public Object read(BinaryInput in) {
+                return in.readInt8Array();
+            }
+
+            @Override
+            public int size(Object value) {
+                return BinarySize.int8Array((byte[]) value);
+            }
+        },
+        INT16_ARRAY {
+            @Override
+            public void write(BinaryOutput out, Object value) {
+                out.writeInt16Array((short[]) value);
+            }
+
+            @Override
+            public Object read(BinaryInput in) {
+                return in.readInt16Array();
+            }
+
+            @Override
+            public int size(Object value) {
+                return BinarySize.int16Array((short[]) value);
+            }
+        },
+        INT32_ARRAY {
+            @Override
+            public void write(BinaryOutput out, Object value) {
+                out.writeInt32Array((int[]) value);
+            }
+
+            @Override
+            public Object read(BinaryInput in) {
+                return in.readInt32Array();
+            }
+
+            @Override
+            public int size(Object value) {
+                return BinarySize.int32Array((int[]) value);
+            }
+        },
+        VAR_INT32_ARRAY {
+            @Override
+            public void write(BinaryOutput out, Object value) {
+                out.writeVarInt32Array((int[]) value);
+            }
+
+            @Override
+            public Object read(BinaryInput in) {
+                return in.readVarInt32Array();
+            }
+
+            @Override
+            public int size(Object value) {
+                return BinarySize.varInt32Array((int[]) value);
+            }
+        },
+        INT64_ARRAY {
+            @Override
+            public void write(BinaryOutput out, Object value) {
+                out.writeInt64Array((long[]) value);
+            }
+
+            @Override
+            public Object read(BinaryInput in) {
+                return in.readInt64Array();
+            }
+
+            @Override
+            public int size(Object value) {
+                return BinarySize.int64Array((long[]) value);
+            }
+        },
+        VAR_INT64_ARRAY {
+            @Override
+            public void write(BinaryOutput out, Object value) {
+                out.writeVarInt64Array((long[]) value);
+            }
+
+            @Override
+            public Object read(BinaryInput in) {
+                return in.readVarInt64Array();
+            }
+
+            @Override
+            public int size(Object value) {
+                return BinarySize.varInt64Array((long[]) value);
+            }
+        },
+        SVAR_INT32_ARRAY {
+            @Override
+            public void write(BinaryOutput out, Object value) {
+                out.writeSVarInt32Array((int[]) value);
+            }
+
+            @Override
+            public Object read(BinaryInput in) {
+                return in.readSVarInt32Array();
+            }
+
+            @Override
+            public int size(Object value) {
+                return BinarySize.sVarInt32Array((int[]) value);
+            }
+
+            @Override
+            public FieldType fieldType() {
+                return FieldType.SVAR_INT_ARRAY;
+            }
+        },
+        SVAR_INT64_ARRAY {
+            @Override
+            public void write(BinaryOutput out, Object value) {
+                out.writeSVarInt64Array((long[]) value);
+            }
+
+            @Override
+            public Object read(BinaryInput in) {
+                return in.readSVarInt64Array();
+            }
+
+            @Override
+            public int size(Object value) {
+                return BinarySize.sVarInt64Array((long[]) value);
+            }
+
+            @Override
+            public FieldType fieldType() {
+                return FieldType.SVAR_INT_ARRAY;
+            }
+        },
+        FLOAT32_ARRAY {
+            @Override
+            public void write(BinaryOutput out, Object value) {
+                out.writeFloat32Array((float[]) value);
+            }
+
+            @Override
+            public Object read(BinaryInput in) {
+                return in.readFloat32Array();
+            }
+
+            @Override
+            public int size(Object value) {
+                return BinarySize.float32Array((float[]) value);
+            }
+        },
+        FLOAT16_ARRAY {
+            @Override
+            public void write(BinaryOutput out, Object value) {
+                out.writeFloat16Array((float[]) value);
+            }
+
+            @Override
+            public Object read(BinaryInput in) {
+                return in.readFloat16Array();
+            }
+
+            @Override
+            public int size(Object value) {
+                return BinarySize.float16Array((float[]) value);
+            }
+        },
+        FLOAT64_ARRAY {
+            @Override
+            public void write(BinaryOutput out, Object value) {
+                out.writeFloat64Array((double[]) value);
+            }
+
+            @Override
+            public Object read(BinaryInput in) {
+                return in.readFloat64Array();
+            }
+
+            @Override
+            public int size(Object value) {
+                return BinarySize.float64Array((double[]) value);
+            }
+        },
+        STRING_UTF8_ARRAY {
+            @Override
+            public void write(BinaryOutput out, Object value) {
+                out.writeStringUTF8Array((String[]) value);
+            }
+
+            @Override
+            public Object read(BinaryInput in) {
+                return in.readStringUTF8Array();
+            }
+
+            @Override
+            public int size(Object value) {
+                return BinarySize.stringUTF8Array((String[]) value);
+            }
+        };
+
+        @Override
+        public FieldType fieldType() {
+            return FieldType.valueOf(name());
+        }
+
+        /**
+         * Default encoding of an array class, or null if the class is not supported.
+         */
+        static ValueType of(Class<?> arrayType) {
+            Class<?> component = arrayType.getComponentType();
+            if (component == byte.class) return INT8_ARRAY;
+            if (component == short.class) return INT16_ARRAY;
+            if (component == int.class) return INT32_ARRAY;
+            if (component == long.class) return INT64_ARRAY;
+            if (component == float.class) return FLOAT32_ARRAY;
+            if (component == double.class) return FLOAT64_ARRAY;
+            if (component == String.class) return STRING_UTF8_ARRAY;
+            return null;
+        }
+
+        /**
+         * Alternative encoding of an array class (e.g. VAR_INT32_ARRAY for int[]), or null if there is none.
+         */
+        static ValueType alternative(Class<?> arrayType, FieldType requested) {
+            Class<?> component = arrayType.getComponentType();
+            if (component == int.class && requested == FieldType.VAR_INT32_ARRAY) return VAR_INT32_ARRAY;
+            if (component == long.class && requested == FieldType.VAR_INT64_ARRAY) return VAR_INT64_ARRAY;
+            if (component == int.class && requested == FieldType.SVAR_INT_ARRAY) return SVAR_INT32_ARRAY;
+            if (component == long.class && requested == FieldType.SVAR_INT_ARRAY) return SVAR_INT64_ARRAY;
+            if (component == float.class && requested == FieldType.FLOAT16_ARRAY) return FLOAT16_ARRAY;
+            return null;
+        }
+    }
+
+    /**
+     * Nested object written with the registry's codec of its class, looked up on first use.
+     */
+    static final class CodecValueType implements ValueType {
+        private final CodecRegistry registry;
+        private final Class<?> type;
+        private BinaryCodec<Object> codec;
+
+        CodecValueType(CodecRegistry registry, Class<?> type) {
+            this.registry = registry;
+            this.type = type;
+        }
+
+        @SuppressWarnings("unchecked")
+        private BinaryCodec<Object> codec() {
+            // Racy but idempotent: the registry returns the same codec to every thread.
+            BinaryCodec<Object> c = codec;
+            if (c == null) {
+                c = (BinaryCodec<Object>) registry.codecFor(type);
+                codec = c;
+            }
+            return c;
+        }
+
+        @Override
+        public FieldType fieldType() {
+            return FieldType.OBJECT;
+        }
+
+        @Override
+        public void write(BinaryOutput out, Object value) {
+            out.writeObject(value, codec());
+        }
+
+        @Override
+        public Object read(BinaryInput in) {
+            return in.readObject(codec());
+        }
+
+        @Override
+        public int size(Object value) {
+            return BinarySize.object(value, codec());
+        }
+    }
+
+    /**
+     * Nested {@link BinarySerializable}, created through its no-arg constructor.
+     */
+    static final class SerializableValueType implements ValueType {
+        // ()BinarySerializable
+        private final MethodHandle constructor;
+
+        SerializableValueType(MethodHandle constructor) {
+            this.constructor = constructor;
+        }
+
+        @Override
+        public FieldType fieldType() {
+            return FieldType.OBJECT;
+        }
+
+        @Override
+        public void write(BinaryOutput out, Object value) {
+            out.writeObject((BinarySerializable) value);
+        }
+
+        @Override
+        public Object read(BinaryInput in) {
+            return in.readObject(this::create);
+        }
+
+        @Override
+        public int size(Object value) {
+            return BinarySize.object((BinarySerializable) value);
+        }
+
+        private BinarySerializable create() {
+            try {
+                return (BinarySerializable) constructor.invokeExact();
+            } catch (Throwable e) {
+                throw propagate(e);
+            }
+        }
+    }
+
+    static final class ListValueType implements ValueType {
+        private final ValueType element;
+
+        ListValueType(ValueType element) {
+            this.element = element;
+        }
+
+        @Override
+        public FieldType fieldType() {
+            return FieldType.LIST;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void write(BinaryOutput out, Object value) {
+            out.writeList((List<Object>) value, element::write);
+        }
+
+        @Override
+        public Object read(BinaryInput in) {
+            return in.readList(element::read);
+        }
+
+        @Override
+        public int size(Object value) {
+            List<?> list = (List<?>) value;
+            int size = BinarySize.varInt32(list.size());
+            for (int i = 0; i < list.size(); i++) {
+                size += element.size(list.get(i));
+            }
+            return size;
+        }
+    }
+
+    static final class MapValueType implements ValueType {
+        private final ValueType key;
+        private final ValueType value;
+
+        MapValueType(ValueType key, ValueType value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public FieldType fieldType() {
+            return FieldType.MAP;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void write(BinaryOutput out, Object map) {
+            out.writeMap((Map<Object, Object>) map, key::write, value::write);
+        }
+
+        @Override
+        public Object read(BinaryInput in) {
+            return in.readMap(key::read, value::read);
+        }
+
+        @Override
+        public int size(Object map) {
+            int size = BinarySize.varInt32(((Map<?, ?>) map).size());
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) map).entrySet()) {
+                size += key.size(entry.getKey()) + value.size(entry.getValue());
+            }
+            return size;
+        }
+    }
+}
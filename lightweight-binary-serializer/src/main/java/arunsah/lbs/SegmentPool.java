@@ -0,0 +1,77 @@
+package arunsah.lbs;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Thread-safe pool of fixed-size {@link ByteBuffer} segments used by {@link SegmentedBinaryOutput}.
+ * <p>
+ * Segments are allocated lazily. Released segments are kept for reuse up to {@code maxPooledSegments}; any
+ * segment released beyond that is simply dropped and left to the garbage collector.
+ */
+public class SegmentPool {
+
+    private final int segmentSize;
+    private final boolean direct;
+    private final ArrayBlockingQueue<ByteBuffer> freeSegments;
+
+    /**
+     * Create instance of {@link SegmentPool}
+     *
+     * @param segmentSize       size in bytes of every segment (at least 16)
+     * @param maxPooledSegments maximum number of free segments kept for reuse
+     * @param direct            allocate direct (off-heap) segments instead of heap segments
+     */
+    public SegmentPool(int segmentSize, int maxPooledSegments, boolean direct) {
+        if (segmentSize < 16) {
+            throw new IllegalArgumentException("Segment size must be at least 16 bytes: " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+        this.direct = direct;
+        this.freeSegments = new ArrayBlockingQueue<>(Math.max(1, maxPooledSegments));
+    }
+
+    /**
+     * Create a pool of heap segments of {@link Constant#DEFAULT_SEGMENT_SIZE} bytes.
+     */
+    public SegmentPool() {
+        this(Constant.DEFAULT_SEGMENT_SIZE, Constant.DEFAULT_MAX_POOLED_SEGMENTS, false);
+    }
+
+    /**
+     * Returns a cleared segment, reusing a pooled one when available.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer segment = freeSegments.poll();
+        if (segment == null) {
+            segment = direct ? ByteBuffer.allocateDirect(segmentSize) : ByteBuffer.allocate(segmentSize);
+        }
+        return segment;
+    }
+
+    /**
+     * Returns a segment to the pool. The caller must not use the segment afterwards.
+     */
+    public void release(ByteBuffer segment) {
+        if (segment.capacity() != segmentSize) {
+            throw new IllegalArgumentException("Segment does not belong to this pool: " + segment);
+        }
+        segment.clear();
+        freeSegments.offer(segment);
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * Number of free segments currently held for reuse.
+     */
+    public int getPooledSegmentCount() {
+        return freeSegments.size();
+    }
+}
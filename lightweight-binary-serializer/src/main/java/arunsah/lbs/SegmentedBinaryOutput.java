@@ -0,0 +1,342 @@
+package arunsah.lbs;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link BinaryOutput} backed by a chain of fixed-size segments taken from a {@link SegmentPool}.
+ * <p>
+ * The output grows on demand, one segment at a time, so it never overflows and never has to be sized for the
+ * worst-case message. Fixed-width values and varints are never split across segments; byte and string payloads are.
+ * <p>
+ * The written data is tracked as an ordered list of ranges over the segments. The result can be exposed without
+ * copying as a gather array ({@link #toByteBuffers()}), or copied into one contiguous buffer ({@link #toByteBuffer()},
+ * {@link #copyTo(ByteBuffer)}). {@link #reset()} returns all segments to the pool.
+ * <p>
+ * Nested objects get a length slot reserved in the current segment which becomes its own range; once the object is
+ * written the slot is filled in and the range trimmed to the varint length, so nothing is ever moved or copied.
+ * <p>
+ * Instances are not thread-safe; the pool may be shared between threads.
+ */
+public class SegmentedBinaryOutput extends AbstractBinaryOutput {
+
+    // Room reserved for the length prefix of a nested object: the widest varint32.
+    private static final int MAX_VAR_INT32_SIZE = 5;
+
+    // Room needed for the widest varint64.
+    private static final int MAX_VAR_INT64_SIZE = 10;
+
+    private final SegmentPool pool;
+    private final ByteOrder byteOrder;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+
+    // Written ranges in output order, stored as (segment index, start, end) triples.
+    private int[] ranges = new int[3 * 16];
+    private int rangeCount;
+
+    // Segment being written and start of its open (not yet recorded) range.
+    private ByteBuffer current;
+    private int rangeStart;
+
+    // Number of bytes in the recorded ranges.
+    private int closedSize;
+
+    // Encoder of the strings, created on first use.
+    private Utf8 utf8;
+
+    /**
+     * Create instance of {@link SegmentedBinaryOutput}
+     *
+     * @param pool
+     * @param byteOrder
+     */
+    public SegmentedBinaryOutput(SegmentPool pool, ByteOrder byteOrder) {
+        this.pool = pool;
+        this.byteOrder = byteOrder;
+    }
+
+    /**
+     * Static helper methods to create instance of {@link SegmentedBinaryOutput} with {@link ByteOrder#BIG_ENDIAN}
+     *
+     * @param pool
+     * @return
+     */
+    public static SegmentedBinaryOutput bigEndianOutput(SegmentPool pool) {
+        return new SegmentedBinaryOutput(pool, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Static helper methods to create instance of {@link SegmentedBinaryOutput} with {@link ByteOrder#LITTLE_ENDIAN}
+     *
+     * @param pool
+     * @return
+     */
+    public static SegmentedBinaryOutput littleEndianOutput(SegmentPool pool) {
+        return new SegmentedBinaryOutput(pool, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public BinaryOutput writeVarInt32(int value) {
+        ensureRemaining(MAX_VAR_INT32_SIZE);
+        while ((value & ~0x7F) != 0) {
+            current.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        current.put((byte) (value & 0x7F));
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeVarInt64(long value) {
+        ensureRemaining(MAX_VAR_INT64_SIZE);
+        while ((value & ~0x7F) != 0) {
+            current.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        current.put((byte) (value & 0x7F));
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt8(byte value) {
+        ensureRemaining(Byte.BYTES);
+        current.put(value);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt16(short value) {
+        ensureRemaining(Short.BYTES);
+        current.putShort(value);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt32(int value) {
+        ensureRemaining(Integer.BYTES);
+        current.putInt(value);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt64(long value) {
+        ensureRemaining(Long.BYTES);
+        current.putLong(value);
+        return this;
+    }
+
+    /**
+     * Writes a string as its UTF-8 byte length and bytes, encoded straight into the segments. A string that does not
+     * fit in the current segment continues in the next one.
+     */
+    @Override
+    public BinaryOutput writeStringUTF8(String value) {
+        int size = BinarySize.utf8Length(value);
+        writeVarInt32(size);
+        if (current.remaining() >= size && value.length() <= Utf8.ENCODER_THRESHOLD) {
+            Utf8.encode(value, current);
+            return this;
+        }
+        if (utf8 == null) {
+            utf8 = new Utf8();
+        }
+        utf8.start(value);
+        while (!utf8.encodeTo(current)) {
+            nextSegment();
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeRawBytes(byte[] data, int offset, int length) {
+        while (length > 0) {
+            if (current == null || !current.hasRemaining()) {
+                nextSegment();
+            }
+            int chunk = Math.min(length, current.remaining());
+            current.put(data, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeRawBytes(ByteBuffer data) {
+        int limit = data.limit();
+        while (data.hasRemaining()) {
+            if (current == null || !current.hasRemaining()) {
+                nextSegment();
+            }
+            int chunk = Math.min(data.remaining(), current.remaining());
+            data.limit(data.position() + chunk);
+            current.put(data);
+            data.limit(limit);
+        }
+        return this;
+    }
+
+    /**
+     * Write a value as a nested object using the given codec.
+     * <p>
+     * A five byte length slot is reserved as a separate range; after the object is written
+     * the varint length is filled in and the range is trimmed to it.
+     *
+     * @param value
+     * @param codec
+     * @param <T>
+     * @return
+     */
+    @Override
+    public <T> BinaryOutput writeObject(T value, BinaryWriter<T> codec) {
+        ensureRemaining(MAX_VAR_INT32_SIZE);
+        closeRange();
+        ByteBuffer slotSegment = current;
+        int slotPosition = current.position();
+        int slotRange = addRange(segments.size() - 1, slotPosition, slotPosition);
+        current.position(slotPosition + MAX_VAR_INT32_SIZE);
+        rangeStart = current.position();
+
+        int start = getBufferPosition();
+        codec.write(this, value);
+        int length = getBufferPosition() - start;
+
+        // Back-patch the length into the slot and trim the slot range to the varint.
+        int position = slotPosition;
+        while ((length & ~0x7F) != 0) {
+            slotSegment.put(position++, (byte) ((length & 0x7F) | 0x80));
+            length >>>= 7;
+        }
+        slotSegment.put(position++, (byte) (length & 0x7F));
+        ranges[slotRange * 3 + 2] = position;
+        closedSize += position - slotPosition;
+        return this;
+    }
+
+    /**
+     * Returns the segment currently being written (null before the first write).
+     * Use {@link #toByteBuffers()} or {@link #toByteBuffer()} to access the written data.
+     */
+    @Override
+    public ByteBuffer getBuffer() {
+        return current;
+    }
+
+    /**
+     * Returns the total number of bytes written.
+     */
+    @Override
+    public int getBufferPosition() {
+        return current == null ? closedSize : closedSize + current.position() - rangeStart;
+    }
+
+    /**
+     * Returns the written data as a gather array of buffers, in order, without copying.
+     * <p>
+     * The buffers share content with the segments and are only valid until {@link #reset()}.
+     */
+    public ByteBuffer[] toByteBuffers() {
+        List<ByteBuffer> result = new ArrayList<>(rangeCount + 1);
+        for (int i = 0; i < rangeCount; i++) {
+            int start = ranges[i * 3 + 1];
+            int end = ranges[i * 3 + 2];
+            if (end > start) {
+                result.add(view(segments.get(ranges[i * 3]), start, end));
+            }
+        }
+        if (current != null && current.position() > rangeStart) {
+            result.add(view(current, rangeStart, current.position()));
+        }
+        return result.toArray(new ByteBuffer[0]);
+    }
+
+    /**
+     * Copies the written data into {@code target} at its position.
+     *
+     * @throws java.nio.BufferOverflowException if the target does not have enough space remaining
+     */
+    public void copyTo(ByteBuffer target) {
+        for (ByteBuffer range : toByteBuffers()) {
+            target.put(range);
+        }
+    }
+
+    /**
+     * Copies the written data into a new heap buffer, ready for reading and using this output's byte order.
+     */
+    public ByteBuffer toByteBuffer() {
+        ByteBuffer result = ByteBuffer.allocate(getBufferPosition()).order(byteOrder);
+        copyTo(result);
+        result.flip();
+        return result;
+    }
+
+    /**
+     * Discards the written data and returns all segments to the pool.
+     */
+    public void reset() {
+        for (int i = 0; i < segments.size(); i++) {
+            pool.release(segments.get(i));
+        }
+        segments.clear();
+        rangeCount = 0;
+        current = null;
+        rangeStart = 0;
+        closedSize = 0;
+    }
+
+    @Override
+    public ByteOrder getByteOrder() {
+        return byteOrder;
+    }
+
+    private void ensureRemaining(int length) {
+        if (current == null || current.remaining() < length) {
+            nextSegment();
+        }
+    }
+
+    private void nextSegment() {
+        closeRange();
+        current = pool.acquire();
+        current.order(byteOrder);
+        segments.add(current);
+        rangeStart = 0;
+    }
+
+    /**
+     * Records the open range of the current segment, if it holds any data.
+     */
+    private void closeRange() {
+        if (current == null) {
+            return;
+        }
+        int end = current.position();
+        if (end > rangeStart) {
+            addRange(segments.size() - 1, rangeStart, end);
+            closedSize += end - rangeStart;
+        }
+        rangeStart = end;
+    }
+
+    private int addRange(int segmentIndex, int start, int end) {
+        if ((rangeCount + 1) * 3 > ranges.length) {
+            int[] grown = new int[ranges.length * 2];
+            System.arraycopy(ranges, 0, grown, 0, rangeCount * 3);
+            ranges = grown;
+        }
+        ranges[rangeCount * 3] = segmentIndex;
+        ranges[rangeCount * 3 + 1] = start;
+        ranges[rangeCount * 3 + 2] = end;
+        return rangeCount++;
+    }
+
+    private ByteBuffer view(ByteBuffer segment, int start, int end) {
+        ByteBuffer view = segment.duplicate();
+        view.limit(end);
+        view.position(start);
+        return view.slice().order(byteOrder);
+    }
+}
@@ -0,0 +1,27 @@
+package arunsah.lbs;
+
+/**
+ * Adapts {@link BinarySerializable} to {@link BinaryWriter}, so that outputs implement nested objects once, in
+ * {@link BinaryOutput#writeObject(Object, BinaryWriter)}.
+ * <p>
+ * Reading needs a factory, see {@link BinaryInput#readObject(BinarySerializableFactory)}.
+ */
+final class SerializableWriter implements BinaryWriter<BinarySerializable> {
+
+    static final SerializableWriter INSTANCE = new SerializableWriter();
+
+    private SerializableWriter() {
+    }
+
+    @Override
+    public void write(BinaryOutput out, BinarySerializable value) {
+        value.serialize(out);
+    }
+
+    @Override
+    public int serializedSize(BinarySerializable value) {
+        CountingBinaryOutput counter = new CountingBinaryOutput();
+        value.serialize(counter);
+        return counter.getBufferPosition();
+    }
+}
@@ -0,0 +1,175 @@
+package arunsah.lbs;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Forward-only cursor over a sorted int array ({@link ArrayEncoding#DELTA_INT32} or
+ * {@link ArrayEncoding#DELTA_BLOCKS_INT32}), decoding the gaps as it moves, for posting list style access
+ * (intersections, "first value at least x") without materializing the array.
+ * <p>
+ * {@link #advance(int)} on a DELTA_BLOCKS_INT32 array binary searches the skip table (the last value of every
+ * block) and jumps to the block that can hold the target, so only that block is decoded; on a DELTA_INT32 array it
+ * moves value by value.
+ * <p>
+ * Obtained from {@link BinaryInput#readSortedInt32Cursor()} or {@link LbsView#getSortedInt32Cursor(int)}; the cursor
+ * reads the encoded bytes in place, which must not change while it is used. Cursors are not thread-safe.
+ * <pre>
+ * SortedInt32Cursor a = ..., b = ...;
+ * while (a.next() &amp;&amp; b.advance(a.value())) {
+ *     if (b.value() == a.value()) {
+ *         // in both
+ *     }
+ * }
+ * </pre>
+ */
+public final class SortedInt32Cursor {
+
+    // Encoded data, from the encoding byte to the end of the value, in the byte order of the writer.
+    private final ByteBuffer data;
+    private final int size;
+    private final int blockSize;
+    private final int blockCount;
+    // Offset of the skip table (blocked encoding only) and of the first value.
+    private final int tableOffset;
+    private final int valuesOffset;
+
+    private int index = -1;
+    private int value;
+    private int position;
+
+    SortedInt32Cursor(ByteBuffer data) {
+        this.data = data;
+        ArrayEncoding encoding = ArrayEncoding.getByValue(data.get(0));
+        position = 1;
+        size = readVarInt();
+        if (encoding == ArrayEncoding.DELTA_BLOCKS_INT32) {
+            blockSize = readVarInt();
+            blockCount = BinarySize.blockCount(size, blockSize);
+            tableOffset = position;
+            position += blockCount * 2 * Integer.BYTES;
+        } else if (encoding == ArrayEncoding.DELTA_INT32) {
+            blockSize = 0;
+            blockCount = 0;
+            tableOffset = position;
+        } else {
+            throw new IllegalArgumentException("Not a sorted int array: " + encoding);
+        }
+        if (size < 0 || position > data.limit()) {
+            throw new BufferUnderflowException();
+        }
+        valuesOffset = position;
+    }
+
+    /**
+     * Returns the number of values.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the index of the current value: -1 before the first {@link #next()}, {@link #size()} once exhausted.
+     */
+    public int index() {
+        return index;
+    }
+
+    /**
+     * Returns the current value.
+     */
+    public int value() {
+        return value;
+    }
+
+    /**
+     * Moves to the next value.
+     *
+     * @return false if there is no next value (the cursor is then exhausted)
+     */
+    public boolean next() {
+        if (index + 1 >= size) {
+            index = size;
+            return false;
+        }
+        int v = readVarInt();
+        value = index < 0 ? VarInts.unZigZag32(v) : value + v;
+        index++;
+        return true;
+    }
+
+    /**
+     * Moves to the first value at or after the current one that is at least {@code target}; the cursor never moves
+     * backwards.
+     *
+     * @return false if there is no such value (the cursor is then exhausted)
+     */
+    public boolean advance(int target) {
+        if (index >= size) {
+            return false;
+        }
+        if (index >= 0 && value >= target) {
+            return true;
+        }
+        if (blockCount > 1) {
+            int current = index < 0 ? 0 : index / blockSize;
+            int block = findBlock(current, target);
+            if (block == blockCount) {
+                index = size;
+                return false;
+            }
+            if (block > current || (index < 0 && block > 0)) {
+                // Continue from the last value of the previous block; the first value of a block is a gap from it.
+                index = block * blockSize - 1;
+                value = lastValue(block - 1);
+                position = valuesOffset + data.getInt(tableOffset + block * 2 * Integer.BYTES + Integer.BYTES);
+            }
+        }
+        while (next()) {
+            if (value >= target) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * First block from {@code from} whose last value is at least {@code target}, or {@link #blockCount}.
+     */
+    private int findBlock(int from, int target) {
+        int low = from;
+        int high = blockCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (lastValue(mid) < target) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private int lastValue(int block) {
+        return data.getInt(tableOffset + block * 2 * Integer.BYTES);
+    }
+
+    private int readVarInt() {
+        int limit = data.limit();
+        int result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (position >= limit) {
+                throw new BufferUnderflowException();
+            }
+            b = data.get(position++);
+            result |= (b & 0x7F) << shift;
+            shift += 7;
+            if (shift > 40) {
+                throw new IllegalArgumentException("7-bit encoded int too large.");
+            }
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+}
@@ -0,0 +1,808 @@
+package arunsah.lbs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * {@link BinaryInput} that reads from a blocking {@link ReadableByteChannel} or an {@link InputStream} through one
+ * fixed-size buffer, the reading counterpart of {@link StreamingBinaryOutput}.
+ * <p>
+ * The buffer is refilled whenever the next value is not entirely in it, so a value may arrive in any number of reads
+ * and memory use does not depend on the size of the input. Fixed-width values and varints are read from the buffer;
+ * strings, byte payloads and fixed-width arrays are copied out in chunks of whatever the buffer holds. Encoded arrays
+ * are copied out whole and decoded by a {@link BinaryInputImpl}.
+ * <p>
+ * The input only moves forward: {@link #seekField(int)} is not supported. The end of the input (or of the current
+ * nested object) inside a value throws {@link BufferUnderflowException}, as with {@link BinaryInputImpl}; I/O errors
+ * are thrown as {@link UncheckedIOException}. For non-blocking channels use {@link IncrementalBinaryDecoder}.
+ * Instances are not thread-safe.
+ */
+public class StreamingBinaryInput implements BinaryInput, Closeable {
+
+    private final ByteBuffer buffer;
+    // Source: exactly one of them is set.
+    private final ReadableByteChannel channel;
+    private final InputStream stream;
+
+    // Number of bytes read before the start of the buffer; the buffer holds the unread bytes between its position
+    // and its limit.
+    private long discardedBytes;
+    private boolean endOfInput;
+
+    // Position of the end of the current object, Long.MAX_VALUE at the top level.
+    private long objectEnd = Long.MAX_VALUE;
+
+    // Scratch space of the FLOAT16 array conversions, allocated on first use.
+    private short[] float16Scratch;
+
+    // Cache of decoded strings, or null.
+    private StringCache stringCache;
+
+    // Header last read by nextField() / readFieldHeader().
+    private FieldType currentFieldType;
+    private int currentFieldId;
+
+    /**
+     * Create instance of {@link StreamingBinaryInput} reading from a blocking channel through a direct buffer
+     *
+     * @param channel
+     * @param bufferSize size in bytes of the buffer (at least 16)
+     * @param byteOrder
+     * @throws IllegalArgumentException if the channel is in non-blocking mode
+     */
+    public StreamingBinaryInput(ReadableByteChannel channel, int bufferSize, ByteOrder byteOrder) {
+        this(allocate(bufferSize, true), channel, null, byteOrder);
+        if (channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking()) {
+            throw new IllegalArgumentException("Channel is in non-blocking mode, use IncrementalBinaryDecoder");
+        }
+    }
+
+    /**
+     * Create instance of {@link StreamingBinaryInput} reading from a stream through a heap buffer
+     *
+     * @param stream
+     * @param bufferSize size in bytes of the buffer (at least 16)
+     * @param byteOrder
+     */
+    public StreamingBinaryInput(InputStream stream, int bufferSize, ByteOrder byteOrder) {
+        this(allocate(bufferSize, false), null, stream, byteOrder);
+    }
+
+    private StreamingBinaryInput(ByteBuffer buffer, ReadableByteChannel channel, InputStream stream,
+                                 ByteOrder byteOrder) {
+        this.buffer = buffer;
+        this.channel = channel;
+        this.stream = stream;
+        buffer.order(byteOrder);
+        // Nothing read yet.
+        buffer.limit(0);
+    }
+
+    /**
+     * Static helper methods to create instance of {@link StreamingBinaryInput} with {@link ByteOrder#BIG_ENDIAN} and
+     * a buffer of {@link Constant#DEFAULT_STREAM_BUFFER_SIZE} bytes
+     *
+     * @param channel
+     * @return
+     */
+    public static StreamingBinaryInput bigEndianInput(ReadableByteChannel channel) {
+        return new StreamingBinaryInput(channel, Constant.DEFAULT_STREAM_BUFFER_SIZE, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Static helper methods to create instance of {@link StreamingBinaryInput} with {@link ByteOrder#LITTLE_ENDIAN}
+     * and a buffer of {@link Constant#DEFAULT_STREAM_BUFFER_SIZE} bytes
+     *
+     * @param channel
+     * @return
+     */
+    public static StreamingBinaryInput littleEndianInput(ReadableByteChannel channel) {
+        return new StreamingBinaryInput(channel, Constant.DEFAULT_STREAM_BUFFER_SIZE, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Static helper methods to create instance of {@link StreamingBinaryInput} with {@link ByteOrder#BIG_ENDIAN} and
+     * a buffer of {@link Constant#DEFAULT_STREAM_BUFFER_SIZE} bytes
+     *
+     * @param stream
+     * @return
+     */
+    public static StreamingBinaryInput bigEndianInput(InputStream stream) {
+        return new StreamingBinaryInput(stream, Constant.DEFAULT_STREAM_BUFFER_SIZE, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Static helper methods to create instance of {@link StreamingBinaryInput} with {@link ByteOrder#LITTLE_ENDIAN}
+     * and a buffer of {@link Constant#DEFAULT_STREAM_BUFFER_SIZE} bytes
+     *
+     * @param stream
+     * @return
+     */
+    public static StreamingBinaryInput littleEndianInput(InputStream stream) {
+        return new StreamingBinaryInput(stream, Constant.DEFAULT_STREAM_BUFFER_SIZE, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Sets the cache through which {@link #readStringUTF8()} decodes strings that fit in the buffer; null (the
+     * default) disables it. See {@link BinaryInputImpl#setStringCache(StringCache)}.
+     *
+     * @param stringCache
+     * @return This StreamingBinaryInput instance (to allow chaining).
+     */
+    public StreamingBinaryInput setStringCache(StringCache stringCache) {
+        this.stringCache = stringCache;
+        return this;
+    }
+
+    public StringCache getStringCache() {
+        return stringCache;
+    }
+
+    @Override
+    public FieldHeader readFieldHeader() {
+        nextField();
+        return new FieldHeader(currentFieldType, currentFieldId);
+    }
+
+    /**
+     * Reads the next field header without allocating; see {@link BinaryInput#readFieldHeader()} for the header
+     * format.
+     *
+     * @return the field id of the header just read.
+     */
+    @Override
+    public int nextField() {
+        ensure(Byte.BYTES);
+        byte header = buffer.get();
+        FieldType fieldType = FieldType.getByFieldTypeValue(header);
+        int fieldId;
+        if (fieldType.isExtensionType()) {
+            fieldId = readVarInt32();
+        } else {
+            int fieldIdNibble = (header & 0x0F);
+            fieldId = fieldIdNibble < Constant.FIELD_ID_EXTENSION ? fieldIdNibble
+                    : Constant.FIELD_ID_EXTENSION + readVarInt32();
+        }
+        currentFieldType = fieldType;
+        currentFieldId = fieldId;
+        return fieldId;
+    }
+
+    @Override
+    public FieldType currentFieldType() {
+        return currentFieldType;
+    }
+
+    @Override
+    public int currentFieldId() {
+        return currentFieldId;
+    }
+
+    @Override
+    public int readVarInt32() {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            ensure(Byte.BYTES);
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+            if (shift > 40) {
+                throw new IllegalArgumentException("7-bit encoded int too large.");
+            }
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    @Override
+    public long readVarInt64() {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            ensure(Byte.BYTES);
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+            if (shift > 72) {
+                throw new IllegalArgumentException("7-bit encoded long too large.");
+            }
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    @Override
+    public int readSVarInt32() {
+        return VarInts.unZigZag32(readVarInt32());
+    }
+
+    @Override
+    public long readSVarInt64() {
+        return VarInts.unZigZag64(readVarInt64());
+    }
+
+    @Override
+    public byte readInt8() {
+        ensure(Byte.BYTES);
+        return buffer.get();
+    }
+
+    @Override
+    public short readInt16() {
+        ensure(Short.BYTES);
+        return buffer.getShort();
+    }
+
+    @Override
+    public int readInt32() {
+        ensure(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    @Override
+    public long readInt64() {
+        ensure(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    @Override
+    public float readFloat16() {
+        ensure(BinarySize.FLOAT16);
+        return Float16.toFloat(buffer.getShort());
+    }
+
+    @Override
+    public float readFloat32() {
+        ensure(Float.BYTES);
+        return buffer.getFloat();
+    }
+
+    @Override
+    public double readFloat64() {
+        ensure(Double.BYTES);
+        return buffer.getDouble();
+    }
+
+    @Override
+    public boolean readBoolean(FieldHeader header) {
+        return header.fieldType == FieldType.BOOL_TRUE;
+    }
+
+    @Override
+    public String readStringUTF8() {
+        int length = readVarInt32();
+        if (length >= 0 && length <= buffer.capacity() && (stringCache != null || buffer.hasArray())) {
+            // Decode in place once the whole string is buffered.
+            ensure(length);
+            int position = buffer.position();
+            buffer.position(position + length);
+            if (stringCache != null) {
+                return stringCache.decode(buffer, position, length);
+            }
+            return new String(buffer.array(), buffer.arrayOffset() + position, length, StandardCharsets.UTF_8);
+        }
+        return new String(readBytes(length), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] readInt8Array() {
+        return readBytes(readVarInt32());
+    }
+
+    @Override
+    public short[] readInt16Array() {
+        int length = readVarInt32();
+        checkObject((long) length * Short.BYTES);
+        short[] values = new short[length];
+        for (int offset = 0; offset < length; ) {
+            int count = Math.min(length - offset, available(Short.BYTES));
+            buffer.asShortBuffer().get(values, offset, count);
+            buffer.position(buffer.position() + count * Short.BYTES);
+            offset += count;
+        }
+        return values;
+    }
+
+    @Override
+    public int[] readInt32Array() {
+        int length = readVarInt32();
+        checkObject((long) length * Integer.BYTES);
+        int[] values = new int[length];
+        for (int offset = 0; offset < length; ) {
+            int count = Math.min(length - offset, available(Integer.BYTES));
+            buffer.asIntBuffer().get(values, offset, count);
+            buffer.position(buffer.position() + count * Integer.BYTES);
+            offset += count;
+        }
+        return values;
+    }
+
+    @Override
+    public long[] readInt64Array() {
+        int length = readVarInt32();
+        checkObject((long) length * Long.BYTES);
+        long[] values = new long[length];
+        for (int offset = 0; offset < length; ) {
+            int count = Math.min(length - offset, available(Long.BYTES));
+            buffer.asLongBuffer().get(values, offset, count);
+            buffer.position(buffer.position() + count * Long.BYTES);
+            offset += count;
+        }
+        return values;
+    }
+
+    @Override
+    public float[] readFloat16Array() {
+        int length = readVarInt32();
+        checkObject((long) length * BinarySize.FLOAT16);
+        float[] values = new float[length];
+        short[] halves = float16Scratch();
+        for (int offset = 0; offset < length; ) {
+            int count = Math.min(Math.min(length - offset, halves.length), available(BinarySize.FLOAT16));
+            ShortBuffer view = buffer.asShortBuffer();
+            view.get(halves, 0, count);
+            Float16.toFloats(halves, 0, values, offset, count);
+            buffer.position(buffer.position() + count * BinarySize.FLOAT16);
+            offset += count;
+        }
+        return values;
+    }
+
+    @Override
+    public float[] readFloat32Array() {
+        int length = readVarInt32();
+        checkObject((long) length * Float.BYTES);
+        float[] values = new float[length];
+        for (int offset = 0; offset < length; ) {
+            int count = Math.min(length - offset, available(Float.BYTES));
+            buffer.asFloatBuffer().get(values, offset, count);
+            buffer.position(buffer.position() + count * Float.BYTES);
+            offset += count;
+        }
+        return values;
+    }
+
+    @Override
+    public double[] readFloat64Array() {
+        int length = readVarInt32();
+        checkObject((long) length * Double.BYTES);
+        double[] values = new double[length];
+        for (int offset = 0; offset < length; ) {
+            int count = Math.min(length - offset, available(Double.BYTES));
+            buffer.asDoubleBuffer().get(values, offset, count);
+            buffer.position(buffer.position() + count * Double.BYTES);
+            offset += count;
+        }
+        return values;
+    }
+
+    @Override
+    public int[] readVarInt32Array() {
+        int length = readVarInt32();
+        // Every element takes at least one byte.
+        checkObject(length);
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = readVarInt32();
+        }
+        return values;
+    }
+
+    @Override
+    public long[] readVarInt64Array() {
+        int length = readVarInt32();
+        // Every element takes at least one byte.
+        checkObject(length);
+        long[] values = new long[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = readVarInt64();
+        }
+        return values;
+    }
+
+    @Override
+    public int[] readSVarInt32Array() {
+        int[] values = readVarInt32Array();
+        VarInts.unZigZag(values);
+        return values;
+    }
+
+    @Override
+    public long[] readSVarInt64Array() {
+        long[] values = readVarInt64Array();
+        VarInts.unZigZag(values);
+        return values;
+    }
+
+    @Override
+    public String[] readStringUTF8Array() {
+        int size = readVarInt32();
+        // Every element takes at least one byte.
+        checkObject(size);
+        String[] values = new String[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = readStringUTF8();
+        }
+        return values;
+    }
+
+    @Override
+    public String[] readDictionaryStringUTF8Array() {
+        return encodedArrayInput().readDictionaryStringUTF8Array();
+    }
+
+    @Override
+    public int[] readSortedInt32Array() {
+        return encodedArrayInput().readSortedInt32Array();
+    }
+
+    @Override
+    public long[] readSortedInt64Array() {
+        return encodedArrayInput().readSortedInt64Array();
+    }
+
+    /**
+     * Returns a cursor over a sorted int array; the array is copied out of the stream first.
+     */
+    @Override
+    public SortedInt32Cursor readSortedInt32Cursor() {
+        return encodedArrayInput().readSortedInt32Cursor();
+    }
+
+    @Override
+    public int[] readPackedInt32Array() {
+        return encodedArrayInput().readPackedInt32Array();
+    }
+
+    /**
+     * Copies the next {@link FieldType#ENCODED_ARRAY} value (with its byte length) out of the stream into an input
+     * of its own.
+     */
+    private BinaryInputImpl encodedArrayInput() {
+        int length = readVarInt32();
+        if (length < 1) {
+            throw new BufferUnderflowException();
+        }
+        checkObject(length);
+        byte[] data = new byte[BinarySize.varInt32(length) + length];
+        int offset = 0;
+        for (int value = length; ; value >>>= 7) {
+            if ((value & ~0x7F) == 0) {
+                data[offset++] = (byte) value;
+                break;
+            }
+            data[offset++] = (byte) ((value & 0x7F) | 0x80);
+        }
+        readFully(data, offset, length);
+        return new BinaryInputImpl(ByteBuffer.wrap(data), buffer.order()).setStringCache(stringCache);
+    }
+
+    @Override
+    public <T extends BinarySerializable> T readObject(BinarySerializableFactory<T> factory) {
+        return readObject(in -> {
+            T obj = factory.create();
+            obj.deserialize(in);
+            return obj;
+        });
+    }
+
+    /**
+     * Reads a nested object using the given codec; the input is positioned after the object even if the codec did
+     * not read all of its fields.
+     *
+     * @param codec
+     * @param <T>
+     * @return
+     */
+    @Override
+    public <T> T readObject(BinaryCodec<T> codec) {
+        return readObject(codec::read);
+    }
+
+    private <T> T readObject(Function<BinaryInput, T> reader) {
+        int length = readVarInt32();
+        checkObject(length);
+        long oldObjectEnd = objectEnd;
+        objectEnd = getBytesRead() + length;
+        try {
+            T obj = reader.apply(this);
+            skipBytes(objectEnd - getBytesRead());
+            return obj;
+        } finally {
+            objectEnd = oldObjectEnd;
+        }
+    }
+
+    @Override
+    public void skipField(FieldHeader header) {
+        skipValue(header.getFieldType());
+    }
+
+    @Override
+    public void skipField() {
+        skipValue(currentFieldType);
+    }
+
+    private void skipValue(FieldType fieldType) {
+        switch (fieldType) {
+            case BOOL_TRUE:
+            case BOOL_FALSE:
+                // The value is the header itself.
+                break;
+            case INT8:
+                skipBytes(Byte.BYTES);
+                break;
+            case INT16:
+                skipBytes(Short.BYTES);
+                break;
+            case INT32:
+            case FLOAT32:
+                skipBytes(Integer.BYTES);
+                break;
+            case INT64:
+            case FLOAT64:
+                skipBytes(Long.BYTES);
+                break;
+            case FLOAT16:
+                skipBytes(BinarySize.FLOAT16);
+                break;
+            case VAR_INT32:
+            case VAR_INT64:
+            case SVAR_INT:
+                skipVarInts(1);
+                break;
+            case STRING_UTF8:
+            case INT8_ARRAY:
+            case OBJECT:
+            case ENCODED_ARRAY:
+                skipBytes(readVarInt32());
+                break;
+            case INT16_ARRAY:
+                skipBytes((long) readVarInt32() * Short.BYTES);
+                break;
+            case INT32_ARRAY:
+            case FLOAT32_ARRAY:
+                skipBytes((long) readVarInt32() * Integer.BYTES);
+                break;
+            case INT64_ARRAY:
+            case FLOAT64_ARRAY:
+                skipBytes((long) readVarInt32() * Long.BYTES);
+                break;
+            case FLOAT16_ARRAY:
+                skipBytes((long) readVarInt32() * BinarySize.FLOAT16);
+                break;
+            case VAR_INT32_ARRAY:
+            case VAR_INT64_ARRAY:
+            case SVAR_INT_ARRAY:
+                skipVarInts(readVarInt32());
+                break;
+            case STRING_UTF8_ARRAY: {
+                int size = readVarInt32();
+                for (int i = 0; i < size; i++) {
+                    skipBytes(readVarInt32());
+                }
+                break;
+            }
+            default:
+                // LIST and MAP elements carry no headers, so their extent is only known to the element readers.
+                throw new IllegalStateException("Cannot skip field of type " + fieldType);
+        }
+    }
+
+    /**
+     * Not supported: a stream cannot go back to the start of the current object.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean seekField(int fieldId) {
+        throw new UnsupportedOperationException("Cannot seek a field in a stream");
+    }
+
+    @Override
+    public <T> List<T> readList(Function<BinaryInput, T> reader) {
+        int length = readVarInt32();
+        // Every element takes at least one byte.
+        checkObject(length);
+        List<T> list = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            list.add(reader.apply(this));
+        }
+        return list;
+    }
+
+    @Override
+    public <K, V> Map<K, V> readMap(Function<BinaryInput, K> keyReader, Function<BinaryInput, V> valueReader) {
+        int length = readVarInt32();
+        checkObject(length);
+        Map<K, V> map = new HashMap<>((int) (length / 0.75f) + 1);
+        for (int i = 0; i < length; i++) {
+            K key = keyReader.apply(this);
+            V value = valueReader.apply(this);
+            map.put(key, value);
+        }
+        return map;
+    }
+
+    /**
+     * Returns true if the current object has more bytes; at the top level, reads from the source (blocking) until a
+     * byte is available or the input ends.
+     */
+    @Override
+    public boolean hasRemaining() {
+        if (getBytesRead() >= objectEnd) {
+            return false;
+        }
+        while (!buffer.hasRemaining() && !endOfInput) {
+            fill();
+        }
+        return buffer.hasRemaining();
+    }
+
+    /**
+     * Returns the buffer; the bytes between its position and its limit have been read from the source but not
+     * decoded yet.
+     */
+    @Override
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the total number of bytes decoded.
+     */
+    public long getBytesRead() {
+        return discardedBytes + buffer.position();
+    }
+
+    /**
+     * Closes the channel or stream.
+     */
+    @Override
+    public void close() {
+        try {
+            if (channel != null) {
+                channel.close();
+            } else {
+                stream.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Makes sure that the next {@code length} bytes (at most the buffer capacity) are in the buffer.
+     *
+     * @throws BufferUnderflowException if the input or the current object ends first
+     */
+    private void ensure(int length) {
+        if (buffer.remaining() < length) {
+            checkObject(length);
+            while (buffer.remaining() < length) {
+                if (endOfInput) {
+                    throw new BufferUnderflowException();
+                }
+                fill();
+            }
+        } else if (objectEnd != Long.MAX_VALUE) {
+            checkObject(length);
+        }
+    }
+
+    /**
+     * Checks that the current object has {@code length} more bytes.
+     */
+    private void checkObject(long length) {
+        if (length < 0 || length > objectEnd - getBytesRead()) {
+            throw new BufferUnderflowException();
+        }
+    }
+
+    /**
+     * Number of values of {@code elementSize} bytes in the buffer, after refilling it if none is.
+     */
+    private int available(int elementSize) {
+        ensure(elementSize);
+        return buffer.remaining() / elementSize;
+    }
+
+    private byte[] readBytes(int length) {
+        checkObject(length);
+        byte[] data = new byte[length];
+        readFully(data, 0, length);
+        return data;
+    }
+
+    private void readFully(byte[] data, int offset, int length) {
+        while (length > 0) {
+            int chunk = Math.min(length, available(Byte.BYTES));
+            buffer.get(data, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    private void skipBytes(long length) {
+        checkObject(length);
+        while (length > 0) {
+            int chunk = (int) Math.min(length, available(Byte.BYTES));
+            buffer.position(buffer.position() + chunk);
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Skips {@code count} varints by counting the bytes that have no continuation bit.
+     */
+    private void skipVarInts(int count) {
+        while (count > 0) {
+            ensure(Byte.BYTES);
+            int position = buffer.position();
+            int limit = buffer.limit();
+            while (count > 0 && position < limit) {
+                // A byte without the continuation bit (MSB) terminates a varint.
+                if (buffer.get(position++) >= 0) {
+                    count--;
+                }
+            }
+            checkObject(position - buffer.position());
+            buffer.position(position);
+        }
+    }
+
+    /**
+     * Moves the unread bytes to the start of the buffer and reads once from the source after them.
+     */
+    private void fill() {
+        discardedBytes += buffer.position();
+        buffer.compact();
+        try {
+            int read;
+            if (stream != null) {
+                read = stream.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                if (read > 0) {
+                    buffer.position(buffer.position() + read);
+                }
+            } else {
+                read = channel.read(buffer);
+            }
+            if (read < 0) {
+                endOfInput = true;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.flip();
+        }
+    }
+
+    private short[] float16Scratch() {
+        if (float16Scratch == null) {
+            float16Scratch = new short[Constant.FLOAT16_CHUNK_SIZE];
+        }
+        return float16Scratch;
+    }
+
+    private static ByteBuffer allocate(int bufferSize, boolean direct) {
+        if (bufferSize < 16) {
+            throw new IllegalArgumentException("Buffer size must be at least 16 bytes: " + bufferSize);
+        }
+        return direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+    }
+}
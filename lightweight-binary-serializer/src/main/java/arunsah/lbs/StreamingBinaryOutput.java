@@ -0,0 +1,397 @@
+package arunsah.lbs;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * {@link BinaryOutput} that streams to a {@link WritableByteChannel} or an {@link OutputStream} through one
+ * fixed-size buffer, for outputs too large to hold in memory (exports, dumps).
+ * <p>
+ * Values are encoded into the buffer, which is written out whenever the next value does not fit, so memory use does
+ * not depend on the size of the output. Fixed-width values and varints are never split across two writes; strings,
+ * byte payloads and fixed-width arrays are written in chunks of whatever fits.
+ * <p>
+ * The length prefix of a nested object cannot be back-patched once its start has been written out, so
+ * {@link #writeObject(Object, BinaryWriter)} asks the codec for the size first ({@link BinaryWriter#serializedSize}),
+ * which for {@link BinarySerializable} objects means serializing them once into a {@link CountingBinaryOutput}.
+ * <p>
+ * I/O errors are thrown as {@link UncheckedIOException}. Call {@link #flush()} (or {@link #close()}) at the end: data
+ * still in the buffer is not written otherwise. Instances are not thread-safe.
+ */
+public class StreamingBinaryOutput extends AbstractBinaryOutput implements Flushable, Closeable {
+
+    // Room needed for the widest varint32 and varint64.
+    private static final int MAX_VAR_INT32_SIZE = 5;
+    private static final int MAX_VAR_INT64_SIZE = 10;
+
+    private final ByteBuffer buffer;
+    // Destination: exactly one of them is set.
+    private final WritableByteChannel channel;
+    private final OutputStream stream;
+
+    // Number of bytes written out of the buffer so far.
+    private long flushedBytes;
+
+    // Encoder of the strings, created on first use.
+    private Utf8 utf8;
+
+    /**
+     * Create instance of {@link StreamingBinaryOutput} writing to a channel through a direct buffer
+     *
+     * @param channel
+     * @param bufferSize size in bytes of the buffer (at least 16)
+     * @param byteOrder
+     */
+    public StreamingBinaryOutput(WritableByteChannel channel, int bufferSize, ByteOrder byteOrder) {
+        this(allocate(bufferSize, true), channel, null, byteOrder);
+    }
+
+    /**
+     * Create instance of {@link StreamingBinaryOutput} writing to a stream through a heap buffer
+     *
+     * @param stream
+     * @param bufferSize size in bytes of the buffer (at least 16)
+     * @param byteOrder
+     */
+    public StreamingBinaryOutput(OutputStream stream, int bufferSize, ByteOrder byteOrder) {
+        this(allocate(bufferSize, false), null, stream, byteOrder);
+    }
+
+    private StreamingBinaryOutput(ByteBuffer buffer, WritableByteChannel channel, OutputStream stream,
+                                  ByteOrder byteOrder) {
+        this.buffer = buffer;
+        this.channel = channel;
+        this.stream = stream;
+        buffer.order(byteOrder);
+    }
+
+    /**
+     * Static helper methods to create instance of {@link StreamingBinaryOutput} with {@link ByteOrder#BIG_ENDIAN} and
+     * a buffer of {@link Constant#DEFAULT_STREAM_BUFFER_SIZE} bytes
+     *
+     * @param channel
+     * @return
+     */
+    public static StreamingBinaryOutput bigEndianOutput(WritableByteChannel channel) {
+        return new StreamingBinaryOutput(channel, Constant.DEFAULT_STREAM_BUFFER_SIZE, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Static helper methods to create instance of {@link StreamingBinaryOutput} with {@link ByteOrder#LITTLE_ENDIAN}
+     * and a buffer of {@link Constant#DEFAULT_STREAM_BUFFER_SIZE} bytes
+     *
+     * @param channel
+     * @return
+     */
+    public static StreamingBinaryOutput littleEndianOutput(WritableByteChannel channel) {
+        return new StreamingBinaryOutput(channel, Constant.DEFAULT_STREAM_BUFFER_SIZE, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Static helper methods to create instance of {@link StreamingBinaryOutput} with {@link ByteOrder#BIG_ENDIAN} and
+     * a buffer of {@link Constant#DEFAULT_STREAM_BUFFER_SIZE} bytes
+     *
+     * @param stream
+     * @return
+     */
+    public static StreamingBinaryOutput bigEndianOutput(OutputStream stream) {
+        return new StreamingBinaryOutput(stream, Constant.DEFAULT_STREAM_BUFFER_SIZE, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Static helper methods to create instance of {@link StreamingBinaryOutput} with {@link ByteOrder#LITTLE_ENDIAN}
+     * and a buffer of {@link Constant#DEFAULT_STREAM_BUFFER_SIZE} bytes
+     *
+     * @param stream
+     * @return
+     */
+    public static StreamingBinaryOutput littleEndianOutput(OutputStream stream) {
+        return new StreamingBinaryOutput(stream, Constant.DEFAULT_STREAM_BUFFER_SIZE, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public BinaryOutput writeVarInt32(int value) {
+        ensureRemaining(MAX_VAR_INT32_SIZE);
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeVarInt64(long value) {
+        ensureRemaining(MAX_VAR_INT64_SIZE);
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt8(byte value) {
+        ensureRemaining(Byte.BYTES);
+        buffer.put(value);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt16(short value) {
+        ensureRemaining(Short.BYTES);
+        buffer.putShort(value);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt32(int value) {
+        ensureRemaining(Integer.BYTES);
+        buffer.putInt(value);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt64(long value) {
+        ensureRemaining(Long.BYTES);
+        buffer.putLong(value);
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeStringUTF8(String value) {
+        int size = BinarySize.utf8Length(value);
+        writeVarInt32(size);
+        if (value.length() <= Utf8.ENCODER_THRESHOLD && buffer.remaining() >= size) {
+            Utf8.encode(value, buffer);
+            return this;
+        }
+        if (utf8 == null) {
+            utf8 = new Utf8();
+        }
+        utf8.start(value);
+        while (!utf8.encodeTo(buffer)) {
+            drain();
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeRawBytes(byte[] data, int offset, int length) {
+        while (length > 0) {
+            int chunk = Math.min(length, room(Byte.BYTES));
+            buffer.put(data, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeRawBytes(ByteBuffer data) {
+        int limit = data.limit();
+        while (data.hasRemaining()) {
+            int chunk = Math.min(data.remaining(), room(Byte.BYTES));
+            data.limit(data.position() + chunk);
+            buffer.put(data);
+            data.limit(limit);
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt16Array(short[] values) {
+        writeVarInt32(values.length);
+        for (int offset = 0; offset < values.length; ) {
+            int count = Math.min(values.length - offset, room(Short.BYTES));
+            buffer.asShortBuffer().put(values, offset, count);
+            buffer.position(buffer.position() + count * Short.BYTES);
+            offset += count;
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt32Array(int[] values) {
+        writeVarInt32(values.length);
+        for (int offset = 0; offset < values.length; ) {
+            int count = Math.min(values.length - offset, room(Integer.BYTES));
+            buffer.asIntBuffer().put(values, offset, count);
+            buffer.position(buffer.position() + count * Integer.BYTES);
+            offset += count;
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeInt64Array(long[] values) {
+        writeVarInt32(values.length);
+        for (int offset = 0; offset < values.length; ) {
+            int count = Math.min(values.length - offset, room(Long.BYTES));
+            buffer.asLongBuffer().put(values, offset, count);
+            buffer.position(buffer.position() + count * Long.BYTES);
+            offset += count;
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeFloat32Array(float[] values) {
+        writeVarInt32(values.length);
+        for (int offset = 0; offset < values.length; ) {
+            int count = Math.min(values.length - offset, room(Float.BYTES));
+            buffer.asFloatBuffer().put(values, offset, count);
+            buffer.position(buffer.position() + count * Float.BYTES);
+            offset += count;
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryOutput writeFloat64Array(double[] values) {
+        writeVarInt32(values.length);
+        for (int offset = 0; offset < values.length; ) {
+            int count = Math.min(values.length - offset, room(Double.BYTES));
+            buffer.asDoubleBuffer().put(values, offset, count);
+            buffer.position(buffer.position() + count * Double.BYTES);
+            offset += count;
+        }
+        return this;
+    }
+
+    /**
+     * Write a value as a nested object using the given codec.
+     * <p>
+     * The length prefix is written first, from {@link BinaryWriter#serializedSize(Object)}, then the fields stream out
+     * like top-level ones.
+     *
+     * @param value
+     * @param codec
+     * @param <T>
+     * @return
+     * @throws IllegalStateException if the codec writes a different number of bytes than it reported
+     */
+    @Override
+    public <T> BinaryOutput writeObject(T value, BinaryWriter<T> codec) {
+        int length = codec.serializedSize(value);
+        writeVarInt32(length);
+        long start = getBytesWritten();
+        codec.write(this, value);
+        long written = getBytesWritten() - start;
+        if (written != length) {
+            throw new IllegalStateException("Codec " + codec.getClass().getName() + " wrote " + written + " bytes but reported a size of "
+                    + length);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the buffer being filled; its content up to its position has not been written out yet.
+     */
+    @Override
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the total number of bytes written (including those still in the buffer).
+     *
+     * @throws ArithmeticException if more than 2 GB have been written, see {@link #getBytesWritten()}
+     */
+    @Override
+    public int getBufferPosition() {
+        return Math.toIntExact(getBytesWritten());
+    }
+
+    /**
+     * Returns the total number of bytes written (including those still in the buffer).
+     */
+    public long getBytesWritten() {
+        return flushedBytes + buffer.position();
+    }
+
+    /**
+     * Writes out the buffered data and flushes the stream, if writing to one.
+     */
+    @Override
+    public void flush() {
+        drain();
+        if (stream != null) {
+            try {
+                stream.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes out the buffered data and closes the channel or stream.
+     */
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            try {
+                if (channel != null) {
+                    channel.close();
+                } else {
+                    stream.close();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void ensureRemaining(int length) {
+        if (buffer.remaining() < length) {
+            drain();
+        }
+    }
+
+    /**
+     * Number of values of {@code elementSize} bytes that fit in the buffer, after writing it out if none does.
+     */
+    private int room(int elementSize) {
+        ensureRemaining(elementSize);
+        return buffer.remaining() / elementSize;
+    }
+
+    /**
+     * Writes the buffered data out and empties the buffer.
+     */
+    private void drain() {
+        buffer.flip();
+        try {
+            if (stream != null) {
+                stream.write(buffer.array(), buffer.arrayOffset(), buffer.limit());
+                buffer.position(buffer.limit());
+            } else {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            flushedBytes += buffer.position();
+            buffer.compact();
+        }
+    }
+
+    private static ByteBuffer allocate(int bufferSize, boolean direct) {
+        if (bufferSize < 16) {
+            throw new IllegalArgumentException("Buffer size must be at least 16 bytes: " + bufferSize);
+        }
+        return direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+    }
+}
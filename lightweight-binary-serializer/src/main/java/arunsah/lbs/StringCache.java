@@ -0,0 +1,166 @@
+package arunsah.lbs;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bounded cache of decoded strings, keyed by their UTF-8 bytes, for inputs that decode the same few strings over and
+ * over (map keys, enum-like values, tag names).
+ * <p>
+ * The cache is a fixed-size hash table of {@code capacity} entries in sets of two: a string is looked up by hashing
+ * its bytes in place and comparing them with the bytes of the (at most two) cached entries of its set, so a hit
+ * returns the cached {@code String} without allocating. A miss decodes the string and caches it in its set, evicting
+ * the least recently used of the two entries. Strings longer than {@code maxLength} bytes are decoded without being
+ * cached.
+ * <p>
+ * Enable it per input with {@link BinaryInputImpl#setStringCache(StringCache)}; it then serves
+ * {@link BinaryInput#readStringUTF8()} and everything built on it (string arrays, map keys read with
+ * {@code BinaryInput::readStringUTF8}). A cache may be shared by inputs used on the same thread, so that it stays warm
+ * from one message to the next, but it is not thread-safe.
+ */
+public final class StringCache {
+
+    private final int maxLength;
+    // Entry i of the table: its UTF-8 bytes, hash and string; entries 2k and 2k + 1 form a set, the first being the
+    // most recently used.
+    private final byte[][] keys;
+    private final int[] hashes;
+    private final String[] values;
+    private final int setMask;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Create instance of {@link StringCache}
+     *
+     * @param capacity  maximum number of cached strings (rounded up to a power of two, at least 2)
+     * @param maxLength maximum UTF-8 length in bytes of a cached string
+     */
+    public StringCache(int capacity, int maxLength) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = Math.max(2, Integer.highestOneBit(capacity - 1) << 1);
+        this.maxLength = maxLength;
+        this.keys = new byte[size][];
+        this.hashes = new int[size];
+        this.values = new String[size];
+        this.setMask = size / 2 - 1;
+    }
+
+    /**
+     * Create a cache of {@link Constant#DEFAULT_STRING_CACHE_SIZE} strings of up to
+     * {@link Constant#DEFAULT_STRING_CACHE_MAX_LENGTH} bytes.
+     */
+    public StringCache() {
+        this(Constant.DEFAULT_STRING_CACHE_SIZE, Constant.DEFAULT_STRING_CACHE_MAX_LENGTH);
+    }
+
+    /**
+     * Returns the string whose UTF-8 encoding is the {@code length} bytes of {@code buffer} at absolute position
+     * {@code position}, from the cache if present; does not move the buffer position.
+     */
+    public String decode(ByteBuffer buffer, int position, int length) {
+        if (length > maxLength) {
+            return decodeUncached(buffer, position, length);
+        }
+        int hash = hash(buffer, position, length);
+        int first = (hash & setMask) << 1;
+        if (hashes[first] == hash && matches(keys[first], buffer, position, length)) {
+            hits++;
+            return values[first];
+        }
+        int second = first + 1;
+        if (hashes[second] == hash && matches(keys[second], buffer, position, length)) {
+            hits++;
+            String value = values[second];
+            swap(first, second);
+            return value;
+        }
+        misses++;
+        byte[] key = new byte[length];
+        for (int i = 0; i < length; i++) {
+            key[i] = buffer.get(position + i);
+        }
+        String value = new String(key, StandardCharsets.UTF_8);
+        // The first entry becomes the second one, evicting the least recently used entry of the set.
+        keys[second] = keys[first];
+        hashes[second] = hashes[first];
+        values[second] = values[first];
+        keys[first] = key;
+        hashes[first] = hash;
+        values[first] = value;
+        return value;
+    }
+
+    /**
+     * Number of lookups answered from the cache.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Number of cacheable strings that had to be decoded.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Removes all cached strings and resets the counters.
+     */
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = null;
+            hashes[i] = 0;
+            values[i] = null;
+        }
+        hits = 0;
+        misses = 0;
+    }
+
+    private static String decodeUncached(ByteBuffer buffer, int position, int length) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + position, length, StandardCharsets.UTF_8);
+        }
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = buffer.get(position + i);
+        }
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    private static int hash(ByteBuffer buffer, int position, int length) {
+        int hash = length;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer.get(position + i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(byte[] key, ByteBuffer buffer, int position, int length) {
+        if (key == null || key.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key[i] != buffer.get(position + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void swap(int a, int b) {
+        byte[] key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        int hash = hashes[a];
+        hashes[a] = hashes[b];
+        hashes[b] = hash;
+        String value = values[a];
+        values[a] = values[b];
+        values[b] = value;
+    }
+}
@@ -0,0 +1,51 @@
+package arunsah.lbs;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary of a string array for {@link ArrayEncoding#DICTIONARY_UTF8}: its distinct strings in order of first
+ * occurrence, and the index of every element in that list.
+ */
+final class StringDictionary {
+
+    final List<String> strings;
+    final int[] indexes;
+
+    private StringDictionary(List<String> strings, int[] indexes) {
+        this.strings = strings;
+        this.indexes = indexes;
+    }
+
+    static StringDictionary of(String[] values) {
+        Map<String, Integer> indexByString = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        int[] indexes = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            Integer index = indexByString.get(values[i]);
+            if (index == null) {
+                index = strings.size();
+                indexByString.put(values[i], index);
+                strings.add(values[i]);
+            }
+            indexes[i] = index;
+        }
+        return new StringDictionary(strings, indexes);
+    }
+
+    /**
+     * Size of the encoded array after its byte length: encoding byte, count, dictionary, then the packed indexes.
+     */
+    int payloadSize() {
+        int size = 1 + BinarySize.varInt32(indexes.length) + BinarySize.varInt32(strings.size());
+        for (int i = 0; i < strings.size(); i++) {
+            size += BinarySize.stringUTF8(strings.get(i));
+        }
+        for (int start = 0; start < indexes.length; start += Constant.PACKED_ARRAY_BLOCK_SIZE) {
+            size += PackedInts.blockSize(indexes, start, Math.min(indexes.length, start + Constant.PACKED_ARRAY_BLOCK_SIZE));
+        }
+        return size;
+    }
+}
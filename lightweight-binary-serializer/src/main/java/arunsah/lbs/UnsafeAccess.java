@@ -0,0 +1,171 @@
+package arunsah.lbs;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * The {@code sun.misc.Unsafe} operations used by {@link OffHeapMemory}, and the only place that reaches that class.
+ * <p>
+ * It is looked up reflectively, so no source file refers to it: the library compiles without proprietary API
+ * warnings and with {@code javac --release 8}, whose API data does not include {@code sun.misc.Unsafe}. It is still
+ * present at runtime on Java 8 and, in the {@code jdk.unsupported} module, on later versions. Every operation is a
+ * {@code static final} {@link MethodHandle} bound to the instance; the JIT treats it as a constant and inlines it down
+ * to the same intrinsic as a direct call. Addresses of native memory are passed with a null object.
+ */
+final class UnsafeAccess {
+
+    private static final Object UNSAFE;
+    private static final Class<?> UNSAFE_CLASS;
+
+    static {
+        try {
+            UNSAFE_CLASS = Class.forName("sun.misc.Unsafe");
+            Field field = UNSAFE_CLASS.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            UNSAFE = field.get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final MethodHandle ALLOCATE_MEMORY = find("allocateMemory", long.class, long.class);
+    private static final MethodHandle FREE_MEMORY = find("freeMemory", void.class, long.class);
+    private static final MethodHandle COPY_MEMORY = find("copyMemory", void.class,
+            Object.class, long.class, Object.class, long.class, long.class);
+    private static final MethodHandle GET_BYTE = find("getByte", byte.class, Object.class, long.class);
+    private static final MethodHandle PUT_BYTE = find("putByte", void.class, Object.class, long.class, byte.class);
+    private static final MethodHandle GET_SHORT = find("getShort", short.class, Object.class, long.class);
+    private static final MethodHandle PUT_SHORT = find("putShort", void.class, Object.class, long.class, short.class);
+    private static final MethodHandle GET_INT = find("getInt", int.class, Object.class, long.class);
+    private static final MethodHandle PUT_INT = find("putInt", void.class, Object.class, long.class, int.class);
+    private static final MethodHandle GET_LONG = find("getLong", long.class, Object.class, long.class);
+    private static final MethodHandle PUT_LONG = find("putLong", void.class, Object.class, long.class, long.class);
+
+    // Offsets of the first element of primitive arrays.
+    static final long BYTE_ARRAY_OFFSET = arrayBaseOffset(byte[].class);
+    static final long SHORT_ARRAY_OFFSET = arrayBaseOffset(short[].class);
+    static final long INT_ARRAY_OFFSET = arrayBaseOffset(int[].class);
+    static final long LONG_ARRAY_OFFSET = arrayBaseOffset(long[].class);
+    static final long FLOAT_ARRAY_OFFSET = arrayBaseOffset(float[].class);
+    static final long DOUBLE_ARRAY_OFFSET = arrayBaseOffset(double[].class);
+
+    private UnsafeAccess() {
+    }
+
+    static long allocateMemory(long size) {
+        try {
+            return (long) ALLOCATE_MEMORY.invokeExact(size);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void freeMemory(long address) {
+        try {
+            FREE_MEMORY.invokeExact(address);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void copyMemory(Object src, long srcOffset, Object dst, long dstOffset, long length) {
+        try {
+            COPY_MEMORY.invokeExact(src, srcOffset, dst, dstOffset, length);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static byte getByte(Object base, long offset) {
+        try {
+            return (byte) GET_BYTE.invokeExact(base, offset);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void putByte(Object base, long offset, byte value) {
+        try {
+            PUT_BYTE.invokeExact(base, offset, value);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static short getShort(Object base, long offset) {
+        try {
+            return (short) GET_SHORT.invokeExact(base, offset);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void putShort(Object base, long offset, short value) {
+        try {
+            PUT_SHORT.invokeExact(base, offset, value);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static int getInt(Object base, long offset) {
+        try {
+            return (int) GET_INT.invokeExact(base, offset);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void putInt(Object base, long offset, int value) {
+        try {
+            PUT_INT.invokeExact(base, offset, value);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static long getLong(Object base, long offset) {
+        try {
+            return (long) GET_LONG.invokeExact(base, offset);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void putLong(Object base, long offset, long value) {
+        try {
+            PUT_LONG.invokeExact(base, offset, value);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    private static MethodHandle find(String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            return MethodHandles.lookup().findVirtual(UNSAFE_CLASS, name, MethodType.methodType(returnType, parameterTypes))
+                    .bindTo(UNSAFE);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static long arrayBaseOffset(Class<?> arrayClass) {
+        try {
+            return (int) find("arrayBaseOffset", int.class, Class.class).invokeExact(arrayClass);
+        } catch (Throwable e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static RuntimeException propagate(Throwable e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new IllegalStateException(e);
+    }
+}
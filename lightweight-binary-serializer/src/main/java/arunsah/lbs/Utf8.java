@@ -0,0 +1,191 @@
+package arunsah.lbs;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * UTF-8 encoding straight into a {@link ByteBuffer}, without the temporary array of
+ * {@link String#getBytes(java.nio.charset.Charset)}.
+ * <p>
+ * The output is identical to {@code getBytes(StandardCharsets.UTF_8)}, including the replacement of unpaired
+ * surrogates by '?', so {@link BinarySize#utf8Length(CharSequence)} gives its exact size.
+ * <p>
+ * Short strings are encoded by the static methods, a plain loop over the chars with a tight ASCII prefix loop. Longer
+ * strings go through an instance, which copies the chars in chunks into a scratch array ({@link String#getChars}) and
+ * encodes them with a {@link CharsetEncoder}, whose ASCII path converts whole runs of chars at once. The encoder is
+ * only fast on buffers with an accessible array, so for other (direct) buffers it encodes into a scratch array that is
+ * then copied in bulk. An instance can also encode a string piece by piece into several buffers
+ * ({@link #start(String)}, {@link #encodeTo(ByteBuffer)}). Instances are not thread-safe.
+ */
+final class Utf8 {
+
+    // Strings up to this many chars are encoded by the plain loop; longer ones amortize the encoder setup.
+    static final int ENCODER_THRESHOLD = 32;
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final char[] chars = new char[Constant.UTF8_CHUNK_SIZE];
+    private final CharBuffer charBuffer = CharBuffer.wrap(chars);
+    // Encoded bytes not yet copied to a buffer without array (between position and limit), created on first use.
+    private ByteBuffer bytes;
+
+    // String being encoded (null once it is fully encoded), index of its next char not yet copied to the scratch
+    // array, and whether the encoder has consumed the chars of the scratch array (except possibly the high half of a
+    // surrogate pair).
+    private String value;
+    private int next;
+    private boolean needInput;
+
+    /**
+     * Starts encoding {@code value}.
+     */
+    void start(String value) {
+        this.value = value;
+        next = 0;
+        needInput = true;
+        charBuffer.clear().limit(0);
+        if (bytes != null) {
+            bytes.clear().limit(0);
+        }
+        encoder.reset();
+    }
+
+    /**
+     * Encodes as much of the string as fits into {@code buffer}, from its position, advancing it.
+     *
+     * @return true once the whole string has been written, false if the buffer is full (call again with more room)
+     */
+    boolean encodeTo(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return encodeChars(buffer);
+        }
+        if (bytes == null) {
+            bytes = ByteBuffer.allocate(3 * Constant.UTF8_CHUNK_SIZE);
+            bytes.limit(0);
+        }
+        while (true) {
+            if (bytes.hasRemaining()) {
+                int count = Math.min(bytes.remaining(), buffer.remaining());
+                int limit = bytes.limit();
+                bytes.limit(bytes.position() + count);
+                buffer.put(bytes);
+                bytes.limit(limit);
+                if (bytes.hasRemaining()) {
+                    return false;
+                }
+            }
+            if (value == null) {
+                return true;
+            }
+            bytes.clear();
+            encodeChars(bytes);
+            bytes.flip();
+        }
+    }
+
+    private boolean encodeChars(ByteBuffer buffer) {
+        while (true) {
+            if (needInput) {
+                // Keep a char that the encoder left over (a high surrogate at the end of the chunk).
+                charBuffer.compact();
+                int count = Math.min(value.length() - next, chars.length - charBuffer.position());
+                value.getChars(next, next + count, chars, charBuffer.position());
+                next += count;
+                charBuffer.position(charBuffer.position() + count);
+                charBuffer.flip();
+                needInput = false;
+            }
+            boolean endOfInput = next == value.length();
+            if (encoder.encode(charBuffer, buffer, endOfInput).isOverflow()) {
+                return false;
+            }
+            if (endOfInput) {
+                if (encoder.flush(buffer).isOverflow()) {
+                    return false;
+                }
+                value = null;
+                return true;
+            }
+            needInput = true;
+        }
+    }
+
+    /**
+     * Encodes {@code value} at the position of {@code buffer}, advancing it, and returns the number of bytes written.
+     * The caller makes sure that the buffer has room for {@link BinarySize#utf8Length(CharSequence)} bytes.
+     */
+    static int encode(String value, ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            int start = buffer.arrayOffset() + buffer.position();
+            int size = encode(value, buffer.array(), start) - start;
+            buffer.position(buffer.position() + size);
+            return size;
+        }
+        int start = buffer.position();
+        int length = value.length();
+        int i = 0;
+        for (char c; i < length && (c = value.charAt(i)) < 0x80; i++) {
+            buffer.put((byte) c);
+        }
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | c >>> 6));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            } else if (!Character.isSurrogate(c)) {
+                buffer.put((byte) (0xE0 | c >>> 12));
+                buffer.put((byte) (0x80 | c >>> 6 & 0x3F));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | codePoint >>> 18));
+                buffer.put((byte) (0x80 | codePoint >>> 12 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint >>> 6 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint & 0x3F));
+            } else {
+                buffer.put((byte) '?');
+            }
+        }
+        return buffer.position() - start;
+    }
+
+    /**
+     * Encodes {@code value} into {@code array} from index {@code offset} and returns the index after the last byte.
+     */
+    static int encode(String value, byte[] array, int offset) {
+        int length = value.length();
+        int p = offset;
+        int i = 0;
+        for (char c; i < length && (c = value.charAt(i)) < 0x80; i++) {
+            array[p++] = (byte) c;
+        }
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                array[p++] = (byte) c;
+            } else if (c < 0x800) {
+                array[p++] = (byte) (0xC0 | c >>> 6);
+                array[p++] = (byte) (0x80 | c & 0x3F);
+            } else if (!Character.isSurrogate(c)) {
+                array[p++] = (byte) (0xE0 | c >>> 12);
+                array[p++] = (byte) (0x80 | c >>> 6 & 0x3F);
+                array[p++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                array[p++] = (byte) (0xF0 | codePoint >>> 18);
+                array[p++] = (byte) (0x80 | codePoint >>> 12 & 0x3F);
+                array[p++] = (byte) (0x80 | codePoint >>> 6 & 0x3F);
+                array[p++] = (byte) (0x80 | codePoint & 0x3F);
+            } else {
+                array[p++] = (byte) '?';
+            }
+        }
+        return p;
+    }
+}
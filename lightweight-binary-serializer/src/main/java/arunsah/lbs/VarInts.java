@@ -0,0 +1,315 @@
+package arunsah.lbs;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Varint array encoding and decoding eight bytes at a time, used by {@link BinaryOutputImpl} and
+ * {@link BinaryInputImpl} for {@link FieldType#VAR_INT32_ARRAY} and {@link FieldType#VAR_INT64_ARRAY}.
+ * <p>
+ * Each step loads (or stores) one little-endian 64-bit word at the current position:
+ * <ul>
+ *     <li>decoding finds the end of the varint from the continuation bits of the word
+ *     ({@code ~word & 0x8080808080808080}, then a trailing zero count) and gathers its 7-bit groups with shifts and
+ *     masks, instead of one data-dependent branch per byte; one and two byte varints are tested first, and a word
+ *     without any continuation bit holds eight one byte varints, which are decoded together;</li>
+ *     <li>encoding spreads the value into 7-bit groups, sets the continuation bits of all but the last byte and stores
+ *     the word; the bytes after the varint are overwritten by the next one.</li>
+ * </ul>
+ * The last few bytes before the limit (less than a word), varints longer than eight bytes and invalid (overlong)
+ * varints go through the byte-at-a-time loop, which also does the validation: a VAR_INT32 longer than 5 bytes or a
+ * VAR_INT64 longer than 10 bytes is rejected like {@link BinaryInput#readVarInt32()} and
+ * {@link BinaryInput#readVarInt64()} do, and truncated input throws {@link BufferUnderflowException}. The encoded
+ * bytes are identical to {@link BinaryOutput#writeVarInt32(int)} / {@link BinaryOutput#writeVarInt64(long)}.
+ */
+final class VarInts {
+
+    private static final long CONTINUATION_BITS = 0x8080808080808080L;
+
+    private VarInts() {
+    }
+
+    /**
+     * Decodes {@code values.length} VAR_INT32 values from the position of {@code buffer}, advancing it.
+     */
+    static void decodeInt32(ByteBuffer buffer, int[] values) {
+        decodeInt32(buffer, values, 0, values.length);
+    }
+
+    /**
+     * Decodes {@code count} VAR_INT32 values into {@code values} from index {@code offset}.
+     */
+    static void decodeInt32(ByteBuffer buffer, int[] values, int offset, int count) {
+        boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+        int position = buffer.position();
+        int wordLimit = buffer.limit() - Long.BYTES;
+        int end = offset + count;
+        int i = offset;
+        while (i < end) {
+            if (position > wordLimit) {
+                position = decodeInt32Slow(buffer, position, values, i++);
+                continue;
+            }
+            long word = buffer.getLong(position);
+            if (bigEndian) {
+                word = Long.reverseBytes(word);
+            }
+            if ((word & CONTINUATION_BITS) == 0 && i + Long.BYTES <= end) {
+                // Eight one byte varints.
+                for (int k = 0; k < Long.BYTES; k++) {
+                    values[i++] = (int) (word >>> (k << 3)) & 0x7F;
+                }
+                position += Long.BYTES;
+                continue;
+            }
+            if ((word & 0x8000L) == 0) {
+                // One or two bytes: the common lengths get their own (predictable) branch, so that the next position
+                // does not wait for the trailing zero count.
+                if ((word & 0x80L) == 0) {
+                    values[i++] = (int) word & 0x7F;
+                    position += 1;
+                } else {
+                    values[i++] = (int) ((word & 0x7F) | ((word >>> 1) & (0x7FL << 7)));
+                    position += 2;
+                }
+                continue;
+            }
+            int length = (Long.numberOfTrailingZeros(~word & CONTINUATION_BITS) >>> 3) + 1;
+            if (length > 5) {
+                // Overlong (or no terminator in this word): validated by the byte loop.
+                position = decodeInt32Slow(buffer, position, values, i++);
+                continue;
+            }
+            long x = word & lowBytes(length);
+            values[i++] = (int) ((x & 0x7F)
+                    | ((x >>> 1) & (0x7FL << 7))
+                    | ((x >>> 2) & (0x7FL << 14))
+                    | ((x >>> 3) & (0x7FL << 21))
+                    | ((x >>> 4) & (0x7FL << 28)));
+            position += length;
+        }
+        buffer.position(position);
+    }
+
+    /**
+     * Decodes {@code values.length} VAR_INT64 values from the position of {@code buffer}, advancing it.
+     */
+    static void decodeInt64(ByteBuffer buffer, long[] values) {
+        decodeInt64(buffer, values, 0, values.length);
+    }
+
+    /**
+     * Decodes {@code count} VAR_INT64 values into {@code values} from index {@code offset}.
+     */
+    static void decodeInt64(ByteBuffer buffer, long[] values, int offset, int count) {
+        boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+        int position = buffer.position();
+        int wordLimit = buffer.limit() - Long.BYTES;
+        int end = offset + count;
+        int i = offset;
+        while (i < end) {
+            if (position > wordLimit) {
+                position = decodeInt64Slow(buffer, position, values, i++);
+                continue;
+            }
+            long word = buffer.getLong(position);
+            if (bigEndian) {
+                word = Long.reverseBytes(word);
+            }
+            if ((word & CONTINUATION_BITS) == 0 && i + Long.BYTES <= end) {
+                // Eight one byte varints.
+                for (int k = 0; k < Long.BYTES; k++) {
+                    values[i++] = (word >>> (k << 3)) & 0x7F;
+                }
+                position += Long.BYTES;
+                continue;
+            }
+            if ((word & 0x8000L) == 0) {
+                // One or two bytes, see decodeInt32.
+                if ((word & 0x80L) == 0) {
+                    values[i++] = word & 0x7F;
+                    position += 1;
+                } else {
+                    values[i++] = (word & 0x7F) | ((word >>> 1) & (0x7FL << 7));
+                    position += 2;
+                }
+                continue;
+            }
+            long stops = ~word & CONTINUATION_BITS;
+            if (stops == 0) {
+                // Longer than a word (large or negative values).
+                position = decodeInt64Slow(buffer, position, values, i++);
+                continue;
+            }
+            int length = (Long.numberOfTrailingZeros(stops) >>> 3) + 1;
+            long x = word & lowBytes(length);
+            values[i++] = (x & 0x7F)
+                    | ((x >>> 1) & (0x7FL << 7))
+                    | ((x >>> 2) & (0x7FL << 14))
+                    | ((x >>> 3) & (0x7FL << 21))
+                    | ((x >>> 4) & (0x7FL << 28))
+                    | ((x >>> 5) & (0x7FL << 35))
+                    | ((x >>> 6) & (0x7FL << 42))
+                    | ((x >>> 7) & (0x7FL << 49));
+            position += length;
+        }
+        buffer.position(position);
+    }
+
+    /**
+     * Encodes {@code values} as VAR_INT32 values (ZigZag mapped first if {@code zigZag}) at the position of
+     * {@code buffer}, advancing it.
+     */
+    static void encodeInt32(ByteBuffer buffer, int[] values, boolean zigZag) {
+        boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+        int position = buffer.position();
+        int wordLimit = buffer.limit() - Long.BYTES;
+        for (int i = 0; i < values.length; i++) {
+            int value = zigZag ? zigZag32(values[i]) : values[i];
+            if (position > wordLimit) {
+                position = encodeSlow(buffer, position, value & 0xFFFFFFFFL);
+                continue;
+            }
+            long u = value & 0xFFFFFFFFL;
+            int length = BinarySize.varInt32(value);
+            long word = (u & 0x7F)
+                    | ((u << 1) & (0x7FL << 8))
+                    | ((u << 2) & (0x7FL << 16))
+                    | ((u << 3) & (0x7FL << 24))
+                    | ((u << 4) & (0x7FL << 32))
+                    | (CONTINUATION_BITS & lowBytes(length - 1));
+            buffer.putLong(position, bigEndian ? Long.reverseBytes(word) : word);
+            position += length;
+        }
+        buffer.position(position);
+    }
+
+    /**
+     * Encodes {@code values} as VAR_INT64 values (ZigZag mapped first if {@code zigZag}) at the position of
+     * {@code buffer}, advancing it.
+     */
+    static void encodeInt64(ByteBuffer buffer, long[] values, boolean zigZag) {
+        boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+        int position = buffer.position();
+        int wordLimit = buffer.limit() - Long.BYTES;
+        for (int i = 0; i < values.length; i++) {
+            long u = zigZag ? zigZag64(values[i]) : values[i];
+            int length = BinarySize.varInt64(u);
+            if (position > wordLimit || length > Long.BYTES) {
+                position = encodeSlow(buffer, position, u);
+                continue;
+            }
+            long word = (u & 0x7F)
+                    | ((u << 1) & (0x7FL << 8))
+                    | ((u << 2) & (0x7FL << 16))
+                    | ((u << 3) & (0x7FL << 24))
+                    | ((u << 4) & (0x7FL << 32))
+                    | ((u << 5) & (0x7FL << 40))
+                    | ((u << 6) & (0x7FL << 48))
+                    | ((u << 7) & (0x7FL << 56))
+                    | (CONTINUATION_BITS & lowBytes(length - 1));
+            buffer.putLong(position, bigEndian ? Long.reverseBytes(word) : word);
+            position += length;
+        }
+        buffer.position(position);
+    }
+
+    /**
+     * ZigZag mapping of a signed int to an unsigned one: 0, -1, 1, -2, ... become 0, 1, 2, 3, ...
+     */
+    static int zigZag32(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static long zigZag64(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static int unZigZag32(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static long unZigZag64(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reverses the ZigZag mapping of decoded values in place (a branch-free loop the JIT vectorizes).
+     */
+    static void unZigZag(int[] values) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = unZigZag32(values[i]);
+        }
+    }
+
+    static void unZigZag(long[] values) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = unZigZag64(values[i]);
+        }
+    }
+
+    /**
+     * Mask of the low {@code count} bytes of a long (0 to 8).
+     */
+    private static long lowBytes(int count) {
+        return count >= Long.BYTES ? -1L : (1L << (count << 3)) - 1;
+    }
+
+    private static int decodeInt32Slow(ByteBuffer buffer, int position, int[] values, int index) {
+        int limit = buffer.limit();
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (position >= limit) {
+                throw new BufferUnderflowException();
+            }
+            b = buffer.get(position++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+            if (shift > 40) {
+                throw new IllegalArgumentException("7-bit encoded int too large.");
+            }
+        } while ((b & 0x80) != 0);
+        values[index] = value;
+        return position;
+    }
+
+    private static int decodeInt64Slow(ByteBuffer buffer, int position, long[] values, int index) {
+        int limit = buffer.limit();
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (position >= limit) {
+                throw new BufferUnderflowException();
+            }
+            b = buffer.get(position++);
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+            if (shift > 72) {
+                throw new IllegalArgumentException("7-bit encoded long too large.");
+            }
+        } while ((b & 0x80) != 0);
+        values[index] = value;
+        return position;
+    }
+
+    private static int encodeSlow(ByteBuffer buffer, int position, long value) {
+        int limit = buffer.limit();
+        while ((value & ~0x7FL) != 0) {
+            if (position >= limit) {
+                throw new BufferOverflowException();
+            }
+            buffer.put(position++, (byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        if (position >= limit) {
+            throw new BufferOverflowException();
+        }
+        buffer.put(position++, (byte) value);
+        return position;
+    }
+}
@@ -7,8 +7,10 @@ import arunsah.lbs.BinaryOutputImpl;
 import arunsah.lbs.BinarySerializable;
 import arunsah.lbs.FieldHeader;
 import arunsah.lbs.FieldType;
+import arunsah.lbs.StringCache;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -53,7 +55,8 @@ public class ComplexCompositeObjectsExample {
                 } else if (header.getFieldID() == FIELD_DOB_ID && header.getFieldType() == FieldType.INT64) {
                     dob = new Date(in.readInt64());
                 } else {
-                    System.out.println("Unknown Field Header: " + header);
+                    // Field of a newer version (or unexpected type): skip its value to stay aligned.
+                    in.skipField(header);
                 }
             }
         }
@@ -221,7 +224,8 @@ public class ComplexCompositeObjectsExample {
                 } else if (header.getFieldID() == FIELD_MEMBERS_MAP_ID && header.getFieldType() == FieldType.MAP) {
                     memberByRole = in.readMap(BinaryInput::readStringUTF8, binaryInput -> binaryInput.readObject(Person::new));
                 } else {
-                    System.out.println("Unknown Field Header: " + header);
+                    // Field of a newer version (or unexpected type): skip its value to stay aligned.
+                    in.skipField(header);
                 }
             }
         }
@@ -261,11 +265,46 @@ public class ComplexCompositeObjectsExample {
         System.out.println("Is equal: " + deserializedGroup.equals(group));
     }
 
+    /**
+     * Decodes the same group from several messages through one {@link StringCache}: from the second message on, the
+     * role keys and names come from the cache (the very same String instances) instead of being decoded again.
+     */
+    private static void testGroupWithStringCache() {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        Person p1 = new Person(1, "tom", true, Date.from(Instant.now()));
+        Person p2 = new Person(2, "harry", false, Date.from(Instant.now()));
+        Map<String, Person> roleToMember = new HashMap<>();
+        roleToMember.put("admin", p1);
+        roleToMember.put("user", p2);
+        Group group = new Group("Group1", Arrays.asList(p1, p2), roleToMember);
+        group.serialize(BinaryOutputImpl.bigEndianOutput(buffer));
+        buffer.flip();
+
+        StringCache cache = new StringCache();
+        Group previous = null;
+        for (int message = 0; message < 3; message++) {
+            BinaryInput in = new BinaryInputImpl(buffer.duplicate(), ByteOrder.BIG_ENDIAN).setStringCache(cache);
+            Group deserializedGroup = new Group();
+            deserializedGroup.deserialize(in);
+            if (!deserializedGroup.equals(group)) {
+                throw new AssertionError("Group decoded with a string cache differs: " + deserializedGroup);
+            }
+            if (previous != null && deserializedGroup.groupName != previous.groupName) {
+                throw new AssertionError("Group name not taken from the cache");
+            }
+            previous = deserializedGroup;
+        }
+        System.out.println("String cache: " + cache.getHits() + " hits, " + cache.getMisses() + " misses");
+    }
+
     public static void main(String[] args) {
         System.out.println("==================================================");
         testPerson();
 
         System.out.println("==================================================");
         testGroup();
+
+        System.out.println("==================================================");
+        testGroupWithStringCache();
     }
 }
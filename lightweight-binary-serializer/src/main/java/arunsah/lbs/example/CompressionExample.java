@@ -0,0 +1,153 @@
+package arunsah.lbs.example;
+
+import arunsah.lbs.BlockCompressedInputStream;
+import arunsah.lbs.BlockCompressedOutputStream;
+import arunsah.lbs.Constant;
+import arunsah.lbs.CompressionStats;
+import arunsah.lbs.CorruptStreamException;
+import arunsah.lbs.FieldType;
+import arunsah.lbs.StreamingBinaryInput;
+import arunsah.lbs.StreamingBinaryOutput;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static arunsah.lbs.example.ExampleUtil.check;
+
+public class CompressionExample {
+
+    private static final int VALUES = 1_000_000;
+
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(42);
+
+        // Sensor readings with two decimals that often repeat the previous one.
+        float[] readings = new float[VALUES];
+        float reading = 20f;
+        for (int i = 0; i < readings.length; i++) {
+            if (random.nextInt(4) == 0) {
+                reading = Math.round((reading + (float) random.nextGaussian() / 10) * 100) / 100f;
+            }
+            readings[i] = reading;
+        }
+
+        // A low-cardinality string column.
+        String[] cities = {"Amsterdam", "Bangalore", "Berlin", "Kathmandu", "London", "New York", "Tokyo"};
+        String[] column = new String[VALUES / 10];
+        for (int i = 0; i < column.length; i++) {
+            column[i] = cities[random.nextInt(cities.length)];
+        }
+
+        byte[] noise = new byte[VALUES];
+        random.nextBytes(noise);
+
+        System.out.println("==================================================");
+        byte[] compressed = testRoundTrip(readings, column, noise);
+
+        System.out.println("==================================================");
+        testTruncated(compressed);
+    }
+
+    /**
+     * Writes each payload as a message through a compressed stream and reads it back; the float and string payloads
+     * shrink, the random bytes are stored as they are.
+     */
+    private static byte[] testRoundTrip(float[] readings, String[] column, byte[] noise) throws IOException {
+        byte[] floats = write(FieldType.FLOAT32_ARRAY, readings, "float readings");
+        check(Arrays.equals((float[]) read(floats), readings), "float readings");
+
+        byte[] strings = write(FieldType.STRING_UTF8_ARRAY, column, "string column");
+        check(Arrays.equals((String[]) read(strings), column), "string column");
+
+        byte[] bytes = write(FieldType.INT8_ARRAY, noise, "random bytes");
+        check(Arrays.equals((byte[]) read(bytes), noise), "random bytes");
+        check(bytes.length > noise.length, "random bytes are stored");
+        System.out.println("testRoundTrip passed.");
+        return floats;
+    }
+
+    private static byte[] write(FieldType type, Object values, String what) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BlockCompressedOutputStream compressed = new BlockCompressedOutputStream(bytes);
+        try (StreamingBinaryOutput out = StreamingBinaryOutput.littleEndianOutput(compressed)) {
+            out.writeFieldHeader(type, 1);
+            if (values instanceof float[]) {
+                out.writeFloat32Array((float[]) values);
+            } else if (values instanceof String[]) {
+                out.writeStringUTF8Array((String[]) values);
+            } else {
+                out.writeInt8Array((byte[]) values);
+            }
+        }
+
+        CompressionStats stats = compressed.getStats();
+        check(stats.getCompressedBytes() + Integer.BYTES == bytes.size(), "compressed size of " + what);
+        System.out.printf("%s: %d -> %d bytes, ratio %.2f, %d of %d blocks stored, %.0f MB/s%n", what,
+                stats.getRawBytes(), stats.getCompressedBytes(), stats.getCompressionRatio(),
+                stats.getStoredBlocks(), stats.getBlocks(), stats.getCodecMegabytesPerSecond());
+        return bytes.toByteArray();
+    }
+
+    private static Object read(byte[] bytes) throws IOException {
+        BlockCompressedInputStream compressed = new BlockCompressedInputStream(new ByteArrayInputStream(bytes));
+        try (StreamingBinaryInput in = StreamingBinaryInput.littleEndianInput(compressed)) {
+            in.nextField();
+            Object values;
+            switch (in.currentFieldType()) {
+                case FLOAT32_ARRAY:
+                    values = in.readFloat32Array();
+                    break;
+                case STRING_UTF8_ARRAY:
+                    values = in.readStringUTF8Array();
+                    break;
+                default:
+                    values = in.readInt8Array();
+                    break;
+            }
+            check(!in.hasRemaining(), "end of the message");
+            check(compressed.getStats().getRawBytes() == in.getBytesRead(), "decompressed size");
+            return values;
+        }
+    }
+
+    /**
+     * A stream cut inside a block fails on the first read that needs the missing block, with an
+     * {@link EOFException}; a stream without the header, with a malformed block header or with a block that does not
+     * decompress fails with a {@link CorruptStreamException}.
+     */
+    private static void testTruncated(byte[] compressed) throws IOException {
+        try {
+            read(Arrays.copyOf(compressed, compressed.length / 2));
+            check(false, "reading a truncated stream");
+        } catch (UncheckedIOException expected) {
+            check(expected.getCause() instanceof EOFException, "truncated stream");
+        }
+        try {
+            read(Arrays.copyOfRange(compressed, 1, compressed.length));
+            check(false, "reading a stream without the header");
+        } catch (CorruptStreamException expected) {
+            // Not a block-compressed stream.
+        }
+
+        // The raw size of the first block, after the 4 byte stream header, out of range.
+        byte[] badHeader = compressed.clone();
+        badHeader[4] = (byte) 0x7F;
+        // The first token of the first block, asking for more literals than the block holds.
+        byte[] badBlock = compressed.clone();
+        badBlock[Integer.BYTES + Constant.COMPRESSION_BLOCK_HEADER_SIZE] = (byte) 0xFF;
+        for (byte[] corrupt : Arrays.asList(badHeader, badBlock)) {
+            try {
+                read(corrupt);
+                check(false, "reading a corrupt stream");
+            } catch (UncheckedIOException expected) {
+                check(expected.getCause() instanceof CorruptStreamException, "corrupt stream");
+            }
+        }
+        System.out.println("testTruncated passed.");
+    }
+}
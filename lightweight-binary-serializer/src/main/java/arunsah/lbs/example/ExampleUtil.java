@@ -16,4 +16,16 @@ public class ExampleUtil {
         out.println(hexValue);
     }
 
+    /**
+     * Fails the example with {@code what} as the message unless {@code condition} holds.
+     *
+     * @param condition
+     * @param what      description of the checked property
+     */
+    public static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError("Check failed: " + what);
+        }
+    }
+
 }
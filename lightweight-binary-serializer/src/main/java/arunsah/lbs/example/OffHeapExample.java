@@ -0,0 +1,117 @@
+package arunsah.lbs.example;
+
+import arunsah.lbs.BinaryInput;
+import arunsah.lbs.BinaryInputImpl;
+import arunsah.lbs.BinaryOutputImpl;
+import arunsah.lbs.FieldType;
+import arunsah.lbs.OffHeapBinaryInput;
+import arunsah.lbs.OffHeapBinaryOutput;
+import arunsah.lbs.OffHeapMemory;
+import arunsah.lbs.example.ComplexCompositeObjectsExample.Person;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Date;
+
+import static arunsah.lbs.example.ExampleUtil.check;
+
+public class OffHeapExample {
+
+    private static final int PERSONS = 10_000;
+
+    public static void main(String[] args) {
+        for (ByteOrder byteOrder : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            System.out.println("==================================================");
+            testSameBytesAsBinaryOutputImpl(byteOrder);
+        }
+
+        System.out.println("==================================================");
+        testClose();
+    }
+
+    private static Person person(int i) {
+        return new Person(i % 128, "person-" + i, (i & 1) == 0, new Date(946684800000L + i));
+    }
+
+    /**
+     * Writes persons and a few arrays into off-heap memory, checks that the bytes are those of a
+     * {@link BinaryOutputImpl} and reads them back.
+     */
+    private static void testSameBytesAsBinaryOutputImpl(ByteOrder byteOrder) {
+        int[] ints = new int[1000];
+        double[] doubles = new double[1000];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = i * 7919;
+            doubles[i] = i / 3.0;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20).order(byteOrder);
+        BinaryOutputImpl expected = new BinaryOutputImpl(buffer, byteOrder);
+        try (OffHeapMemory memory = OffHeapMemory.allocate(1 << 20)) {
+            OffHeapBinaryOutput out = new OffHeapBinaryOutput(memory, byteOrder);
+            for (int i = 0; i < PERSONS; i++) {
+                expected.writeFieldHeader(FieldType.OBJECT, 1).writeObject(person(i));
+                out.writeFieldHeader(FieldType.OBJECT, 1).writeObject(person(i));
+            }
+            expected.writeFieldHeader(FieldType.INT32_ARRAY, 2).writeInt32Array(ints);
+            out.writeFieldHeader(FieldType.INT32_ARRAY, 2).writeInt32Array(ints);
+            expected.writeFieldHeader(FieldType.FLOAT64_ARRAY, 3).writeFloat64Array(doubles);
+            out.writeFieldHeader(FieldType.FLOAT64_ARRAY, 3).writeFloat64Array(doubles);
+
+            byte[] written = new byte[(int) out.getBytesWritten()];
+            memory.copyTo(0, written, 0, written.length);
+            check(Arrays.equals(written, Arrays.copyOf(buffer.array(), buffer.position())), "same bytes");
+            System.out.println(byteOrder + ": " + written.length + " bytes off-heap");
+
+            read(new OffHeapBinaryInput(memory, 0, out.getBytesWritten(), byteOrder), ints, doubles);
+            buffer.flip();
+            read(new BinaryInputImpl(buffer, byteOrder), ints, doubles);
+        }
+        System.out.println("testSameBytesAsBinaryOutputImpl passed.");
+    }
+
+    private static void read(BinaryInput in, int[] ints, double[] doubles) {
+        int count = 0;
+        while (in.hasRemaining()) {
+            in.nextField();
+            switch (in.currentFieldId()) {
+                case 1:
+                    check(in.readObject(Person::new).equals(person(count)), "person " + count);
+                    count++;
+                    break;
+                case 2:
+                    check(Arrays.equals(in.readInt32Array(), ints), "int array");
+                    break;
+                default:
+                    check(Arrays.equals(in.readFloat64Array(), doubles), "double array");
+                    break;
+            }
+        }
+        check(count == PERSONS, "person count");
+    }
+
+    /**
+     * The memory is freed on close; later accesses fail instead of touching it.
+     */
+    private static void testClose() {
+        OffHeapMemory memory = OffHeapMemory.allocate(64);
+        OffHeapBinaryOutput out = OffHeapBinaryOutput.bigEndianOutput(memory);
+        out.writeFieldHeader(FieldType.INT64, 1).writeInt64(42);
+        memory.close();
+        check(!memory.isOpen() && memory.size() == 0, "closed");
+        try {
+            out.writeInt64(43);
+            check(false, "write after close");
+        } catch (IllegalStateException expected) {
+            // Closed.
+        }
+        try {
+            memory.getLong(1, ByteOrder.BIG_ENDIAN);
+            check(false, "read after close");
+        } catch (IllegalStateException expected) {
+            // Closed.
+        }
+        System.out.println("testClose passed.");
+    }
+}
@@ -0,0 +1,145 @@
+package arunsah.lbs.example;
+
+import arunsah.lbs.ArrayEncoding;
+import arunsah.lbs.BinaryInput;
+import arunsah.lbs.BinaryInputImpl;
+import arunsah.lbs.BinaryOutput;
+import arunsah.lbs.BinaryOutputImpl;
+import arunsah.lbs.BinarySize;
+import arunsah.lbs.FieldType;
+import arunsah.lbs.LbsView;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static arunsah.lbs.example.ExampleUtil.check;
+
+public class PackedArrayExample {
+
+    public static void main(String[] args) {
+        System.out.println("==================================================");
+        testPackedArrays(true, false);
+
+        System.out.println("==================================================");
+        testPackedArrays(false, false);
+
+        System.out.println("==================================================");
+        testPackedArrays(false, true);
+
+        System.out.println("==================================================");
+        testBitWidths();
+
+        System.out.println("==================================================");
+        testDictionaryStrings();
+    }
+
+    /**
+     * Writes column style arrays (narrow ranges, a few outliers, negative values) as PACKED_INT32 and reads them back.
+     */
+    private static void testPackedArrays(boolean bigEndian, boolean direct) {
+        Random random = new Random(3);
+        int[] readings = new int[1000];
+        for (int i = 0; i < readings.length; i++) {
+            // Mostly within 0..1000 around a drifting base, with an occasional spike.
+            readings[i] = -20_000 + i * 10 + random.nextInt(1000);
+            if (random.nextInt(50) == 0) {
+                readings[i] += 1 << 24;
+            }
+        }
+        int[] empty = {};
+        int[] extremes = {Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE};
+
+        ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(8192) : ByteBuffer.allocate(8192);
+        BinaryOutput out = bigEndian ? BinaryOutputImpl.bigEndianOutput(buffer)
+                : BinaryOutputImpl.littleEndianOutput(buffer);
+        out.writeFieldHeader(FieldType.ENCODED_ARRAY, 1).writePackedInt32Array(readings);
+        out.writeFieldHeader(FieldType.ENCODED_ARRAY, 2).writePackedInt32Array(empty);
+        out.writeFieldHeader(FieldType.ENCODED_ARRAY, 3).writePackedInt32Array(extremes);
+        out.writeFieldHeader(FieldType.INT32, 4).writeInt32(42);
+        int expectedSize = BinarySize.fieldHeader(FieldType.ENCODED_ARRAY, 1) * 3 + BinarySize.packedInt32Array(readings)
+                + BinarySize.packedInt32Array(empty) + BinarySize.packedInt32Array(extremes) + 1 + 4;
+        check(buffer.position() == expectedSize, "size " + buffer.position() + " != " + expectedSize);
+        System.out.println("1000 readings: " + BinarySize.packedInt32Array(readings) + " bytes packed, "
+                + BinarySize.varInt32Array(readings) + " bytes as VAR_INT32_ARRAY, "
+                + BinarySize.int32Array(readings) + " bytes as INT32_ARRAY");
+        check(BinarySize.packedInt32Array(readings) < BinarySize.varInt32Array(readings), "packing is smaller");
+        buffer.flip();
+
+        BinaryInput in = bigEndian ? BinaryInputImpl.bigEndianInput(buffer) : BinaryInputImpl.littleEndianInput(buffer);
+        in.nextField();
+        check(Arrays.equals(in.readPackedInt32Array(), readings), "readings");
+        in.nextField();
+        check(in.readPackedInt32Array().length == 0, "empty array");
+        in.nextField();
+        check(Arrays.equals(in.readPackedInt32Array(), extremes), "extremes");
+        in.nextField();
+        check(in.readInt32() == 42, "field after the arrays");
+
+        buffer.rewind();
+        LbsView view = bigEndian ? LbsView.bigEndianView(buffer) : LbsView.littleEndianView(buffer);
+        check(view.getArrayEncoding(1) == ArrayEncoding.PACKED_INT32, "encoding");
+        check(view.getInt32(4) == 42, "view skips packed arrays");
+        System.out.println("testPackedArrays(bigEndian=" + bigEndian + ", direct=" + direct + ") passed.");
+    }
+
+    /**
+     * Round trips blocks of every bit width, from constant blocks (0 bits) to full range ones (32 bits), with lengths
+     * that end mid-block and mid-byte.
+     */
+    private static void testBitWidths() {
+        Random random = new Random(11);
+        for (int bits = 0; bits <= 32; bits++) {
+            for (int length : new int[]{1, 7, 128, 129, 300}) {
+                int[] values = new int[length];
+                int base = random.nextInt();
+                for (int i = 0; i < length; i++) {
+                    int delta = bits == 0 ? 0 : random.nextInt() >>> (32 - bits);
+                    values[i] = base + delta;
+                }
+                ByteBuffer buffer = ByteBuffer.allocate(BinarySize.packedInt32Array(values));
+                BinaryOutputImpl.littleEndianOutput(buffer).writePackedInt32Array(values);
+                check(!buffer.hasRemaining(), "size of " + bits + " bits x " + length);
+                buffer.flip();
+                int[] read = BinaryInputImpl.littleEndianInput(buffer).readPackedInt32Array();
+                check(Arrays.equals(read, values), bits + " bits x " + length);
+            }
+        }
+        System.out.println("testBitWidths passed.");
+    }
+
+    /**
+     * Writes a string column with few distinct values as a dictionary encoded array and reads it back; equal strings
+     * come back as one instance.
+     */
+    private static void testDictionaryStrings() {
+        String[] countries = {"India", "Nepal", "Deutschland", "Österreich", "日本", ""};
+        Random random = new Random(5);
+        String[] column = new String[1000];
+        for (int i = 0; i < column.length; i++) {
+            column[i] = countries[random.nextInt(countries.length)];
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(BinarySize.dictionaryStringUTF8Array(column)
+                + BinarySize.dictionaryStringUTF8Array(new String[0]));
+        BinaryOutput out = BinaryOutputImpl.bigEndianOutput(buffer);
+        out.writeDictionaryStringUTF8Array(column);
+        out.writeDictionaryStringUTF8Array(new String[0]);
+        check(!buffer.hasRemaining(), "dictionary size");
+        System.out.println("1000 strings: " + BinarySize.dictionaryStringUTF8Array(column) + " bytes with a dictionary, "
+                + BinarySize.stringUTF8Array(column) + " bytes as STRING_UTF8_ARRAY");
+        check(BinarySize.dictionaryStringUTF8Array(column) * 4 < BinarySize.stringUTF8Array(column), "dictionary is smaller");
+        buffer.flip();
+
+        BinaryInput in = BinaryInputImpl.bigEndianInput(buffer);
+        String[] read = in.readDictionaryStringUTF8Array();
+        check(Arrays.equals(read, column), "strings");
+        for (int i = 1; i < read.length; i++) {
+            if (read[i].equals(read[0])) {
+                check(read[i] == read[0], "shared instance");
+            }
+        }
+        check(in.readDictionaryStringUTF8Array().length == 0, "empty array");
+        System.out.println("testDictionaryStrings passed.");
+    }
+}
@@ -0,0 +1,134 @@
+package arunsah.lbs.example;
+
+import arunsah.lbs.BinaryInputImpl;
+import arunsah.lbs.BinaryOutput;
+import arunsah.lbs.BinaryOutputImpl;
+import arunsah.lbs.OffHeapBinaryOutput;
+import arunsah.lbs.OffHeapMemory;
+import arunsah.lbs.ParallelListWriter;
+import arunsah.lbs.example.ComplexCompositeObjectsExample.Person;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+
+import static arunsah.lbs.example.ExampleUtil.check;
+
+public class ParallelListExample {
+
+    private static final int PERSONS = 500_000;
+
+    private static final BiConsumer<BinaryOutput, Person> WRITER = BinaryOutput::writeObject;
+
+    public static void main(String[] args) {
+        List<Person> persons = new ArrayList<>(PERSONS);
+        for (int i = 0; i < PERSONS; i++) {
+            persons.add(new Person(i % 128, "person-" + i, (i & 1) == 0, new Date(946684800000L + i)));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ParallelListWriter parallel = new ParallelListWriter(pool, 1024);
+        try {
+            for (ByteOrder byteOrder : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+                System.out.println("==================================================");
+                testSameBytes(persons, parallel, byteOrder);
+            }
+
+            System.out.println("==================================================");
+            testSequentialFallback(persons, parallel);
+
+            System.out.println("==================================================");
+            testGrownBuffers(persons, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Writes the persons sequentially and in parallel, checks that the bytes are the same and reads them back.
+     */
+    private static void testSameBytes(List<Person> persons, ParallelListWriter parallel, ByteOrder byteOrder) {
+        ByteBuffer sequential = ByteBuffer.allocate(32 * 1024 * 1024);
+        ByteBuffer chunked = ByteBuffer.allocate(32 * 1024 * 1024);
+        long sequentialNanos = Long.MAX_VALUE;
+        long parallelNanos = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            sequential.clear();
+            long start = System.nanoTime();
+            new BinaryOutputImpl(sequential, byteOrder).writeList(persons, WRITER);
+            sequentialNanos = Math.min(sequentialNanos, System.nanoTime() - start);
+
+            chunked.clear();
+            start = System.nanoTime();
+            new BinaryOutputImpl(chunked, byteOrder).writeList(persons, WRITER, parallel);
+            parallelNanos = Math.min(parallelNanos, System.nanoTime() - start);
+        }
+        sequential.flip();
+        chunked.flip();
+        check(sequential.equals(chunked), "same bytes");
+        int length = chunked.remaining();
+        System.out.printf("%s: %d persons, %d bytes, sequential %d ms, parallel %d ms on %d threads%n", byteOrder,
+                persons.size(), length, sequentialNanos / 1_000_000, parallelNanos / 1_000_000,
+                parallel.getPool().getParallelism());
+
+        List<Person> read = new BinaryInputImpl(chunked, byteOrder).readList(in -> in.readObject(Person::new));
+        check(read.equals(persons), "persons read back");
+        check(parallel.getPooledBufferCount() > 0, "buffers returned to the pool");
+
+        // Any output gets the same bytes, here one in off-heap memory.
+        try (OffHeapMemory memory = OffHeapMemory.allocate(length)) {
+            OffHeapBinaryOutput out = new OffHeapBinaryOutput(memory, byteOrder);
+            out.writeList(persons, WRITER, parallel);
+            byte[] bytes = new byte[(int) out.getBytesWritten()];
+            memory.copyTo(0, bytes, 0, bytes.length);
+            check(Arrays.equals(bytes, Arrays.copyOf(chunked.array(), length)), "off-heap bytes");
+        }
+        System.out.println("testSameBytes passed.");
+    }
+
+    /**
+     * Short lists and lists without random access are written on the calling thread.
+     */
+    private static void testSequentialFallback(List<Person> persons, ParallelListWriter parallel) {
+        for (List<Person> list : Arrays.asList(persons.subList(0, 100), new LinkedList<>(persons.subList(0, 5000)))) {
+            ByteBuffer expected = ByteBuffer.allocate(1024 * 1024);
+            BinaryOutputImpl.bigEndianOutput(expected).writeList(list, WRITER);
+            ByteBuffer actual = ByteBuffer.allocate(1024 * 1024);
+            Thread caller = Thread.currentThread();
+            BinaryOutputImpl.bigEndianOutput(actual).writeList(list, (out, person) -> {
+                check(Thread.currentThread() == caller, "written on the calling thread");
+                out.writeObject(person);
+            }, parallel);
+            expected.flip();
+            actual.flip();
+            check(expected.equals(actual), "same bytes of " + list.size() + " persons");
+        }
+        System.out.println("testSequentialFallback passed.");
+    }
+
+    /**
+     * Chunks of the persons outgrow their first buffers; the smaller buffers go back to the pool too.
+     */
+    private static void testGrownBuffers(List<Person> persons, ForkJoinPool pool) {
+        ParallelListWriter parallel = new ParallelListWriter(pool, 1024);
+        // 4 threads, 4 chunks each: about 1 MB per chunk, written again in buffers of 64 KB up to 1 MB.
+        int chunks = pool.getParallelism() * 4;
+        ByteBuffer buffer = ByteBuffer.allocate(32 * 1024 * 1024);
+        BinaryOutputImpl.bigEndianOutput(buffer).writeList(persons, WRITER, parallel);
+        check(parallel.getPooledBufferCount() > chunks, parallel.getPooledBufferCount() + " pooled buffers for "
+                + chunks + " chunks");
+
+        // The second list finds buffers that are large enough.
+        int pooled = parallel.getPooledBufferCount();
+        buffer.clear();
+        BinaryOutputImpl.bigEndianOutput(buffer).writeList(persons, WRITER, parallel);
+        check(parallel.getPooledBufferCount() == pooled, "no buffer allocated for the second list");
+        System.out.println("testGrownBuffers passed.");
+    }
+}
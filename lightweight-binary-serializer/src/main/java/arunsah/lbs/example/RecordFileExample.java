@@ -0,0 +1,134 @@
+package arunsah.lbs.example;
+
+import arunsah.lbs.RecordFile;
+import arunsah.lbs.RecordFileWriter;
+import arunsah.lbs.RecordLogReader;
+import arunsah.lbs.RecordLogWriter;
+import arunsah.lbs.example.ComplexCompositeObjectsExample.Person;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.Random;
+
+import static arunsah.lbs.example.ExampleUtil.check;
+
+public class RecordFileExample {
+
+    private static final int RECORDS = 100_000;
+
+    public static void main(String[] args) throws IOException {
+        Path path = Files.createTempFile("persons", ".lbs");
+        Files.delete(path);
+        try {
+            System.out.println("==================================================");
+            testPointLookups(path);
+
+            System.out.println("==================================================");
+            testReopen(path);
+
+            System.out.println("==================================================");
+            testSealLog(path);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static Person person(int i) {
+        return new Person(i % 128, "person-" + i, (i & 1) == 0, new Date(946684800000L + i));
+    }
+
+    /**
+     * Writes persons into a record file, then looks them up by number: random lookups mostly miss the cache, lookups
+     * of a small hot set mostly hit it.
+     */
+    private static void testPointLookups(Path path) {
+        try (RecordFileWriter writer = RecordFileWriter.open(path, ByteOrder.LITTLE_ENDIAN)) {
+            for (int i = 0; i < RECORDS; i++) {
+                check(writer.append(person(i)) == i, "record number " + i);
+            }
+        }
+
+        Random random = new Random(42);
+        try (RecordFile<Person> file = RecordFile.open(path, Person::new, 1000)) {
+            check(file.size() == RECORDS, "record count");
+            for (int i = 0; i < 10_000; i++) {
+                int n = random.nextInt(RECORDS);
+                check(file.get(n).equals(person(n)), "random person " + n);
+            }
+            long misses = file.getCacheMisses();
+            System.out.println("random lookups: " + file.getCacheHits() + " hits, " + misses + " misses");
+
+            file.clearCache();
+            for (int i = 0; i < 10_000; i++) {
+                int n = random.nextInt(100);
+                check(file.get(n).equals(person(n)), "hot person " + n);
+            }
+            System.out.println("hot lookups: " + file.getCacheHits() + " hits, " + file.getCacheMisses() + " misses");
+            check(file.getCacheMisses() == 100, "only the first lookup of a hot person misses");
+
+            try {
+                file.get(RECORDS);
+                check(false, "lookup past the last record");
+            } catch (IndexOutOfBoundsException expected) {
+                // No such record.
+            }
+        }
+
+        try (RecordLogReader reader = RecordLogReader.open(path).setVerifyChecksums(true)) {
+            int count = 0;
+            while (reader.next()) {
+                count++;
+            }
+            check(count == RECORDS && !reader.isTornTail(), "a log scan stops before the index");
+        }
+        System.out.println("testPointLookups passed.");
+    }
+
+    /**
+     * Reopening a sealed file removes its index, appends and seals it again.
+     */
+    private static void testReopen(Path path) {
+        try (RecordFileWriter writer = RecordFileWriter.open(path, ByteOrder.LITTLE_ENDIAN)) {
+            check(writer.getRecordCount() == RECORDS, "records of the reopened file");
+            check(writer.append(person(RECORDS)) == RECORDS, "number of the appended record");
+        }
+        try (RecordFile<Person> file = RecordFile.open(path, Person::new)) {
+            check(file.size() == RECORDS + 1, "record count after reopening");
+            check(file.get(0).equals(person(0)) && file.get(RECORDS).equals(person(RECORDS)), "first and last");
+        }
+        System.out.println("testReopen passed.");
+    }
+
+    /**
+     * A plain record log (as left by a crash before sealing) is sealed by opening and closing it.
+     */
+    private static void testSealLog(Path path) throws IOException {
+        Files.delete(path);
+        try (RecordLogWriter writer = RecordLogWriter.open(path, ByteOrder.BIG_ENDIAN)) {
+            for (int i = 0; i < 1000; i++) {
+                writer.append(person(i));
+            }
+        }
+        try {
+            RecordFile.open(path, Person::new).close();
+            check(false, "opening a log without an index");
+        } catch (IllegalArgumentException expected) {
+            // Not sealed yet.
+        }
+        RecordFileWriter.open(path, ByteOrder.BIG_ENDIAN).close();
+        try (RecordFile<Person> file = RecordFile.open(path, Person::new, 0)) {
+            check(file.size() == 1000 && file.get(999).equals(person(999)), "sealed log");
+            check(file.getCacheHits() == 0 && file.getCacheMisses() == 0, "no cache");
+        }
+        try {
+            RecordFile.open(path, Person::new, 1 << 29).close();
+            check(false, "opening with a cache too large for its hash table");
+        } catch (IllegalArgumentException expected) {
+            // Above MAX_RECORD_CACHE_SIZE.
+        }
+        System.out.println("testSealLog passed.");
+    }
+}
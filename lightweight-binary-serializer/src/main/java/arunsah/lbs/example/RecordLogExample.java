@@ -0,0 +1,102 @@
+package arunsah.lbs.example;
+
+import arunsah.lbs.RecordLogReader;
+import arunsah.lbs.RecordLogWriter;
+import arunsah.lbs.example.ComplexCompositeObjectsExample.Person;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+
+import static arunsah.lbs.example.ExampleUtil.check;
+
+public class RecordLogExample {
+
+    private static final int RECORDS = 100_000;
+
+    public static void main(String[] args) throws IOException {
+        Path path = Files.createTempFile("persons", ".lbs");
+        Files.delete(path);
+        try {
+            System.out.println("==================================================");
+            long lastOffset = testAppendAndScan(path);
+
+            System.out.println("==================================================");
+            testTornTail(path, lastOffset);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static Person person(int i) {
+        return new Person(i % 128, "person-" + i, (i & 1) == 0, new Date(946684800000L + i));
+    }
+
+    /**
+     * Appends persons, syncing every 1000 (group commit), then scans the log.
+     *
+     * @return the offset of the last record
+     */
+    private static long testAppendAndScan(Path path) {
+        long lastOffset = -1;
+        try (RecordLogWriter writer = RecordLogWriter.open(path, ByteOrder.LITTLE_ENDIAN)) {
+            for (int i = 0; i < RECORDS; i++) {
+                lastOffset = writer.append(person(i));
+                if (i % 1000 == 999) {
+                    writer.sync();
+                }
+            }
+            writer.sync();
+            System.out.println(RECORDS + " persons: " + writer.size() + " bytes");
+        }
+
+        try (RecordLogReader reader = RecordLogReader.open(path)) {
+            int count = 0;
+            while (reader.next()) {
+                check(reader.read(Person::new).equals(person(count)), "person " + count);
+                count++;
+            }
+            check(count == RECORDS && !reader.isTornTail(), "record count");
+            check(reader.getRecordOffset() == lastOffset, "offset of the last record");
+        }
+        System.out.println("testAppendAndScan passed.");
+        return lastOffset;
+    }
+
+    /**
+     * Cuts the last record in half, as a crash in the middle of a write would: the reader stops before it and
+     * reopening the log for appending truncates it.
+     */
+    private static void testTornTail(Path path, long lastOffset) throws IOException {
+        long size = Files.size(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(lastOffset + (size - lastOffset) / 2);
+        }
+
+        try (RecordLogReader reader = RecordLogReader.open(path)) {
+            int count = 0;
+            while (reader.next()) {
+                count++;
+            }
+            check(count == RECORDS - 1 && reader.isTornTail(), "reader stops at the torn tail");
+        }
+
+        try (RecordLogWriter writer = RecordLogWriter.open(path, ByteOrder.LITTLE_ENDIAN)) {
+            check(writer.getTruncatedBytes() > 0 && writer.size() == lastOffset, "torn tail truncated");
+            writer.append(person(RECORDS - 1));
+        }
+
+        try (RecordLogReader reader = RecordLogReader.open(path).setVerifyChecksums(true)) {
+            int count = 0;
+            while (reader.next()) {
+                count++;
+            }
+            check(count == RECORDS && !reader.isTornTail(), "record count after recovery");
+        }
+        System.out.println("testTornTail passed.");
+    }
+}
@@ -0,0 +1,150 @@
+package arunsah.lbs.example;
+
+import arunsah.lbs.BinaryInput;
+import arunsah.lbs.BinaryInputImpl;
+import arunsah.lbs.BinaryOutput;
+import arunsah.lbs.BinaryOutputImpl;
+import arunsah.lbs.Constant;
+import arunsah.lbs.FieldType;
+import arunsah.lbs.SegmentPool;
+import arunsah.lbs.SegmentedBinaryOutput;
+import arunsah.lbs.example.ComplexCompositeObjectsExample.Group;
+import arunsah.lbs.example.ComplexCompositeObjectsExample.Person;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static arunsah.lbs.example.ExampleUtil.check;
+
+public class SegmentedExample {
+
+    // 2, 3 and 4 byte UTF-8 characters, split between segments.
+    private static final String TEXT = String.join("", Collections.nCopies(50, "é中😀"));
+
+    public static void main(String[] args) {
+        // A person, and groups whose lengths need a varint of 1, 2 and 3 bytes in the 5 byte slot.
+        List<Group> groups = Arrays.asList(group(1), group(10), group(400));
+
+        for (ByteOrder byteOrder : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            System.out.println("==================================================");
+            testSameBytesAsBinaryOutputImpl(groups, byteOrder);
+        }
+
+        System.out.println("==================================================");
+        testSegmentsRecycled(groups);
+    }
+
+    private static Group group(int members) {
+        List<Person> memberList = new ArrayList<>(members);
+        Map<String, Person> memberByRole = new HashMap<>();
+        for (int i = 0; i < members; i++) {
+            Person member = new Person(i % 128, "member-" + i, (i & 1) == 0, new Date(946684800000L + i));
+            memberList.add(member);
+            memberByRole.put("role-" + i, member);
+        }
+        return new Group("group-" + members, memberList, memberByRole);
+    }
+
+    private static void write(BinaryOutput out, List<Group> groups) {
+        out.writeFieldHeader(FieldType.OBJECT, 1).writeObject(new Person(7, "sally", false, new Date(946684800000L)));
+        for (Group group : groups) {
+            out.writeFieldHeader(FieldType.OBJECT, 2).writeObject(group);
+        }
+        long[] longs = new long[100];
+        for (int i = 0; i < longs.length; i++) {
+            longs[i] = (long) i << 40 | i;
+        }
+        out.writeFieldHeader(FieldType.INT64_ARRAY, 3).writeInt64Array(longs);
+        out.writeFieldHeader(FieldType.STRING_UTF8, 4).writeStringUTF8(TEXT);
+    }
+
+    /**
+     * Writes the same fields with segments of 16 to 48 bytes, so that the length slot of each nested object lands at
+     * every offset from a segment boundary and the objects, arrays and strings span several segments; the bytes
+     * match those of a {@link BinaryOutputImpl} and read back.
+     */
+    private static void testSameBytesAsBinaryOutputImpl(List<Group> groups, ByteOrder byteOrder) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(byteOrder);
+        write(new BinaryOutputImpl(buffer, byteOrder), groups);
+        buffer.flip();
+
+        List<Integer> segmentSizes = new ArrayList<>();
+        for (int size = 16; size <= 48; size++) {
+            segmentSizes.add(size);
+        }
+        segmentSizes.add(Constant.DEFAULT_SEGMENT_SIZE);
+        for (int segmentSize : segmentSizes) {
+            SegmentPool pool = new SegmentPool(segmentSize, Constant.DEFAULT_MAX_POOLED_SEGMENTS, false);
+            SegmentedBinaryOutput out = new SegmentedBinaryOutput(pool, byteOrder);
+            write(out, groups);
+            check(out.getBufferPosition() == buffer.remaining(), "size with segments of " + segmentSize);
+            check(out.toByteBuffer().equals(buffer), "same bytes with segments of " + segmentSize);
+
+            ByteBuffer gathered = ByteBuffer.allocate(out.getBufferPosition());
+            for (ByteBuffer range : out.toByteBuffers()) {
+                gathered.put(range);
+            }
+            gathered.flip();
+            check(gathered.equals(buffer), "same gathered bytes with segments of " + segmentSize);
+            read(new BinaryInputImpl(out.toByteBuffer(), byteOrder), groups);
+            out.reset();
+        }
+        System.out.println(byteOrder + ": " + buffer.remaining() + " bytes in segments of " + segmentSizes.get(0)
+                + " to " + Constant.DEFAULT_SEGMENT_SIZE + " bytes");
+        System.out.println("testSameBytesAsBinaryOutputImpl passed.");
+    }
+
+    private static void read(BinaryInput in, List<Group> groups) {
+        in.nextField();
+        check(in.readObject(Person::new).equals(new Person(7, "sally", false, new Date(946684800000L))), "person");
+        for (int i = 0; i < groups.size(); i++) {
+            in.nextField();
+            check(in.readObject(Group::new).equals(groups.get(i)), "group " + i);
+        }
+        in.nextField();
+        check(in.readInt64Array().length == 100, "long array");
+        in.nextField();
+        check(in.readStringUTF8().equals(TEXT), "string");
+        check(!in.hasRemaining(), "end of the data");
+    }
+
+    /**
+     * {@link SegmentedBinaryOutput#reset()} returns the segments to the pool, and the next message is written into the
+     * same segments without allocating.
+     */
+    private static void testSegmentsRecycled(List<Group> groups) {
+        SegmentPool pool = new SegmentPool(256, Constant.DEFAULT_MAX_POOLED_SEGMENTS, false);
+        SegmentedBinaryOutput out = SegmentedBinaryOutput.bigEndianOutput(pool);
+        write(out, groups);
+        Set<byte[]> segments = segmentArrays(out);
+        check(pool.getPooledSegmentCount() == 0, "no free segment while writing");
+        out.reset();
+        check(pool.getPooledSegmentCount() == segments.size(), pool.getPooledSegmentCount() + " segments returned for "
+                + segments.size());
+
+        write(out, groups);
+        check(pool.getPooledSegmentCount() == 0, "pooled segments reused");
+        check(segmentArrays(out).equals(segments), "same segments");
+        out.reset();
+        check(pool.getPooledSegmentCount() == segments.size(), "segments returned again");
+        System.out.println(segments.size() + " segments of " + pool.getSegmentSize() + " bytes recycled");
+        System.out.println("testSegmentsRecycled passed.");
+    }
+
+    private static Set<byte[]> segmentArrays(SegmentedBinaryOutput out) {
+        Set<byte[]> arrays = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (ByteBuffer range : out.toByteBuffers()) {
+            arrays.add(range.array());
+        }
+        return arrays;
+    }
+}
@@ -1,5 +1,6 @@
 package arunsah.lbs.example;
 
+import arunsah.lbs.BinaryCodec;
 import arunsah.lbs.BinaryInput;
 import arunsah.lbs.BinaryInputImpl;
 import arunsah.lbs.BinaryOutput;
@@ -8,6 +9,7 @@ import arunsah.lbs.FieldHeader;
 import arunsah.lbs.FieldType;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 public class SimpleFieldHeaderExample {
 
@@ -17,6 +19,15 @@ public class SimpleFieldHeaderExample {
 
         System.out.println("==================================================");
         testFieldHeaderExtendedInt32Array();
+
+        System.out.println("==================================================");
+        testFieldHeaderCursor();
+
+        System.out.println("==================================================");
+        testSkipUnknownFields();
+
+        System.out.println("==================================================");
+        testSeekField();
     }
 
     /**
@@ -95,4 +106,167 @@ public class SimpleFieldHeaderExample {
         System.out.println("testFieldHeaderExtendedInt32Array passed.");
     }
 
+    /**
+     * Test the allocation-free header API: nextField() keeps the decoded type and id on the reader.
+     */
+    private static void testFieldHeaderCursor() {
+        ByteBuffer buffer = ByteBuffer.allocate(32);
+        BinaryOutput out = BinaryOutputImpl.bigEndianOutput(buffer);
+        out.writeFieldHeader(FieldType.INT32, 3).writeInt32(42);
+        out.writeFieldHeader(FieldType.INT64, 256).writeInt64(7L);
+        out.writeFieldHeader(FieldType.INT32_ARRAY, 5).writeInt32Array(new int[]{1});
+
+        ExampleUtil.printBufferInfo(System.out, buffer);
+
+        buffer.flip();
+        BinaryInput in = BinaryInputImpl.bigEndianInput(buffer);
+        while (in.hasRemaining()) {
+            switch (in.nextField()) {
+                case 3:
+                    if (in.currentFieldType() != FieldType.INT32 || in.readInt32() != 42) {
+                        throw new AssertionError("Field cursor test failed for field 3, type=" + in.currentFieldType());
+                    }
+                    break;
+                case 256:
+                    if (in.currentFieldType() != FieldType.INT64 || in.readInt64() != 7L) {
+                        throw new AssertionError("Field cursor test failed for field 256, type=" + in.currentFieldType());
+                    }
+                    break;
+                case 5:
+                    if (in.currentFieldType() != FieldType.INT32_ARRAY || in.readInt32Array()[0] != 1) {
+                        throw new AssertionError("Field cursor test failed for field 5, type=" + in.currentFieldType());
+                    }
+                    break;
+                default:
+                    throw new AssertionError("Field cursor test failed. Unexpected field id " + in.currentFieldId());
+            }
+        }
+        System.out.println("testFieldHeaderCursor passed.");
+    }
+
+    /**
+     * Test skipping fields the reader does not know: only field 1 and the last field are read, everything in
+     * between is skipped with skipField().
+     */
+    private static void testSkipUnknownFields() {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        BinaryOutput out = BinaryOutputImpl.bigEndianOutput(buffer);
+        out.writeFieldHeader(FieldType.INT32, 1).writeInt32(42);
+        out.writeBoolean(2, true);
+        out.writeFieldHeader(FieldType.INT16, 3).writeInt16((short) 3);
+        out.writeFieldHeader(FieldType.FLOAT64, 4).writeFloat64(4.0);
+        out.writeFieldHeader(FieldType.VAR_INT64, 20).writeVarInt64(Long.MAX_VALUE);
+        out.writeFieldHeader(FieldType.STRING_UTF8, 6).writeStringUTF8("skipped");
+        out.writeFieldHeader(FieldType.INT64_ARRAY, 300).writeInt64Array(new long[]{1L, 2L});
+        out.writeFieldHeader(FieldType.VAR_INT32_ARRAY, 8).writeVarInt32Array(new int[]{1, 300, -1});
+        out.writeFieldHeader(FieldType.STRING_UTF8_ARRAY, 9).writeStringUTF8Array(new String[]{"a", "", "bc"});
+        out.writeFieldHeader(FieldType.OBJECT, 10).writeObject(new int[]{5, 6}, new ArrayCodec());
+        out.writeFieldHeader(FieldType.INT8, 11).writeInt8((byte) 11);
+
+        buffer.flip();
+        BinaryInput in = BinaryInputImpl.bigEndianInput(buffer);
+        int known = 0;
+        while (in.hasRemaining()) {
+            FieldHeader header = in.readFieldHeader();
+            if (header.getFieldID() == 1 && in.readInt32() == 42) {
+                known++;
+            } else if (header.getFieldID() == 11 && in.readInt8() == 11) {
+                known++;
+            } else {
+                in.skipField(header);
+            }
+        }
+        if (known != 2) {
+            throw new AssertionError("Skip field test failed. Expected 2 known fields; Got: " + known);
+        }
+        System.out.println("testSkipUnknownFields passed.");
+    }
+
+    /**
+     * Test seeking to a field of a large object, with and without a field index trailer.
+     */
+    private static void testSeekField() {
+        int[] values = new int[500];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i * 3;
+        }
+        for (boolean indexed : new boolean[]{true, false}) {
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            BinaryOutputImpl out = new BinaryOutputImpl(buffer, ByteOrder.BIG_ENDIAN);
+            out.writeFieldHeader(FieldType.INT32, 1).writeInt32(7);
+            if (indexed) {
+                out.writeFieldHeader(FieldType.OBJECT, 2);
+                out.writeIndexedObject(values, new ArrayCodec());
+            } else {
+                out.writeFieldHeader(FieldType.OBJECT, 2).writeObject(values, new ArrayCodec());
+            }
+            out.writeFieldHeader(FieldType.INT32, 3).writeInt32(9);
+            buffer.flip();
+
+            // Seek inside the nested object.
+            BinaryInput in = BinaryInputImpl.bigEndianInput(buffer);
+            if (!in.seekField(2) || in.nextField() != 2) {
+                throw new AssertionError("Seek field test failed for top-level field 2, indexed=" + indexed);
+            }
+            int[] found = in.readObject(new BinaryCodec<int[]>() {
+                @Override
+                public void write(BinaryOutput out, int[] value) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int[] read(BinaryInput in) {
+                    int[] result = new int[3];
+                    for (int i = 0; i < result.length; i++) {
+                        int fieldId = 400 + i;
+                        if (!in.seekField(fieldId) || in.nextField() != fieldId) {
+                            throw new AssertionError("Seek field test failed for field " + fieldId);
+                        }
+                        result[i] = in.readVarInt32();
+                    }
+                    if (in.seekField(values.length + 1)) {
+                        throw new AssertionError("Seek field test failed: found missing field");
+                    }
+                    while (in.hasRemaining()) {
+                        in.nextField();
+                        in.skipField();
+                    }
+                    return result;
+                }
+
+                @Override
+                public int serializedSize(int[] value) {
+                    throw new UnsupportedOperationException();
+                }
+            });
+            if (found[0] != 399 * 3 || found[2] != 401 * 3 || !in.seekField(3) || in.nextField() != 3
+                    || in.readInt32() != 9) {
+                throw new AssertionError("Seek field test failed, indexed=" + indexed);
+            }
+        }
+        System.out.println("testSeekField passed.");
+    }
+
+    /**
+     * Writes an int[] as an object with one VAR_INT32 field per element.
+     */
+    private static class ArrayCodec implements BinaryCodec<int[]> {
+        @Override
+        public void write(BinaryOutput out, int[] value) {
+            for (int i = 0; i < value.length; i++) {
+                out.writeFieldHeader(FieldType.VAR_INT32, i + 1).writeVarInt32(value[i]);
+            }
+        }
+
+        @Override
+        public int[] read(BinaryInput in) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int serializedSize(int[] value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
 }
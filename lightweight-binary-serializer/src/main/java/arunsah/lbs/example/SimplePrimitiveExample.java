@@ -4,11 +4,18 @@ import arunsah.lbs.BinaryInput;
 import arunsah.lbs.BinaryInputImpl;
 import arunsah.lbs.BinaryOutput;
 import arunsah.lbs.BinaryOutputImpl;
+import arunsah.lbs.BinarySize;
 import arunsah.lbs.FieldHeader;
 import arunsah.lbs.FieldType;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static arunsah.lbs.example.ExampleUtil.check;
 
 public class SimplePrimitiveExample {
 
@@ -108,8 +115,111 @@ public class SimplePrimitiveExample {
         System.out.println("testPrimitiveFields passed.");
     }
 
+    /**
+     * Test half precision (FLOAT16) values: 2 bytes each, rounded to the nearest half.
+     */
+    private static void testFloat16() {
+        System.out.println("testFloat16");
+        ByteBuffer buffer = ByteBuffer.allocate(32);
+        BinaryOutput out = BinaryOutputImpl.bigEndianOutput(buffer);
+        float[] values = {0.5f, -2.0f, 65504f, 1.0f / 3};
+        out.writeFieldHeader(FieldType.FLOAT16, 1).writeFloat16(1.5f);
+        out.writeFieldHeader(FieldType.FLOAT16_ARRAY, 2).writeFloat16Array(values);
+
+        ExampleUtil.printBufferInfo(System.out, buffer);
+        // 1 + 2 bytes, then 2 (header) + 1 (length) + 4 * 2 bytes.
+        if (buffer.position() != 14) {
+            throw new AssertionError("Float16 test failed. Expected 14 bytes, got " + buffer.position());
+        }
+
+        buffer.flip();
+        BinaryInput in = BinaryInputImpl.bigEndianInput(buffer);
+        in.readFieldHeader();
+        float halfVal = in.readFloat16();
+        if (halfVal != 1.5f) {
+            throw new AssertionError("Float16 test failed. Expected 1.5, got " + halfVal);
+        }
+        in.readFieldHeader();
+        float[] readArray = in.readFloat16Array();
+        // 1/3 is not exact in half precision: 0x3555 is 0.333251953125.
+        float[] expected = {0.5f, -2.0f, 65504f, 0.333251953125f};
+        if (!Arrays.equals(expected, readArray)) {
+            throw new AssertionError("Float16 test failed. Expected " + Arrays.toString(expected)
+                    + ", got " + Arrays.toString(readArray));
+        }
+        System.out.println("testFloat16 passed.");
+    }
+
+    /**
+     * Test UTF-8 strings against {@link String#getBytes(java.nio.charset.Charset)}: encoded lengths on both sides of
+     * the 1, 2 and 3 byte varint length prefixes, 2, 3 and 4 byte characters (also split between the chunks of the
+     * long string encoder), and unpaired surrogates, which are written as '?'. Each string is written into a heap and
+     * a direct buffer of exactly its serialized size.
+     */
+    private static void testStringUTF8() {
+        System.out.println("testStringUTF8");
+        List<String> values = new ArrayList<>();
+        values.add("");
+        values.add(repeat("a", 127));
+        values.add(repeat("a", 128));
+        // 64 chars: the length slot reserved for the char count is too short for the 127 and 128 bytes.
+        values.add(repeat("é", 63) + "a");
+        values.add(repeat("é", 64));
+        values.add(repeat("中", 5461));
+        values.add(repeat("中", 5461) + "a");
+        values.add(repeat("😀", 4096));
+        values.add("aé中😀");
+        // A surrogate pair across the 512 char chunks of the encoder.
+        values.add("a" + repeat("😀", 600));
+        values.add("a\uD800b");
+        values.add("\uDC00");
+        values.add("x\uD83D");
+        values.add("\uDE00\uD83D");
+        values.add(repeat("a", 511) + "\uD800" + repeat("b", 100));
+        values.add(repeat("中", 100) + "\uDC00" + repeat("a", 600) + "\uD83D");
+
+        for (boolean direct : new boolean[]{false, true}) {
+            for (String value : values) {
+                byte[] expected = value.getBytes(StandardCharsets.UTF_8);
+                int size = BinarySize.stringUTF8(value);
+                check(size == BinarySize.varInt32(expected.length) + expected.length,
+                        "size of a string of " + expected.length + " bytes");
+                ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+                BinaryOutputImpl.bigEndianOutput(buffer).writeStringUTF8(value);
+                check(!buffer.hasRemaining(), "string of " + expected.length + " bytes fills its buffer");
+
+                buffer.flip();
+                BinaryInput in = BinaryInputImpl.bigEndianInput(buffer);
+                check(in.readVarInt32() == expected.length, "length prefix of " + expected.length + " bytes");
+                byte[] actual = new byte[expected.length];
+                buffer.get(actual);
+                check(Arrays.equals(actual, expected), "bytes of a string of " + expected.length + " bytes");
+
+                buffer.rewind();
+                check(in.readStringUTF8().equals(new String(expected, StandardCharsets.UTF_8)),
+                        "string of " + expected.length + " bytes read back");
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        BinaryOutputImpl.bigEndianOutput(buffer).writeStringUTF8("a\uD800b\uDC00");
+        buffer.flip();
+        check(BinaryInputImpl.bigEndianInput(buffer).readStringUTF8().equals("a?b?"), "unpaired surrogates as '?'");
+        System.out.println("testStringUTF8 passed.");
+    }
+
+    private static String repeat(String value, int count) {
+        return String.join("", Collections.nCopies(count, value));
+    }
+
     public static void main(String[] args) {
         System.out.println("==================================================");
         testPrimitiveFields();
+
+        System.out.println("==================================================");
+        testFloat16();
+
+        System.out.println("==================================================");
+        testStringUTF8();
     }
 }
@@ -187,6 +187,46 @@ public class SimpleVarIntExample {
         System.out.println("testVarIntArrayField passed.");
     }
 
+    /**
+     * Test the ZigZag mapped signed varints: small negative values take as few bytes as small positive ones, and the
+     * encoding is the same for ints and longs.
+     */
+    private static void testSignedVarInt() {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        BinaryOutput out = BinaryOutputImpl.littleEndianOutput(buffer);
+        out.writeSVarInt32(-1);
+        out.writeSVarInt64(-64);
+        if (buffer.position() != 2) {
+            throw new AssertionError("Signed varint test failed. Expected 2 bytes, got " + buffer.position());
+        }
+        out.writeFieldHeader(FieldType.SVAR_INT, 3).writeSVarInt64(Long.MIN_VALUE);
+        out.writeFieldHeader(FieldType.SVAR_INT_ARRAY, 4).writeSVarInt32Array(INT32_ARRAY_VALUES);
+        out.writeFieldHeader(FieldType.SVAR_INT_ARRAY, 5).writeSVarInt64Array(INT64_ARRAY_VALUES);
+
+        ExampleUtil.printBufferInfo(System.out, buffer);
+
+        buffer.flip();
+        BinaryInput in = BinaryInputImpl.littleEndianInput(buffer);
+        if (in.readSVarInt32() != -1 || in.readSVarInt32() != -64) {
+            throw new AssertionError("Signed varint test failed for -1 / -64.");
+        }
+        in.nextField();
+        if (in.currentFieldType() != FieldType.SVAR_INT || in.readSVarInt64() != Long.MIN_VALUE) {
+            throw new AssertionError("Signed varint test failed for Long.MIN_VALUE.");
+        }
+        in.nextField();
+        int[] int32Values = in.readSVarInt32Array();
+        if (!Arrays.equals(INT32_ARRAY_VALUES, int32Values)) {
+            throw new AssertionError("Signed varint array test failed. Got " + Arrays.toString(int32Values));
+        }
+        in.nextField();
+        long[] int64Values = in.readSVarInt64Array();
+        if (!Arrays.equals(INT64_ARRAY_VALUES, int64Values)) {
+            throw new AssertionError("Signed varint array test failed. Got " + Arrays.toString(int64Values));
+        }
+        System.out.println("testSignedVarInt passed.");
+    }
+
     public static void main(String[] args) {
         System.out.println("==================================================");
         testVarIntBigEndian();
@@ -205,6 +245,9 @@ public class SimpleVarIntExample {
 
         System.out.println("==================================================");
         testVarIntArrayField();
+
+        System.out.println("==================================================");
+        testSignedVarInt();
     }
 
 }
@@ -0,0 +1,92 @@
+package arunsah.lbs.example;
+
+import arunsah.lbs.BinaryCodec;
+import arunsah.lbs.BinaryInput;
+import arunsah.lbs.BinaryOutput;
+import arunsah.lbs.BinaryOutputImpl;
+import arunsah.lbs.FieldType;
+import arunsah.lbs.LbsView;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static arunsah.lbs.example.ExampleUtil.check;
+
+public class SimpleViewExample {
+
+    public static void main(String[] args) {
+        System.out.println("==================================================");
+        testView(true);
+
+        System.out.println("==================================================");
+        testView(false);
+    }
+
+    /**
+     * Writes a message with a nested object and reads a few fields back through a view, without deserializing it.
+     */
+    private static void testView(boolean bigEndian) {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        BinaryOutput out = bigEndian ? BinaryOutputImpl.bigEndianOutput(buffer)
+                : BinaryOutputImpl.littleEndianOutput(buffer);
+        out.writeFieldHeader(FieldType.INT64, 1).writeInt64(123456789L);
+        out.writeFieldHeader(FieldType.STRING_UTF8, 2).writeStringUTF8("orders.eu-west");
+        out.writeBoolean(3, true);
+        out.writeFieldHeader(FieldType.VAR_INT32, 300).writeVarInt32(300);
+        out.writeFieldHeader(FieldType.INT32_ARRAY, 5).writeInt32Array(new int[]{7, 8, 9});
+        out.writeFieldHeader(FieldType.VAR_INT64_ARRAY, 6).writeVarInt64Array(new long[]{1L, -1L});
+        out.writeFieldHeader(FieldType.OBJECT, 7).writeObject(new Route("eu-west-1", 443), new RouteCodec());
+        out.writeFieldHeader(FieldType.LIST, 8).writeList(Arrays.asList("a", "b"), BinaryOutput::writeStringUTF8);
+        buffer.flip();
+
+        ExampleUtil.printBufferInfo(System.out, buffer);
+
+        LbsView view = bigEndian ? LbsView.bigEndianView(buffer) : LbsView.littleEndianView(buffer);
+        check(view.getFieldCount() == 8, "field count " + view.getFieldCount());
+        check(view.getInt64(1) == 123456789L, "int64");
+        check(view.stringEquals(2, "orders.eu-west"), "string equals");
+        check(view.getStringBytes(2).remaining() == "orders.eu-west".length(), "string bytes");
+        check(view.getString(2).equals("orders.eu-west"), "string");
+        check(view.getBoolean(3), "boolean");
+        check(view.getVarInt32(300) == 300, "varint");
+        check(view.getArrayLength(5) == 3 && view.getInt32Element(5, 2) == 9, "int32 array");
+        check(Arrays.equals(view.valueInput(6).readVarInt64Array(), new long[]{1L, -1L}), "varint64 array");
+        LbsView route = view.getObject(7);
+        check(route.getString(1).equals("eu-west-1") && route.getInt32(2) == 443, "nested object");
+        List<String> list = view.valueInput(8).readList(BinaryInput::readStringUTF8);
+        check(list.equals(Arrays.asList("a", "b")), "list");
+        check(!view.hasField(4) && view.getFieldType(4) == null, "missing field");
+        check(buffer.position() == 0, "buffer position unchanged");
+        System.out.println("testView(bigEndian=" + bigEndian + ") passed.");
+    }
+
+
+    private static class Route {
+        final String region;
+        final int port;
+
+        Route(String region, int port) {
+            this.region = region;
+            this.port = port;
+        }
+    }
+
+    private static class RouteCodec implements BinaryCodec<Route> {
+        @Override
+        public void write(BinaryOutput out, Route value) {
+            out.writeFieldHeader(FieldType.STRING_UTF8, 1).writeStringUTF8(value.region);
+            out.writeFieldHeader(FieldType.INT32, 2).writeInt32(value.port);
+        }
+
+        @Override
+        public Route read(BinaryInput in) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int serializedSize(Route value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
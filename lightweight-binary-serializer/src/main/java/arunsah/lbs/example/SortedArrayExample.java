@@ -0,0 +1,139 @@
+package arunsah.lbs.example;
+
+import arunsah.lbs.ArrayEncoding;
+import arunsah.lbs.BinaryInput;
+import arunsah.lbs.BinaryInputImpl;
+import arunsah.lbs.BinaryOutput;
+import arunsah.lbs.BinaryOutputImpl;
+import arunsah.lbs.BinarySize;
+import arunsah.lbs.FieldType;
+import arunsah.lbs.LbsView;
+import arunsah.lbs.SortedInt32Cursor;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static arunsah.lbs.example.ExampleUtil.check;
+
+public class SortedArrayExample {
+
+    public static void main(String[] args) {
+        System.out.println("==================================================");
+        testSortedArrays(true);
+
+        System.out.println("==================================================");
+        testSortedArrays(false);
+
+        System.out.println("==================================================");
+        testIntersection();
+    }
+
+    /**
+     * Writes posting list style arrays (sorted ids with small gaps) in both encodings and reads them back, as arrays
+     * and through cursors.
+     */
+    private static void testSortedArrays(boolean bigEndian) {
+        int[] ids = postingList(new Random(7), 1000, 20);
+        long[] timestamps = {-5_000_000_000L, -1L, 0L, 1_700_000_000_000L, 1_700_000_000_001L, Long.MAX_VALUE};
+
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        BinaryOutput out = bigEndian ? BinaryOutputImpl.bigEndianOutput(buffer)
+                : BinaryOutputImpl.littleEndianOutput(buffer);
+        out.writeFieldHeader(FieldType.ENCODED_ARRAY, 1).writeSortedInt32Array(ids);
+        out.writeFieldHeader(FieldType.ENCODED_ARRAY, 2).writeBlockedSortedInt32Array(ids);
+        out.writeFieldHeader(FieldType.ENCODED_ARRAY, 3).writeSortedInt64Array(timestamps);
+        out.writeFieldHeader(FieldType.INT32, 4).writeInt32(42);
+        int expectedSize = BinarySize.fieldHeader(FieldType.ENCODED_ARRAY, 1) * 3 + BinarySize.sortedInt32Array(ids)
+                + BinarySize.blockedSortedInt32Array(ids) + BinarySize.sortedInt64Array(timestamps) + 1 + 4;
+        check(buffer.position() == expectedSize, "size " + buffer.position() + " != " + expectedSize);
+        System.out.println("1000 ids: " + BinarySize.sortedInt32Array(ids) + " bytes delta, "
+                + BinarySize.blockedSortedInt32Array(ids) + " bytes with skip table, "
+                + BinarySize.varInt32Array(ids) + " bytes as VAR_INT32_ARRAY, "
+                + BinarySize.int32Array(ids) + " bytes as INT32_ARRAY");
+        check(BinarySize.sortedInt32Array(ids) < BinarySize.varInt32Array(ids), "delta encoding is smaller");
+        buffer.flip();
+
+        BinaryInput in = bigEndian ? BinaryInputImpl.bigEndianInput(buffer) : BinaryInputImpl.littleEndianInput(buffer);
+        in.nextField();
+        check(Arrays.equals(in.readSortedInt32Array(), ids), "delta array");
+        in.nextField();
+        check(Arrays.equals(in.readSortedInt32Array(), ids), "blocked array");
+        in.nextField();
+        check(Arrays.equals(in.readSortedInt64Array(), timestamps), "long array");
+        in.nextField();
+        check(in.readInt32() == 42, "field after the arrays");
+
+        buffer.rewind();
+        LbsView view = bigEndian ? LbsView.bigEndianView(buffer) : LbsView.littleEndianView(buffer);
+        check(view.getArrayEncoding(2) == ArrayEncoding.DELTA_BLOCKS_INT32, "encoding");
+        check(view.getInt32(4) == 42, "view skips encoded arrays");
+        for (int fieldId = 1; fieldId <= 2; fieldId++) {
+            // Every value through next(), then advance() to targets in and between the values.
+            SortedInt32Cursor cursor = view.getSortedInt32Cursor(fieldId);
+            for (int i = 0; i < ids.length; i++) {
+                check(cursor.next() && cursor.value() == ids[i], "next " + i);
+            }
+            check(!cursor.next() && cursor.index() == ids.length, "exhausted");
+
+            cursor = view.getSortedInt32Cursor(fieldId);
+            for (int i = 0; i < ids.length; i += 37) {
+                // ids[i] - 1 is either the previous id or a gap.
+                check(cursor.advance(ids[i] - 1) && cursor.value() >= ids[i] - 1 && cursor.value() <= ids[i],
+                        "advance below " + i);
+                check(cursor.advance(ids[i]) && cursor.value() == ids[i], "advance to " + i);
+            }
+            check(!cursor.advance(ids[ids.length - 1] + 1), "advance past the end");
+        }
+        System.out.println("testSortedArrays(bigEndian=" + bigEndian + ") passed.");
+    }
+
+    /**
+     * Intersects a long and a short posting list with cursors: the short list drives, the long one advances with its
+     * skip table.
+     */
+    private static void testIntersection() {
+        Random random = new Random(42);
+        int[] large = postingList(random, 100_000, 10);
+        int[] small = postingList(random, 200, 5000);
+
+        ByteBuffer buffer = ByteBuffer.allocate(BinarySize.blockedSortedInt32Array(large)
+                + BinarySize.blockedSortedInt32Array(small));
+        BinaryOutput out = BinaryOutputImpl.littleEndianOutput(buffer);
+        out.writeBlockedSortedInt32Array(large);
+        out.writeBlockedSortedInt32Array(small);
+        buffer.flip();
+
+        BinaryInput in = BinaryInputImpl.littleEndianInput(buffer);
+        SortedInt32Cursor largeCursor = in.readSortedInt32Cursor();
+        SortedInt32Cursor smallCursor = in.readSortedInt32Cursor();
+        int matches = 0;
+        while (smallCursor.next() && largeCursor.advance(smallCursor.value())) {
+            if (largeCursor.value() == smallCursor.value()) {
+                matches++;
+            }
+        }
+
+        int expected = 0;
+        for (int value : small) {
+            if (Arrays.binarySearch(large, value) >= 0) {
+                expected++;
+            }
+        }
+        check(matches == expected, "intersection " + matches + " != " + expected);
+        System.out.println("testIntersection passed (" + matches + " common ids).");
+    }
+
+    /**
+     * Distinct increasing ids with random gaps of 1 to {@code maxGap}.
+     */
+    private static int[] postingList(Random random, int length, int maxGap) {
+        int[] ids = new int[length];
+        int id = random.nextInt(maxGap);
+        for (int i = 0; i < length; i++) {
+            ids[i] = id;
+            id += 1 + random.nextInt(maxGap);
+        }
+        return ids;
+    }
+}
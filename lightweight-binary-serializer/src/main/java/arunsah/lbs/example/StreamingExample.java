@@ -0,0 +1,139 @@
+package arunsah.lbs.example;
+
+import arunsah.lbs.BinaryCodec;
+import arunsah.lbs.BinaryInput;
+import arunsah.lbs.BinaryOutput;
+import arunsah.lbs.BinarySize;
+import arunsah.lbs.FieldType;
+import arunsah.lbs.IncrementalBinaryDecoder;
+import arunsah.lbs.IncrementalBinaryDecoder.Status;
+import arunsah.lbs.StreamingBinaryInput;
+import arunsah.lbs.StreamingBinaryOutput;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static arunsah.lbs.example.ExampleUtil.check;
+
+public class StreamingExample {
+
+    private static final int RECORDS = 1000;
+
+    public static void main(String[] args) {
+        System.out.println("==================================================");
+        byte[] data = testStreamingOutputAndInput();
+
+        System.out.println("==================================================");
+        testIncrementalDecoder(data);
+    }
+
+    /**
+     * Streams records (each a nested object) through a 64 byte buffer, much smaller than the output, and reads them
+     * back through a 64 byte buffer.
+     */
+    private static byte[] testStreamingOutputAndInput() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StreamingBinaryOutput out = new StreamingBinaryOutput(bytes, 64, ByteOrder.BIG_ENDIAN);
+        for (int i = 0; i < RECORDS; i++) {
+            out.writeFieldHeader(FieldType.OBJECT, 1).writeObject(i, new RecordCodec());
+        }
+        out.flush();
+        check(out.getBytesWritten() == bytes.size(), "bytes written");
+        System.out.println(RECORDS + " records: " + bytes.size() + " bytes streamed through a 64 byte buffer");
+
+        StreamingBinaryInput in = new StreamingBinaryInput(new ByteArrayInputStream(bytes.toByteArray()), 64,
+                ByteOrder.BIG_ENDIAN);
+        int count = 0;
+        while (in.hasRemaining()) {
+            in.nextField();
+            int id = in.readObject(new RecordCodec());
+            check(id == count, "record " + count);
+            count++;
+        }
+        check(count == RECORDS, "record count");
+        System.out.println("testStreamingOutputAndInput passed.");
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Feeds the same records to an incremental decoder three bytes at a time, so that headers, varints, strings and
+     * arrays are all split across chunks.
+     */
+    private static void testIncrementalDecoder(byte[] data) {
+        IncrementalBinaryDecoder decoder = IncrementalBinaryDecoder.bigEndianDecoder();
+        ByteBuffer chunk = ByteBuffer.allocate(3);
+        List<String> names = new ArrayList<>();
+        int objects = 0;
+        for (int offset = 0; offset < data.length; offset += chunk.capacity()) {
+            chunk.clear();
+            chunk.put(data, offset, Math.min(chunk.capacity(), data.length - offset));
+            chunk.flip();
+            Status status;
+            while ((status = decoder.decode(chunk)) != Status.NEED_MORE_DATA) {
+                if (status == Status.OBJECT_START) {
+                    objects++;
+                } else if (status == Status.FIELD && decoder.currentFieldId() == 2) {
+                    names.add(decoder.stringValue());
+                } else if (status == Status.FIELD && decoder.currentFieldId() == 3) {
+                    int id = objects - 1;
+                    check(Arrays.equals((int[]) decoder.arrayValue(), RecordCodec.values(id)), "array " + id);
+                }
+            }
+        }
+        check(objects == RECORDS && names.size() == RECORDS, "record count");
+        check(names.get(RECORDS - 1).equals(RecordCodec.name(RECORDS - 1)), "last name");
+        check(decoder.getDepth() == 0 && decoder.getBytesDecoded() == data.length, "decoder at the end");
+        System.out.println("testIncrementalDecoder passed.");
+    }
+
+    /**
+     * Writes record {@code i} as an id, a name and an int array; reads back the id.
+     */
+    private static class RecordCodec implements BinaryCodec<Integer> {
+
+        static String name(int i) {
+            return "record-" + i + "-ü";
+        }
+
+        static int[] values(int i) {
+            return new int[]{i, i * 2, i * 3};
+        }
+
+        @Override
+        public void write(BinaryOutput out, Integer i) {
+            out.writeFieldHeader(FieldType.VAR_INT32, 1).writeVarInt32(i);
+            out.writeFieldHeader(FieldType.STRING_UTF8, 2).writeStringUTF8(name(i));
+            out.writeFieldHeader(FieldType.INT32_ARRAY, 3).writeInt32Array(values(i));
+        }
+
+        @Override
+        public Integer read(BinaryInput in) {
+            int id = -1;
+            while (in.hasRemaining()) {
+                switch (in.nextField()) {
+                    case 1:
+                        id = in.readVarInt32();
+                        break;
+                    case 2:
+                        check(in.readStringUTF8().equals(name(id)), "name " + id);
+                        break;
+                    default:
+                        in.skipField();
+                }
+            }
+            return id;
+        }
+
+        @Override
+        public int serializedSize(Integer i) {
+            return BinarySize.fieldHeader(FieldType.VAR_INT32, 1) + BinarySize.varInt32(i)
+                    + BinarySize.fieldHeader(FieldType.STRING_UTF8, 2) + BinarySize.stringUTF8(name(i))
+                    + BinarySize.fieldHeader(FieldType.INT32_ARRAY, 3) + BinarySize.int32Array(values(i));
+        }
+    }
+}
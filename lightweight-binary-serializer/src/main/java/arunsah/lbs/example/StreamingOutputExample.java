@@ -0,0 +1,206 @@
+package arunsah.lbs.example;
+
+import arunsah.lbs.BinaryInput;
+import arunsah.lbs.BinaryInputImpl;
+import arunsah.lbs.BinaryOutput;
+import arunsah.lbs.BinaryOutputImpl;
+import arunsah.lbs.Constant;
+import arunsah.lbs.FieldType;
+import arunsah.lbs.IncrementalBinaryDecoder;
+import arunsah.lbs.IncrementalBinaryDecoder.Status;
+import arunsah.lbs.StreamingBinaryOutput;
+import arunsah.lbs.example.ComplexCompositeObjectsExample.Person;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static arunsah.lbs.example.ExampleUtil.check;
+
+public class StreamingOutputExample {
+
+    private static final int PERSONS = 1000;
+
+    // 1, 2, 3 and 4 byte UTF-8 characters.
+    private static final String TEXT = String.join("", Collections.nCopies(500, "aé中😀"));
+
+    public static void main(String[] args) {
+        int[] ints = new int[1000];
+        double[] doubles = new double[1000];
+        byte[] bytes = new byte[3000];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = i * 7919;
+            doubles[i] = i / 3.0;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+
+        byte[] data = null;
+        for (ByteOrder byteOrder : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            System.out.println("==================================================");
+            data = testSameBytesAsBinaryOutputImpl(ints, doubles, bytes, byteOrder);
+        }
+
+        System.out.println("==================================================");
+        testIncrementalDecoder(data, ints, doubles, bytes);
+    }
+
+    private static Person person(int i) {
+        return new Person(i % 128, "person-" + i, (i & 1) == 0, new Date(946684800000L + i));
+    }
+
+    private static void write(BinaryOutput out, int[] ints, double[] doubles, byte[] bytes) {
+        out.writeFieldHeader(FieldType.INT32, 1).writeInt32(-42);
+        out.writeFieldHeader(FieldType.VAR_INT64, 2).writeVarInt64(Long.MAX_VALUE);
+        out.writeFieldHeader(FieldType.FLOAT64, 3).writeFloat64(Math.PI);
+        out.writeBoolean(4, true);
+        out.writeFieldHeader(FieldType.STRING_UTF8, 5).writeStringUTF8(TEXT);
+        out.writeFieldHeader(FieldType.INT32_ARRAY, 6).writeInt32Array(ints);
+        out.writeFieldHeader(FieldType.FLOAT64_ARRAY, 7).writeFloat64Array(doubles);
+        out.writeFieldHeader(FieldType.INT8_ARRAY, 8).writeInt8Array(bytes);
+        for (int i = 0; i < PERSONS; i++) {
+            out.writeFieldHeader(FieldType.OBJECT, 9).writeObject(person(i));
+        }
+    }
+
+    /**
+     * Streams the same fields to a stream and to a channel through buffers of 16 to 40 bytes and of the default size;
+     * the bytes are those of a {@link BinaryOutputImpl}, no single write is larger than the buffer, and a
+     * {@link BinaryInputImpl} reads them back.
+     */
+    private static byte[] testSameBytesAsBinaryOutputImpl(int[] ints, double[] doubles, byte[] bytes,
+                                                          ByteOrder byteOrder) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(byteOrder);
+        write(new BinaryOutputImpl(buffer, byteOrder), ints, doubles, bytes);
+        byte[] expected = Arrays.copyOf(buffer.array(), buffer.position());
+
+        List<Integer> bufferSizes = new ArrayList<>();
+        for (int size = 16; size <= 40; size++) {
+            bufferSizes.add(size);
+        }
+        bufferSizes.add(Constant.DEFAULT_STREAM_BUFFER_SIZE);
+        for (int bufferSize : bufferSizes) {
+            for (boolean channel : new boolean[]{false, true}) {
+                RecordingStream stream = new RecordingStream();
+                StreamingBinaryOutput out = channel
+                        ? new StreamingBinaryOutput(Channels.newChannel(stream), bufferSize, byteOrder)
+                        : new StreamingBinaryOutput(stream, bufferSize, byteOrder);
+                write(out, ints, doubles, bytes);
+                out.flush();
+                String what = (channel ? "channel" : "stream") + " with a buffer of " + bufferSize + " bytes";
+                check(out.getBytesWritten() == expected.length, "bytes written to a " + what);
+                check(Arrays.equals(stream.toByteArray(), expected), "same bytes on a " + what);
+                check(stream.largestWrite <= bufferSize, "largest write of " + stream.largestWrite + " bytes on a "
+                        + what);
+            }
+        }
+
+        read(new BinaryInputImpl(ByteBuffer.wrap(expected), byteOrder), ints, doubles, bytes);
+        System.out.println(byteOrder + ": " + expected.length + " bytes streamed through buffers of "
+                + bufferSizes.get(0) + " to " + Constant.DEFAULT_STREAM_BUFFER_SIZE + " bytes");
+        System.out.println("testSameBytesAsBinaryOutputImpl passed.");
+        return expected;
+    }
+
+    private static void read(BinaryInput in, int[] ints, double[] doubles, byte[] bytes) {
+        in.nextField();
+        check(in.readInt32() == -42, "int");
+        in.nextField();
+        check(in.readVarInt64() == Long.MAX_VALUE, "varint");
+        in.nextField();
+        check(in.readFloat64() == Math.PI, "double");
+        check(in.readFieldHeader().getFieldType() == FieldType.BOOL_TRUE, "boolean");
+        in.nextField();
+        check(in.readStringUTF8().equals(TEXT), "string");
+        in.nextField();
+        check(Arrays.equals(in.readInt32Array(), ints), "int array");
+        in.nextField();
+        check(Arrays.equals(in.readFloat64Array(), doubles), "double array");
+        in.nextField();
+        check(Arrays.equals(in.readInt8Array(), bytes), "byte array");
+        for (int i = 0; i < PERSONS; i++) {
+            in.nextField();
+            check(in.readObject(Person::new).equals(person(i)), "person " + i);
+        }
+        check(!in.hasRemaining(), "end of the data");
+    }
+
+    /**
+     * Feeds the streamed bytes (little endian) to an incremental decoder in chunks of 1, 7 and 4096 bytes.
+     */
+    private static void testIncrementalDecoder(byte[] data, int[] ints, double[] doubles, byte[] bytes) {
+        for (int chunkSize : new int[]{1, 7, 4096}) {
+            IncrementalBinaryDecoder decoder = IncrementalBinaryDecoder.littleEndianDecoder();
+            ByteBuffer chunk = ByteBuffer.allocate(chunkSize);
+            int fields = 0;
+            int persons = 0;
+            for (int offset = 0; offset < data.length; offset += chunkSize) {
+                chunk.clear();
+                chunk.put(data, offset, Math.min(chunkSize, data.length - offset));
+                chunk.flip();
+                Status status;
+                while ((status = decoder.decode(chunk)) != Status.NEED_MORE_DATA) {
+                    if (status == Status.OBJECT_START) {
+                        persons++;
+                    } else if (status == Status.FIELD && decoder.getDepth() == 0) {
+                        fields++;
+                        check(checkField(decoder, ints, doubles, bytes), "field " + decoder.currentFieldId());
+                    } else if (status == Status.FIELD && decoder.currentFieldId() == 2) {
+                        check(decoder.stringValue().equals(person(persons - 1).getName()), "name " + persons);
+                    }
+                }
+            }
+            check(fields == 8 && persons == PERSONS, "field and person count in chunks of " + chunkSize);
+            check(decoder.getDepth() == 0 && decoder.getBytesDecoded() == data.length, "decoder at the end");
+        }
+        System.out.println("testIncrementalDecoder passed.");
+    }
+
+    private static boolean checkField(IncrementalBinaryDecoder decoder, int[] ints, double[] doubles, byte[] bytes) {
+        switch (decoder.currentFieldId()) {
+            case 1:
+                return decoder.intValue() == -42;
+            case 2:
+                return decoder.longValue() == Long.MAX_VALUE;
+            case 3:
+                return decoder.doubleValue() == Math.PI;
+            case 4:
+                return decoder.booleanValue();
+            case 5:
+                return decoder.stringValue().equals(TEXT);
+            case 6:
+                return Arrays.equals((int[]) decoder.arrayValue(), ints);
+            case 7:
+                return Arrays.equals((double[]) decoder.arrayValue(), doubles);
+            default:
+                return Arrays.equals((byte[]) decoder.arrayValue(), bytes);
+        }
+    }
+
+    /**
+     * Collects the bytes and remembers the largest single write.
+     */
+    private static class RecordingStream extends ByteArrayOutputStream {
+
+        int largestWrite;
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            largestWrite = Math.max(largestWrite, len);
+            super.write(b, off, len);
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            largestWrite = Math.max(largestWrite, 1);
+            super.write(b);
+        }
+    }
+}